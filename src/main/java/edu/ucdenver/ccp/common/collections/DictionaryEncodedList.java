@@ -0,0 +1,315 @@
+package edu.ucdenver.ccp.common.collections;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of <code>String</code>s stored as an <code>int</code> code per element plus a dictionary
+ * of the distinct values. This is a compact representation for low-cardinality data, e.g. a column
+ * of species or evidence codes with a few hundred distinct values over millions of rows: every
+ * element with the same value is the same <code>String</code> instance.
+ * <p>
+ * Values are interned in a dictionary that is local to the list (not via
+ * {@link String#intern()}), and can be added directly from a range of a
+ * <code>CharSequence</code>, e.g. a column of a line being parsed, so that a <code>String</code>
+ * is only created the first time a value is seen.
+ * <p>
+ * Elements can be appended but not modified or removed. <code>null</code> elements are not
+ * permitted. This class is not thread-safe.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class DictionaryEncodedList extends AbstractList<String> implements RandomAccess {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The code of each element, i.e. the index of its value in the dictionary
+	 */
+	private int[] codes;
+
+	/**
+	 * The number of elements in this list
+	 */
+	private int size = 0;
+
+	/**
+	 * The distinct values, indexed by code
+	 */
+	private String[] values;
+
+	/**
+	 * The hash code of each distinct value, indexed by code
+	 */
+	private int[] valueHashes;
+
+	/**
+	 * The number of distinct values
+	 */
+	private int valueCount = 0;
+
+	/**
+	 * Open-addressing hash table of (code + 1); 0 marks an empty slot. Its length is a power of 2
+	 * and at least twice the number of distinct values.
+	 */
+	private int[] table;
+
+	/**
+	 * Initializes an empty <code>DictionaryEncodedList</code>
+	 */
+	public DictionaryEncodedList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes an empty <code>DictionaryEncodedList</code>
+	 *
+	 * @param initialCapacity
+	 *            the number of elements the list can hold before it needs to grow, e.g. the number
+	 *            of lines in a file
+	 */
+	public DictionaryEncodedList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		}
+		this.codes = new int[initialCapacity];
+		this.values = new String[DEFAULT_CAPACITY];
+		this.valueHashes = new int[DEFAULT_CAPACITY];
+		this.table = new int[2 * DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Appends the input value to this list
+	 *
+	 * @see java.util.AbstractList#add(java.lang.Object)
+	 * @throws NullPointerException
+	 *             if the value is null
+	 */
+	@Override
+	public boolean add(String value) {
+		append(value, 0, value.length());
+		return true;
+	}
+
+	/**
+	 * Appends the characters between <code>start</code> (inclusive) and <code>end</code>
+	 * (exclusive) of the input <code>CharSequence</code> to this list. A new <code>String</code>
+	 * is only created if the value is not already in the dictionary.
+	 *
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return the code of the appended value
+	 */
+	public int append(CharSequence text, int start, int end) {
+		int code = encode(text, start, end, true);
+		if (size == codes.length) {
+			codes = Arrays.copyOf(codes, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+		}
+		codes[size++] = code;
+		modCount++;
+		return code;
+	}
+
+	/**
+	 * @param value
+	 * @return the code of the input value, or -1 if the value is not in the dictionary
+	 */
+	public int lookupCode(CharSequence value) {
+		return encode(value, 0, value.length(), false);
+	}
+
+	/**
+	 * Looks up a value in the dictionary
+	 *
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @param addIfAbsent
+	 *            if true, a value that is not in the dictionary is added to it
+	 * @return the code of the value, or -1 if the value is not in the dictionary and was not added
+	 */
+	private int encode(CharSequence text, int start, int end, boolean addIfAbsent) {
+		/* the same hash function as String.hashCode() */
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		int mask = table.length - 1;
+		for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+			int entry = table[slot];
+			if (entry == 0) {
+				if (!addIfAbsent) {
+					return -1;
+				}
+				String value = text.subSequence(start, end).toString();
+				int code = addValue(value, hash);
+				if (valueCount * 2 > table.length) {
+					rehash(table.length * 2);
+				} else {
+					table[slot] = code + 1;
+				}
+				return code;
+			}
+			int code = entry - 1;
+			if (valueHashes[code] == hash && contentEquals(values[code], text, start, end)) {
+				return code;
+			}
+		}
+	}
+
+	private int addValue(String value, int hash) {
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, valueCount * 2);
+			valueHashes = Arrays.copyOf(valueHashes, valueCount * 2);
+		}
+		values[valueCount] = value;
+		valueHashes[valueCount] = hash;
+		return valueCount++;
+	}
+
+	/**
+	 * Rebuilds the hash table with the specified number of slots
+	 */
+	private void rehash(int tableLength) {
+		table = new int[tableLength];
+		int mask = tableLength - 1;
+		for (int code = 0; code < valueCount; code++) {
+			int slot = mix(valueHashes[code]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = code + 1;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a hash code so that similar values do not cluster in the table
+	 */
+	private static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean contentEquals(String value, CharSequence text, int start, int end) {
+		if (value.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) != text.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public String get(int index) {
+		return values[getCode(index)];
+	}
+
+	/**
+	 * @param index
+	 * @return the code of the element at the specified index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range
+	 */
+	public int getCode(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+		}
+		return codes[index];
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of the codes of the elements of this list
+	 */
+	public int[] getCodes() {
+		return Arrays.copyOf(codes, size);
+	}
+
+	/**
+	 * @return an unmodifiable view of the distinct values of this list, indexed by code
+	 */
+	public List<String> getDictionary() {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int code) {
+				if (code < 0 || code >= valueCount) {
+					throw new IndexOutOfBoundsException(String.format("Code: %d, Dictionary size: %d", code,
+							valueCount));
+				}
+				return values[code];
+			}
+
+			@Override
+			public int size() {
+				return valueCount;
+			}
+		};
+	}
+
+	/**
+	 * @return the number of distinct values in this list
+	 */
+	public int getDictionarySize() {
+		return valueCount;
+	}
+
+	/**
+	 * Reduces the storage used by this list to that needed for its current contents
+	 */
+	public void trimToSize() {
+		codes = Arrays.copyOf(codes, size);
+		values = Arrays.copyOf(values, Math.max(1, valueCount));
+		valueHashes = Arrays.copyOf(valueHashes, Math.max(1, valueCount));
+	}
+
+}
@@ -0,0 +1,440 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+
+import edu.ucdenver.ccp.common.file.FileWriterUtil.SyncPolicy;
+
+/**
+ * A <code>Writer</code> for writing large amounts of text to a file. Characters are encoded
+ * directly into a large, reusable byte buffer that is written to a {@link FileChannel} when it
+ * fills, so that there is one system call per buffer rather than per 8KB. ASCII characters, which
+ * are encoded identically by every {@link CharacterEncoding}, are copied into the buffer without
+ * going through the <code>CharsetEncoder</code>; other characters are encoded with the strict
+ * encoder returned by {@link CharacterEncoding#getEncoder()}, so unmappable characters are
+ * reported as they are by {@link FileWriterUtil#initBufferedWriter(java.io.File, CharacterEncoding)}.
+ * <p>
+ * The <code>append</code> overloads for primitive values write their digits directly into the
+ * buffer without creating a <code>String</code>. Instances are created using
+ * {@link FileWriterUtil#initChannelWriter(java.io.File, CharacterEncoding, FileWriterUtil.WriteMode, FileWriterUtil.FileSuffixEnforcement, int, SyncPolicy)}
+ * and are not thread-safe.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class ChannelFileWriter extends Writer {
+
+	/**
+	 * The default size, in bytes, of the buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * The longest decimal representation of a long, i.e. that of Long.MIN_VALUE
+	 */
+	private static final int MAX_LONG_LENGTH = 20;
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private final FileChannel channel;
+	private final CharsetEncoder encoder;
+	private final SyncPolicy syncPolicy;
+
+	/**
+	 * The buffer of encoded bytes and a view of it used by the encoder
+	 */
+	private final byte[] bytes;
+	private final ByteBuffer byteBuffer;
+
+	/**
+	 * The number of bytes in the buffer
+	 */
+	private int count = 0;
+
+	/**
+	 * A high surrogate written at the end of the previous write, which is encoded together with
+	 * the low surrogate expected to begin the next write; 0 if there is none
+	 */
+	private char pendingHighSurrogate = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * @param channel
+	 *            a channel open for writing
+	 * @param encoding
+	 * @param bufferSize
+	 *            the size of the buffer in bytes
+	 * @param syncPolicy
+	 */
+	ChannelFileWriter(FileChannel channel, CharacterEncoding encoding, int bufferSize, SyncPolicy syncPolicy) {
+		if (bufferSize < MAX_LONG_LENGTH) {
+			throw new IllegalArgumentException("Buffer size must be at least " + MAX_LONG_LENGTH + " bytes: "
+					+ bufferSize);
+		}
+		this.channel = channel;
+		this.encoder = encoding.getEncoder();
+		this.syncPolicy = syncPolicy;
+		this.bytes = new byte[bufferSize];
+		this.byteBuffer = ByteBuffer.wrap(bytes);
+	}
+
+	/**
+	 * @see java.io.Writer#write(int)
+	 */
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if (c < 0x80 && pendingHighSurrogate == 0) {
+			if (count == bytes.length) {
+				flushBuffer();
+			}
+			bytes[count++] = (byte) c;
+		} else {
+			encode(CharBuffer.wrap(new char[] { (char) c }), false);
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#write(char[], int, int)
+	 */
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		ensureOpen();
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			if (pendingHighSurrogate == 0) {
+				if (count == bytes.length) {
+					flushBuffer();
+				}
+				int limit = i + Math.min(end - i, bytes.length - count);
+				byte[] buffer = bytes;
+				int position = count;
+				char c;
+				while (i < limit && (c = chars[i]) < 0x80) {
+					buffer[position++] = (byte) c;
+					i++;
+				}
+				count = position;
+				if (i == limit) {
+					continue;
+				}
+			}
+			int runEnd = getNonAsciiRunEnd(chars, i, end);
+			encode(CharBuffer.wrap(chars, i, runEnd - i), runEnd < end);
+			i = runEnd;
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#write(java.lang.String, int, int)
+	 */
+	@Override
+	public void write(String s, int offset, int length) throws IOException {
+		write((CharSequence) s, offset, offset + length);
+	}
+
+	/**
+	 * @see java.io.Writer#append(java.lang.CharSequence)
+	 */
+	@Override
+	public ChannelFileWriter append(CharSequence s) throws IOException {
+		if (s == null) {
+			return append("null");
+		}
+		write(s, 0, s.length());
+		return this;
+	}
+
+	/**
+	 * @see java.io.Writer#append(java.lang.CharSequence, int, int)
+	 */
+	@Override
+	public ChannelFileWriter append(CharSequence s, int start, int end) throws IOException {
+		if (s == null) {
+			return append("null", start, end);
+		}
+		write(s, start, end);
+		return this;
+	}
+
+	/**
+	 * @see java.io.Writer#append(char)
+	 */
+	@Override
+	public ChannelFileWriter append(char c) throws IOException {
+		write(c);
+		return this;
+	}
+
+	/**
+	 * Appends the decimal representation of the input value, as for {@link String#valueOf(int)}
+	 * 
+	 * @param value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public ChannelFileWriter append(int value) throws IOException {
+		return append((long) value);
+	}
+
+	/**
+	 * Appends the decimal representation of the input value, as for {@link String#valueOf(long)}
+	 * 
+	 * @param value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public ChannelFileWriter append(long value) throws IOException {
+		ensureOpen();
+		if (pendingHighSurrogate != 0) {
+			throw unpairedSurrogate();
+		}
+		if (bytes.length - count < MAX_LONG_LENGTH) {
+			flushBuffer();
+		}
+		if (value == Long.MIN_VALUE) {
+			return append("-9223372036854775808");
+		}
+		if (value < 0) {
+			bytes[count++] = '-';
+			value = -value;
+		}
+		int length = 1;
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			length++;
+		}
+		int position = count + length;
+		do {
+			bytes[--position] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value > 0);
+		count += length;
+		return this;
+	}
+
+	/**
+	 * Appends the input value, as for {@link String#valueOf(boolean)}
+	 * 
+	 * @param value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public ChannelFileWriter append(boolean value) throws IOException {
+		return append(value ? "true" : "false");
+	}
+
+	/**
+	 * Appends the input value, as for {@link String#valueOf(double)}. Unlike the other primitive
+	 * overloads, this creates a temporary <code>String</code>.
+	 * 
+	 * @param value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	public ChannelFileWriter append(double value) throws IOException {
+		return append(Double.toString(value));
+	}
+
+	/**
+	 * Writes the platform line separator, as for {@link java.io.BufferedWriter#newLine()}
+	 * 
+	 * @throws IOException
+	 */
+	public void newLine() throws IOException {
+		write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
+	}
+
+	/**
+	 * Writes the contents of the buffer to the file, forcing them to storage if the sync policy is
+	 * {@link SyncPolicy#ON_FLUSH}
+	 * 
+	 * @see java.io.Writer#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		flushBuffer();
+		if (syncPolicy == SyncPolicy.ON_FLUSH) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Flushes the buffer and closes the file, first forcing its contents to storage unless the sync
+	 * policy is {@link SyncPolicy#NONE}
+	 * 
+	 * @see java.io.Writer#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (pendingHighSurrogate != 0) {
+				throw unpairedSurrogate();
+			}
+			flushBuffer();
+			if (syncPolicy != SyncPolicy.NONE) {
+				channel.force(false);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the characters <code>s[start, end)</code>
+	 */
+	private void write(CharSequence s, int start, int end) throws IOException {
+		ensureOpen();
+		int i = start;
+		while (i < end) {
+			if (pendingHighSurrogate == 0) {
+				if (count == bytes.length) {
+					flushBuffer();
+				}
+				int limit = i + Math.min(end - i, bytes.length - count);
+				byte[] buffer = bytes;
+				int position = count;
+				char c;
+				while (i < limit && (c = s.charAt(i)) < 0x80) {
+					buffer[position++] = (byte) c;
+					i++;
+				}
+				count = position;
+				if (i == limit) {
+					continue;
+				}
+			}
+			int runEnd = getNonAsciiRunEnd(s, i, end);
+			encode(CharBuffer.wrap(s, i, runEnd), runEnd < end);
+			i = runEnd;
+		}
+	}
+
+	/**
+	 * @return the index of the first ASCII character at or after <code>start</code>, or
+	 *         <code>end</code>
+	 */
+	private static int getNonAsciiRunEnd(char[] chars, int start, int end) {
+		int i = start;
+		while (i < end && chars[i] >= 0x80) {
+			i++;
+		}
+		return i;
+	}
+
+	private static int getNonAsciiRunEnd(CharSequence s, int start, int end) {
+		int i = start;
+		while (i < end && s.charAt(i) >= 0x80) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Encodes characters into the buffer using the encoder, prefixed by any pending high
+	 * surrogate. A high surrogate at the end of the input is kept pending, unless the input is
+	 * followed by further characters, in which case it is malformed.
+	 * 
+	 * @param chars
+	 * @param followed
+	 *            true if further (ASCII) characters follow the input in the same write
+	 * @throws IOException
+	 */
+	private void encode(CharBuffer chars, boolean followed) throws IOException {
+		CharBuffer in = chars;
+		if (pendingHighSurrogate != 0) {
+			char[] joined = new char[chars.remaining() + 1];
+			joined[0] = pendingHighSurrogate;
+			chars.get(joined, 1, joined.length - 1);
+			in = CharBuffer.wrap(joined);
+			pendingHighSurrogate = 0;
+		}
+		while (true) {
+			byteBuffer.limit(bytes.length).position(count);
+			CoderResult result = encoder.encode(in, byteBuffer, false);
+			count = byteBuffer.position();
+			if (result.isOverflow()) {
+				flushBuffer();
+			} else if (result.isUnderflow()) {
+				break;
+			} else {
+				encoder.reset();
+				result.throwException();
+			}
+		}
+		if (in.hasRemaining()) {
+			/* the encoder leaves a trailing high surrogate until it sees the next character */
+			if (followed || in.remaining() > 1) {
+				encoder.reset();
+				throw new MalformedInputException(in.remaining());
+			}
+			pendingHighSurrogate = in.get();
+		}
+	}
+
+	private MalformedInputException unpairedSurrogate() {
+		pendingHighSurrogate = 0;
+		encoder.reset();
+		return new MalformedInputException(1);
+	}
+
+	private void flushBuffer() throws IOException {
+		byteBuffer.limit(count).position(0);
+		while (byteBuffer.hasRemaining()) {
+			channel.write(byteBuffer);
+		}
+		count = 0;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Writer is closed");
+		}
+	}
+
+}
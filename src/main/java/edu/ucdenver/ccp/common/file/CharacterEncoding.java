@@ -34,9 +34,13 @@ package edu.ucdenver.ccp.common.file;
  */
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 
 /**
@@ -71,6 +75,33 @@ public enum CharacterEncoding {
 	 */
 	private final String fileSuffix;
 
+	/**
+	 * The character set, looked up once rather than on every call to {@link #getEncoder()} or
+	 * {@link #getDecoder()}
+	 */
+	private final Charset charset;
+
+	/**
+	 * Per-thread encoders returned by {@link #borrowEncoder()}
+	 */
+	private final ThreadLocal<CharsetEncoder> threadEncoder;
+
+	/**
+	 * Per-thread decoders returned by {@link #borrowDecoder()}
+	 */
+	private final ThreadLocal<CharsetDecoder> threadDecoder;
+
+	/**
+	 * The largest scratch buffer (in characters) retained per thread by
+	 * {@link #decode(byte[], int, int)}; larger inputs use a temporary buffer
+	 */
+	private static final int MAX_RETAINED_SCRATCH_SIZE = 64 * 1024;
+
+	/**
+	 * Per-thread scratch buffer used by {@link #decode(byte[], int, int)}
+	 */
+	private static final ThreadLocal<CharBuffer> SCRATCH = new ThreadLocal<CharBuffer>();
+
 	/**
 	 * Private constructor for initializing CharacterEncoding enum elements
 	 * 
@@ -80,6 +111,19 @@ public enum CharacterEncoding {
 	private CharacterEncoding(String characterSetName, String fileSuffix) {
 		this.characterSetName = characterSetName;
 		this.fileSuffix = fileSuffix;
+		this.charset = Charset.forName(characterSetName);
+		this.threadEncoder = new ThreadLocal<CharsetEncoder>() {
+			@Override
+			protected CharsetEncoder initialValue() {
+				return getEncoder();
+			}
+		};
+		this.threadDecoder = new ThreadLocal<CharsetDecoder>() {
+			@Override
+			protected CharsetDecoder initialValue() {
+				return getDecoder();
+			}
+		};
 	}
 
 	/**
@@ -98,24 +142,209 @@ public enum CharacterEncoding {
 	}
 
 	/**
-	 * @return a <code>CharsetEncoder</code> used to encode characters. Fails loudly if an encoding
-	 *         discrepancy is observed.
+	 * @return the <code>Charset</code> for this encoding
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * @return a new <code>CharsetEncoder</code> used to encode characters. Fails loudly if an
+	 *         encoding discrepancy is observed.
 	 */
 	public CharsetEncoder getEncoder() {
-		return Charset.forName(getCharacterSetName()).newEncoder().onMalformedInput(CodingErrorAction.REPORT)
+		return charset.newEncoder().onMalformedInput(CodingErrorAction.REPORT)
 				.onUnmappableCharacter(CodingErrorAction.REPORT);
 	}
 
 	/**
 	 * 
-	 * @return a <code>CharsetDecoder</code> used to decode characters. Fails loudly if an encoding
-	 *         discrepancy is observed.
+	 * @return a new <code>CharsetDecoder</code> used to decode characters. Fails loudly if an
+	 *         encoding discrepancy is observed. ASCII text is decoded using a fast path; see
+	 *         {@link FastPathDecoder}.
 	 */
 	public CharsetDecoder getDecoder() {
-		return Charset.forName(getCharacterSetName()).newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+		return new FastPathDecoder(this).onMalformedInput(CodingErrorAction.REPORT)
 				.onUnmappableCharacter(CodingErrorAction.REPORT);
 	}
 
+	/**
+	 * Returns an encoder owned by the calling thread, configured as by {@link #getEncoder()} and
+	 * reset so it is ready to encode a new input. The encoder must not be handed to another thread
+	 * and must not be used after a subsequent call to this method on the same thread (including
+	 * indirectly, e.g. via {@link #encode(CharBuffer, ByteBuffer)}). Use {@link #getEncoder()} for
+	 * an encoder that is held for the lifetime of a stream.
+	 * 
+	 * @return the calling thread's encoder
+	 */
+	public CharsetEncoder borrowEncoder() {
+		return threadEncoder.get().reset();
+	}
+
+	/**
+	 * Returns a decoder owned by the calling thread, configured as by {@link #getDecoder()} and
+	 * reset so it is ready to decode a new input. The same restrictions apply as for
+	 * {@link #borrowEncoder()}.
+	 * 
+	 * @return the calling thread's decoder
+	 */
+	public CharsetDecoder borrowDecoder() {
+		return threadDecoder.get().reset();
+	}
+
+	/**
+	 * Decodes all remaining bytes of the input buffer into the output buffer using the calling
+	 * thread's decoder. If the output buffer is too small, a larger buffer is allocated, the
+	 * characters already in the output buffer are copied into it, and it is returned in place of
+	 * the output buffer. In either case the returned buffer is positioned after the last decoded
+	 * character, i.e. it must be flipped before it is read.
+	 * 
+	 * @param in
+	 * @param out
+	 * @return the buffer holding the decoded characters
+	 * @throws CharacterCodingException
+	 *             if the input is malformed or unmappable in this encoding
+	 */
+	public CharBuffer decode(ByteBuffer in, CharBuffer out) throws CharacterCodingException {
+		CharsetDecoder decoder = borrowDecoder();
+		CharBuffer target = out;
+		CoderResult result;
+		while ((result = decoder.decode(in, target, true)).isOverflow()) {
+			target = grow(target, (int) (in.remaining() * decoder.averageCharsPerByte()));
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		while ((result = decoder.flush(target)).isOverflow()) {
+			target = grow(target, 1);
+		}
+		return target;
+	}
+
+	/**
+	 * Encodes all remaining characters of the input buffer into the output buffer using the calling
+	 * thread's encoder. The output buffer is grown and returned as described for
+	 * {@link #decode(ByteBuffer, CharBuffer)}.
+	 * 
+	 * @param in
+	 * @param out
+	 * @return the buffer holding the encoded bytes
+	 * @throws CharacterCodingException
+	 *             if the input contains characters that cannot be encoded
+	 */
+	public ByteBuffer encode(CharBuffer in, ByteBuffer out) throws CharacterCodingException {
+		CharsetEncoder encoder = borrowEncoder();
+		ByteBuffer target = out;
+		CoderResult result;
+		while ((result = encoder.encode(in, target, true)).isOverflow()) {
+			target = grow(target, (int) (in.remaining() * encoder.averageBytesPerChar()));
+		}
+		if (result.isError()) {
+			result.throwException();
+		}
+		while ((result = encoder.flush(target)).isOverflow()) {
+			target = grow(target, 1);
+		}
+		return target;
+	}
+
+	/**
+	 * Decodes a range of bytes to a <code>String</code>. The only allocation in the common case is
+	 * the returned <code>String</code> itself; the decoder and the intermediate character buffer
+	 * are reused by the calling thread.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return the decoded characters
+	 * @throws CharacterCodingException
+	 *             if the input is malformed or unmappable in this encoding
+	 */
+	public String decode(byte[] bytes, int offset, int length) throws CharacterCodingException {
+		/* none of the supported encodings decodes a byte to more than one char */
+		int capacity = length;
+		CharBuffer scratch = SCRATCH.get();
+		if (scratch == null || scratch.capacity() < capacity) {
+			scratch = CharBuffer.allocate(capacity);
+			if (capacity <= MAX_RETAINED_SCRATCH_SIZE) {
+				SCRATCH.set(scratch);
+			}
+		}
+		scratch.clear();
+		CharBuffer decoded = decode(ByteBuffer.wrap(bytes, offset, length), scratch);
+		return new String(decoded.array(), decoded.arrayOffset(), decoded.position());
+	}
+
+	/**
+	 * @param buffer
+	 * @param needed
+	 *            an estimate of the additional capacity needed
+	 * @return a larger buffer containing the flipped contents of the input buffer
+	 */
+	private static CharBuffer grow(CharBuffer buffer, int needed) {
+		CharBuffer grown = CharBuffer.allocate(buffer.capacity() + Math.max(buffer.capacity(), needed) + 16);
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	/**
+	 * @param buffer
+	 * @param needed
+	 *            an estimate of the additional capacity needed
+	 * @return a larger buffer containing the flipped contents of the input buffer
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+		ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() + Math.max(buffer.capacity(), needed) + 16);
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	/**
+	 * Computes the number of bytes needed to encode the specified range of characters using this
+	 * encoding without allocating an intermediate byte[]. Characters that cannot be encoded (e.g.
+	 * unpaired surrogates, or non-ASCII characters in US-ASCII) are counted as a single
+	 * replacement byte, consistent with {@link String#getBytes(Charset)}.
+	 *
+	 * @param chars
+	 * @param start
+	 *            index of the first character to count (inclusive)
+	 * @param end
+	 *            index of the last character to count (exclusive)
+	 * @return the number of encoded bytes
+	 */
+	public int getByteLength(CharSequence chars, int start, int end) {
+		if (this != UTF_8) {
+			/* single-byte encodings; a surrogate pair maps to a single replacement byte */
+			int byteLength = end - start;
+			for (int i = start; i < end - 1; i++) {
+				if (Character.isHighSurrogate(chars.charAt(i)) && Character.isLowSurrogate(chars.charAt(i + 1))) {
+					byteLength--;
+					i++;
+				}
+			}
+			return byteLength;
+		}
+		int byteLength = 0;
+		for (int i = start; i < end; i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				byteLength++;
+			} else if (c < 0x800) {
+				byteLength += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				byteLength += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				byteLength++;
+			} else {
+				byteLength += 3;
+			}
+		}
+		return byteLength;
+	}
+
 	/**
 	 * Given a file name as input, this method returns the character encoding-specific file name by
 	 * appending the encoding-specific file suffix if necessary
@@ -0,0 +1,549 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import edu.ucdenver.ccp.common.file.ParallelChunks.ChunkTask;
+import edu.ucdenver.ccp.common.file.ParallelChunks.ResultHandler;
+
+/**
+ * Utility for determining the {@link CharacterEncoding} of a stream or file before it is read.
+ * <p>
+ * {@link #detect(InputStream)} examines a bounded prefix of a stream, recognizing byte order marks
+ * and otherwise classifying the prefix as ASCII, UTF-8 or ISO-8859-1. The examined bytes are pushed
+ * back so that the stream can be read from the start without reopening it.
+ * <p>
+ * Since only a prefix is examined, a stream can still turn out to be malformed later on.
+ * {@link #validate(File, CharacterEncoding)} checks an entire file, in parallel chunks if it is
+ * uncompressed, so that a mislabeled file is rejected before a long-running job starts rather
+ * than partway through it.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class CharacterEncodingDetector {
+
+	/**
+	 * The number of bytes examined by default by {@link #detect(InputStream)}
+	 */
+	public static final int DEFAULT_PREFIX_LENGTH = 64 * 1024;
+
+	/**
+	 * The size of the chunks of an uncompressed file that are validated in parallel
+	 */
+	private static final int VALIDATION_CHUNK_SIZE = 32 * 1024 * 1024;
+
+	/**
+	 * The number of bytes read at a time while validating
+	 */
+	private static final int VALIDATION_BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * The longest UTF-8 sequence is a lead byte followed by this many continuation bytes
+	 */
+	private static final int MAX_CONTINUATION_BYTES = 3;
+
+	private static final byte[] UTF_8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+	/**
+	 * Private constructor; this class should not be instantiated
+	 */
+	/* @formatter:off */
+	private CharacterEncodingDetector() {/* do not instantiate */
+	}
+	/* @formatter:on */
+
+	/**
+	 * The result of examining the prefix of a stream
+	 */
+	public static class Detection {
+
+		private final CharacterEncoding encoding;
+		private final boolean byteOrderMark;
+		private final boolean complete;
+		private final InputStream inputStream;
+
+		private Detection(CharacterEncoding encoding, boolean byteOrderMark, boolean complete,
+				InputStream inputStream) {
+			this.encoding = encoding;
+			this.byteOrderMark = byteOrderMark;
+			this.complete = complete;
+			this.inputStream = inputStream;
+		}
+
+		/**
+		 * @return the narrowest encoding consistent with the examined bytes: US-ASCII if they were
+		 *         all ASCII, otherwise UTF-8 if they were valid UTF-8 (or began with a UTF-8 byte
+		 *         order mark), otherwise ISO-8859-1
+		 */
+		public CharacterEncoding getEncoding() {
+			return encoding;
+		}
+
+		/**
+		 * @return the encoding with which to read the stream. This is UTF-8 if only ASCII was seen
+		 *         in an examined prefix, as UTF-8 decodes ASCII identically and also allows for
+		 *         non-ASCII text later in the stream; otherwise it is {@link #getEncoding()}.
+		 */
+		public CharacterEncoding getReaderEncoding() {
+			if (encoding == CharacterEncoding.US_ASCII && !complete) {
+				return CharacterEncoding.UTF_8;
+			}
+			return encoding;
+		}
+
+		/**
+		 * @return true if the stream began with a byte order mark, which has been skipped
+		 */
+		public boolean hasByteOrderMark() {
+			return byteOrderMark;
+		}
+
+		/**
+		 * @return true if the entire stream was examined, i.e. the detected encoding applies to all
+		 *         of it
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * @return a stream from which the bytes of the original stream can be read, starting after
+		 *         the byte order mark if there is one. The caller is responsible for closing it.
+		 */
+		public InputStream getInputStream() {
+			return inputStream;
+		}
+	}
+
+	/**
+	 * Examines the first {@link #DEFAULT_PREFIX_LENGTH} bytes of a stream
+	 * 
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 * @see #detect(InputStream, int)
+	 */
+	public static Detection detect(InputStream inputStream) throws IOException {
+		return detect(inputStream, DEFAULT_PREFIX_LENGTH);
+	}
+
+	/**
+	 * Examines a prefix of the input stream to determine its encoding. Only the prefix is read from
+	 * the input stream; the bytes read are made available again through
+	 * {@link Detection#getInputStream()}.
+	 * 
+	 * @param inputStream
+	 * @param prefixLength
+	 *            the maximum number of bytes to examine
+	 * @return
+	 * @throws UnsupportedEncodingException
+	 *             if the stream begins with a UTF-16 or UTF-32 byte order mark, as these encodings
+	 *             are not supported by {@link CharacterEncoding}
+	 * @throws IOException
+	 */
+	public static Detection detect(InputStream inputStream, int prefixLength) throws IOException {
+		if (prefixLength < 4) {
+			throw new IllegalArgumentException("Prefix length must be at least 4 bytes: " + prefixLength);
+		}
+		/* one byte beyond the prefix is read to determine whether the stream ends within it */
+		byte[] prefix = new byte[prefixLength + 1];
+		int bytesRead = 0;
+		int n;
+		while (bytesRead < prefix.length && (n = inputStream.read(prefix, bytesRead, prefix.length - bytesRead)) != -1) {
+			bytesRead += n;
+		}
+		boolean complete = bytesRead <= prefixLength;
+		int length = Math.min(bytesRead, prefixLength);
+		String unsupported = getUnsupportedByteOrderMark(prefix, length);
+		if (unsupported != null) {
+			throw new UnsupportedEncodingException(String.format(
+					"Stream begins with a %s byte order mark; %s is not a supported character encoding.",
+					unsupported, unsupported));
+		}
+		boolean byteOrderMark = startsWith(prefix, length, UTF_8_BOM);
+		int start = byteOrderMark ? UTF_8_BOM.length : 0;
+		CharacterEncoding encoding;
+		if (byteOrderMark) {
+			encoding = CharacterEncoding.UTF_8;
+		} else if (scan(CharacterEncoding.US_ASCII, prefix, 0, length, length) >= 0) {
+			encoding = CharacterEncoding.US_ASCII;
+		} else {
+			/* a sequence truncated by the end of the prefix is not malformed */
+			int leadLimit = complete ? length : Math.max(0, length - MAX_CONTINUATION_BYTES);
+			encoding = scan(CharacterEncoding.UTF_8, prefix, 0, leadLimit, length) >= 0 ? CharacterEncoding.UTF_8
+					: CharacterEncoding.ISO_8859_1;
+		}
+		PushbackInputStream pushback = new PushbackInputStream(inputStream, Math.max(1, bytesRead - start));
+		pushback.unread(prefix, start, bytesRead - start);
+		return new Detection(encoding, byteOrderMark, complete, pushback);
+	}
+
+	/**
+	 * Examines a prefix of the input file; a compressed file (gzip or .Z, see
+	 * {@link FileArchiveUtil#isCompressedStream(File)}) is decompressed
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @see #detect(InputStream)
+	 */
+	public static Detection detect(File file) throws IOException {
+		InputStream inputStream = openStream(file);
+		try {
+			return detect(inputStream);
+		} catch (IOException e) {
+			inputStream.close();
+			throw e;
+		} catch (RuntimeException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks that the entire file is valid in the specified encoding
+	 * 
+	 * @param file
+	 * @param encoding
+	 * @throws IOException
+	 *             if the file contains malformed input; the message includes the byte offset of
+	 *             the first malformed byte
+	 * @see #findMalformedInput(File, CharacterEncoding, ForkJoinPool)
+	 */
+	public static void validate(File file, CharacterEncoding encoding) throws IOException {
+		long offset = findMalformedInput(file, encoding, ForkJoinPool.commonPool());
+		if (offset >= 0) {
+			throw new IOException(String.format("Malformed %s input at byte offset %d of file: %s",
+					encoding.getCharacterSetName(), offset, file.getAbsolutePath()));
+		}
+	}
+
+	/**
+	 * Finds the first malformed input in a file. An uncompressed file larger than a single chunk is
+	 * validated in parallel chunks using the specified pool. A compressed file (gzip or .Z, see
+	 * {@link FileArchiveUtil#isCompressedStream(File)}) is validated sequentially as it is
+	 * decompressed; offsets refer to the uncompressed bytes.
+	 * 
+	 * @param file
+	 * @param encoding
+	 * @param pool
+	 * @return the byte offset of the first malformed byte, or -1 if the file is valid
+	 * @throws IOException
+	 */
+	public static long findMalformedInput(File file, CharacterEncoding encoding, ForkJoinPool pool)
+			throws IOException {
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			InputStream inputStream = openStream(file);
+			try {
+				return findMalformedInput(inputStream, encoding);
+			} finally {
+				inputStream.close();
+			}
+		}
+		return findMalformedInput(file, encoding, pool, VALIDATION_CHUNK_SIZE);
+	}
+
+	/**
+	 * Finds the first malformed input in a stream. The stream is not closed.
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @return the byte offset of the first malformed byte, or -1 if the stream is valid
+	 * @throws IOException
+	 */
+	public static long findMalformedInput(InputStream inputStream, CharacterEncoding encoding) throws IOException {
+		byte[] buffer = new byte[VALIDATION_BLOCK_SIZE];
+		long offset = 0;
+		int length = 0;
+		boolean endOfStream = false;
+		while (!endOfStream) {
+			int n = inputStream.read(buffer, length, buffer.length - length);
+			if (n == -1) {
+				endOfStream = true;
+			} else {
+				length += n;
+			}
+			/* sequences that may continue past the bytes read so far are left for the next pass */
+			int leadLimit = endOfStream ? length : length - MAX_CONTINUATION_BYTES;
+			if (leadLimit <= 0) {
+				continue;
+			}
+			int next = scan(encoding, buffer, 0, leadLimit, length);
+			if (next < 0) {
+				return offset + ~next;
+			}
+			System.arraycopy(buffer, next, buffer, 0, length - next);
+			offset += next;
+			length -= next;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first malformed input in an uncompressed file, validating chunks in parallel if
+	 * there is more than one
+	 * 
+	 * @param file
+	 * @param encoding
+	 * @param pool
+	 * @param chunkSize
+	 * @return the byte offset of the first malformed byte, or -1 if the file is valid
+	 * @throws IOException
+	 */
+	static long findMalformedInput(File file, final CharacterEncoding encoding, ForkJoinPool pool, int chunkSize)
+			throws IOException {
+		if (encoding == CharacterEncoding.ISO_8859_1) {
+			/* every byte is a valid ISO-8859-1 character */
+			return -1;
+		}
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			final long fileSize = channel.size();
+			final long[] malformedOffset = new long[] { -1 };
+			ChunkTask<Long> task = new ChunkTask<Long>() {
+				@Override
+				public Long process(long start, long end) throws IOException {
+					return findMalformedInput(channel, encoding, start, end, fileSize);
+				}
+			};
+			ResultHandler<Long> handler = new ResultHandler<Long>() {
+				@Override
+				public boolean handle(Long offset) {
+					/* the first malformed chunk, in file order, holds the first malformed byte */
+					malformedOffset[0] = offset;
+					return offset < 0;
+				}
+			};
+			ParallelChunks.process(pool, fileSize, chunkSize, task, handler, "the file to be validated");
+			return malformedOffset[0];
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Validates the sequences that begin in a range of a file. A UTF-8 sequence that begins before
+	 * the range and ends within it is skipped, as it is validated along with the preceding range.
+	 * 
+	 * @return the byte offset of the first malformed byte, or -1 if the range is valid
+	 */
+	private static long findMalformedInput(FileChannel channel, CharacterEncoding encoding, long start, long end,
+			long fileSize) throws IOException {
+		byte[] block = new byte[VALIDATION_BLOCK_SIZE + MAX_CONTINUATION_BYTES];
+		long position = start;
+		if (encoding == CharacterEncoding.UTF_8 && start > 0) {
+			position = getFirstSequenceStart(channel, start, block);
+		}
+		while (position < end) {
+			int leadLimit = (int) Math.min(VALIDATION_BLOCK_SIZE, end - position);
+			int length = (int) Math.min(leadLimit + MAX_CONTINUATION_BYTES, fileSize - position);
+			readFully(channel, block, length, position);
+			int next = scan(encoding, block, 0, leadLimit, length);
+			if (next < 0) {
+				return position + ~next;
+			}
+			position += next;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the offset of the first byte at or after <code>start</code> that is not a
+	 *         continuation of a UTF-8 sequence beginning before <code>start</code>
+	 */
+	private static long getFirstSequenceStart(FileChannel channel, long start, byte[] block) throws IOException {
+		int length = (int) Math.min(start, MAX_CONTINUATION_BYTES);
+		readFully(channel, block, length, start - length);
+		for (int i = length - 1; i >= 0; i--) {
+			if (FastPathDecoder.isNotContinuation(block[i])) {
+				return Math.max(start, start - length + i + getSequenceLength(block[i]));
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * @return the length of the UTF-8 sequence implied by the input lead byte, or 1 if it is not a
+	 *         multi-byte lead byte
+	 */
+	private static int getSequenceLength(int b) {
+		if ((b >> 5) == -2) {
+			return 2;
+		}
+		if ((b >> 4) == -2) {
+			return 3;
+		}
+		if ((b >> 3) == -2) {
+			return 4;
+		}
+		return 1;
+	}
+
+	/**
+	 * Validates the sequences beginning in <code>bytes[from, leadLimit)</code>, which may extend up
+	 * to <code>dataEnd</code>; a sequence that extends past <code>dataEnd</code> is malformed.
+	 * 
+	 * @return the index following the last sequence validated, which is at least
+	 *         <code>leadLimit</code>, or the bitwise complement (<code>~</code>) of the index of the
+	 *         first malformed byte
+	 */
+	private static int scan(CharacterEncoding encoding, byte[] bytes, int from, int leadLimit, int dataEnd) {
+		int i = from;
+		switch (encoding) {
+		case ISO_8859_1:
+			return leadLimit;
+		case US_ASCII:
+			for (int limit8 = leadLimit - 7; i < limit8 && (bytes[i] | bytes[i + 1] | bytes[i + 2] | bytes[i + 3]
+					| bytes[i + 4] | bytes[i + 5] | bytes[i + 6] | bytes[i + 7]) >= 0; i += 8) {
+				/* skip ASCII eight bytes at a time */
+			}
+			for (; i < leadLimit; i++) {
+				if (bytes[i] < 0) {
+					return ~i;
+				}
+			}
+			return i;
+		case UTF_8:
+			while (i < leadLimit) {
+				for (int limit8 = leadLimit - 7; i < limit8 && (bytes[i] | bytes[i + 1] | bytes[i + 2] | bytes[i + 3]
+						| bytes[i + 4] | bytes[i + 5] | bytes[i + 6] | bytes[i + 7]) >= 0; i += 8) {
+					/* skip ASCII eight bytes at a time */
+				}
+				while (i < leadLimit && bytes[i] >= 0) {
+					i++;
+				}
+				if (i < leadLimit) {
+					int length = getValidSequenceLength(bytes, i, dataEnd);
+					if (length == 0) {
+						return ~i;
+					}
+					i += length;
+				}
+			}
+			return i;
+		default:
+			throw new IllegalStateException("Unhandled character encoding: " + encoding.name());
+		}
+	}
+
+	/**
+	 * @return the length of the valid multi-byte UTF-8 sequence starting at <code>i</code>, or 0 if
+	 *         the sequence is malformed, including if it extends past <code>end</code>
+	 */
+	private static int getValidSequenceLength(byte[] bytes, int i, int end) {
+		int b1 = bytes[i];
+		if ((b1 >> 5) == -2 && (b1 & 0x1e) != 0) {
+			return i + 1 < end && !FastPathDecoder.isNotContinuation(bytes[i + 1]) ? 2 : 0;
+		}
+		if ((b1 >> 4) == -2) {
+			if (i + 2 >= end || FastPathDecoder.isMalformed3_2(b1, bytes[i + 1])
+					|| FastPathDecoder.isNotContinuation(bytes[i + 2])) {
+				return 0;
+			}
+			/* reject encoded surrogates, U+D800 to U+DFFF */
+			return b1 == (byte) 0xED && (bytes[i + 1] & 0xe0) == 0xa0 ? 0 : 3;
+		}
+		if ((b1 >> 3) == -2) {
+			int unsigned1 = b1 & 0xff;
+			if (i + 3 >= end || unsigned1 > 0xf4 || FastPathDecoder.isMalformed4_2(unsigned1, bytes[i + 1] & 0xff)
+					|| FastPathDecoder.isNotContinuation(bytes[i + 2])
+					|| FastPathDecoder.isNotContinuation(bytes[i + 3])) {
+				return 0;
+			}
+			return 4;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the name of the encoding indicated by a UTF-16 or UTF-32 byte order mark at the start
+	 *         of the input bytes, or null if there is none
+	 */
+	private static String getUnsupportedByteOrderMark(byte[] bytes, int length) {
+		if (startsWith(bytes, length, new byte[] { 0, 0, (byte) 0xFE, (byte) 0xFF })) {
+			return "UTF-32BE";
+		}
+		if (startsWith(bytes, length, new byte[] { (byte) 0xFF, (byte) 0xFE, 0, 0 })) {
+			return "UTF-32LE";
+		}
+		if (startsWith(bytes, length, new byte[] { (byte) 0xFE, (byte) 0xFF })) {
+			return "UTF-16BE";
+		}
+		if (startsWith(bytes, length, new byte[] { (byte) 0xFF, (byte) 0xFE })) {
+			return "UTF-16LE";
+		}
+		return null;
+	}
+
+	private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static InputStream openStream(File file) throws IOException {
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			return FileArchiveUtil.getInputStream(file);
+		}
+		return new FileInputStream(file);
+	}
+
+	private static void readFully(FileChannel channel, byte[] bytes, int length, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new EOFException("Unexpected end of file at byte offset " + (position + buffer.position()));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,339 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A <code>CharsetDecoder</code> for the encodings supported by {@link CharacterEncoding}. Runs of
+ * ASCII bytes, which make up nearly all of the text processed by this library regardless of its
+ * declared encoding, are validated eight bytes at a time and widened in a tight loop; the full
+ * UTF-8 decoder is entered only at a non-ASCII byte. Malformed input is detected as it is by the
+ * JDK decoders, so {@link java.nio.charset.CodingErrorAction#REPORT} behaves as before.
+ * <p>
+ * The JDK decoders read direct buffers (e.g. memory-mapped files) one byte at a time. This decoder
+ * instead copies direct input in bulk into a scratch array and decodes the array.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+final class FastPathDecoder extends CharsetDecoder {
+
+	/**
+	 * The size of the scratch arrays used for buffers that are not backed by an accessible array
+	 */
+	private static final int SCRATCH_SIZE = 8 * 1024;
+
+	private final CharacterEncoding encoding;
+
+	/**
+	 * Lazily allocated scratch arrays for buffers that are not backed by an accessible array
+	 */
+	private byte[] byteScratch = null;
+	private char[] charScratch = null;
+
+	/**
+	 * The source and destination array indexes reached by the last call to
+	 * {@link #decodeArrays(byte[], int, int, char[], int, int)}
+	 */
+	private int sourceIndex;
+	private int destinationIndex;
+
+	/**
+	 * @param encoding
+	 */
+	FastPathDecoder(CharacterEncoding encoding) {
+		/* none of the supported encodings decodes a byte to more than one char */
+		super(encoding.getCharset(), 1.0f, 1.0f);
+		this.encoding = encoding;
+	}
+
+	/**
+	 * @see java.nio.charset.CharsetDecoder#decodeLoop(java.nio.ByteBuffer, java.nio.CharBuffer)
+	 */
+	@Override
+	protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+		if (in.hasArray() && out.hasArray()) {
+			int inOffset = in.arrayOffset();
+			int outOffset = out.arrayOffset();
+			CoderResult result = decodeArrays(in.array(), inOffset + in.position(), inOffset + in.limit(),
+					out.array(), outOffset + out.position(), outOffset + out.limit());
+			in.position(sourceIndex - inOffset);
+			out.position(destinationIndex - outOffset);
+			return result;
+		}
+		return decodeViaScratch(in, out);
+	}
+
+	/**
+	 * Decodes when either buffer is not backed by an accessible array, copying bounded amounts of
+	 * input and/or output through scratch arrays until no further progress can be made
+	 * 
+	 * @param in
+	 * @param out
+	 * @return
+	 */
+	private CoderResult decodeViaScratch(ByteBuffer in, CharBuffer out) {
+		while (true) {
+			int inPosition = in.position();
+			int outPosition = out.position();
+			byte[] src;
+			int sp;
+			int sl;
+			if (in.hasArray()) {
+				src = in.array();
+				sp = in.arrayOffset() + inPosition;
+				sl = in.arrayOffset() + in.limit();
+			} else {
+				if (byteScratch == null) {
+					byteScratch = new byte[SCRATCH_SIZE];
+				}
+				sl = Math.min(in.remaining(), SCRATCH_SIZE);
+				in.get(byteScratch, 0, sl);
+				src = byteScratch;
+				sp = 0;
+			}
+			char[] dst;
+			int dp;
+			int dl;
+			if (out.hasArray()) {
+				dst = out.array();
+				dp = out.arrayOffset() + outPosition;
+				dl = out.arrayOffset() + out.limit();
+			} else {
+				if (charScratch == null) {
+					charScratch = new char[SCRATCH_SIZE];
+				}
+				dst = charScratch;
+				dp = 0;
+				dl = Math.min(out.remaining(), SCRATCH_SIZE);
+			}
+			CoderResult result = decodeArrays(src, sp, sl, dst, dp, dl);
+			int consumed = sourceIndex - sp;
+			int produced = destinationIndex - dp;
+			in.position(inPosition + consumed);
+			if (out.hasArray()) {
+				out.position(outPosition + produced);
+			} else {
+				out.put(charScratch, 0, produced);
+			}
+			if (result.isError() || !in.hasRemaining() || (consumed == 0 && produced == 0)) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Decodes from <code>src[sp, sl)</code> into <code>dst[dp, dl)</code>, leaving the indexes
+	 * reached in {@link #sourceIndex} and {@link #destinationIndex}
+	 * 
+	 * @return the result of the decoding operation, as for
+	 *         {@link #decodeLoop(ByteBuffer, CharBuffer)}
+	 */
+	private CoderResult decodeArrays(byte[] src, int sp, int sl, char[] dst, int dp, int dl) {
+		switch (encoding) {
+		case ISO_8859_1:
+			return decodeLatin1(src, sp, sl, dst, dp, dl);
+		case US_ASCII:
+			return decodeAscii(src, sp, sl, dst, dp, dl);
+		case UTF_8:
+			return decodeUtf8(src, sp, sl, dst, dp, dl);
+		default:
+			throw new IllegalStateException("Unhandled character encoding: " + encoding.name());
+		}
+	}
+
+	private CoderResult decodeLatin1(byte[] src, int sp, int sl, char[] dst, int dp, int dl) {
+		int n = Math.min(sl - sp, dl - dp);
+		for (int end = sp + n; sp < end; sp++, dp++) {
+			dst[dp] = (char) (src[sp] & 0xff);
+		}
+		return result(sp, dp, sp < sl ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW);
+	}
+
+	private CoderResult decodeAscii(byte[] src, int sp, int sl, char[] dst, int dp, int dl) {
+		int end = sp + Math.min(sl - sp, dl - dp);
+		for (int end8 = end - 7; sp < end8 && (src[sp] | src[sp + 1] | src[sp + 2] | src[sp + 3] | src[sp + 4]
+				| src[sp + 5] | src[sp + 6] | src[sp + 7]) >= 0; sp += 8, dp += 8) {
+			widen8(src, sp, dst, dp);
+		}
+		while (sp < end && src[sp] >= 0) {
+			dst[dp++] = (char) src[sp++];
+		}
+		if (sp < end) {
+			return result(sp, dp, CoderResult.malformedForLength(1));
+		}
+		return result(sp, dp, sp < sl ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW);
+	}
+
+	/**
+	 * Decodes UTF-8, reporting malformed input with the same lengths as the JDK 8 decoder
+	 */
+	private CoderResult decodeUtf8(byte[] src, int sp, int sl, char[] dst, int dp, int dl) {
+		while (sp < sl) {
+			int end = sp + Math.min(sl - sp, dl - dp);
+			for (int end8 = end - 7; sp < end8 && (src[sp] | src[sp + 1] | src[sp + 2] | src[sp + 3]
+					| src[sp + 4] | src[sp + 5] | src[sp + 6] | src[sp + 7]) >= 0; sp += 8, dp += 8) {
+				widen8(src, sp, dst, dp);
+			}
+			while (sp < end && src[sp] >= 0) {
+				dst[dp++] = (char) src[sp++];
+			}
+			if (sp == sl) {
+				break;
+			}
+			int b1 = src[sp];
+			if (b1 >= 0) {
+				/* the output is full */
+				return result(sp, dp, CoderResult.OVERFLOW);
+			}
+			int srcRemaining = sl - sp;
+			if ((b1 >> 5) == -2 && (b1 & 0x1e) != 0) {
+				/* 110xxxxx 10xxxxxx */
+				if (srcRemaining < 2 || dp >= dl) {
+					return xflow(sp, sl, dp, 2);
+				}
+				int b2 = src[sp + 1];
+				if (isNotContinuation(b2)) {
+					return result(sp, dp, CoderResult.malformedForLength(1));
+				}
+				dst[dp++] = (char) (((b1 << 6) ^ b2) ^ (((byte) 0xC0 << 6) ^ ((byte) 0x80)));
+				sp += 2;
+			} else if ((b1 >> 4) == -2) {
+				/* 1110xxxx 10xxxxxx 10xxxxxx */
+				if (srcRemaining < 3 || dp >= dl) {
+					if (srcRemaining > 1 && isMalformed3_2(b1, src[sp + 1])) {
+						return result(sp, dp, CoderResult.malformedForLength(1));
+					}
+					return xflow(sp, sl, dp, 3);
+				}
+				int b2 = src[sp + 1];
+				int b3 = src[sp + 2];
+				if (isMalformed3_2(b1, b2)) {
+					return result(sp, dp, CoderResult.malformedForLength(1));
+				}
+				if (isNotContinuation(b3)) {
+					return result(sp, dp, CoderResult.malformedForLength(2));
+				}
+				char c = (char) ((b1 << 12) ^ (b2 << 6)
+						^ (b3 ^ (((byte) 0xE0 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80))));
+				if (Character.isSurrogate(c)) {
+					return result(sp, dp, CoderResult.malformedForLength(3));
+				}
+				dst[dp++] = c;
+				sp += 3;
+			} else if ((b1 >> 3) == -2) {
+				/* 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx */
+				if (srcRemaining < 4 || dl - dp < 2) {
+					int unsigned1 = b1 & 0xff;
+					if (unsigned1 > 0xf4 || (srcRemaining > 1 && isMalformed4_2(unsigned1, src[sp + 1] & 0xff))) {
+						return result(sp, dp, CoderResult.malformedForLength(1));
+					}
+					if (srcRemaining > 2 && isNotContinuation(src[sp + 2])) {
+						return result(sp, dp, CoderResult.malformedForLength(2));
+					}
+					return xflow(sp, sl, dp, 4);
+				}
+				int b2 = src[sp + 1];
+				int b3 = src[sp + 2];
+				int b4 = src[sp + 3];
+				int uc = ((b1 << 18) ^ (b2 << 12) ^ (b3 << 6)
+						^ (b4 ^ (((byte) 0xF0 << 18) ^ ((byte) 0x80 << 12) ^ ((byte) 0x80 << 6) ^ ((byte) 0x80))));
+				if (isNotContinuation(b2) || isNotContinuation(b3) || isNotContinuation(b4)
+						|| !Character.isSupplementaryCodePoint(uc)) {
+					int unsigned1 = b1 & 0xff;
+					if (unsigned1 > 0xf4 || isMalformed4_2(unsigned1, b2 & 0xff)) {
+						return result(sp, dp, CoderResult.malformedForLength(1));
+					}
+					return result(sp, dp, CoderResult.malformedForLength(isNotContinuation(b3) ? 2 : 3));
+				}
+				dst[dp++] = Character.highSurrogate(uc);
+				dst[dp++] = Character.lowSurrogate(uc);
+				sp += 4;
+			} else {
+				return result(sp, dp, CoderResult.malformedForLength(1));
+			}
+		}
+		return result(sp, dp, CoderResult.UNDERFLOW);
+	}
+
+	private static void widen8(byte[] src, int sp, char[] dst, int dp) {
+		dst[dp] = (char) src[sp];
+		dst[dp + 1] = (char) src[sp + 1];
+		dst[dp + 2] = (char) src[sp + 2];
+		dst[dp + 3] = (char) src[sp + 3];
+		dst[dp + 4] = (char) src[sp + 4];
+		dst[dp + 5] = (char) src[sp + 5];
+		dst[dp + 6] = (char) src[sp + 6];
+		dst[dp + 7] = (char) src[sp + 7];
+	}
+
+	static boolean isNotContinuation(int b) {
+		return (b & 0xc0) != 0x80;
+	}
+
+	/**
+	 * @return true if the first two bytes of a three-byte sequence are malformed, including
+	 *         overlong encodings
+	 */
+	static boolean isMalformed3_2(int b1, int b2) {
+		return (b1 == (byte) 0xe0 && (b2 & 0xe0) == 0x80) || isNotContinuation(b2);
+	}
+
+	/**
+	 * @return true if the first two (unsigned) bytes of a four-byte sequence are malformed,
+	 *         including overlong encodings and code points above U+10FFFF
+	 */
+	static boolean isMalformed4_2(int b1, int b2) {
+		return (b1 == 0xf0 && (b2 < 0x90 || b2 > 0xbf)) || (b1 == 0xf4 && (b2 & 0xf0) != 0x80)
+				|| isNotContinuation(b2);
+	}
+
+	/**
+	 * @return underflow if fewer than the needed bytes remain, otherwise overflow
+	 */
+	private CoderResult xflow(int sp, int sl, int dp, int needed) {
+		return result(sp, dp, sl - sp < needed ? CoderResult.UNDERFLOW : CoderResult.OVERFLOW);
+	}
+
+	private CoderResult result(int sp, int dp, CoderResult result) {
+		sourceIndex = sp;
+		destinationIndex = dp;
+		return result;
+	}
+
+}
@@ -300,6 +300,18 @@ public class FileArchiveUtil {
 		return hasCaseInsensitiveSuffix(file, z_suffix);
 	}
 
+	/**
+	 * Returns true if the input file is a single compressed stream (gzip or Unix compress) whose
+	 * content is returned decompressed by {@link #getInputStream(File)}. Determination is made by
+	 * examining the file suffix.
+	 * 
+	 * @param file
+	 * @return true if the file is a gzip or .Z file, false otherwise
+	 */
+	public static boolean isCompressedStream(File file) {
+		return isGzipFile(file) || isUnixCompressFile(file);
+	}
+
 	/**
 	 * Returns true if the input file is a zipped file. Determination is made by examining the file
 	 * suffix.
@@ -41,13 +41,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
-import edu.ucdenver.ccp.common.collections.CollectionsUtil;
-import edu.ucdenver.ccp.common.file.reader.Line;
-import edu.ucdenver.ccp.common.file.reader.StreamLineIterator;
-import edu.ucdenver.ccp.common.string.StringUtil;
+import edu.ucdenver.ccp.common.collections.DictionaryEncodedList;
+import edu.ucdenver.ccp.common.file.reader.BlockStreamLineReader;
+import edu.ucdenver.ccp.common.file.reader.DelimitedRecordIterator;
+import edu.ucdenver.ccp.common.file.reader.DelimitedRecordParser;
+import edu.ucdenver.ccp.common.file.reader.LineCheckpoint;
+import edu.ucdenver.ccp.common.file.reader.LineReader;
+import edu.ucdenver.ccp.common.file.reader.MutableLine;
+import edu.ucdenver.ccp.common.string.NumberParsingUtil;
 
 /**
  * Utility method helpful when reading the content of a file
@@ -74,12 +82,75 @@ public class FileReaderUtil {
 	 * @throws IOException 
 	 */
 	public static BufferedReader initBufferedReader(File file, CharacterEncoding encoding) throws IOException {
-		if (file.getName().endsWith(".gz")) {
-			return initBufferedReader(new GZIPInputStream(new FileInputStream(file)), encoding);
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			return initBufferedReader(FileArchiveUtil.getInputStream(file), encoding);
 		}
 		return initBufferedReader(new FileInputStream(file), encoding);
 	}
 
+	/**
+	 * Returns a BufferedReader for the input File using the character encoding detected from a
+	 * prefix of the file; see {@link CharacterEncodingDetector#detect(File)}. A UTF-8 byte order
+	 * mark is skipped.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static BufferedReader initBufferedReader(File file) throws IOException {
+		CharacterEncodingDetector.Detection detection = CharacterEncodingDetector.detect(file);
+		return initBufferedReader(detection.getInputStream(), detection.getReaderEncoding());
+	}
+
+	/**
+	 * Returns a BufferedReader for the InputStream using the character encoding detected from a
+	 * prefix of the stream; see {@link CharacterEncodingDetector#detect(InputStream)}. A UTF-8 byte
+	 * order mark is skipped.
+	 * 
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	public static BufferedReader initBufferedReader(InputStream inputStream) throws IOException {
+		CharacterEncodingDetector.Detection detection = CharacterEncodingDetector.detect(inputStream);
+		return initBufferedReader(detection.getInputStream(), detection.getReaderEncoding());
+	}
+
+	/**
+	 * Returns a BufferedReader initialized to read the input character encoding from the input File,
+	 * starting at the specified byte offset. An uncompressed file is positioned directly at the
+	 * offset. For a compressed file (gzip or .Z, see {@link FileArchiveUtil#isCompressedStream(File)})
+	 * the offset refers to the uncompressed bytes, which must be decompressed (but are not decoded)
+	 * in order to skip them.
+	 * 
+	 * @param file
+	 * @param encoding
+	 * @param byteOffset
+	 *            the offset of the first byte to read; this should be the start of a character
+	 * @return
+	 * @throws IOException
+	 */
+	public static BufferedReader initBufferedReader(File file, CharacterEncoding encoding, long byteOffset)
+			throws IOException {
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			InputStream compressedStream = FileArchiveUtil.getInputStream(file);
+			long remaining = byteOffset;
+			while (remaining > 0) {
+				long skipped = compressedStream.skip(remaining);
+				if (skipped <= 0) {
+					compressedStream.close();
+					throw new IOException(String.format("Unable to skip to byte offset %d in file %s", byteOffset,
+							file.getAbsolutePath()));
+				}
+				remaining -= skipped;
+			}
+			return initBufferedReader(compressedStream, encoding);
+		}
+		FileInputStream fileStream = new FileInputStream(file);
+		fileStream.getChannel().position(byteOffset);
+		return initBufferedReader(fileStream, encoding);
+	}
+
 	/**
 	 * Returns a BufferedReader initialized to read the input character encoding from the specified
 	 * InputStream
@@ -114,8 +185,12 @@ public class FileReaderUtil {
 	public static List<String[]> loadColumnsFromDelimitedFile(File inputFile, CharacterEncoding encoding,
 			String delimiter, String commentIndicator, int... columnIndexes) throws IOException,
 			ArrayIndexOutOfBoundsException, IllegalArgumentException {
-		return loadColumnsFromDelimitedFile(new FileInputStream(inputFile), encoding, delimiter, commentIndicator,
-				columnIndexes);
+		FileInputStream inputStream = new FileInputStream(inputFile);
+		try {
+			return loadColumnsFromDelimitedFile(inputStream, encoding, delimiter, commentIndicator, columnIndexes);
+		} finally {
+			inputStream.close();
+		}
 	}
 
 	/**
@@ -144,19 +219,617 @@ public class FileReaderUtil {
 	public static List<String[]> loadColumnsFromDelimitedFile(InputStream inputStream, CharacterEncoding encoding,
 			String delimiter, String commentIndicator, int... columnIndexes) throws IOException,
 			ArrayIndexOutOfBoundsException, IllegalArgumentException {
-		if (delimiter != null && (columnIndexes == null || columnIndexes.length == 0)) {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndexes);
+		List<String[]> outputColumns = new ArrayList<String[]>();
+		/*
+		 * lines are parsed directly from the reader's buffer so that only the requested columns are
+		 * copied into new Strings
+		 */
+		BlockStreamLineReader reader = new BlockStreamLineReader(inputStream, encoding, commentIndicator);
+		MutableLine line = new MutableLine();
+		while (reader.advance(line)) {
+			outputColumns.add((parser == null) ? new String[] { line.toString() } : parser.parse(line));
+		}
+		return outputColumns;
+	}
+
+	/**
+	 * Returns an iterator over the column values of the input file, one String[] per line, without
+	 * loading the file into memory. The arguments are as described for
+	 * {@link #loadColumnsFromDelimitedFile(File, CharacterEncoding, String, String, int...)};
+	 * gzip compressed files (.gz) are decompressed. The iterator should be closed if it is not read
+	 * to the end.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndexes
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             - if a delimiter is specified, but no column indexes are requested
+	 */
+	public static DelimitedRecordIterator iterateColumnsFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int... columnIndexes) throws IOException,
+			IllegalArgumentException {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndexes);
+		return new DelimitedRecordIterator(new BlockStreamLineReader(inputFile, encoding, commentIndicator), parser);
+	}
+
+	/**
+	 * Returns an iterator over the column values read from the input stream, one String[] per
+	 * line. Closing the iterator closes the input stream.
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndexes
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             - if a delimiter is specified, but no column indexes are requested
+	 */
+	public static DelimitedRecordIterator iterateColumnsFromDelimitedFile(InputStream inputStream,
+			CharacterEncoding encoding, String delimiter, String commentIndicator, int... columnIndexes)
+			throws IllegalArgumentException {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndexes);
+		return new DelimitedRecordIterator(new BlockStreamLineReader(inputStream, encoding, commentIndicator), parser);
+	}
+
+	/**
+	 * Returns a stream over the column values of the input file, one String[] per line. The stream
+	 * should be closed, e.g. using a try-with-resources block.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndexes
+	 * @return
+	 * @throws IOException
+	 * @see #iterateColumnsFromDelimitedFile(File, CharacterEncoding, String, String, int...)
+	 */
+	public static Stream<String[]> streamColumnsFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int... columnIndexes) throws IOException {
+		return iterateColumnsFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndexes)
+				.stream();
+	}
+
+	/**
+	 * Returns a stream over the contents of the requested column in the input file. The stream
+	 * should be closed, e.g. using a try-with-resources block.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<String> streamColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex) throws IOException {
+		return streamColumnsFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndex).map(
+				new Function<String[], String>() {
+					@Override
+					public String apply(String[] columns) {
+						return columns[0];
+					}
+				});
+	}
+
+	/**
+	 * Returns a stream over the lines of the input file. The stream should be closed, e.g. using a
+	 * try-with-resources block.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param commentIndicator
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<String> streamLinesFromFile(File inputFile, CharacterEncoding encoding,
+			String commentIndicator) throws IOException {
+		return streamColumnFromDelimitedFile(inputFile, encoding, null, commentIndicator, 0);
+	}
+
+	/**
+	 * Passes the contents of the requested column of each line of the input stream to the input
+	 * <code>Consumer</code>, e.g. one that adds to a pre-sized or primitive-backed collection, so
+	 * that the column is never held in an intermediate list.
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, the entire line is passed to the consumer
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param consumer
+	 * @return the number of values passed to the consumer
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 */
+	public static long readColumnFromDelimitedFile(InputStream inputStream, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex, Consumer<? super String> consumer)
+			throws IOException, ArrayIndexOutOfBoundsException {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndex);
+		BlockStreamLineReader reader = new BlockStreamLineReader(inputStream, encoding, commentIndicator);
+		MutableLine line = new MutableLine();
+		long count = 0;
+		while (reader.advance(line)) {
+			consumer.accept((parser == null) ? line.toString() : parser.parse(line)[0]);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Passes the contents of the requested column of each line of the input file to the input
+	 * <code>Consumer</code>. Gzip compressed files (.gz) are decompressed.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, the entire line is passed to the consumer
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param consumer
+	 * @return the number of values passed to the consumer
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 * @see #readColumnFromDelimitedFile(InputStream, CharacterEncoding, String, String, int,
+	 *      Consumer)
+	 */
+	public static long readColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding, String delimiter,
+			String commentIndicator, int columnIndex, Consumer<? super String> consumer) throws IOException,
+			ArrayIndexOutOfBoundsException {
+		BufferedReader reader = initBufferedReader(inputFile, encoding);
+		try {
+			DelimitedRecordParser parser = initParser(delimiter, columnIndex);
+			BlockStreamLineReader lineReader = new BlockStreamLineReader(reader, encoding, commentIndicator,
+					LineCheckpoint.START, BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+			MutableLine line = new MutableLine();
+			long count = 0;
+			while (lineReader.advance(line)) {
+				consumer.accept((parser == null) ? line.toString() : parser.parse(line)[0]);
+				count++;
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Adds the contents of the requested column in the input file to the input collection, e.g. an
+	 * <code>ArrayList</code> pre-sized to the number of lines in the file
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param target
+	 * @return the input collection
+	 * @throws IOException
+	 */
+	public static <C extends Collection<? super String>> C loadColumnFromDelimitedFile(File inputFile,
+			CharacterEncoding encoding, String delimiter, String commentIndicator, int columnIndex, final C target)
+			throws IOException {
+		readColumnFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndex,
+				new Consumer<String>() {
+					@Override
+					public void accept(String value) {
+						target.add(value);
+					}
+				});
+		return target;
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file as a
+	 * {@link DictionaryEncodedList}, i.e. an <code>int</code> code per line plus a dictionary of
+	 * the distinct values in the column. Each distinct value is stored once, and values are looked
+	 * up in the dictionary directly from the line being parsed, so no <code>String</code> is created
+	 * for a value that has already been seen. This greatly reduces the memory needed to load
+	 * low-cardinality columns, e.g. species or evidence codes. Gzip compressed files (.gz) are
+	 * decompressed.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, the entire line is loaded
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 */
+	public static DictionaryEncodedList loadDictionaryEncodedColumnFromDelimitedFile(File inputFile,
+			CharacterEncoding encoding, String delimiter, String commentIndicator, int columnIndex)
+			throws IOException, ArrayIndexOutOfBoundsException {
+		BufferedReader reader = initBufferedReader(inputFile, encoding);
+		try {
+			return loadDictionaryEncodedColumn(new BlockStreamLineReader(reader, encoding, commentIndicator,
+					LineCheckpoint.START, BlockStreamLineReader.DEFAULT_BLOCK_SIZE), delimiter, columnIndex);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the contents of the requested column read from the input stream as a
+	 * {@link DictionaryEncodedList}
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, the entire line is loaded
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 * @see #loadDictionaryEncodedColumnFromDelimitedFile(File, CharacterEncoding, String, String,
+	 *      int)
+	 */
+	public static DictionaryEncodedList loadDictionaryEncodedColumnFromDelimitedFile(InputStream inputStream,
+			CharacterEncoding encoding, String delimiter, String commentIndicator, int columnIndex)
+			throws IOException, ArrayIndexOutOfBoundsException {
+		return loadDictionaryEncodedColumn(new BlockStreamLineReader(inputStream, encoding, commentIndicator),
+				delimiter, columnIndex);
+	}
+
+	private static DictionaryEncodedList loadDictionaryEncodedColumn(LineReader<?> reader, String delimiter,
+			int columnIndex) throws IOException {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndex);
+		DictionaryEncodedList column = new DictionaryEncodedList();
+		MutableLine line = new MutableLine();
+		int[] bounds = new int[2];
+		while (reader.advance(line)) {
+			if (parser == null) {
+				column.append(line, 0, line.length());
+			} else {
+				parser.locate(line, bounds);
+				column.append(line, bounds[0], bounds[1]);
+			}
+		}
+		column.trimToSize();
+		return column;
+	}
+
+	/**
+	 * Specifies how the numeric column loaders handle cells that are empty or cannot be parsed
+	 */
+	public enum InvalidCellHandling {
+		/**
+		 * A <code>NumberFormatException</code> is thrown
+		 */
+		FAIL,
+		/**
+		 * The line is skipped, so the loaded array has no entry for it
+		 */
+		SKIP,
+		/**
+		 * A sentinel value is loaded in place of the cell
+		 */
+		SENTINEL;
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as <code>int</code>s.
+	 * The digits are parsed directly from the line being read, so neither a <code>String</code> nor
+	 * an <code>Integer</code> is created for each value. Whitespace surrounding a value is ignored,
+	 * and gzip compressed files (.gz) are decompressed.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, each entire line is parsed
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param invalidCellHandling
+	 *            how cells that are empty or are not valid <code>int</code>s are handled
+	 * @param sentinel
+	 *            the value loaded for an invalid cell when using {@link InvalidCellHandling#SENTINEL}
+	 * @return
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 * @throws NumberFormatException
+	 *             - if a cell is invalid when using {@link InvalidCellHandling#FAIL}
+	 */
+	public static int[] loadIntColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding, String delimiter,
+			String commentIndicator, int columnIndex, InvalidCellHandling invalidCellHandling, final int sentinel)
+			throws IOException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		final IntArrayBuilder builder = new IntArrayBuilder();
+		loadNumericColumn(inputFile, encoding, delimiter, commentIndicator, columnIndex, invalidCellHandling,
+				new NumericCellHandler() {
+					@Override
+					public void parse(CharSequence text, int start, int end) {
+						builder.add(NumberParsingUtil.parseInt(text, start, end));
+					}
+
+					@Override
+					public void addSentinel() {
+						builder.add(sentinel);
+					}
+				});
+		return builder.toArray();
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as <code>int</code>s.
+	 * A <code>NumberFormatException</code> is thrown if a cell is empty or invalid.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 * @see #loadIntColumnFromDelimitedFile(File, CharacterEncoding, String, String, int,
+	 *      InvalidCellHandling, int)
+	 */
+	public static int[] loadIntColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding, String delimiter,
+			String commentIndicator, int columnIndex) throws IOException {
+		return loadIntColumnFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndex,
+				InvalidCellHandling.FAIL, 0);
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as <code>long</code>s
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, each entire line is parsed
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param invalidCellHandling
+	 *            how cells that are empty or are not valid <code>long</code>s are handled
+	 * @param sentinel
+	 *            the value loaded for an invalid cell when using {@link InvalidCellHandling#SENTINEL}
+	 * @return
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 * @throws NumberFormatException
+	 *             - if a cell is invalid when using {@link InvalidCellHandling#FAIL}
+	 * @see #loadIntColumnFromDelimitedFile(File, CharacterEncoding, String, String, int,
+	 *      InvalidCellHandling, int)
+	 */
+	public static long[] loadLongColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex, InvalidCellHandling invalidCellHandling,
+			final long sentinel) throws IOException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		final LongArrayBuilder builder = new LongArrayBuilder();
+		loadNumericColumn(inputFile, encoding, delimiter, commentIndicator, columnIndex, invalidCellHandling,
+				new NumericCellHandler() {
+					@Override
+					public void parse(CharSequence text, int start, int end) {
+						builder.add(NumberParsingUtil.parseLong(text, start, end));
+					}
+
+					@Override
+					public void addSentinel() {
+						builder.add(sentinel);
+					}
+				});
+		return builder.toArray();
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as <code>long</code>s.
+	 * A <code>NumberFormatException</code> is thrown if a cell is empty or invalid.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public static long[] loadLongColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex) throws IOException {
+		return loadLongColumnFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndex,
+				InvalidCellHandling.FAIL, 0);
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as <code>double</code>s
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 *            if null, each entire line is parsed
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @param invalidCellHandling
+	 *            how cells that are empty or are not valid <code>double</code>s are handled
+	 * @param sentinel
+	 *            the value loaded for an invalid cell when using {@link InvalidCellHandling#SENTINEL},
+	 *            e.g. <code>Double.NaN</code>
+	 * @return
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             - if the requested column index does not exist
+	 * @throws NumberFormatException
+	 *             - if a cell is invalid when using {@link InvalidCellHandling#FAIL}
+	 * @see #loadIntColumnFromDelimitedFile(File, CharacterEncoding, String, String, int,
+	 *      InvalidCellHandling, int)
+	 */
+	public static double[] loadDoubleColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex, InvalidCellHandling invalidCellHandling,
+			final double sentinel) throws IOException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		final DoubleArrayBuilder builder = new DoubleArrayBuilder();
+		loadNumericColumn(inputFile, encoding, delimiter, commentIndicator, columnIndex, invalidCellHandling,
+				new NumericCellHandler() {
+					@Override
+					public void parse(CharSequence text, int start, int end) {
+						builder.add(NumberParsingUtil.parseDouble(text, start, end));
+					}
+
+					@Override
+					public void addSentinel() {
+						builder.add(sentinel);
+					}
+				});
+		return builder.toArray();
+	}
+
+	/**
+	 * Returns the contents of the requested column in the input file parsed as
+	 * <code>double</code>s. A <code>NumberFormatException</code> is thrown if a cell is empty or
+	 * invalid.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param commentIndicator
+	 * @param columnIndex
+	 * @return
+	 * @throws IOException
+	 */
+	public static double[] loadDoubleColumnFromDelimitedFile(File inputFile, CharacterEncoding encoding,
+			String delimiter, String commentIndicator, int columnIndex) throws IOException {
+		return loadDoubleColumnFromDelimitedFile(inputFile, encoding, delimiter, commentIndicator, columnIndex,
+				InvalidCellHandling.FAIL, Double.NaN);
+	}
+
+	/**
+	 * Parses a numeric cell and adds its value to a primitive array
+	 */
+	private interface NumericCellHandler {
+		/**
+		 * @throws NumberFormatException
+		 *             if the cell is not a valid number
+		 */
+		void parse(CharSequence text, int start, int end) throws NumberFormatException;
+
+		void addSentinel();
+	}
+
+	private static void loadNumericColumn(File inputFile, CharacterEncoding encoding, String delimiter,
+			String commentIndicator, int columnIndex, InvalidCellHandling invalidCellHandling,
+			NumericCellHandler handler) throws IOException {
+		DelimitedRecordParser parser = initParser(delimiter, columnIndex);
+		BufferedReader reader = initBufferedReader(inputFile, encoding);
+		try {
+			BlockStreamLineReader lineReader = new BlockStreamLineReader(reader, encoding, commentIndicator,
+					LineCheckpoint.START, BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+			MutableLine line = new MutableLine();
+			int[] bounds = new int[] { 0, 0 };
+			while (lineReader.advance(line)) {
+				if (parser == null) {
+					bounds[1] = line.length();
+				} else {
+					parser.locate(line, bounds);
+				}
+				int start = bounds[0];
+				int end = bounds[1];
+				while (start < end && line.charAt(start) <= ' ') {
+					start++;
+				}
+				while (end > start && line.charAt(end - 1) <= ' ') {
+					end--;
+				}
+				try {
+					handler.parse(line, start, end);
+				} catch (NumberFormatException e) {
+					switch (invalidCellHandling) {
+					case SKIP:
+						break;
+					case SENTINEL:
+						handler.addSentinel();
+						break;
+					default:
+						throw new NumberFormatException(String.format(
+								"Invalid numeric value \"%s\" in column %d on line %d of file: %s",
+								line.subSequence(start, end), columnIndex, line.getLineNumber(),
+								inputFile.getAbsolutePath()));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static class IntArrayBuilder {
+		private int[] values = new int[1024];
+		private int size = 0;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1));
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class LongArrayBuilder {
+		private long[] values = new long[1024];
+		private int size = 0;
+
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1));
+			}
+			values[size++] = value;
+		}
+
+		long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class DoubleArrayBuilder {
+		private double[] values = new double[1024];
+		private int size = 0;
+
+		void add(double value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1));
+			}
+			values[size++] = value;
+		}
+
+		double[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	/**
+	 * @param delimiter
+	 * @param columnIndexes
+	 * @return a parser for the requested columns, or null if the delimiter is null (in which case
+	 *         the entire line is used)
+	 * @throws IllegalArgumentException
+	 *             - if a delimiter is specified, but no column indexes are requested
+	 */
+	private static DelimitedRecordParser initParser(String delimiter, int... columnIndexes)
+			throws IllegalArgumentException {
+		if (delimiter == null) {
+			return null;
+		}
+		if (columnIndexes == null || columnIndexes.length == 0) {
 			throw new IllegalArgumentException(String.format(
 					"Cannot parse columns from line. A delimiter \"%s\" has been specified, "
 							+ "however no columns have been requested. If you want the entire line, "
 							+ "set the delimiter to be null.", delimiter));
 		}
-		List<String[]> outputColumns = new ArrayList<String[]>();
-		for (StreamLineIterator lineIter = new StreamLineIterator(inputStream, encoding, commentIndicator); lineIter
-				.hasNext();) {
-			Line line = lineIter.next();
-			outputColumns.add(getColumnsFromLine(line.getText(), delimiter, columnIndexes));
-		}
-		return outputColumns;
+		return new DelimitedRecordParser(delimiter, columnIndexes);
 	}
 
 	/**
@@ -178,7 +851,8 @@ public class FileReaderUtil {
 	/**
 	 * Returns the columns extracted from the input line using a regular expression delimiter. If
 	 * the field enclosure regex is also set, then any delimiters inside a field are not treated as
-	 * column delimiters.
+	 * column delimiters. To parse many lines, use a {@link DelimitedRecordParser} directly so that
+	 * the delimiter is compiled only once.
 	 * 
 	 * @param line
 	 * @param delimiterRegex
@@ -191,19 +865,7 @@ public class FileReaderUtil {
 		if (delimiterRegex == null) {
 			return new String[] { line };
 		}
-
-		String[] lineTokens = StringUtil.splitWithFieldEnclosure(line, delimiterRegex, fieldEnclosingRegex);
-		int[] cIndexes = columnIndexes;
-		if (columnIndexes == null || columnIndexes.length == 0) {
-			cIndexes = CollectionsUtil.createZeroBasedSequence(lineTokens.length);
-		}
-		String[] outputColumns = new String[cIndexes.length];
-		int outputIndex = 0;
-		for (int columnIndex : cIndexes) {
-			ensureColumnIndexIsValid(columnIndex, line, lineTokens);
-			outputColumns[outputIndex++] = lineTokens[columnIndex];
-		}
-		return outputColumns;
+		return new DelimitedRecordParser(delimiterRegex, fieldEnclosingRegex, columnIndexes).parse(line);
 	}
 
 	/**
@@ -243,13 +905,14 @@ public class FileReaderUtil {
 	 */
 	public static List<String> loadColumnFromDelimitedFile(InputStream inputStream, CharacterEncoding encoding,
 			String delimiter, String commentIndicator, int columnIndex) throws IOException {
-		List<String[]> singleColumnAsArrayList = loadColumnsFromDelimitedFile(inputStream, encoding, delimiter,
-				commentIndicator, columnIndex);
-		List<String> outputList = new ArrayList<String>(singleColumnAsArrayList.size());
-		while (!singleColumnAsArrayList.isEmpty()) {
-			outputList.add(singleColumnAsArrayList.get(0)[0]);
-			singleColumnAsArrayList.remove(0);
-		}
+		final List<String> outputList = new ArrayList<String>();
+		readColumnFromDelimitedFile(inputStream, encoding, delimiter, commentIndicator, columnIndex,
+				new Consumer<String>() {
+					@Override
+					public void accept(String value) {
+						outputList.add(value);
+					}
+				});
 		return outputList;
 	}
 
@@ -300,23 +963,4 @@ public class FileReaderUtil {
 		return (columnIndex > -1 && columnIndex < lineTokens.length);
 	}
 
-	/**
-	 * Checks that the columnIndex index exists in the input String[]. If the index does not exist,
-	 * an exception is thrown.
-	 * 
-	 * @param columnIndex
-	 * @param line
-	 * @param lineTokens
-	 * @return
-	 * @throws ArrayIndexOutOfBoundsException
-	 */
-	private static void ensureColumnIndexIsValid(int columnIndex, String line, String[] lineTokens)
-			throws ArrayIndexOutOfBoundsException {
-		if (!isColumnIndexValid(columnIndex, lineTokens)) {
-			throw new ArrayIndexOutOfBoundsException(String.format(
-					"Column index %d does not exist on line. There are only %d columns on line: %s", columnIndex,
-					lineTokens.length, line));
-		}
-	}
-
 }
@@ -34,7 +34,6 @@ package edu.ucdenver.ccp.common.file;
  */
 
 import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
@@ -45,6 +44,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -56,6 +59,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -63,6 +67,8 @@ import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
 
 import edu.ucdenver.ccp.common.collections.CollectionsUtil;
+import edu.ucdenver.ccp.common.file.ParallelChunks.ChunkTask;
+import edu.ucdenver.ccp.common.file.ParallelChunks.ResultHandler;
 import edu.ucdenver.ccp.common.io.StreamUtil;
 import edu.ucdenver.ccp.common.string.StringConstants;
 import edu.ucdenver.ccp.common.string.StringUtil;
@@ -87,6 +93,14 @@ public class FileUtil {
 		YES, NO
 	}
 
+	/**
+	 * The number of bytes of a file to scan per task when counting lines. Files larger than a
+	 * single chunk are counted in parallel.
+	 */
+	private static final int LINE_COUNT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+	private static final int LINE_COUNT_BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * Private constructor; do not instantiate this utility class
 	 */
@@ -822,7 +836,15 @@ public class FileUtil {
 	}
 
 	/**
-	 * Returns the number of lines in the input file
+	 * Returns the number of lines in the input file, as would be counted by reading the file
+	 * using <code>BufferedReader.readLine()</code>. Lines are counted by scanning the raw bytes for
+	 * line terminators (LF, CR or CRLF), which is valid for every {@link CharacterEncoding} as each
+	 * encodes CR and LF as single bytes that do not occur within any other character. No
+	 * characters are decoded and no <code>String</code>s are created.
+	 * <p>
+	 * Compressed files (gzip or Unix compress, as identified by their suffix) are read using
+	 * {@link FileArchiveUtil#getInputStream(File)}. Uncompressed files are memory mapped and, if
+	 * they are large, counted in parallel using the common <code>ForkJoinPool</code>.
 	 * 
 	 * @param file
 	 *            the number of lines in this file will be returned
@@ -832,22 +854,179 @@ public class FileUtil {
 	 * @throws IOException
 	 */
 	public static long getLineCount(File file, CharacterEncoding encoding) throws IOException {
-		long lineCount = 0;
-		BufferedReader reader = null;
+		return getLineCount(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Returns the number of lines in the input file. Large uncompressed files are split into
+	 * chunks that are counted in parallel using the input <code>ForkJoinPool</code>.
+	 * 
+	 * @param file
+	 * @param pool
+	 * @return the number of lines in the input file
+	 * @throws IOException
+	 * @see #getLineCount(File, CharacterEncoding)
+	 */
+	public static long getLineCount(File file, ForkJoinPool pool) throws IOException {
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			InputStream inputStream = FileArchiveUtil.getInputStream(file);
+			try {
+				return getLineCount(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		}
+		return getLineCount(file, pool, LINE_COUNT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Returns the number of lines that can be read from the input stream, counted by scanning the
+	 * raw bytes for line terminators. The stream is read to the end but is not closed.
+	 * 
+	 * @param inputStream
+	 * @return the number of lines read from the input stream
+	 * @throws IOException
+	 * @see #getLineCount(File, CharacterEncoding)
+	 */
+	public static long getLineCount(InputStream inputStream) throws IOException {
+		LineTerminatorCount count = new LineTerminatorCount();
+		byte[] buffer = new byte[LINE_COUNT_BUFFER_SIZE];
+		int length;
+		while ((length = inputStream.read(buffer)) != -1) {
+			count.scan(buffer, length);
+		}
+		return count.getLineCount();
+	}
+
+	/**
+	 * Counts the lines of an uncompressed file by memory mapping it in chunks
+	 * 
+	 * @param file
+	 * @param pool
+	 *            used to count the chunks in parallel if there is more than one
+	 * @param chunkSize
+	 * @return
+	 * @throws IOException
+	 */
+	static long getLineCount(File file, ForkJoinPool pool, int chunkSize) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
 		try {
-			reader = FileReaderUtil.initBufferedReader(file, encoding);
-			/*
-			 * The 'line' variable is unnecessary here, however if
-			 * (reader.readLine() == null) is used, a FindBugs warning is
-			 * generated.
-			 */
-			@SuppressWarnings("unused")
-			String line;
-			while ((line = reader.readLine()) != null)
-				lineCount++;
-			return lineCount;
+			final LineTerminatorCount count = new LineTerminatorCount();
+			ChunkTask<LineTerminatorCount> task = new ChunkTask<LineTerminatorCount>() {
+				@Override
+				public LineTerminatorCount process(long start, long end) throws IOException {
+					return countChunk(channel, start, end);
+				}
+			};
+			ResultHandler<LineTerminatorCount> handler = new ResultHandler<LineTerminatorCount>() {
+				@Override
+				public boolean handle(LineTerminatorCount chunkCount) {
+					count.append(chunkCount);
+					return true;
+				}
+			};
+			ParallelChunks.process(pool, channel.size(), chunkSize, task, handler, "lines to be counted");
+			return count.getLineCount();
 		} finally {
-			IOUtils.closeQuietly(reader);
+			channel.close();
+		}
+	}
+
+	private static LineTerminatorCount countChunk(FileChannel channel, long start, long end) throws IOException {
+		LineTerminatorCount count = new LineTerminatorCount();
+		if (end > start) {
+			count.scan(channel.map(MapMode.READ_ONLY, start, end - start));
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the line terminators in a contiguous range of bytes. A CRLF is counted once, including
+	 * when the CR and LF fall in adjacent ranges, which are combined using
+	 * {@link #append(LineTerminatorCount)}.
+	 */
+	private static final class LineTerminatorCount {
+		private static final byte LF = '\n';
+		private static final byte CR = '\r';
+
+		private long terminatorCount = 0;
+		private boolean empty = true;
+		private byte firstByte;
+		private byte lastByte;
+
+		void scan(byte[] bytes, int length) {
+			if (length == 0) {
+				return;
+			}
+			long count = 0;
+			byte previous = empty ? 0 : lastByte;
+			for (int i = 0; i < length; i++) {
+				byte b = bytes[i];
+				if (b == LF) {
+					if (previous != CR) {
+						count++;
+					}
+				} else if (b == CR) {
+					count++;
+				}
+				previous = b;
+			}
+			update(count, bytes[0], previous);
+		}
+
+		void scan(ByteBuffer bytes) {
+			int length = bytes.limit();
+			if (length == 0) {
+				return;
+			}
+			long count = 0;
+			byte previous = empty ? 0 : lastByte;
+			for (int i = 0; i < length; i++) {
+				byte b = bytes.get(i);
+				if (b == LF) {
+					if (previous != CR) {
+						count++;
+					}
+				} else if (b == CR) {
+					count++;
+				}
+				previous = b;
+			}
+			update(count, bytes.get(0), previous);
+		}
+
+		private void update(long count, byte first, byte last) {
+			terminatorCount += count;
+			if (empty) {
+				firstByte = first;
+				empty = false;
+			}
+			lastByte = last;
+		}
+
+		/**
+		 * Adds the counts of the range that immediately follows this one
+		 */
+		void append(LineTerminatorCount next) {
+			if (next.empty) {
+				return;
+			}
+			long count = next.terminatorCount;
+			if (!empty && lastByte == CR && next.firstByte == LF) {
+				/* a CRLF straddles the two ranges */
+				count--;
+			}
+			update(count, next.firstByte, next.lastByte);
+		}
+
+		/**
+		 * @return the number of lines, counting an unterminated final line
+		 */
+		long getLineCount() {
+			if (empty) {
+				return 0;
+			}
+			return terminatorCount + ((lastByte == LF || lastByte == CR) ? 0 : 1);
 		}
 	}
 
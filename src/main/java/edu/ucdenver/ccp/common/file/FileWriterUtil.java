@@ -40,14 +40,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import org.apache.commons.io.IOUtils;
+import edu.ucdenver.ccp.common.io.WriteBehindWriter;
 
 /**
  * Utility class for writing files
@@ -125,6 +127,29 @@ public class FileWriterUtil {
 		OFF
 	}
 
+	/**
+	 * The SyncPolicy enum specifies when a {@link ChannelFileWriter} forces the data it has written
+	 * to the storage device, i.e. calls {@link FileChannel#force(boolean)}. Forcing guarantees that
+	 * the data survives a system crash at the cost of waiting for the device.
+	 * 
+	 * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+	 * 
+	 */
+	public enum SyncPolicy {
+		/**
+		 * Data is never forced; the operating system writes it to the device in its own time
+		 */
+		NONE,
+		/**
+		 * Data is forced when the writer is closed
+		 */
+		ON_CLOSE,
+		/**
+		 * Data is forced each time the writer is explicitly flushed, and when it is closed
+		 */
+		ON_FLUSH
+	}
+
 	/**
 	 * Creates a BufferedWriter that uses proper character encoding validation. If the directory for
 	 * the specified output file does not exist it is created and a log message is generated stating
@@ -150,6 +175,23 @@ public class FileWriterUtil {
 	 */
 	public static BufferedWriter initBufferedWriter(File outputFile, CharacterEncoding encoding, WriteMode writeMode,
 			FileSuffixEnforcement suffixEnforcement) throws FileNotFoundException {
+		prepareOutputFile(outputFile, encoding, suffixEnforcement);
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile, writeMode.append()),
+				encoding.getEncoder()));
+	}
+
+	/**
+	 * Creates the directory for the output file if necessary and enforces the file suffix policy
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 * @param suffixEnforcement
+	 * @throws IllegalArgumentException
+	 *             thrown if file suffix enforcement is active and the specified output file name
+	 *             suffix does not match the expected character encoding-specific suffix
+	 */
+	private static void prepareOutputFile(File outputFile, CharacterEncoding encoding,
+			FileSuffixEnforcement suffixEnforcement) {
 		if (outputFile.isAbsolute() && !outputFile.getParentFile().exists()) {
 			FileUtil.mkdir(outputFile.getParentFile());
 			logger.info("Directory for output file does not exist so it has been created: "
@@ -165,8 +207,6 @@ public class FileWriterUtil {
 								encoding.getFileSuffix(), outputFile.getAbsolutePath());
 				throw new IllegalArgumentException(errorMessage);
 			}
-		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile, writeMode.append()),
-				encoding.getEncoder()));
 	}
 
 	/**
@@ -205,6 +245,114 @@ public class FileWriterUtil {
 		return new BufferedWriter(new OutputStreamWriter(outputStream, encoding.getEncoder()));
 	}
 
+	/**
+	 * Creates a {@link ChannelFileWriter} for writing large amounts of text. The output file is
+	 * handled as by {@link #initBufferedWriter(File, CharacterEncoding, WriteMode, FileSuffixEnforcement)}
+	 * and characters are encoded with the same validation.
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 *            the CharacterEncoding to use when writing to the output file
+	 * @param writeMode
+	 *            WriteMode.APPEND to append to the output file, WriteMode.OVERWRITE to overwrite
+	 *            the output file
+	 * @param suffixEnforcement
+	 *            if FileSuffixEnforcement.ON then the output file must have the appropriate
+	 *            character encoding-specific file suffix
+	 * @param bufferSize
+	 *            the size in bytes of the buffer; the file is written to once each time it fills
+	 * @param syncPolicy
+	 *            when written data is forced to the storage device
+	 * @return an initialized {@link ChannelFileWriter}
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             thrown if file suffix enforcement is active and the specified output file name
+	 *             suffix does not match the expected character encoding-specific suffix
+	 */
+	public static ChannelFileWriter initChannelWriter(File outputFile, CharacterEncoding encoding,
+			WriteMode writeMode, FileSuffixEnforcement suffixEnforcement, int bufferSize, SyncPolicy syncPolicy)
+			throws IOException {
+		prepareOutputFile(outputFile, encoding, suffixEnforcement);
+		OpenOption[] options = writeMode.append() ? new OpenOption[] { StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND } : new OpenOption[] { StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING };
+		FileChannel channel = FileChannel.open(outputFile.toPath(), options);
+		try {
+			return new ChannelFileWriter(channel, encoding, bufferSize, syncPolicy);
+		} catch (IllegalArgumentException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a {@link ChannelFileWriter} with a buffer of
+	 * {@link ChannelFileWriter#DEFAULT_BUFFER_SIZE} bytes that never forces data to the storage
+	 * device
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 * @param writeMode
+	 * @param suffixEnforcement
+	 * @return an initialized {@link ChannelFileWriter}
+	 * @throws IOException
+	 * @see #initChannelWriter(File, CharacterEncoding, WriteMode, FileSuffixEnforcement, int,
+	 *      SyncPolicy)
+	 */
+	public static ChannelFileWriter initChannelWriter(File outputFile, CharacterEncoding encoding,
+			WriteMode writeMode, FileSuffixEnforcement suffixEnforcement) throws IOException {
+		return initChannelWriter(outputFile, encoding, writeMode, suffixEnforcement,
+				ChannelFileWriter.DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+	}
+
+	/**
+	 * Creates a {@link ChannelFileWriter} that overwrites the output file; file suffix enforcement
+	 * is inactive
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 * @return an initialized {@link ChannelFileWriter}
+	 * @throws IOException
+	 */
+	public static ChannelFileWriter initChannelWriter(File outputFile, CharacterEncoding encoding)
+			throws IOException {
+		return initChannelWriter(outputFile, encoding, WriteMode.OVERWRITE, FileSuffixEnforcement.OFF);
+	}
+
+	/**
+	 * Creates a {@link WriteBehindWriter} over a {@link ChannelFileWriter}, so that characters are
+	 * encoded and written to the output file on a background thread while the caller continues to
+	 * produce output. Closing the returned writer surfaces any error encountered by the background
+	 * thread.
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 * @param writeMode
+	 * @param suffixEnforcement
+	 * @return an initialized {@link WriteBehindWriter}
+	 * @throws IOException
+	 * @see #initChannelWriter(File, CharacterEncoding, WriteMode, FileSuffixEnforcement)
+	 */
+	public static WriteBehindWriter initWriteBehindWriter(File outputFile, CharacterEncoding encoding,
+			WriteMode writeMode, FileSuffixEnforcement suffixEnforcement) throws IOException {
+		return new WriteBehindWriter(initChannelWriter(outputFile, encoding, writeMode, suffixEnforcement));
+	}
+
+	/**
+	 * Creates a {@link WriteBehindWriter} that overwrites the output file; file suffix enforcement
+	 * is inactive
+	 * 
+	 * @param outputFile
+	 * @param encoding
+	 * @return an initialized {@link WriteBehindWriter}
+	 * @throws IOException
+	 * @see #initWriteBehindWriter(File, CharacterEncoding, WriteMode, FileSuffixEnforcement)
+	 */
+	public static WriteBehindWriter initWriteBehindWriter(File outputFile, CharacterEncoding encoding)
+			throws IOException {
+		return initWriteBehindWriter(outputFile, encoding, WriteMode.OVERWRITE, FileSuffixEnforcement.OFF);
+	}
+
 	/**
 	 * Prints the input list of lines to the input PrintStream
 	 * 
@@ -229,14 +377,7 @@ public class FileWriterUtil {
 	 * @throws IOException
 	 */
 	public static void printLines(List<?> lines, File file, CharacterEncoding encoding) throws IOException {
-		BufferedWriter writer = null;
-		try {
-			writer = initBufferedWriter(file, encoding);
-			printLines(lines, writer);
-		}
-		finally {
-			IOUtils.closeQuietly(writer);
-		}
+		printLines(lines.iterator(), initChannelWriter(file, encoding));
 	}
 
 	/**
@@ -251,14 +392,7 @@ public class FileWriterUtil {
 	 */
 	public static void printLines(List<?> lines, File file, CharacterEncoding encoding, WriteMode writeMode,
 			FileSuffixEnforcement suffixEnforementPolicy) throws IOException {
-		BufferedWriter writer = null;
-		try {
-			writer = initBufferedWriter(file, encoding, writeMode, suffixEnforementPolicy);
-			printLines(lines, writer);
-		}
-		finally {
-			IOUtils.closeQuietly(writer);
-		}
+		printLines(lines.iterator(), initChannelWriter(file, encoding, writeMode, suffixEnforementPolicy));
 	}
 
 	/**
@@ -270,16 +404,30 @@ public class FileWriterUtil {
 	 * @throws IOException
 	 */
 	public static void printLines(Iterator<?> lineIterator, File file, CharacterEncoding encoding) throws IOException {
-		BufferedWriter writer = null;
+		printLines(lineIterator, initChannelWriter(file, encoding));
+	}
+
+	/**
+	 * Prints the lines to the writer and closes it. Lines that are <code>CharSequence</code>s are
+	 * written without calling <code>toString()</code>.
+	 * 
+	 * @param lineIterator
+	 * @param writer
+	 * @throws IOException
+	 */
+	private static void printLines(Iterator<?> lineIterator, ChannelFileWriter writer) throws IOException {
 		try {
-			writer = initBufferedWriter(file, encoding);
 			while (lineIterator.hasNext()) {
-				writer.write(lineIterator.next().toString());
+				Object line = lineIterator.next();
+				if (line instanceof CharSequence) {
+					writer.append((CharSequence) line);
+				} else {
+					writer.append(line.toString());
+				}
 				writer.newLine();
 			}
-		}
-		finally {
-			IOUtils.closeQuietly(writer);
+		} finally {
+			writer.close();
 		}
 	}
 
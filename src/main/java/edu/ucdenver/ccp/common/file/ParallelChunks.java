@@ -0,0 +1,171 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Processes a file in fixed-size chunks of bytes, in parallel, and hands the result of each chunk
+ * back to the calling thread in file order. Used to count lines and to validate encodings.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+final class ParallelChunks {
+
+	/**
+	 * Processes one chunk of a file
+	 * 
+	 * @param <T>
+	 */
+	interface ChunkTask<T> {
+		/**
+		 * @param start
+		 *            the byte offset of the first byte of the chunk
+		 * @param end
+		 *            one past the byte offset of the last byte of the chunk
+		 * @return the result for the chunk
+		 * @throws IOException
+		 */
+		T process(long start, long end) throws IOException;
+	}
+
+	/**
+	 * Receives the result of each chunk, in file order, on the calling thread
+	 * 
+	 * @param <T>
+	 */
+	interface ResultHandler<T> {
+		/**
+		 * @param result
+		 * @return true to continue with the next chunk; false to stop, in which case the chunks that
+		 *         have not yet been processed are cancelled
+		 * @throws IOException
+		 */
+		boolean handle(T result) throws IOException;
+	}
+
+	/**
+	 * Private constructor; this class should not be instantiated
+	 */
+	/* @formatter:off */
+	private ParallelChunks() {/* do not instantiate */
+	}
+	/* @formatter:on */
+
+	/**
+	 * Processes the chunks of a file. A file no larger than a single chunk is processed on the
+	 * calling thread; otherwise a task is submitted to the pool for each chunk. Any chunks still
+	 * pending when this method returns (or throws) are cancelled.
+	 * 
+	 * @param pool
+	 * @param fileSize
+	 * @param chunkSize
+	 * @param task
+	 * @param handler
+	 * @param description
+	 *            describes the work being done, e.g. "lines to be counted", for use in the message
+	 *            of an {@link InterruptedIOException}
+	 * @throws IOException
+	 *             if processing a chunk or handling its result fails
+	 */
+	static <T> void process(ForkJoinPool pool, long fileSize, int chunkSize, final ChunkTask<T> task,
+			ResultHandler<T> handler, String description) throws IOException {
+		if (fileSize <= chunkSize) {
+			handler.handle(task.process(0, fileSize));
+			return;
+		}
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+		try {
+			for (long start = 0; start < fileSize; start += chunkSize) {
+				final long chunkStart = start;
+				final long chunkEnd = Math.min(fileSize, start + chunkSize);
+				futures.add(pool.submit(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						return task.process(chunkStart, chunkEnd);
+					}
+				}));
+			}
+			for (Future<T> future : futures) {
+				if (!handler.handle(getResult(future, description))) {
+					return;
+				}
+			}
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the result of the input future, re-throwing any exception raised while computing
+	 * it
+	 * 
+	 * @param future
+	 * @param description
+	 *            describes the work being waited for
+	 * @return the result
+	 * @throws IOException
+	 */
+	private static <T> T getResult(Future<T> future, String description) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + description + ".");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+}
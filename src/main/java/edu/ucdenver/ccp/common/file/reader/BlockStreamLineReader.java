@@ -0,0 +1,476 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileReaderUtil;
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+import edu.ucdenver.ccp.common.io.ReadAheadReader;
+
+/**
+ * A {@link LineReader} that reads characters from an input stream in large blocks and scans each
+ * block for line terminators (CR, LF, CRLF) in bulk. Unlike {@link StreamLineReader}, which calls
+ * {@link Reader#read()} once per character, this implementation slices line text directly out of a
+ * reusable char[] buffer. The {@link Line} objects returned carry the same character offsets, code
+ * point offsets, byte offsets and line numbers as those returned by {@link StreamLineReader}. When
+ * the encoding of the underlying bytes is unknown, byte offsets and byte lengths are reported as
+ * -1.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class BlockStreamLineReader extends LineReader<Line> {
+
+	/**
+	 * The default number of characters read from the underlying {@link Reader} at a time
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * The source of the characters to read
+	 */
+	private final Reader reader;
+
+	/**
+	 * Reusable buffer holding the current block of characters
+	 */
+	private final char[] buffer;
+
+	/**
+	 * Reusable view of the buffer used to expose the text of a line that lies within a single
+	 * block without copying it
+	 */
+	private final CharBuffer bufferView;
+
+	/**
+	 * The index of the next unread character in the buffer
+	 */
+	private int position = 0;
+
+	/**
+	 * The number of valid characters in the buffer
+	 */
+	private int limit = 0;
+
+	/**
+	 * Set to true once the underlying {@link Reader} has been exhausted
+	 */
+	private boolean endOfStream = false;
+
+	/**
+	 * Holds the beginning of a line that spans more than one block
+	 */
+	private final StringBuilder carryOver = new StringBuilder();
+
+	/**
+	 * Set by {@link #scanLine()}; true if the most recently scanned line contains only ASCII
+	 * characters
+	 */
+	private boolean asciiLine = true;
+
+	/**
+	 * Used to store the line number
+	 */
+	private long lineNumber = 0;
+
+	/**
+	 * Reusable view of the buffer used when lines are read using {@link #getNextLine()}
+	 */
+	private final MutableLine currentLine = new MutableLine();
+
+	/**
+	 * The encoding of the bytes underlying the {@link Reader}; null if unknown
+	 */
+	private final CharacterEncoding encoding;
+
+	/**
+	 * The number of bytes of the underlying stream that have been consumed by the lines read so far,
+	 * i.e. the byte offset of the next line
+	 */
+	private long streamPosition = 0;
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from the input
+	 * <code>InputStream</code>
+	 *
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLinePrefix
+	 */
+	public BlockStreamLineReader(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix) {
+		this(FileReaderUtil.initBufferedReader(inputStream, encoding), encoding, skipLinePrefix,
+				toSkipLineFilter(skipLinePrefix), LineCheckpoint.START, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from the input <code>File</code>
+	 *
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public BlockStreamLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix)
+			throws IOException {
+		this(inputFile, encoding, skipLinePrefix, LineCheckpoint.START);
+	}
+
+	public BlockStreamLineReader(File inputFile, CharacterEncoding encoding) throws IOException {
+		this(inputFile, encoding, (String) null);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> that resumes reading the input
+	 * <code>File</code> from a checkpoint. The file is positioned directly at the checkpoint; the
+	 * preceding lines are not re-read (a gzip compressed file must still be decompressed up to
+	 * that point).
+	 *
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()} by a reader of the same file
+	 * @throws IOException
+	 */
+	public BlockStreamLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineCheckpoint checkpoint) throws IOException {
+		this(FileReaderUtil.initBufferedReader(inputFile, encoding, checkpoint.getByteOffset()), encoding,
+				skipLinePrefix, toSkipLineFilter(skipLinePrefix), checkpoint, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from the input
+	 * <code>Reader</code>. Checkpoints are not supported as the encoding of the underlying
+	 * bytes is unknown.
+	 *
+	 * @param reader
+	 * @param skipLinePrefix
+	 * @param blockSize
+	 *            the number of characters to read from the <code>Reader</code> at a time
+	 */
+	public BlockStreamLineReader(Reader reader, String skipLinePrefix, int blockSize) {
+		this(reader, null, skipLinePrefix, toSkipLineFilter(skipLinePrefix), LineCheckpoint.START, blockSize);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from the input
+	 * <code>InputStream</code>
+	 *
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 */
+	public BlockStreamLineReader(InputStream inputStream, CharacterEncoding encoding, SkipLineFilter skipLineFilter) {
+		this(FileReaderUtil.initBufferedReader(inputStream, encoding), encoding, null, skipLineFilter,
+				LineCheckpoint.START, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> that resumes reading the input
+	 * <code>File</code> from a checkpoint
+	 *
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()} by a reader of the same file
+	 * @throws IOException
+	 */
+	public BlockStreamLineReader(File inputFile, CharacterEncoding encoding, SkipLineFilter skipLineFilter,
+			LineCheckpoint checkpoint) throws IOException {
+		this(FileReaderUtil.initBufferedReader(inputFile, encoding, checkpoint.getByteOffset()), encoding, null,
+				skipLineFilter, checkpoint, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from the input
+	 * <code>Reader</code>. Checkpoints are not supported as the encoding of the underlying
+	 * bytes is unknown.
+	 *
+	 * @param reader
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param blockSize
+	 *            the number of characters to read from the <code>Reader</code> at a time
+	 */
+	public BlockStreamLineReader(Reader reader, SkipLineFilter skipLineFilter, int blockSize) {
+		this(reader, null, null, skipLineFilter, LineCheckpoint.START, blockSize);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from a <code>Reader</code> that
+	 * has already been positioned at the input checkpoint, e.g. a {@link ReadAheadReader} wrapping
+	 * a reader obtained from {@link FileReaderUtil#initBufferedReader(File, CharacterEncoding, long)}
+	 *
+	 * @param reader
+	 * @param encoding
+	 *            the encoding of the bytes underlying the <code>Reader</code>
+	 * @param skipLinePrefix
+	 * @param checkpoint
+	 *            the position in the file at which the <code>Reader</code> begins
+	 * @param blockSize
+	 *            the number of characters to read from the <code>Reader</code> at a time
+	 */
+	public BlockStreamLineReader(Reader reader, CharacterEncoding encoding, String skipLinePrefix,
+			LineCheckpoint checkpoint, int blockSize) {
+		this(reader, encoding, skipLinePrefix, toSkipLineFilter(skipLinePrefix), checkpoint, blockSize);
+	}
+
+	/**
+	 * Initializes a new <code>BlockStreamLineReader</code> to read from a <code>Reader</code> that
+	 * has already been positioned at the input checkpoint
+	 *
+	 * @param reader
+	 * @param encoding
+	 *            the encoding of the bytes underlying the <code>Reader</code>
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param checkpoint
+	 *            the position in the file at which the <code>Reader</code> begins
+	 * @param blockSize
+	 *            the number of characters to read from the <code>Reader</code> at a time
+	 */
+	public BlockStreamLineReader(Reader reader, CharacterEncoding encoding, SkipLineFilter skipLineFilter,
+			LineCheckpoint checkpoint, int blockSize) {
+		this(reader, encoding, null, skipLineFilter, checkpoint, blockSize);
+	}
+
+	/**
+	 * @param reader
+	 * @param encoding
+	 *            the encoding of the bytes underlying the <code>Reader</code>; null if unknown, in
+	 *            which case checkpoints are not supported
+	 * @param skipLinePrefix
+	 * @param skipLineFilter
+	 * @param checkpoint
+	 *            the position in the file at which the <code>Reader</code> begins
+	 * @param blockSize
+	 */
+	private BlockStreamLineReader(Reader reader, CharacterEncoding encoding, String skipLinePrefix,
+			SkipLineFilter skipLineFilter, LineCheckpoint checkpoint, int blockSize) {
+		super(skipLinePrefix, skipLineFilter, checkpoint);
+		if (blockSize < 2) {
+			throw new IllegalArgumentException("Block size must be at least 2 characters: " + blockSize);
+		}
+		this.reader = reader;
+		this.encoding = encoding;
+		this.buffer = new char[blockSize];
+		this.bufferView = CharBuffer.wrap(buffer);
+		this.lineNumber = checkpoint.getLineNumber();
+		this.streamPosition = checkpoint.getByteOffset();
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getNextLine()
+	 */
+	@Override
+	protected Line getNextLine() throws IOException {
+		return scanNextLine(currentLine) ? currentLine.toLine() : null;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#scanNextLine(edu.ucdenver.ccp.common.file.reader.MutableLine)
+	 */
+	@Override
+	protected boolean scanNextLine(MutableLine line) throws IOException {
+		CharSequence lineText;
+		while ((lineText = scanLine()) != null) {
+			/* the line is unterminated only if the end of the stream was reached */
+			boolean terminated = position < limit;
+			LineTerminator lineTerminator = scanLineTerminator();
+			/* for ASCII-only lines the counts are simply the length of the line */
+			int charCount = lineText.length();
+			int codePointCount = asciiLine ? charCount : countCodePoints(lineText);
+			long byteOffset = -1;
+			int byteLength = -1;
+			if (encoding != null) {
+				byteOffset = streamPosition;
+				byteLength = asciiLine ? charCount : encoding.getByteLength(lineText, 0, charCount);
+				streamPosition += byteLength + (terminated ? lineTerminator.length() : 0);
+			}
+			if (!skipLine(lineText)) {
+				line.set(lineText, lineTerminator, getCharacterOffset(), getCodePointOffset(), lineNumber++, byteOffset,
+						codePointCount, byteLength);
+				return true;
+			}
+			lineNumber++;
+			updateCharacterOffset(charCount, codePointCount, lineTerminator);
+		}
+		return false;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint()
+	 */
+	@Override
+	public LineCheckpoint getCheckpoint() {
+		checkCheckpointSupport();
+		return new LineCheckpoint(streamPosition, getCharacterOffset(), getCodePointOffset(), lineNumber,
+				isHeaderBlockEnded());
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint(edu.ucdenver.ccp.common.file.reader.Line)
+	 */
+	@Override
+	protected LineCheckpoint getCheckpoint(Line lastLine) {
+		checkCheckpointSupport();
+		return new LineCheckpoint(lastLine.getByteOffset(), lastLine.getCharacterOffset(),
+				lastLine.getCodePointOffset(), lastLine.getLineNumber(), isHeaderBlockEnded());
+	}
+
+	private void checkCheckpointSupport() {
+		if (encoding == null) {
+			throw new UnsupportedOperationException(
+					"Checkpoints are not supported when the encoding of the input is unknown.");
+		}
+	}
+
+	/**
+	 * Scans forward to the next CR or LF character and returns the text preceding it. The buffer
+	 * position is left pointing at the line terminator.
+	 *
+	 * @return the text of the next line, or null if the end of the stream has been reached. The
+	 *         returned text is a view of a reusable buffer and is only valid until the next line
+	 *         is scanned.
+	 * @throws IOException
+	 */
+	private CharSequence scanLine() throws IOException {
+		carryOver.setLength(0);
+		/* all chars are OR'd together to detect lines that contain only ASCII characters */
+		int bits = 0;
+		while (true) {
+			if (position == limit && !fill()) {
+				if (carryOver.length() == 0) {
+					return null;
+				}
+				asciiLine = bits < 0x80;
+				return carryOver;
+			}
+			int start = position;
+			char[] buf = buffer;
+			int end = limit;
+			int i = start;
+			while (i < end) {
+				char c = buf[i];
+				if (c == '\n' || c == '\r') {
+					break;
+				}
+				bits |= c;
+				i++;
+			}
+			position = i;
+			if (i < end) {
+				asciiLine = bits < 0x80;
+				/*
+				 * a CR at the end of the block causes the buffer to be refilled when the line
+				 * terminator is scanned, so in that case the text is copied out of the buffer
+				 */
+				if (carryOver.length() == 0 && (i < end - 1 || buf[i] == '\n')) {
+					bufferView.limit(i).position(start);
+					return bufferView;
+				}
+				return carryOver.append(buf, start, i - start);
+			}
+			carryOver.append(buf, start, i - start);
+		}
+	}
+
+	/**
+	 * Consumes the line terminator at the current buffer position. A CR at the end of a block is
+	 * resolved by reading the next block to check for a following LF.
+	 *
+	 * @return the line terminator that ended the most recently scanned line. To remain consistent
+	 *         with {@link StreamLineReader}, LF is returned for a final line that is not terminated.
+	 * @throws IOException
+	 */
+	private LineTerminator scanLineTerminator() throws IOException {
+		if (position == limit) {
+			return LineTerminator.LF;
+		}
+		if (buffer[position++] == '\n') {
+			return LineTerminator.LF;
+		}
+		if (position == limit && !fill()) {
+			return LineTerminator.CR;
+		}
+		if (buffer[position] == '\n') {
+			position++;
+			return LineTerminator.CRLF;
+		}
+		return LineTerminator.CR;
+	}
+
+	/**
+	 * Reads the next block of characters into the buffer
+	 *
+	 * @return false if the end of the stream has been reached
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+		int count;
+		while ((count = reader.read(buffer, 0, buffer.length)) == 0) {
+			/* keep reading until characters are available or the stream ends */
+		}
+		if (count < 0) {
+			endOfStream = true;
+			position = limit = 0;
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (reader != null)
+			reader.close();
+	}
+
+}
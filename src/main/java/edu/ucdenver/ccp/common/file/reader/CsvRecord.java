@@ -0,0 +1,156 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * A record read by a {@link CsvRecordReader}. A record may span several lines if it contains
+ * quoted fields with embedded line breaks; its offsets are those of the {@link Line} on which the
+ * record starts.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class CsvRecord {
+
+	/**
+	 * The field values, with enclosures removed and escaped enclosures unescaped
+	 */
+	private final String[] fields;
+
+	private final long lineNumber;
+	private final long characterOffset;
+	private final long codePointOffset;
+	private final long byteOffset;
+
+	/**
+	 * The number of lines spanned by this record
+	 */
+	private final int lineCount;
+
+	/**
+	 * Initializes a new <code>CsvRecord</code>
+	 *
+	 * @param fields
+	 * @param lineNumber
+	 *            the line number of the first line of the record
+	 * @param characterOffset
+	 *            the character offset of the first line of the record
+	 * @param codePointOffset
+	 *            the code point offset of the first line of the record
+	 * @param byteOffset
+	 *            the byte offset of the first line of the record
+	 * @param lineCount
+	 *            the number of lines spanned by the record
+	 */
+	public CsvRecord(String[] fields, long lineNumber, long characterOffset, long codePointOffset, long byteOffset,
+			int lineCount) {
+		this.fields = fields;
+		this.lineNumber = lineNumber;
+		this.characterOffset = characterOffset;
+		this.codePointOffset = codePointOffset;
+		this.byteOffset = byteOffset;
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * @return the field values of this record
+	 */
+	public String[] getFields() {
+		return fields;
+	}
+
+	/**
+	 * @param index
+	 * @return the value of the field at the specified index
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if the record has no such field
+	 */
+	public String getField(int index) {
+		return fields[index];
+	}
+
+	/**
+	 * @return the number of fields in this record
+	 */
+	public int size() {
+		return fields.length;
+	}
+
+	/**
+	 * @return the line number of the first line of this record
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return the character offset of the first line of this record
+	 */
+	public long getCharacterOffset() {
+		return characterOffset;
+	}
+
+	/**
+	 * @return the code point offset of the first line of this record
+	 */
+	public long getCodePointOffset() {
+		return codePointOffset;
+	}
+
+	/**
+	 * @return the byte offset of the first line of this record, as reported by the
+	 *         {@link LineReader}
+	 */
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	/**
+	 * @return the number of lines spanned by this record
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("Line: %d (%d lines) Fields: %s", lineNumber, lineCount, Arrays.toString(fields));
+	}
+
+}
@@ -0,0 +1,312 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * Reads the records of a CSV (or TSV, or other character-delimited) file as described by RFC
+ * 4180. Fields may be enclosed (by default in double quotes), in which case they may contain the
+ * delimiter, line breaks, and the enclosure character itself if it is doubled, e.g.
+ * <code>"say ""hello"""</code>. Each line is scanned once, character by character, without the
+ * use of regular expressions.
+ * <p>
+ * Lines are read from a {@link LineReader}, so the usual line offsets are available for the line
+ * on which each {@link CsvRecord} starts. A line break inside an enclosed field is returned as the
+ * {@link Line.LineTerminator} that was read. The <code>LineReader</code> should not skip any lines,
+ * as a skipped line may be the continuation of an enclosed field. Blank lines between records are
+ * ignored.
+ * <p>
+ * Input that does not strictly conform to RFC 4180 is handled leniently: an enclosure character
+ * in the middle of an unenclosed field is kept, as is any text between a closing enclosure and the
+ * next delimiter. An enclosed field that is still open at the end of the input is an error.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class CsvRecordReader implements Closeable {
+
+	/**
+	 * The enclosure character used by RFC 4180
+	 */
+	public static final char DEFAULT_ENCLOSURE = '"';
+
+	/**
+	 * Indicates that fields are never enclosed, e.g. for plain TSV files. U+FFFF is guaranteed not
+	 * to be a Unicode character so it will not be mistaken for an enclosure.
+	 */
+	public static final char NO_ENCLOSURE = '\uFFFF';
+
+	private final LineReader<?> reader;
+	private final char delimiter;
+	private final char enclosure;
+
+	/**
+	 * Reused for every line read
+	 */
+	private final MutableLine line = new MutableLine();
+
+	/**
+	 * Reused to collect the fields of each record
+	 */
+	private final List<String> fields = new ArrayList<String>();
+
+	/**
+	 * Reused to build field values that are enclosed or that span several lines
+	 */
+	private final StringBuilder field = new StringBuilder();
+
+	/**
+	 * True while the current field is enclosed and its closing enclosure has not been reached
+	 */
+	private boolean inEnclosedField = false;
+
+	/**
+	 * Initializes a new <code>CsvRecordReader</code> to read records from the input
+	 * <code>LineReader</code>
+	 *
+	 * @param reader
+	 *            should not skip any lines
+	 * @param delimiter
+	 *            separates the fields of a record, e.g. a comma or a tab
+	 * @param enclosure
+	 *            encloses fields that contain delimiters, line breaks or enclosures; use
+	 *            {@link #NO_ENCLOSURE} if fields are never enclosed
+	 * @throws IllegalArgumentException
+	 *             if the delimiter is a line break or the same as the enclosure
+	 */
+	public CsvRecordReader(LineReader<?> reader, char delimiter, char enclosure) {
+		if (delimiter == '\n' || delimiter == '\r' || delimiter == enclosure) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid delimiter (U+%04X). The delimiter cannot be a line break or the enclosure character.",
+					(int) delimiter));
+		}
+		if (enclosure == '\n' || enclosure == '\r') {
+			throw new IllegalArgumentException("The enclosure character cannot be a line break.");
+		}
+		this.reader = reader;
+		this.delimiter = delimiter;
+		this.enclosure = enclosure;
+	}
+
+	/**
+	 * Initializes a new <code>CsvRecordReader</code> to read records whose fields may be enclosed
+	 * in double quotes
+	 *
+	 * @param reader
+	 *            should not skip any lines
+	 * @param delimiter
+	 */
+	public CsvRecordReader(LineReader<?> reader, char delimiter) {
+		this(reader, delimiter, DEFAULT_ENCLOSURE);
+	}
+
+	/**
+	 * Initializes a new <code>CsvRecordReader</code> to read records from the input
+	 * <code>File</code>. Gzip compressed files (.gz) are decompressed.
+	 *
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiter
+	 * @param enclosure
+	 * @throws IOException
+	 */
+	public CsvRecordReader(File inputFile, CharacterEncoding encoding, char delimiter, char enclosure)
+			throws IOException {
+		this(new BlockStreamLineReader(inputFile, encoding), delimiter, enclosure);
+	}
+
+	/**
+	 * Initializes a new <code>CsvRecordReader</code> to read records from the input
+	 * <code>InputStream</code>
+	 *
+	 * @param inputStream
+	 * @param encoding
+	 * @param delimiter
+	 * @param enclosure
+	 */
+	public CsvRecordReader(InputStream inputStream, CharacterEncoding encoding, char delimiter, char enclosure) {
+		this(new BlockStreamLineReader(inputStream, encoding, (String) null), delimiter, enclosure);
+	}
+
+	/**
+	 * @return the next record, or null if there are no more records
+	 * @throws IOException
+	 *             if there's an error while reading, or if the input ends inside an enclosed field
+	 */
+	public CsvRecord readRecord() throws IOException {
+		do {
+			if (!reader.advance(line)) {
+				return null;
+			}
+		} while (line.length() == 0);
+		long lineNumber = line.getLineNumber();
+		long characterOffset = line.getCharacterOffset();
+		long codePointOffset = line.getCodePointOffset();
+		long byteOffset = line.getByteOffset();
+		int lineCount = 1;
+		fields.clear();
+		field.setLength(0);
+		inEnclosedField = false;
+		while (!parseLine(line)) {
+			/* the line ended inside an enclosed field so the field continues on the next line */
+			field.append(line.getLineTerminator().terminator());
+			if (!reader.advance(line)) {
+				throw new IOException(String.format(
+						"Unexpected end of input. The enclosed field started in the record on line %d is not closed.",
+						lineNumber));
+			}
+			lineCount++;
+		}
+		return new CsvRecord(fields.toArray(new String[fields.size()]), lineNumber, characterOffset,
+				codePointOffset, byteOffset, lineCount);
+	}
+
+	/**
+	 * Adds the fields on the input line to the current record
+	 *
+	 * @param text
+	 * @return true if the record is complete, false if the line ended inside an enclosed field
+	 */
+	private boolean parseLine(CharSequence text) {
+		int length = text.length();
+		int i = 0;
+		while (true) {
+			if (!inEnclosedField) {
+				if (i < length && text.charAt(i) == enclosure) {
+					inEnclosedField = true;
+					i++;
+				} else {
+					/* an unenclosed field runs to the next delimiter */
+					int start = i;
+					while (i < length && text.charAt(i) != delimiter) {
+						i++;
+					}
+					fields.add(text.subSequence(start, i).toString());
+					if (i == length) {
+						return true;
+					}
+					i++;
+					continue;
+				}
+			}
+			/* scan the enclosed field for its closing enclosure, unescaping doubled enclosures */
+			while (true) {
+				int start = i;
+				while (i < length && text.charAt(i) != enclosure) {
+					i++;
+				}
+				field.append(text, start, i);
+				if (i == length) {
+					return false;
+				}
+				i++;
+				if (i < length && text.charAt(i) == enclosure) {
+					field.append(enclosure);
+					i++;
+				} else {
+					break;
+				}
+			}
+			inEnclosedField = false;
+			/* any text between the closing enclosure and the next delimiter is kept */
+			int start = i;
+			while (i < length && text.charAt(i) != delimiter) {
+				i++;
+			}
+			field.append(text, start, i);
+			fields.add(field.toString());
+			field.setLength(0);
+			if (i == length) {
+				return true;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * @return a sequential stream over the remaining records. Closing the stream closes this
+	 *         reader.
+	 */
+	public Stream<CsvRecord> stream() {
+		Spliterator<CsvRecord> spliterator = new Spliterators.AbstractSpliterator<CsvRecord>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+			@Override
+			public boolean tryAdvance(Consumer<? super CsvRecord> action) {
+				try {
+					CsvRecord record = readRecord();
+					if (record == null) {
+						return false;
+					}
+					action.accept(record);
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
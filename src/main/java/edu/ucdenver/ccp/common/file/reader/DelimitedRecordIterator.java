@@ -0,0 +1,162 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the records of a delimited file without loading the file into memory. Each line
+ * is parsed directly from the {@link LineReader}'s buffer by a {@link DelimitedRecordParser}, so
+ * only the requested columns of each line are copied into new <code>String</code>s.
+ * <p>
+ * The iterator should be closed (e.g. in a try-with-resources block) if it is not read to the end;
+ * closing it (or a stream returned by {@link #stream()}) closes the underlying
+ * <code>LineReader</code>.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class DelimitedRecordIterator implements Iterator<String[]>, Closeable {
+
+	private final LineReader<?> reader;
+
+	/**
+	 * Extracts the requested columns from each line; null if the entire line is returned
+	 */
+	private final DelimitedRecordParser parser;
+
+	/**
+	 * Reused for every line read
+	 */
+	private final MutableLine line = new MutableLine();
+
+	/**
+	 * The next record to return; null if it has not been read yet
+	 */
+	private String[] nextRecord = null;
+
+	/**
+	 * Set once the reader has been exhausted
+	 */
+	private boolean finished = false;
+
+	/**
+	 * Initializes a new <code>DelimitedRecordIterator</code> over the lines returned by the input
+	 * <code>LineReader</code>
+	 *
+	 * @param reader
+	 * @param parser
+	 *            extracts the columns of each line; if null, each record contains the entire line
+	 */
+	public DelimitedRecordIterator(LineReader<?> reader, DelimitedRecordParser parser) {
+		this.reader = reader;
+		this.parser = parser;
+	}
+
+	/**
+	 * @see java.util.Iterator#hasNext()
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if a requested column does not exist on the next line
+	 */
+	@Override
+	public boolean hasNext() {
+		if (nextRecord != null) {
+			return true;
+		}
+		if (finished) {
+			return false;
+		}
+		try {
+			if (!reader.advance(line)) {
+				finished = true;
+				return false;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		nextRecord = (parser == null) ? new String[] { line.toString() } : parser.parse(line);
+		return true;
+	}
+
+	/**
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public String[] next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String[] record = nextRecord;
+		nextRecord = null;
+		return record;
+	}
+
+	/**
+	 * @return a sequential stream over the remaining records of this iterator. Closing the stream
+	 *         closes this iterator.
+	 */
+	public Stream<String[]> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(
+				new Runnable() {
+					@Override
+					public void run() {
+						try {
+							close();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		nextRecord = null;
+		reader.close();
+	}
+
+}
@@ -0,0 +1,512 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts columns from delimited lines. A <code>DelimitedRecordParser</code> is compiled once
+ * from a delimiter, an optional field enclosure and the indexes of the columns to extract, and can
+ * then be used to parse any number of lines. It returns the same columns as
+ * {@link edu.ucdenver.ccp.common.string.StringUtil#splitWithFieldEnclosure(String, String, String)}
+ * but compiles its regular expressions only once. When the delimiter is a single character (e.g.
+ * a tab or a comma, written either literally or as an escaped regular expression) the line is
+ * scanned directly without using regular expressions.
+ * <p>
+ * Column projection is pushed down into the scan: the boundaries of every column up to the
+ * highest requested index are located, but <code>String</code>s are only created for the
+ * requested columns, and the rest of the line is not scanned (unless a requested column turns
+ * out to be missing, in which case the columns are counted for the error message). Lines may be
+ * parsed directly from a reusable {@link MutableLine} so that no <code>String</code> is created
+ * for the line itself.
+ * <p>
+ * A <code>DelimitedRecordParser</code> is immutable and may be shared by several threads.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class DelimitedRecordParser {
+
+	/**
+	 * The delimiter as a regular expression
+	 */
+	private final String delimiterRegex;
+
+	/**
+	 * The compiled delimiter; null if the delimiter is a single literal character
+	 */
+	private final Pattern delimiterPattern;
+
+	/**
+	 * The delimiter character; only used if {@link #delimiterPattern} is null
+	 */
+	private final char delimiterChar;
+
+	/**
+	 * Matches the field enclosure; null if fields are not enclosed
+	 */
+	private final Pattern enclosurePattern;
+
+	/**
+	 * Matches an enclosed field; null if fields are not enclosed
+	 */
+	private final Pattern enclosedFieldPattern;
+
+	/**
+	 * The enclosure character if the enclosure is a single literal character, otherwise -1
+	 */
+	private final int enclosureChar;
+
+	/**
+	 * The indexes of the columns to extract; null if all columns are extracted
+	 */
+	private final int[] columnIndexes;
+
+	/**
+	 * The highest requested column index
+	 */
+	private final int maxColumnIndex;
+
+	/**
+	 * The position (in {@link #columnIndexes}) of the first request for each column, indexed by
+	 * column; -1 if the column is not requested. Null if all columns are extracted.
+	 */
+	private final int[] firstRequest;
+
+	/**
+	 * The position of the next request for the same column, indexed by position; -1 if there is
+	 * none. Null if all columns are extracted.
+	 */
+	private final int[] nextRequest;
+
+	/**
+	 * Initializes a new <code>DelimitedRecordParser</code>
+	 *
+	 * @param delimiterRegex
+	 *            the column delimiter, as a regular expression
+	 * @param fieldEnclosureRegex
+	 *            if not null, delimiters between a pair of field enclosures are not treated as
+	 *            column delimiters
+	 * @param columnIndexes
+	 *            the indexes of the columns to extract, in the order they are to be returned; if
+	 *            null or empty, all columns are extracted
+	 * @throws IllegalArgumentException
+	 *             if the delimiter is null
+	 */
+	public DelimitedRecordParser(String delimiterRegex, String fieldEnclosureRegex, int... columnIndexes) {
+		if (delimiterRegex == null) {
+			throw new IllegalArgumentException("Delimiter must not be null.");
+		}
+		this.delimiterRegex = delimiterRegex;
+		int literal = toLiteralChar(delimiterRegex);
+		this.delimiterPattern = (literal < 0) ? Pattern.compile(delimiterRegex) : null;
+		this.delimiterChar = (literal < 0) ? 0 : (char) literal;
+		if (fieldEnclosureRegex == null) {
+			this.enclosurePattern = null;
+			this.enclosedFieldPattern = null;
+			this.enclosureChar = -1;
+		} else {
+			this.enclosurePattern = Pattern.compile(fieldEnclosureRegex);
+			this.enclosedFieldPattern = Pattern.compile(fieldEnclosureRegex + ".*?" + fieldEnclosureRegex);
+			this.enclosureChar = toLiteralChar(fieldEnclosureRegex);
+		}
+		if (columnIndexes == null || columnIndexes.length == 0) {
+			this.columnIndexes = null;
+			this.maxColumnIndex = Integer.MAX_VALUE;
+			this.firstRequest = null;
+			this.nextRequest = null;
+		} else {
+			this.columnIndexes = columnIndexes.clone();
+			int max = -1;
+			for (int columnIndex : columnIndexes) {
+				max = Math.max(max, columnIndex);
+			}
+			this.maxColumnIndex = max;
+			this.firstRequest = new int[max + 1];
+			this.nextRequest = new int[columnIndexes.length];
+			Arrays.fill(firstRequest, -1);
+			for (int i = columnIndexes.length - 1; i >= 0; i--) {
+				int columnIndex = columnIndexes[i];
+				nextRequest[i] = (columnIndex < 0) ? -1 : firstRequest[columnIndex];
+				if (columnIndex >= 0) {
+					firstRequest[columnIndex] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Initializes a new <code>DelimitedRecordParser</code> for columns without field enclosures
+	 *
+	 * @param delimiterRegex
+	 * @param columnIndexes
+	 */
+	public DelimitedRecordParser(String delimiterRegex, int... columnIndexes) {
+		this(delimiterRegex, null, columnIndexes);
+	}
+
+	/**
+	 * @param regex
+	 * @return the character matched by the input regular expression if it matches exactly one
+	 *         literal character, otherwise -1
+	 */
+	static int toLiteralChar(String regex) {
+		if (regex.length() == 1) {
+			char c = regex.charAt(0);
+			return (".$|()[]{}^?*+\\".indexOf(c) < 0) ? c : -1;
+		}
+		if (regex.length() == 2 && regex.charAt(0) == '\\') {
+			char c = regex.charAt(1);
+			if (!Character.isLetterOrDigit(c)) {
+				return c;
+			}
+			switch (c) {
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			default:
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the delimiter as a regular expression
+	 */
+	public String getDelimiterRegex() {
+		return delimiterRegex;
+	}
+
+	/**
+	 * Parses the input line
+	 *
+	 * @param line
+	 *            e.g. a <code>String</code> or a {@link MutableLine}
+	 * @return the requested columns of the line, in the order they were requested
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if a requested column does not exist on the line
+	 */
+	public String[] parse(CharSequence line) throws ArrayIndexOutOfBoundsException {
+		FieldCursor cursor = new FieldCursor(line, enclosurePattern != null && containsEnclosure(line));
+		if (columnIndexes == null) {
+			List<String> columns = new ArrayList<String>();
+			while (cursor.next()) {
+				columns.add(cursor.field());
+			}
+			return columns.toArray(new String[columns.size()]);
+		}
+		String[] columns = new String[maxColumnIndex + 1];
+		int columnCount = 0;
+		while (columnCount <= maxColumnIndex && cursor.next()) {
+			if (firstRequest[columnCount] >= 0) {
+				columns[columnCount] = cursor.field();
+			}
+			columnCount++;
+		}
+		String[] outputColumns = new String[columnIndexes.length];
+		for (int i = 0; i < columnIndexes.length; i++) {
+			int columnIndex = columnIndexes[i];
+			if (columnIndex < 0 || columnIndex >= columnCount) {
+				throw missingColumnException(cursor, columnIndex, columnCount);
+			}
+			outputColumns[i] = columns[columnIndex];
+		}
+		return outputColumns;
+	}
+
+	/**
+	 * Locates the requested columns of the input line without copying them, e.g. so that their
+	 * values can be looked up in a dictionary rather than creating a new <code>String</code> for
+	 * each one. The bounds are written directly to the input array as the line is scanned; if the
+	 * delimiter is a single character and the line contains no field enclosures, no objects are
+	 * allocated.
+	 *
+	 * @param line
+	 *            e.g. a <code>String</code> or a {@link MutableLine}
+	 * @param bounds
+	 *            receives the start (inclusive) and end (exclusive) index of each requested column
+	 *            within the line, in the order the columns were requested; its length must be at
+	 *            least twice the number of requested columns
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if a requested column does not exist on the line
+	 * @throws IllegalStateException
+	 *             if this parser was not initialized with the indexes of the columns to extract
+	 */
+	public void locate(CharSequence line, int[] bounds) throws ArrayIndexOutOfBoundsException,
+			IllegalStateException {
+		if (columnIndexes == null) {
+			throw new IllegalStateException("Columns can only be located if column indexes have been requested.");
+		}
+		boolean enclosed = enclosurePattern != null && containsEnclosure(line);
+		int columnCount = 0;
+		if (delimiterPattern == null && !enclosed) {
+			/* the same scan as FieldCursor, without the cursor */
+			int fieldStart = 0;
+			while (columnCount <= maxColumnIndex) {
+				int delimiterStart = indexOf(line, delimiterChar, fieldStart);
+				setBounds(bounds, columnCount++, fieldStart, (delimiterStart < 0) ? line.length() : delimiterStart);
+				if (delimiterStart < 0) {
+					break;
+				}
+				fieldStart = delimiterStart + 1;
+			}
+		} else {
+			FieldCursor cursor = new FieldCursor(line, enclosed);
+			while (columnCount <= maxColumnIndex && cursor.next()) {
+				int start = cursor.valueStart();
+				setBounds(bounds, columnCount++, start, Math.max(start, cursor.valueEnd()));
+			}
+		}
+		for (int columnIndex : columnIndexes) {
+			if (columnIndex < 0 || columnIndex >= columnCount) {
+				throw missingColumnException(new FieldCursor(line, enclosed), columnIndex, 0);
+			}
+		}
+	}
+
+	/**
+	 * Writes the bounds of a column to every position at which the column was requested
+	 */
+	private void setBounds(int[] bounds, int columnIndex, int start, int end) {
+		for (int i = firstRequest[columnIndex]; i >= 0; i = nextRequest[i]) {
+			bounds[2 * i] = start;
+			bounds[2 * i + 1] = end;
+		}
+	}
+
+	/**
+	 * Counts the remaining columns of the line for the error message
+	 */
+	private static ArrayIndexOutOfBoundsException missingColumnException(FieldCursor cursor, int columnIndex,
+			int columnCount) {
+		while (cursor.next()) {
+			columnCount++;
+		}
+		return columnIndexException(columnIndex, cursor.line.toString(), columnCount);
+	}
+
+	private boolean containsEnclosure(CharSequence line) {
+		if (enclosureChar >= 0) {
+			return indexOf(line, (char) enclosureChar, 0) >= 0;
+		}
+		return enclosurePattern.matcher(line).find();
+	}
+
+	private static int indexOf(CharSequence s, char c, int fromIndex) {
+		if (s instanceof String) {
+			return ((String) s).indexOf(c, fromIndex);
+		}
+		for (int i = fromIndex; i < s.length(); i++) {
+			if (s.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Steps through the columns of a line by locating the delimiters that separate them. The text
+	 * of a column is only copied if it is requested by calling {@link #field()}.
+	 */
+	private final class FieldCursor {
+
+		private final CharSequence line;
+
+		/**
+		 * True if delimiters between a pair of field enclosures are to be ignored, in which case
+		 * columns are also trimmed
+		 */
+		private final boolean enclosed;
+
+		private final Matcher delimiterMatcher;
+
+		/**
+		 * Finds the enclosed fields of the line; null if the line is not enclosed
+		 */
+		private final Matcher enclosedFieldMatcher;
+
+		/**
+		 * The bounds of the first enclosed field that has not been passed; -1 if there are none
+		 */
+		private int enclosedFieldStart = -1;
+		private int enclosedFieldEnd = -1;
+
+		/**
+		 * The bounds of the current column
+		 */
+		private int fieldStart = 0;
+		private int fieldEnd = 0;
+
+		/**
+		 * The index at which the next column starts; -1 once the last column has been reached
+		 */
+		private int nextFieldStart = 0;
+
+		/**
+		 * The index from which to search for the next delimiter
+		 */
+		private int searchFrom = 0;
+
+		FieldCursor(CharSequence line, boolean enclosed) {
+			this.line = line;
+			this.enclosed = enclosed;
+			this.delimiterMatcher = (delimiterPattern == null) ? null : delimiterPattern.matcher(line);
+			this.enclosedFieldMatcher = enclosed ? enclosedFieldPattern.matcher(line) : null;
+			if (enclosed) {
+				nextEnclosedField();
+			}
+		}
+
+		/**
+		 * Advances to the next column
+		 *
+		 * @return false if there are no more columns
+		 */
+		boolean next() {
+			if (nextFieldStart < 0) {
+				return false;
+			}
+			fieldStart = nextFieldStart;
+			while (true) {
+				int delimiterStart;
+				int delimiterEnd;
+				if (delimiterMatcher == null) {
+					delimiterStart = indexOf(line, delimiterChar, searchFrom);
+					delimiterEnd = delimiterStart + 1;
+				} else if (enclosed ? searchFrom <= line.length() && delimiterMatcher.find(searchFrom)
+						: delimiterMatcher.find()) {
+					delimiterStart = delimiterMatcher.start();
+					delimiterEnd = delimiterMatcher.end();
+					if (!enclosed && delimiterEnd == 0) {
+						/* as with String.split(), a zero-width match at the beginning is ignored */
+						continue;
+					}
+				} else {
+					delimiterStart = -1;
+					delimiterEnd = -1;
+				}
+				if (delimiterStart < 0) {
+					fieldEnd = line.length();
+					nextFieldStart = -1;
+					return true;
+				}
+				if (enclosed && isEnclosed(delimiterStart)) {
+					searchFrom = enclosedFieldEnd;
+					continue;
+				}
+				fieldEnd = delimiterStart;
+				nextFieldStart = delimiterEnd;
+				searchFrom = (delimiterEnd > delimiterStart) ? delimiterEnd : delimiterEnd + 1;
+				return true;
+			}
+		}
+
+		/**
+		 * @return true if the input index falls within an enclosed field
+		 */
+		private boolean isEnclosed(int index) {
+			while (enclosedFieldStart >= 0 && enclosedFieldEnd <= index) {
+				nextEnclosedField();
+			}
+			return enclosedFieldStart >= 0 && enclosedFieldStart <= index;
+		}
+
+		private void nextEnclosedField() {
+			if (enclosedFieldMatcher.find()) {
+				enclosedFieldStart = enclosedFieldMatcher.start();
+				enclosedFieldEnd = enclosedFieldMatcher.end();
+			} else {
+				enclosedFieldStart = -1;
+				enclosedFieldEnd = -1;
+			}
+		}
+
+		/**
+		 * @return the start of the value of the current column; leading whitespace is excluded if
+		 *         the line contains enclosed fields
+		 */
+		int valueStart() {
+			int start = fieldStart;
+			if (enclosed) {
+				while (start < fieldEnd && line.charAt(start) <= ' ') {
+					start++;
+				}
+			}
+			return start;
+		}
+
+		/**
+		 * @return the end of the value of the current column; trailing whitespace is excluded if
+		 *         the line contains enclosed fields
+		 */
+		int valueEnd() {
+			int end = fieldEnd;
+			if (enclosed) {
+				while (end > fieldStart && line.charAt(end - 1) <= ' ') {
+					end--;
+				}
+			}
+			return end;
+		}
+
+		/**
+		 * @return the text of the current column; trimmed if the line contains enclosed fields
+		 */
+		String field() {
+			int start = valueStart();
+			int end = Math.max(start, valueEnd());
+			if (line instanceof String) {
+				return ((String) line).substring(start, end);
+			}
+			return line.subSequence(start, end).toString();
+		}
+	}
+
+	private static ArrayIndexOutOfBoundsException columnIndexException(int columnIndex, String line, int columnCount) {
+		return new ArrayIndexOutOfBoundsException(String.format(
+				"Column index %d does not exist on line. There are only %d columns on line: %s", columnIndex,
+				columnCount, line));
+	}
+
+}
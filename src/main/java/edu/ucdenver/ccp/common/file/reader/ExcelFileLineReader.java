@@ -35,25 +35,38 @@ package edu.ucdenver.ccp.common.file.reader;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
 
 /**
  * Simple class to read lines from an Excel file. This class assumes that the
  * first line in a header (and uses the header to determine the number of
- * columns in the file).
+ * columns in the file). The entire workbook is loaded into memory; use
+ * {@link StreamingExcelFileLineReader} to read large .xlsx files, or
+ * {@link ExcelWorkbookReader} to read every sheet of a workbook.
+ * <p>
+ * Cells are converted to text according to their type: numeric and date cells
+ * are formatted as displayed by Excel, and formula cells are represented by
+ * their cached result. A row has neither a line terminator nor a byte offset in
+ * the file; every line is reported with {@link LineTerminator#CR} and a byte
+ * offset of -1.
  */
 public class ExcelFileLineReader extends LineReader<Line> {
 
@@ -64,46 +77,117 @@ public class ExcelFileLineReader extends LineReader<Line> {
 	private final Sheet sheet;
 	private long byteOffset = -1;
 
-	
+	/**
+	 * True if the workbook should be closed when this reader is closed
+	 */
+	private final boolean ownsWorkbook;
+
+	/**
+	 * Formats the numeric cells of the sheet; reused for every cell
+	 */
+	private final DataFormatter dataFormatter = new DataFormatter();
+
+	/**
+	 * True if dates in the workbook are stored relative to 1904 rather than 1900
+	 */
+	private final boolean date1904;
+
+	private final StringBuilder lineText = new StringBuilder();
+
 	public ExcelFileLineReader(File file, String skipLinePrefix) throws IOException {
-		this(new FileInputStream(file), skipLinePrefix);
+		this(file, 0, skipLinePrefix);
 	}
-	
+
+	/**
+	 * @param file
+	 * @param sheetIndex
+	 *            the index of the sheet to read
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public ExcelFileLineReader(File file, int sheetIndex, String skipLinePrefix) throws IOException {
+		this(createWorkbook(file), true, sheetIndex, skipLinePrefix);
+	}
+
 	public ExcelFileLineReader(InputStream inputStream, String skipLinePrefix) throws IOException {
+		this(createWorkbook(inputStream), true, 0, skipLinePrefix);
+	}
+
+	/**
+	 * @param wb
+	 * @param ownsWorkbook
+	 *            if true, the workbook is closed when this reader is closed
+	 * @param sheetIndex
+	 * @param skipLinePrefix
+	 */
+	ExcelFileLineReader(Workbook wb, boolean ownsWorkbook, int sheetIndex, String skipLinePrefix) {
 		super(skipLinePrefix);
-		try {
-			wb = WorkbookFactory.create(inputStream);
-		} catch (EncryptedDocumentException | InvalidFormatException e) {
-			throw new IOException(e);
-		}
-		sheet = wb.getSheetAt(0);
+		this.wb = wb;
+		this.ownsWorkbook = ownsWorkbook;
+		sheet = wb.getSheetAt(sheetIndex);
 
 		// use the header row to define the number of columns
 		Row headerRow = sheet.getRow(0);
-		columnCount = headerRow.getLastCellNum();
+		columnCount = (headerRow == null) ? 0 : headerRow.getLastCellNum();
 		rowCount = sheet.getLastRowNum();
+		date1904 = isDate1904(wb);
+	}
+
+	private static boolean isDate1904(Workbook wb) {
+		if (wb instanceof XSSFWorkbook) {
+			return ((XSSFWorkbook) wb).isDate1904();
+		}
+		if (wb instanceof HSSFWorkbook) {
+			return ((HSSFWorkbook) wb).getInternalWorkbook().isUsing1904DateWindowing();
+		}
+		return false;
+	}
+
+	/**
+	 * Loads the workbook stored in the input file. The file is read into memory and closed before
+	 * this method returns.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	static Workbook createWorkbook(File file) throws IOException {
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			return createWorkbook(inputStream);
+		} finally {
+			inputStream.close();
+		}
+	}
 
+	static Workbook createWorkbook(InputStream inputStream) throws IOException {
+		try {
+			return WorkbookFactory.create(inputStream);
+		} catch (EncryptedDocumentException | InvalidFormatException e) {
+			throw new IOException(e);
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
-		wb.close();
-
+		if (ownsWorkbook) {
+			wb.close();
+		}
 	}
 
 	@Override
 	protected Line getNextLine() throws IOException {
-		StringBuffer lineText = new StringBuffer();
+		lineText.setLength(0);
 		String delimiter = "\t";
 		if (currentRow <= rowCount) {
 			Row r = sheet.getRow(currentRow++);
 			for (int col = 0; col < columnCount; col++) {
-				Cell cell = r.getCell(col, MissingCellPolicy.RETURN_BLANK_AS_NULL);
+				Cell cell = (r == null) ? null : r.getCell(col, MissingCellPolicy.RETURN_BLANK_AS_NULL);
 				if (col > 0) {
 					lineText.append(delimiter);
 				}
 				if (cell != null) {
-					lineText.append(cell.getStringCellValue());
+					appendCellValue(cell);
 				}
 			}
 			return new Line(lineText.toString(), LineTerminator.CR, getCharacterOffset(), getCodePointOffset(),
@@ -112,4 +196,37 @@ public class ExcelFileLineReader extends LineReader<Line> {
 		return null;
 	}
 
+	/**
+	 * Appends the text representation of the input cell to the current line
+	 * 
+	 * @param cell
+	 */
+	/* getCellTypeEnum() is deprecated in POI 3.15 but there is no replacement until 4.0 */
+	@SuppressWarnings("deprecation")
+	private void appendCellValue(Cell cell) {
+		CellType cellType = cell.getCellTypeEnum();
+		if (cellType == CellType.FORMULA) {
+			cellType = cell.getCachedFormulaResultTypeEnum();
+		}
+		switch (cellType) {
+		case STRING:
+			lineText.append(cell.getStringCellValue());
+			break;
+		case NUMERIC:
+			CellStyle style = cell.getCellStyle();
+			lineText.append(dataFormatter.formatRawCellContents(cell.getNumericCellValue(), style.getDataFormat(),
+					style.getDataFormatString(), date1904));
+			break;
+		case BOOLEAN:
+			lineText.append(cell.getBooleanCellValue() ? "TRUE" : "FALSE");
+			break;
+		case ERROR:
+			lineText.append("ERROR:").append(FormulaError.forInt(cell.getErrorCellValue()).getString());
+			break;
+		default:
+			/* blank */
+			break;
+		}
+	}
+
 }
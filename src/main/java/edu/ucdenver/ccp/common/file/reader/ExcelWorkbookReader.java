@@ -0,0 +1,274 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * Reads every sheet of an Excel workbook, each sheet through its own {@link LineReader}. The lines
+ * returned for each sheet follow the contract of {@link ExcelFileLineReader}. An .xlsx workbook is
+ * streamed using {@link StreamingExcelFileLineReader}s that share the shared strings and cell
+ * formats of the workbook, which are loaded once; {@link #processSheets(SheetHandler)} then
+ * decodes the sheets concurrently on a {@link ForkJoinPool}. A legacy .xls workbook is loaded into
+ * memory and its sheets are processed one at a time on the calling thread, as the POI workbook
+ * model is not thread-safe.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class ExcelWorkbookReader implements Closeable {
+
+	/**
+	 * Processes the lines of a single sheet. Implementations must be thread-safe, as different
+	 * sheets may be processed concurrently.
+	 */
+	public interface SheetHandler<R> {
+		/**
+		 * @param sheetIndex
+		 * @param sheetName
+		 * @param sheetReader
+		 *            returns the lines of the sheet; closed once this method returns
+		 * @return the result for the sheet
+		 * @throws IOException
+		 */
+		R handleSheet(int sheetIndex, String sheetName, LineReader<Line> sheetReader) throws IOException;
+	}
+
+	private final File file;
+	private final String skipLinePrefix;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Used to stream the sheets of an .xlsx workbook; null for an .xls workbook
+	 */
+	private final XlsxWorkbook xlsxWorkbook;
+
+	/**
+	 * Used to read the sheets of an .xls workbook; null for an .xlsx workbook
+	 */
+	private final Workbook workbook;
+
+	private final List<String> sheetNames;
+
+	/**
+	 * Initializes a new <code>ExcelWorkbookReader</code> that processes sheets on the common
+	 * {@link ForkJoinPool}
+	 *
+	 * @param file
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public ExcelWorkbookReader(File file, String skipLinePrefix) throws IOException {
+		this(file, skipLinePrefix, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes a new <code>ExcelWorkbookReader</code>
+	 *
+	 * @param file
+	 *            an .xlsx or .xls file
+	 * @param skipLinePrefix
+	 * @param pool
+	 *            the pool used to process the sheets of an .xlsx workbook
+	 * @throws IOException
+	 */
+	public ExcelWorkbookReader(File file, String skipLinePrefix, ForkJoinPool pool) throws IOException {
+		this.file = file;
+		this.skipLinePrefix = skipLinePrefix;
+		this.pool = pool;
+		if (file.getName().toLowerCase().endsWith(".xls")) {
+			xlsxWorkbook = null;
+			workbook = ExcelFileLineReader.createWorkbook(file);
+			List<String> names = new ArrayList<String>();
+			for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+				names.add(workbook.getSheetName(i));
+			}
+			sheetNames = Collections.unmodifiableList(names);
+		} else {
+			workbook = null;
+			xlsxWorkbook = new XlsxWorkbook(file, false);
+			sheetNames = xlsxWorkbook.getSheetNames();
+		}
+	}
+
+	/**
+	 * @return true if the sheets of the workbook are streamed rather than loaded into memory
+	 */
+	public boolean isStreaming() {
+		return xlsxWorkbook != null;
+	}
+
+	/**
+	 * @return the names of the sheets in workbook order
+	 */
+	public List<String> getSheetNames() {
+		return sheetNames;
+	}
+
+	public int getSheetCount() {
+		return sheetNames.size();
+	}
+
+	/**
+	 * Returns a new reader over the lines of the specified sheet. Readers of different sheets of an
+	 * .xlsx workbook may be used concurrently. Each reader must be closed, and all readers must be
+	 * closed before this <code>ExcelWorkbookReader</code> is closed.
+	 *
+	 * @param sheetIndex
+	 * @return a reader over the lines of the sheet
+	 * @throws IOException
+	 */
+	public LineReader<Line> getSheetReader(int sheetIndex) throws IOException {
+		if (sheetIndex < 0 || sheetIndex >= sheetNames.size()) {
+			throw new IllegalArgumentException(String.format("Workbook %s does not contain a sheet with index: %d",
+					file.getAbsolutePath(), sheetIndex));
+		}
+		if (xlsxWorkbook != null) {
+			return new StreamingExcelFileLineReader(xlsxWorkbook, false, sheetIndex, skipLinePrefix);
+		}
+		return new ExcelFileLineReader(workbook, false, sheetIndex, skipLinePrefix);
+	}
+
+	/**
+	 * Passes a reader for each sheet of the workbook to the input handler. The sheets of an .xlsx
+	 * workbook are processed concurrently.
+	 *
+	 * @param handler
+	 * @return the result returned by the handler for each sheet, in workbook order
+	 * @throws IOException
+	 *             if the handler fails for any sheet, in which case the processing of the remaining
+	 *             sheets is cancelled
+	 */
+	public <R> List<R> processSheets(final SheetHandler<R> handler) throws IOException {
+		List<R> results = new ArrayList<R>();
+		if (xlsxWorkbook == null) {
+			for (int i = 0; i < sheetNames.size(); i++) {
+				results.add(processSheet(handler, i));
+			}
+			return results;
+		}
+		List<Future<R>> futures = new ArrayList<Future<R>>();
+		for (int i = 0; i < sheetNames.size(); i++) {
+			final int sheetIndex = i;
+			futures.add(pool.submit(new Callable<R>() {
+				@Override
+				public R call() {
+					/*
+					 * the pool wraps checked exceptions in a RuntimeException, so IOExceptions are
+					 * wrapped explicitly and unwrapped by getResult()
+					 */
+					try {
+						return processSheet(handler, sheetIndex);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}));
+		}
+		try {
+			for (Future<R> future : futures) {
+				results.add(getResult(future));
+			}
+		} finally {
+			for (Future<R> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	private <R> R processSheet(SheetHandler<R> handler, int sheetIndex) throws IOException {
+		LineReader<Line> sheetReader = getSheetReader(sheetIndex);
+		try {
+			return handler.handleSheet(sheetIndex, sheetNames.get(sheetIndex), sheetReader);
+		} finally {
+			sheetReader.close();
+		}
+	}
+
+	/**
+	 * Waits for the result of the input future, re-throwing any exception raised while computing
+	 * it
+	 *
+	 * @param future
+	 * @return the result
+	 * @throws IOException
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a sheet to be processed.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (xlsxWorkbook != null) {
+			xlsxWorkbook.close();
+		} else {
+			workbook.close();
+		}
+	}
+
+}
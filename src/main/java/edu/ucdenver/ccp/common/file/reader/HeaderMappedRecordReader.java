@@ -0,0 +1,299 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * Reads the records of a delimited file whose first line is a header, binding each record to an
+ * instance of a class (or interface) whose members are annotated with {@link DelimitedColumn}.
+ * Columns are referenced by name rather than by index, so a file whose columns have been reordered
+ * is still read correctly, and a file that lacks a required column is rejected rather than being
+ * silently misread.
+ * <p>
+ * The column names are resolved to indexes once, when the header is read. Each subsequent line is
+ * parsed by a {@link DelimitedRecordParser} that extracts only the bound columns; blank lines are
+ * ignored. The annotated type is inspected once and the mapper is cached. Records bound to a
+ * class are created and populated through method handles, with no reflective lookups per record;
+ * prefer a class when records are read in bulk. Records bound to an interface are
+ * {@link java.lang.reflect.Proxy} instances, so each call to one of their methods is dispatched
+ * reflectively. For example:
+ * 
+ * <pre>
+ * public interface GeneRecord {
+ * 	&#064;DelimitedColumn(&quot;GeneID&quot;)
+ * 	int getGeneId();
+ * 
+ * 	&#064;DelimitedColumn(&quot;Symbol&quot;)
+ * 	String getSymbol();
+ * }
+ * 
+ * try (HeaderMappedRecordReader&lt;GeneRecord&gt; reader = new HeaderMappedRecordReader&lt;GeneRecord&gt;(file,
+ * 		CharacterEncoding.UTF_8, RegExPatterns.TAB, null, GeneRecord.class)) {
+ * 	for (GeneRecord record = reader.readRecord(); record != null; record = reader.readRecord()) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ * @param <T>
+ */
+public class HeaderMappedRecordReader<T> implements Closeable {
+
+	private final LineReader<?> reader;
+	private final RecordMapper<T> mapper;
+
+	/**
+	 * The column names, in the order in which they appear in the header
+	 */
+	private final String[] header;
+
+	/**
+	 * Extracts the bound columns that are present in the file
+	 */
+	private final DelimitedRecordParser parser;
+
+	/**
+	 * The index into the output of the parser of each column bound by the mapper; -1 for an
+	 * optional column that is absent from the file
+	 */
+	private final int[] parsedColumnPositions;
+
+	/**
+	 * Reused for every line read
+	 */
+	private final MutableLine line = new MutableLine();
+
+	/**
+	 * Initializes a new <code>HeaderMappedRecordReader</code> and reads the header from the input
+	 * <code>LineReader</code>
+	 * 
+	 * @param reader
+	 * @param delimiterRegex
+	 * @param fieldEnclosureRegex
+	 *            may be null
+	 * @param type
+	 *            a class with a no-argument constructor, or an interface, whose members are
+	 *            annotated with {@link DelimitedColumn}
+	 * @throws IOException
+	 *             if the header cannot be read or a required column is not in the header
+	 * @throws IllegalArgumentException
+	 *             if records cannot be bound to the input type
+	 */
+	public HeaderMappedRecordReader(LineReader<?> reader, String delimiterRegex, String fieldEnclosureRegex,
+			Class<T> type) throws IOException, IllegalArgumentException {
+		this.reader = reader;
+		try {
+			this.mapper = RecordMapper.forClass(type);
+			this.header = readHeader(delimiterRegex, fieldEnclosureRegex);
+		} catch (IOException e) {
+			reader.close();
+			throw e;
+		} catch (RuntimeException e) {
+			reader.close();
+			throw e;
+		}
+		String[] columnNames = mapper.getColumnNames();
+		List<Integer> columnIndexes = new ArrayList<Integer>();
+		List<String> missingColumns = new ArrayList<String>();
+		this.parsedColumnPositions = new int[columnNames.length];
+		for (int i = 0; i < columnNames.length; i++) {
+			int columnIndex = getColumnIndex(columnNames[i]);
+			if (columnIndex < 0) {
+				if (!mapper.isOptional(i)) {
+					missingColumns.add(columnNames[i]);
+				}
+				parsedColumnPositions[i] = -1;
+			} else {
+				parsedColumnPositions[i] = columnIndexes.size();
+				columnIndexes.add(columnIndex);
+			}
+		}
+		if (!missingColumns.isEmpty()) {
+			reader.close();
+			throw new IOException(String.format(
+					"Unable to map records to %s. Required columns %s are not in the header: %s", type.getName(),
+					missingColumns, Arrays.toString(header)));
+		}
+		int[] indexes = new int[columnIndexes.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = columnIndexes.get(i);
+		}
+		this.parser = (indexes.length == 0) ? null : new DelimitedRecordParser(delimiterRegex, fieldEnclosureRegex,
+				indexes);
+	}
+
+	/**
+	 * Initializes a new <code>HeaderMappedRecordReader</code> to read from the input
+	 * <code>File</code>. Gzip compressed files (.gz) are decompressed.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param delimiterRegex
+	 * @param fieldEnclosureRegex
+	 *            may be null
+	 * @param type
+	 * @throws IOException
+	 *             if the header cannot be read or a required column is not in the header
+	 * @throws IllegalArgumentException
+	 *             if records cannot be bound to the input type
+	 */
+	public HeaderMappedRecordReader(File inputFile, CharacterEncoding encoding, String delimiterRegex,
+			String fieldEnclosureRegex, Class<T> type) throws IOException, IllegalArgumentException {
+		this(new BlockStreamLineReader(inputFile, encoding), delimiterRegex, fieldEnclosureRegex, type);
+	}
+
+	/**
+	 * Reads the header line
+	 * 
+	 * @return the trimmed column names
+	 * @throws IOException
+	 *             if the input is empty
+	 */
+	private String[] readHeader(String delimiterRegex, String fieldEnclosureRegex) throws IOException {
+		if (!reader.advance(line)) {
+			throw new IOException("Unable to map records as the input is empty; a header line was expected.");
+		}
+		String[] columnNames = new DelimitedRecordParser(delimiterRegex, fieldEnclosureRegex).parse(line);
+		for (int i = 0; i < columnNames.length; i++) {
+			columnNames[i] = columnNames[i].trim();
+		}
+		return columnNames;
+	}
+
+	/**
+	 * @return the column names, in the order in which they appear in the header
+	 */
+	public String[] getHeader() {
+		return header.clone();
+	}
+
+	/**
+	 * @param columnName
+	 * @return the index of the first column in the header with the input name, or -1 if there is
+	 *         no such column
+	 */
+	public int getColumnIndex(String columnName) {
+		for (int i = 0; i < header.length; i++) {
+			if (header[i].equals(columnName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the next record, or null if there are no more records
+	 * @throws IOException
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if a line does not contain one of the bound columns
+	 * @throws NumberFormatException
+	 *             if a value cannot be converted to the type it is bound to
+	 */
+	public T readRecord() throws IOException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		do {
+			if (!reader.advance(line)) {
+				return null;
+			}
+		} while (line.length() == 0);
+		String[] columns = (parser == null) ? new String[0] : parser.parse(line);
+		String[] values = new String[parsedColumnPositions.length];
+		for (int i = 0; i < values.length; i++) {
+			int position = parsedColumnPositions[i];
+			values[i] = (position < 0) ? null : columns[position];
+		}
+		try {
+			return mapper.map(values);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException(String.format("%s on line %d", e.getMessage(), line.getLineNumber()));
+		}
+	}
+
+	/**
+	 * @return a sequential stream over the remaining records. Closing the stream closes this
+	 *         reader.
+	 */
+	public Stream<T> stream() {
+		Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED
+				| Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					T record = readRecord();
+					if (record == null) {
+						return false;
+					}
+					action.accept(record);
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
@@ -126,6 +126,18 @@ public class Line {
 	 */
 	private final LineTerminator lineTerminator;
 
+	/**
+	 * The number of Unicode characters (code points) in the text of this line, or -1 if it was not
+	 * computed by the reader that created this line
+	 */
+	private final int codePointCount;
+
+	/**
+	 * The number of bytes used to encode the text of this line, or -1 if it was not computed by
+	 * the reader that created this line
+	 */
+	private final int byteLength;
+
 	/**
 	 * Initializes a new {@link Line}
 	 * 
@@ -147,6 +159,27 @@ public class Line {
 	 *            was read)
 	 */
 	public Line(String text, LineTerminator lineTerminator, long characterOffset, long codePointOffset, long lineNumber, long byteOffset) {
+		this(text, lineTerminator, characterOffset, codePointOffset, lineNumber, byteOffset, -1, -1);
+	}
+
+	/**
+	 * Initializes a new {@link Line} whose code point count and byte length have already been
+	 * computed, typically while the reader was scanning for the end of the line. This spares the
+	 * {@link LineReader} from re-scanning the text in order to update its offsets.
+	 * 
+	 * @param text
+	 * @param lineTerminator
+	 * @param characterOffset
+	 * @param codePointOffset
+	 * @param lineNumber
+	 * @param byteOffset
+	 * @param codePointCount
+	 *            the number of code points in the text, or -1 if unknown
+	 * @param byteLength
+	 *            the number of bytes used to encode the text, or -1 if unknown
+	 */
+	public Line(String text, LineTerminator lineTerminator, long characterOffset, long codePointOffset,
+			long lineNumber, long byteOffset, int codePointCount, int byteLength) {
 		super();
 		this.text = text;
 		this.lineTerminator = lineTerminator;
@@ -154,6 +187,8 @@ public class Line {
 		this.codePointOffset = codePointOffset;
 		this.lineNumber = lineNumber;
 		this.byteOffset = byteOffset;
+		this.codePointCount = codePointCount;
+		this.byteLength = byteLength;
 	}
 
 	/**
@@ -195,12 +230,34 @@ public class Line {
 
 	/**
 	 * @return the byte offset - the number of bytes from the beginning of the file to the start of
-	 *         the text represented by this line
+	 *         the text represented by this line, counted in the encoding of the file. For a
+	 *         compressed file this is the offset in the uncompressed content. All of the text file
+	 *         readers report the same byte offsets for the same file; readers that do not read
+	 *         bytes (e.g. the Excel readers, or a {@link BlockStreamLineReader} over a
+	 *         <code>Reader</code> of unknown encoding) report -1.
 	 */
 	public long getByteOffset() {
 		return byteOffset;
 	}
 
+	/**
+	 * @return the number of Unicode characters (code points) in the text of this line
+	 */
+	public int getCodePointCount() {
+		if (codePointCount < 0) {
+			return text.codePointCount(0, text.length());
+		}
+		return codePointCount;
+	}
+
+	/**
+	 * @return the number of bytes used to encode the text of this line (excluding the line
+	 *         terminator), or -1 if it was not computed by the reader that created this line
+	 */
+	public int getByteLength() {
+		return byteLength;
+	}
+
 	/**
 	 * Returns a string representation of this line including the line number
 	 */
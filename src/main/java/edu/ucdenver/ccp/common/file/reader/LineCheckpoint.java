@@ -0,0 +1,113 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+/**
+ * A saved position within a file from which a {@link LineReader} can resume reading. A checkpoint
+ * is obtained from {@link LineReader#getCheckpoint()} (or {@link LineIterator#getCheckpoint()})
+ * and passed to a reader's resume constructor, which positions the underlying stream directly at
+ * the checkpoint's byte offset rather than re-reading the preceding lines. Lines read after
+ * resuming carry the same line numbers and offsets as lines read from the beginning of the file.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class LineCheckpoint extends LinePosition {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The checkpoint at the beginning of a file
+	 */
+	public static final LineCheckpoint START = new LineCheckpoint(0, 0, 0, 0);
+
+	/**
+	 * True if the end of the header block had been read when the checkpoint was taken
+	 */
+	private final boolean headerBlockEnded;
+
+	/**
+	 * Initializes a new {@link LineCheckpoint}
+	 * 
+	 * @param byteOffset
+	 *            the number of bytes from the beginning of the file to the start of the next line
+	 *            (in the uncompressed stream if the file is compressed)
+	 * @param characterOffset
+	 *            the number of characters that appear before the next line
+	 * @param codePointOffset
+	 *            the number of Unicode characters (code points) that appear before the next line
+	 * @param lineNumber
+	 *            the (zero-based) line number of the next line
+	 */
+	public LineCheckpoint(long byteOffset, long characterOffset, long codePointOffset, long lineNumber) {
+		this(byteOffset, characterOffset, codePointOffset, lineNumber, false);
+	}
+
+	/**
+	 * Initializes a new {@link LineCheckpoint}
+	 * 
+	 * @param byteOffset
+	 *            the number of bytes from the beginning of the file to the start of the next line
+	 *            (in the uncompressed stream if the file is compressed)
+	 * @param characterOffset
+	 *            the number of characters that appear before the next line
+	 * @param codePointOffset
+	 *            the number of Unicode characters (code points) that appear before the next line
+	 * @param lineNumber
+	 *            the (zero-based) line number of the next line
+	 * @param headerBlockEnded
+	 *            true if a {@link SkipLineFilter} in header block mode has already read the end of
+	 *            the header block, so lines after the checkpoint are no longer checked
+	 */
+	public LineCheckpoint(long byteOffset, long characterOffset, long codePointOffset, long lineNumber,
+			boolean headerBlockEnded) {
+		super(byteOffset, characterOffset, codePointOffset, lineNumber);
+		this.headerBlockEnded = headerBlockEnded;
+	}
+
+	/**
+	 * @return true if the end of the header block had been read when the checkpoint was taken (see
+	 *         {@link SkipLineFilter#asHeaderBlock()})
+	 */
+	public boolean isHeaderBlockEnded() {
+		return headerBlockEnded;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(Line:%d Offset:%d CodePointOffset:%d ByteOffset:%d HeaderBlockEnded:%b)",
+				getLineNumber(), getCharacterOffset(), getCodePointOffset(), getByteOffset(), headerBlockEnded);
+	}
+
+}
@@ -0,0 +1,151 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+/**
+ * Describes a contiguous range of complete lines within a file. A chunk begins at the start of a
+ * line and ends immediately after a line terminator (or at the end of the file). The position of
+ * the first line in the chunk is expressed relative to the beginning of the file so that lines
+ * read from the chunk carry global line numbers and offsets.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class LineChunk {
+
+	/**
+	 * The position of the first line in this chunk
+	 */
+	private final LinePosition start;
+
+	/**
+	 * The file position (exclusive) where this chunk ends
+	 */
+	private final long endByte;
+
+	/**
+	 * The number of lines in this chunk (including lines that may be skipped by a reader)
+	 */
+	private final long lineCount;
+
+	/**
+	 * The number of characters in this chunk, including line terminators
+	 */
+	private final long characterCount;
+
+	/**
+	 * The number of Unicode characters (code points) in this chunk, including line terminators
+	 */
+	private final long codePointCount;
+
+	/**
+	 * Initializes a new {@link LineChunk}
+	 *
+	 * @param start
+	 *            the position of the first line in this chunk
+	 * @param endByte
+	 *            the file position (exclusive) where this chunk ends
+	 * @param lineCount
+	 *            the number of lines in this chunk
+	 * @param characterCount
+	 *            the number of characters in this chunk, including line terminators
+	 * @param codePointCount
+	 *            the number of code points in this chunk, including line terminators
+	 */
+	public LineChunk(LinePosition start, long endByte, long lineCount, long characterCount, long codePointCount) {
+		this.start = start;
+		this.endByte = endByte;
+		this.lineCount = lineCount;
+		this.characterCount = characterCount;
+		this.codePointCount = codePointCount;
+	}
+
+	/**
+	 * @return the position of the first line in this chunk
+	 */
+	public LinePosition getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the file position (exclusive) where this chunk ends
+	 */
+	public long getEndByte() {
+		return endByte;
+	}
+
+	/**
+	 * @return the number of bytes in this chunk
+	 */
+	public long getByteCount() {
+		return endByte - start.getByteOffset();
+	}
+
+	/**
+	 * @return the number of lines in this chunk (including lines that may be skipped by a reader)
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of characters in this chunk, including line terminators
+	 */
+	public long getCharacterCount() {
+		return characterCount;
+	}
+
+	/**
+	 * @return the number of Unicode characters (code points) in this chunk, including line
+	 *         terminators
+	 */
+	public long getCodePointCount() {
+		return codePointCount;
+	}
+
+	/**
+	 * @return the position immediately following the last line in this chunk, i.e. the position of
+	 *         the first line of the next chunk
+	 */
+	public LinePosition getEnd() {
+		return new LinePosition(endByte, start.getCharacterOffset() + characterCount, start.getCodePointOffset()
+				+ codePointCount, start.getLineNumber() + lineCount);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(Chunk start:%s EndByte:%d Lines:%d)", start, endByte, lineCount);
+	}
+
+}
@@ -0,0 +1,358 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * A sparse index mapping line numbers to positions within an uncompressed file. The position of
+ * every Nth line (the sampling interval) is recorded, so a reader can jump to any line by seeking
+ * to the nearest preceding sample and scanning forward at most N-1 lines (see
+ * {@link SeekableFileLineReader}).
+ * <p>
+ * An index is built in a single pass over the file. It can be held in memory or written to a
+ * sidecar file; when loaded from a sidecar file the samples are memory-mapped rather than read
+ * onto the heap so that indexes of very large files can be used cheaply.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class LineIndex {
+
+	/**
+	 * The default number of lines between samples
+	 */
+	public static final int DEFAULT_INTERVAL = 1024;
+
+	/**
+	 * The suffix appended to the name of a file to obtain the name of its default index file
+	 */
+	public static final String INDEX_FILE_SUFFIX = ".lidx";
+
+	private static final long MAGIC_NUMBER = 0x4c494e45494458L;
+
+	private static final long VERSION = 1;
+
+	/**
+	 * The number of longs in the index file header: magic number, version, sampling interval, line
+	 * count, length of the indexed file, sample count
+	 */
+	private static final int HEADER_LENGTH = 6;
+
+	/**
+	 * The number of longs stored per sample: byte offset, character offset, code point offset
+	 */
+	private static final int SAMPLE_LENGTH = 3;
+
+	/**
+	 * The sampled positions, stored as consecutive (byte offset, character offset, code point
+	 * offset) triples. Backed by either a heap array or a memory-mapped index file.
+	 */
+	private final LongBuffer samples;
+
+	private final int sampleCount;
+
+	private final int interval;
+
+	private final long lineCount;
+
+	/**
+	 * The length of the indexed file; used to detect an index that is out of date
+	 */
+	private final long fileLength;
+
+	private LineIndex(LongBuffer samples, int sampleCount, int interval, long lineCount, long fileLength) {
+		this.samples = samples;
+		this.sampleCount = sampleCount;
+		this.interval = interval;
+		this.lineCount = lineCount;
+		this.fileLength = fileLength;
+	}
+
+	/**
+	 * Builds an in-memory index of the input file
+	 * 
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param interval
+	 *            the number of lines between samples
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static LineIndex build(File file, CharacterEncoding encoding, int interval) throws IOException {
+		ArraySampleSink sink = new ArraySampleSink();
+		long lineCount = index(file, encoding, interval, sink);
+		return new LineIndex(LongBuffer.wrap(sink.samples, 0, sink.length), sink.length / SAMPLE_LENGTH, interval,
+				lineCount, file.length());
+	}
+
+	/**
+	 * Builds an index of the input file, writing the samples directly to the specified index file
+	 * as they are observed. This avoids holding the samples on the heap and is appropriate for very
+	 * large files. The index file is memory-mapped once it is complete.
+	 * 
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param interval
+	 *            the number of lines between samples
+	 * @param indexFile
+	 *            the file to write the index to, e.g. {@link #getDefaultIndexFile(File)}
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static LineIndex build(File file, CharacterEncoding encoding, int interval, File indexFile)
+			throws IOException {
+		StreamSampleSink sink = new StreamSampleSink(indexFile);
+		long lineCount;
+		try {
+			lineCount = index(file, encoding, interval, sink);
+		} finally {
+			sink.close();
+		}
+		writeHeader(indexFile, interval, lineCount, file.length(), sink.sampleCount);
+		return load(indexFile);
+	}
+
+	/**
+	 * Reads the input file once, recording the position of every Nth line
+	 * 
+	 * @return the number of lines in the file
+	 */
+	private static long index(File file, CharacterEncoding encoding, int interval, SampleSink sink)
+			throws IOException {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Line index interval must be positive: " + interval);
+		}
+		MappedFileLineReader reader = new MappedFileLineReader(file, encoding, (String) null);
+		long lineCount = 0;
+		try {
+			MutableLine line = new MutableLine();
+			while (reader.advance(line)) {
+				if (lineCount % interval == 0) {
+					sink.add(line.getByteOffset(), line.getCharacterOffset(), line.getCodePointOffset());
+				}
+				lineCount++;
+			}
+		} finally {
+			reader.close();
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Writes this index to the specified file
+	 * 
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void write(File indexFile) throws IOException {
+		StreamSampleSink sink = new StreamSampleSink(indexFile);
+		try {
+			for (int i = 0; i < sampleCount; i++) {
+				int base = i * SAMPLE_LENGTH;
+				sink.add(samples.get(base), samples.get(base + 1), samples.get(base + 2));
+			}
+		} finally {
+			sink.close();
+		}
+		writeHeader(indexFile, interval, lineCount, fileLength, sampleCount);
+	}
+
+	/**
+	 * Loads an index that was previously written to a file. The samples are memory-mapped.
+	 * 
+	 * @param indexFile
+	 * @return the index
+	 * @throws IOException
+	 *             if the file is not a line index
+	 */
+	public static LineIndex load(File indexFile) throws IOException {
+		FileInputStream fis = new FileInputStream(indexFile);
+		try {
+			FileChannel channel = fis.getChannel();
+			if (channel.size() < HEADER_LENGTH * 8) {
+				throw new IOException("File is not a line index: " + indexFile.getAbsolutePath());
+			}
+			LongBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_LENGTH * 8).asLongBuffer();
+			if (header.get(0) != MAGIC_NUMBER || header.get(1) != VERSION) {
+				throw new IOException("File is not a line index (or was written by an incompatible version): "
+						+ indexFile.getAbsolutePath());
+			}
+			int interval = (int) header.get(2);
+			long lineCount = header.get(3);
+			long fileLength = header.get(4);
+			int sampleCount = (int) header.get(5);
+			long sampleBytes = (long) sampleCount * SAMPLE_LENGTH * 8;
+			if (channel.size() < HEADER_LENGTH * 8 + sampleBytes) {
+				throw new IOException("Line index file is truncated: " + indexFile.getAbsolutePath());
+			}
+			/* the mapping remains valid after the channel is closed */
+			LongBuffer samples = channel.map(MapMode.READ_ONLY, HEADER_LENGTH * 8, sampleBytes).asLongBuffer();
+			return new LineIndex(samples, sampleCount, interval, lineCount, fileLength);
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return the default location of the index file for the input file, i.e. a sidecar file
+	 *         alongside it with the {@link #INDEX_FILE_SUFFIX} appended to its name
+	 */
+	public static File getDefaultIndexFile(File file) {
+		return new File(file.getParentFile(), file.getName() + INDEX_FILE_SUFFIX);
+	}
+
+	/**
+	 * @param lineNumber
+	 *            a (zero-based) line number
+	 * @return the position of the closest sampled line at or before the specified line
+	 */
+	public LinePosition getPosition(long lineNumber) {
+		if (lineNumber < 0 || lineNumber >= lineCount) {
+			throw new IllegalArgumentException(String.format("Line number %d is out of range. The file has %d lines.",
+					lineNumber, lineCount));
+		}
+		int sample = (int) (lineNumber / interval);
+		int base = sample * SAMPLE_LENGTH;
+		return new LinePosition(samples.get(base), samples.get(base + 1), samples.get(base + 2), (long) sample
+				* interval);
+	}
+
+	/**
+	 * @param file
+	 * @return true if this index appears to have been built for the input file, i.e. the file
+	 *         length matches the length of the file that was indexed
+	 */
+	public boolean isValidFor(File file) {
+		return file.length() == fileLength;
+	}
+
+	/**
+	 * @return the number of lines in the indexed file
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return the number of lines between samples
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	private static void writeHeader(File indexFile, int interval, long lineCount, long fileLength, int sampleCount)
+			throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH * 8);
+			header.asLongBuffer().put(
+					new long[] { MAGIC_NUMBER, VERSION, interval, lineCount, fileLength, sampleCount });
+			raf.getChannel().write(header, 0);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Receives the sampled positions as the file is indexed
+	 */
+	private static interface SampleSink {
+		public void add(long byteOffset, long characterOffset, long codePointOffset) throws IOException;
+	}
+
+	/**
+	 * Collects samples in a growable primitive array
+	 */
+	private static class ArraySampleSink implements SampleSink {
+		private long[] samples = new long[SAMPLE_LENGTH * 64];
+		private int length = 0;
+
+		@Override
+		public void add(long byteOffset, long characterOffset, long codePointOffset) {
+			if (length + SAMPLE_LENGTH > samples.length) {
+				long[] grown = new long[samples.length * 2];
+				System.arraycopy(samples, 0, grown, 0, length);
+				samples = grown;
+			}
+			samples[length++] = byteOffset;
+			samples[length++] = characterOffset;
+			samples[length++] = codePointOffset;
+		}
+	}
+
+	/**
+	 * Writes samples to an index file, leaving room for the header, which is written once the
+	 * number of samples is known
+	 */
+	private static class StreamSampleSink implements SampleSink {
+		private final DataOutputStream out;
+		private int sampleCount = 0;
+
+		public StreamSampleSink(File indexFile) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+			for (int i = 0; i < HEADER_LENGTH; i++) {
+				out.writeLong(0);
+			}
+		}
+
+		@Override
+		public void add(long byteOffset, long characterOffset, long codePointOffset) throws IOException {
+			out.writeLong(byteOffset);
+			out.writeLong(characterOffset);
+			out.writeLong(codePointOffset);
+			sampleCount++;
+		}
+
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+}
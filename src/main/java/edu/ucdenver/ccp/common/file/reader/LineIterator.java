@@ -36,6 +36,10 @@ package edu.ucdenver.ccp.common.file.reader;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import edu.ucdenver.ccp.common.file.CharacterEncoding;
 
@@ -70,6 +74,16 @@ public abstract class LineIterator<T extends Line> implements Iterator<T> {
 		reader = initLineReader(fileOrStream, encoding, skipLinePrefix);
 	}
 
+	/**
+	 * Initializes a new <code>LineIterator</code> over the lines returned by the input
+	 * <code>LineReader</code>
+	 *
+	 * @param reader
+	 */
+	protected LineIterator(LineReader<T> reader) {
+		this.reader = reader;
+	}
+
 	/**
 	 * Helper method for initializing the <code>LineReader</code>. To be implemented by subclasses
 	 * of <code>LineIterator</code>
@@ -126,6 +140,34 @@ public abstract class LineIterator<T extends Line> implements Iterator<T> {
 				"The remove() operation is not supported by LineIterator and its subclasses.");
 	}
 	
+	/**
+	 * @return a checkpoint from which iteration can be resumed at the line that would be returned
+	 *         by the next call to {@link #next()}
+	 * @throws UnsupportedOperationException
+	 *             if the underlying {@link LineReader} does not support checkpoints
+	 */
+	public LineCheckpoint getCheckpoint() {
+		if (nextLine != null) {
+			return reader.getCheckpoint(nextLine);
+		}
+		return reader.getCheckpoint();
+	}
+
+	/**
+	 * @return a sequential stream over the remaining lines of this iterator. Closing the stream
+	 *         closes this iterator.
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(
+				new Runnable() {
+					@Override
+					public void run() {
+						close();
+					}
+				});
+	}
+
 	public void close() {
 		try {
 			reader.close();
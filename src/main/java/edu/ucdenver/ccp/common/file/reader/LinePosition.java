@@ -0,0 +1,129 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Simple class for defining the position of the start of a line within a larger file. The
+ * position is described using the same offsets that are stored by {@link Line}. Positions are
+ * serializable so that they can be saved and used to resume reading a file (see
+ * {@link LineCheckpoint}).
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class LinePosition implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The position of the beginning of a file
+	 */
+	public static final LinePosition START = new LinePosition(0, 0, 0, 0);
+
+	/**
+	 * The number of bytes from the beginning of the file to the start of the line
+	 */
+	private final long byteOffset;
+
+	/**
+	 * The number of characters that appear before the line
+	 */
+	private final long characterOffset;
+
+	/**
+	 * The number of Unicode characters (code points) that appear before the line
+	 */
+	private final long codePointOffset;
+
+	/**
+	 * The (zero-based) line number of the line
+	 */
+	private final long lineNumber;
+
+	/**
+	 * Initializes a new {@link LinePosition}
+	 *
+	 * @param byteOffset
+	 *            the number of bytes from the beginning of the file to the start of the line
+	 * @param characterOffset
+	 *            the number of characters that appear before the line
+	 * @param codePointOffset
+	 *            the number of Unicode characters (code points) that appear before the line
+	 * @param lineNumber
+	 *            the (zero-based) line number of the line
+	 */
+	public LinePosition(long byteOffset, long characterOffset, long codePointOffset, long lineNumber) {
+		this.byteOffset = byteOffset;
+		this.characterOffset = characterOffset;
+		this.codePointOffset = codePointOffset;
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * @return the number of bytes from the beginning of the file to the start of the line
+	 */
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	/**
+	 * @return the number of characters that appear before the line
+	 */
+	public long getCharacterOffset() {
+		return characterOffset;
+	}
+
+	/**
+	 * @return the number of Unicode characters (code points) that appear before the line
+	 */
+	public long getCodePointOffset() {
+		return codePointOffset;
+	}
+
+	/**
+	 * @return the (zero-based) line number of the line
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(Line:%d Offset:%d CodePointOffset:%d ByteOffset:%d)", lineNumber, characterOffset,
+				codePointOffset, byteOffset);
+	}
+
+}
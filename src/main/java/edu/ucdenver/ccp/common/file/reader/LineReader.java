@@ -51,6 +51,17 @@ public abstract class LineReader<T extends Line> implements Closeable {
 	 */
 	protected final String skipLinePrefix;
 
+	/**
+	 * Decides which lines are skipped; null if no lines are skipped
+	 */
+	private final SkipLineFilter skipLineFilter;
+
+	/**
+	 * Set to true once the first line that is not skipped has been read if the
+	 * {@link SkipLineFilter} is in header block mode, after which lines are no longer checked
+	 */
+	private boolean headerBlockEnded = false;
+
 	/**
 	 * Tracks the character offset for each line (the number of characters to appear before a line)
 	 */
@@ -64,6 +75,11 @@ public abstract class LineReader<T extends Line> implements Closeable {
 	 */
 	private long cumulativeCodePointOffset;
 
+	/**
+	 * If false, code point offsets are not tracked (see {@link #setCodePointTracking(boolean)})
+	 */
+	private boolean codePointTracking = true;
+
 	/**
 	 * Constructor for the abstract LineReader
 	 * 
@@ -72,9 +88,113 @@ public abstract class LineReader<T extends Line> implements Closeable {
 	 *            by the LineReader)
 	 */
 	public LineReader(String skipLinePrefix) {
-		this.cumulativeCharacterOffset = 0;
-		this.cumulativeCodePointOffset = 0;
+		this(skipLinePrefix, 0, 0);
+	}
+
+	/**
+	 * Constructor for a LineReader that begins reading part way through a larger collection of
+	 * lines
+	 * 
+	 * @param skipLinePrefix
+	 *            if a line starts with the skip line prefix, then it is skipped (and not returned
+	 *            by the LineReader)
+	 * @param characterOffset
+	 *            the number of characters that appear before the first line to be read
+	 * @param codePointOffset
+	 *            the number of Unicode characters that appear before the first line to be read
+	 */
+	protected LineReader(String skipLinePrefix, long characterOffset, long codePointOffset) {
+		this(skipLinePrefix, toSkipLineFilter(skipLinePrefix), characterOffset, codePointOffset);
+	}
+
+	/**
+	 * Constructor for a LineReader that uses a {@link SkipLineFilter} to decide which lines are
+	 * skipped
+	 * 
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped (and not returned by the LineReader); may
+	 *            be null if no lines are to be skipped
+	 */
+	public LineReader(SkipLineFilter skipLineFilter) {
+		this(skipLineFilter, 0, 0);
+	}
+
+	/**
+	 * Constructor for a LineReader that uses a {@link SkipLineFilter} and begins reading part way
+	 * through a larger collection of lines
+	 * 
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped (and not returned by the LineReader); may
+	 *            be null if no lines are to be skipped
+	 * @param characterOffset
+	 *            the number of characters that appear before the first line to be read
+	 * @param codePointOffset
+	 *            the number of Unicode characters that appear before the first line to be read
+	 */
+	protected LineReader(SkipLineFilter skipLineFilter, long characterOffset, long codePointOffset) {
+		this(null, skipLineFilter, characterOffset, codePointOffset);
+	}
+
+	/**
+	 * Constructor used by subclasses that accept either a skip line prefix or a
+	 * {@link SkipLineFilter}
+	 * 
+	 * @param skipLinePrefix
+	 *            the skip line prefix, if one was specified (stored for reference only)
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param characterOffset
+	 *            the number of characters that appear before the first line to be read
+	 * @param codePointOffset
+	 *            the number of Unicode characters that appear before the first line to be read
+	 */
+	protected LineReader(String skipLinePrefix, SkipLineFilter skipLineFilter, long characterOffset,
+			long codePointOffset) {
+		this.cumulativeCharacterOffset = characterOffset;
+		this.cumulativeCodePointOffset = codePointOffset;
 		this.skipLinePrefix = skipLinePrefix;
+		this.skipLineFilter = skipLineFilter;
+	}
+
+	/**
+	 * Constructor used by subclasses that begin reading at a saved position. If the position is a
+	 * {@link LineCheckpoint} the header block state saved in the checkpoint is restored.
+	 * 
+	 * @param skipLinePrefix
+	 *            the skip line prefix, if one was specified (stored for reference only)
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param start
+	 *            the position of the first line to be read
+	 * @throws IllegalArgumentException
+	 *             if the filter is in header block mode and the position is part way through the
+	 *             file but is not a {@link LineCheckpoint}, in which case it is not known whether
+	 *             the header block has already ended
+	 */
+	protected LineReader(String skipLinePrefix, SkipLineFilter skipLineFilter, LinePosition start) {
+		this(skipLinePrefix, skipLineFilter, start.getCharacterOffset(), start.getCodePointOffset());
+		if (start instanceof LineCheckpoint) {
+			this.headerBlockEnded = ((LineCheckpoint) start).isHeaderBlockEnded();
+		} else if (skipLineFilter != null && skipLineFilter.isHeaderBlock() && start.getLineNumber() > 0) {
+			throw new IllegalArgumentException("A header block SkipLineFilter can only be used part way through "
+					+ "a file when resuming from a LineCheckpoint: " + start);
+		}
+	}
+
+	/**
+	 * @return true if the {@link SkipLineFilter} is in header block mode and the end of the header
+	 *         block has been read, i.e. lines are no longer being checked
+	 */
+	protected boolean isHeaderBlockEnded() {
+		return headerBlockEnded;
+	}
+
+	/**
+	 * @param skipLinePrefix
+	 * @return a {@link SkipLineFilter} for the skip line prefix, or null if the prefix is null
+	 */
+	protected static SkipLineFilter toSkipLineFilter(String skipLinePrefix) {
+		return (skipLinePrefix == null) ? null : SkipLineFilter.forPrefixes(skipLinePrefix);
 	}
 
 	/**
@@ -90,9 +210,49 @@ public abstract class LineReader<T extends Line> implements Closeable {
 		return line;
 	}
 
+	/**
+	 * Reads the next line into the input {@link MutableLine} rather than creating a new
+	 * {@link Line}. For readers that support it, the text of the line is a view of the reader's
+	 * internal buffer, so lines can be examined (and discarded) without allocating any objects.
+	 * Use {@link MutableLine#toLine()} to keep a line.
+	 * 
+	 * @param line
+	 *            reused by the caller for every line
+	 * @return false if there are no more lines to read
+	 * @throws IOException
+	 *             if there's an error while reading the next line
+	 */
+	public final boolean advance(MutableLine line) throws IOException {
+		if (!scanNextLine(line)) {
+			return false;
+		}
+		updateCharacterOffset(line.length(), codePointTracking ? line.getCodePointCount() : 0,
+				line.getLineTerminator());
+		return true;
+	}
+
+	/**
+	 * Points the input {@link MutableLine} at the next line. This default implementation creates
+	 * a {@link Line} using {@link #getNextLine()}; readers that can expose their internal buffer
+	 * override this method (and typically implement {@link #getNextLine()} in terms of it).
+	 * 
+	 * @param line
+	 * @return false if there are no more lines to read
+	 * @throws IOException
+	 */
+	protected boolean scanNextLine(MutableLine line) throws IOException {
+		T nextLine = getNextLine();
+		if (nextLine == null) {
+			return false;
+		}
+		line.set(nextLine);
+		return true;
+	}
+
 	/**
 	 * Updates the character offset by adding the number of characters in the current line to the
-	 * cumulative count plus the length of the line terminator used
+	 * cumulative count plus the length of the line terminator used. The code point count is taken
+	 * from the line if it was computed by the reader that created it.
 	 * 
 	 * @param line
 	 *            the line whose characters must be counted and added to the cumulative character
@@ -100,12 +260,104 @@ public abstract class LineReader<T extends Line> implements Closeable {
 	 */
 	private void updateCharacterOffset(Line line) {
 		if (line != null) {
-			cumulativeCharacterOffset += (line.getText().toCharArray().length + line.getLineTerminator().length());
-			cumulativeCodePointOffset += (line.getText().codePointCount(0, line.getText().length()) + line
-					.getLineTerminator().terminator().codePointCount(0, line.getLineTerminator().terminator().length()));
+			updateCharacterOffset(line.getText().length(), codePointTracking ? line.getCodePointCount() : 0,
+					line.getLineTerminator());
+		}
+	}
+
+	/**
+	 * Adds the length of the input line text plus the length of its line terminator to the
+	 * cumulative character and code point offsets. Subclasses that skip lines internally can use
+	 * this method to account for the skipped text.
+	 * 
+	 * @param text
+	 *            the text of the line (excluding the line terminator)
+	 * @param lineTerminator
+	 *            the terminator that ended the line
+	 */
+	protected void updateCharacterOffset(CharSequence text, Line.LineTerminator lineTerminator) {
+		updateCharacterOffset(text.length(), codePointTracking ? Character.codePointCount(text, 0, text.length()) : 0,
+				lineTerminator);
+	}
+
+	/**
+	 * Adds the input counts plus the length of the line terminator to the cumulative character and
+	 * code point offsets. Subclasses that compute the counts while scanning for the end of a line
+	 * can use this method to avoid scanning the text again.
+	 * 
+	 * @param charCount
+	 *            the number of chars in the line text (excluding the line terminator)
+	 * @param codePointCount
+	 *            the number of code points in the line text; ignored if code point tracking is
+	 *            disabled
+	 * @param lineTerminator
+	 *            the terminator that ended the line
+	 */
+	protected void updateCharacterOffset(int charCount, int codePointCount, Line.LineTerminator lineTerminator) {
+		/* line terminators are made up of single-char code points */
+		cumulativeCharacterOffset += (charCount + lineTerminator.length());
+		if (codePointTracking) {
+			cumulativeCodePointOffset += (codePointCount + lineTerminator.length());
 		}
 	}
 
+	/**
+	 * @param text
+	 * @return the number of code points in the text, or -1 if code point tracking is disabled
+	 */
+	protected int countCodePoints(CharSequence text) {
+		if (!codePointTracking) {
+			return -1;
+		}
+		return Character.codePointCount(text, 0, text.length());
+	}
+
+	/**
+	 * Enables or disables the tracking of code point offsets. Counting code points requires an
+	 * extra pass over any line that contains non-ASCII characters, so consumers that do not use
+	 * {@link Line#getCodePointOffset()} can disable it. When disabled, lines are returned with a
+	 * code point offset of -1. This method should be called before the first line is read.
+	 * 
+	 * @param codePointTracking
+	 */
+	public void setCodePointTracking(boolean codePointTracking) {
+		this.codePointTracking = codePointTracking;
+	}
+
+	/**
+	 * @return true if code point offsets are being tracked
+	 */
+	public boolean isCodePointTracking() {
+		return codePointTracking;
+	}
+
+	/**
+	 * Returns a checkpoint from which reading can be resumed at the next line, e.g. after a
+	 * failure. Readers that support checkpoints provide a constructor that accepts a
+	 * {@link LineCheckpoint}.
+	 * 
+	 * @return the position of the next line to be read
+	 * @throws UnsupportedOperationException
+	 *             if this reader does not support checkpoints
+	 */
+	public LineCheckpoint getCheckpoint() {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support checkpoints.");
+	}
+
+	/**
+	 * Returns a checkpoint from which reading can be resumed at the most recently read line, i.e.
+	 * the line will be read again. Used by {@link LineIterator}, which reads one line ahead.
+	 * 
+	 * @param lastLine
+	 *            the line most recently returned by {@link #readLine()}
+	 * @return the position of the most recently read line
+	 * @throws UnsupportedOperationException
+	 *             if this reader does not support checkpoints
+	 */
+	protected LineCheckpoint getCheckpoint(T lastLine) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support checkpoints.");
+	}
+
 	/**
 	 * Abstract method that defines how an implementation of LineReader reads a line
 	 * 
@@ -116,15 +368,33 @@ public abstract class LineReader<T extends Line> implements Closeable {
 
 	/**
 	 * This method checks to see if a line should be skipped. It returns true if the line starts
-	 * with the skip line prefix, fale otherwise.
+	 * with the skip line prefix (or is otherwise matched by the {@link SkipLineFilter}), false
+	 * otherwise.
 	 * 
 	 * @param line
 	 * @return
 	 */
 	protected boolean skipLine(String line) {
-		if (skipLinePrefix == null)
+		return skipLine((CharSequence) line);
+	}
+
+	/**
+	 * Checks to see if a line should be skipped without requiring that the line text be copied
+	 * into a String. Implementations should call this method exactly once per line, in order, so
+	 * that header block mode can be tracked.
+	 * 
+	 * @param line
+	 *            the text of the line; may be a view of a reusable buffer
+	 * @return true if the line should be skipped
+	 */
+	protected boolean skipLine(CharSequence line) {
+		if (skipLineFilter == null || headerBlockEnded)
 			return false;
-		return line.trim().startsWith(skipLinePrefix);
+		if (skipLineFilter.skip(line))
+			return true;
+		if (skipLineFilter.isHeaderBlock())
+			headerBlockEnded = true;
+		return false;
 	}
 
 	/**
@@ -136,9 +406,13 @@ public abstract class LineReader<T extends Line> implements Closeable {
 	}
 
 	/**
-	 * @return the cumulative code point offset up to the current line
+	 * @return the cumulative code point offset up to the current line, or -1 if code point
+	 *         tracking is disabled
 	 */
 	protected long getCodePointOffset() {
+		if (!codePointTracking) {
+			return -1;
+		}
 		return cumulativeCodePointOffset;
 	}
 
@@ -0,0 +1,147 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileReaderUtil;
+import edu.ucdenver.ccp.common.io.ReadAheadReader;
+
+/**
+ * The LineReaderEngine enum is used to select the {@link LineReader} implementation used to read
+ * lines from an {@link InputStream}. All engines return {@link Line} objects with the same text,
+ * line terminators, offsets and line numbers.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public enum LineReaderEngine {
+	/**
+	 * Reads one character at a time using {@link StreamLineReader}
+	 */
+	CHARACTER,
+	/**
+	 * Reads large blocks of characters and scans them for line terminators in bulk using
+	 * {@link BlockStreamLineReader}
+	 */
+	BLOCK,
+	/**
+	 * Reads and decodes blocks of characters on a background thread using a
+	 * {@link ReadAheadReader} while the lines of previously decoded blocks are scanned by
+	 * {@link BlockStreamLineReader} on the calling thread. This is worthwhile when reading or
+	 * decompressing the input is expensive, e.g. for gzip compressed files, as the I/O and
+	 * decompression overlap with the processing of lines.
+	 */
+	READ_AHEAD;
+
+	/**
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @return a new {@link LineReader} implemented by this engine
+	 */
+	public LineReader<Line> initLineReader(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix) {
+		switch (this) {
+		case BLOCK:
+			return new BlockStreamLineReader(inputStream, encoding, skipLinePrefix);
+		case READ_AHEAD:
+			return new BlockStreamLineReader(readAhead(FileReaderUtil.initBufferedReader(inputStream, encoding)),
+					encoding, skipLinePrefix, LineCheckpoint.START, BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+		case CHARACTER:
+			return new StreamLineReader(inputStream, encoding, skipLinePrefix);
+		default:
+			throw new IllegalStateException("Unhandled line reader engine: " + this.name());
+		}
+	}
+
+	/**
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @return a new {@link LineReader} implemented by this engine
+	 */
+	public LineReader<Line> initLineReader(InputStream inputStream, CharacterEncoding encoding,
+			SkipLineFilter skipLineFilter) {
+		switch (this) {
+		case BLOCK:
+			return new BlockStreamLineReader(inputStream, encoding, skipLineFilter);
+		case READ_AHEAD:
+			return new BlockStreamLineReader(readAhead(FileReaderUtil.initBufferedReader(inputStream, encoding)),
+					encoding, skipLineFilter, LineCheckpoint.START, BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+		case CHARACTER:
+			return new StreamLineReader(inputStream, encoding, skipLineFilter);
+		default:
+			throw new IllegalStateException("Unhandled line reader engine: " + this.name());
+		}
+	}
+
+	/**
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param checkpoint
+	 *            the position from which to resume reading the file
+	 * @return a new {@link LineReader} implemented by this engine
+	 * @throws IOException
+	 */
+	public LineReader<Line> initLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineCheckpoint checkpoint) throws IOException {
+		switch (this) {
+		case BLOCK:
+			return new BlockStreamLineReader(inputFile, encoding, skipLinePrefix, checkpoint);
+		case READ_AHEAD:
+			return new BlockStreamLineReader(readAhead(FileReaderUtil.initBufferedReader(inputFile, encoding,
+					checkpoint.getByteOffset())), encoding, skipLinePrefix, checkpoint,
+					BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+		case CHARACTER:
+			return new StreamLineReader(inputFile, encoding, skipLinePrefix, checkpoint);
+		default:
+			throw new IllegalStateException("Unhandled line reader engine: " + this.name());
+		}
+	}
+
+	/**
+	 * @param reader
+	 * @return a {@link ReadAheadReader} wrapping the input reader whose buffers match the block size
+	 *         of {@link BlockStreamLineReader}
+	 */
+	private static ReadAheadReader readAhead(Reader reader) {
+		return new ReadAheadReader(reader, ReadAheadReader.DEFAULT_QUEUE_DEPTH, BlockStreamLineReader.DEFAULT_BLOCK_SIZE);
+	}
+}
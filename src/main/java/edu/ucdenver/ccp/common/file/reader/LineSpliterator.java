@@ -0,0 +1,257 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * A {@link Spliterator} over the lines of an uncompressed file. Until it is split, this
+ * spliterator reads the file sequentially using a {@link MappedFileLineReader}. The first call to
+ * {@link #trySplit()} divides the file into {@link LineChunk}s using a
+ * {@link ParallelLineProcessor}, after which the spliterator splits by byte range and every
+ * {@link Line} returned still carries its global line number and offsets. Once split, the
+ * spliterator reports {@link #SIZED} and {@link #SUBSIZED} if no lines are being skipped.
+ * <p>
+ * Readers are opened lazily and closed as soon as they are exhausted. Calling {@link #close()} on
+ * the root spliterator closes any readers left open, e.g. by a short-circuiting stream operation.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class LineSpliterator implements Spliterator<Line>, Closeable {
+
+	private final File file;
+	private final CharacterEncoding encoding;
+	private final String skipLinePrefix;
+
+	/**
+	 * The readers currently open by this spliterator and any spliterators split from it
+	 */
+	private final Set<LineReader<Line>> openReaders;
+
+	/**
+	 * The chunks of the file; null until this spliterator has been split
+	 */
+	private List<LineChunk> chunks = null;
+
+	/**
+	 * The index of the next chunk to read
+	 */
+	private int chunkIndex = 0;
+
+	/**
+	 * One past the index of the last chunk covered by this spliterator
+	 */
+	private int chunkFence = 0;
+
+	/**
+	 * The reader for the current chunk (or the whole file if this spliterator has not been split)
+	 */
+	private LineReader<Line> reader = null;
+
+	/**
+	 * Set to true once traversal has begun, after which this spliterator will no longer split
+	 */
+	private boolean started = false;
+
+	/**
+	 * Initializes a new <code>LineSpliterator</code> over the lines of the input <code>File</code>
+	 *
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 */
+	public LineSpliterator(File file, CharacterEncoding encoding, String skipLinePrefix) {
+		this.file = file;
+		this.encoding = encoding;
+		this.skipLinePrefix = skipLinePrefix;
+		this.openReaders = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Initializes a <code>LineSpliterator</code> over a range of chunks split from a parent
+	 *
+	 * @param parent
+	 * @param origin
+	 *            the index of the first chunk
+	 * @param fence
+	 *            one past the index of the last chunk
+	 */
+	private LineSpliterator(LineSpliterator parent, int origin, int fence) {
+		this.file = parent.file;
+		this.encoding = parent.encoding;
+		this.skipLinePrefix = parent.skipLinePrefix;
+		this.openReaders = parent.openReaders;
+		this.chunks = parent.chunks;
+		this.chunkIndex = origin;
+		this.chunkFence = fence;
+	}
+
+	/**
+	 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+	 */
+	@Override
+	public boolean tryAdvance(Consumer<? super Line> action) {
+		try {
+			while (reader != null || openNextReader()) {
+				Line line = reader.readLine();
+				if (line != null) {
+					action.accept(line);
+					return true;
+				}
+				closeReader();
+			}
+			return false;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens a reader for the next chunk, or for the whole file if this spliterator has not been
+	 * split
+	 *
+	 * @return false if there are no more lines to read
+	 * @throws IOException
+	 */
+	private boolean openNextReader() throws IOException {
+		if (chunks == null) {
+			if (started) {
+				return false;
+			}
+			started = true;
+			reader = new MappedFileLineReader(file, encoding, skipLinePrefix);
+		} else {
+			started = true;
+			if (chunkIndex >= chunkFence) {
+				return false;
+			}
+			LineChunk chunk = chunks.get(chunkIndex++);
+			reader = new MappedFileLineReader(file, encoding, skipLinePrefix, chunk.getStart(), chunk.getEndByte(),
+					MappedFileLineReader.DEFAULT_WINDOW_SIZE);
+		}
+		openReaders.add(reader);
+		return true;
+	}
+
+	/**
+	 * Closes the current reader
+	 *
+	 * @throws IOException
+	 */
+	private void closeReader() throws IOException {
+		openReaders.remove(reader);
+		LineReader<Line> exhaustedReader = reader;
+		reader = null;
+		exhaustedReader.close();
+	}
+
+	/**
+	 * @see java.util.Spliterator#trySplit()
+	 */
+	@Override
+	public Spliterator<Line> trySplit() {
+		if (started) {
+			return null;
+		}
+		if (chunks == null) {
+			try {
+				chunks = new ParallelLineProcessor(file, encoding, skipLinePrefix).getChunks();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			chunkIndex = 0;
+			chunkFence = chunks.size();
+		}
+		int mid = (chunkIndex + chunkFence) >>> 1;
+		if (mid <= chunkIndex) {
+			return null;
+		}
+		LineSpliterator prefix = new LineSpliterator(this, chunkIndex, mid);
+		chunkIndex = mid;
+		return prefix;
+	}
+
+	/**
+	 * @see java.util.Spliterator#estimateSize()
+	 */
+	@Override
+	public long estimateSize() {
+		if (chunks == null) {
+			return Long.MAX_VALUE;
+		}
+		long lineCount = 0;
+		for (int i = chunkIndex; i < chunkFence; i++) {
+			lineCount += chunks.get(i).getLineCount();
+		}
+		return lineCount;
+	}
+
+	/**
+	 * @see java.util.Spliterator#characteristics()
+	 */
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | NONNULL | IMMUTABLE;
+		if (chunks != null && skipLinePrefix == null) {
+			characteristics |= SIZED | SUBSIZED;
+		}
+		return characteristics;
+	}
+
+	/**
+	 * Closes any readers that remain open
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		for (LineReader<Line> openReader : openReaders) {
+			openReaders.remove(openReader);
+			openReader.close();
+		}
+	}
+
+}
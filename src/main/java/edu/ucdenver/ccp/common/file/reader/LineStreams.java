@@ -0,0 +1,149 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileArchiveUtil;
+
+/**
+ * Utility class for creating {@link Stream}s of {@link Line}s. Closing a stream returned by this
+ * class closes the underlying {@link LineReader}(s), so streams should be used in a
+ * try-with-resources block.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class LineStreams {
+
+	/**
+	 * Private constructor; this class should not be instantiated
+	 */
+	/* @formatter:off */
+	private LineStreams() {/* do not instantiate */
+	}
+	/* @formatter:on */
+
+	/**
+	 * Returns a stream over the lines of the input file. Uncompressed files are read using a
+	 * {@link LineSpliterator} that splits the file by byte range when the stream is parallel.
+	 * Compressed files (gzip or .Z, see {@link FileArchiveUtil#isCompressedStream(File)}) cannot be
+	 * split and are decompressed and read sequentially. In either case the lines
+	 * carry the same line numbers and offsets; byte offsets of a compressed file are offsets in its
+	 * uncompressed content.
+	 *
+	 * @param file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 *            lines starting with this prefix are not included in the stream
+	 * @return a stream over the lines of the file
+	 * @throws IOException
+	 */
+	public static Stream<Line> lines(File file, CharacterEncoding encoding, String skipLinePrefix)
+			throws IOException {
+		if (FileArchiveUtil.isCompressedStream(file)) {
+			return lines(new BlockStreamLineReader(file, encoding, skipLinePrefix));
+		}
+		final LineSpliterator spliterator = new LineSpliterator(file, encoding, skipLinePrefix);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					spliterator.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns a sequential stream over the lines of the input stream
+	 *
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLinePrefix
+	 *            lines starting with this prefix are not included in the stream
+	 * @return a stream over the lines of the input stream
+	 */
+	public static Stream<Line> lines(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix) {
+		return lines(new BlockStreamLineReader(inputStream, encoding, skipLinePrefix));
+	}
+
+	/**
+	 * Returns a stream over the lines returned by the input reader. Lines are read sequentially;
+	 * if the stream is parallel, lines are handed off to other threads in batches.
+	 *
+	 * @param reader
+	 * @return a stream over the lines returned by the reader
+	 */
+	public static <T extends Line> Stream<T> lines(final LineReader<T> reader) {
+		Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED
+				| Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				try {
+					T line = reader.readLine();
+					if (line == null) {
+						return false;
+					}
+					action.accept(line);
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,495 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+
+/**
+ * A {@link LineReader} for uncompressed local files that memory-maps the file in windows and
+ * searches for line terminators on the raw bytes. This is possible because, for each of the
+ * {@link CharacterEncoding} values, the CR and LF bytes are never part of a multi-byte character.
+ * Only the line payload is decoded. Because the byte position of each line is known exactly, the
+ * byte offset of each {@link Line} returned is the number of bytes from the beginning of the file
+ * to the first byte of the line.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class MappedFileLineReader extends LineReader<Line> {
+
+	/**
+	 * The default number of bytes mapped into memory at a time
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	/**
+	 * The channel used to map the file into memory
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The file position (exclusive) at which reading stops; the size of the file unless a range of
+	 * the file is being read
+	 */
+	private final long fileSize;
+
+	/**
+	 * The maximum number of bytes to map at a time
+	 */
+	private final int windowSize;
+
+	/**
+	 * Decodes the bytes of each line. Fails loudly if an encoding discrepancy is observed.
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * The currently mapped region of the file
+	 */
+	private MappedByteBuffer window;
+
+	/**
+	 * The file position of the first byte in the current window
+	 */
+	private long windowStart = 0;
+
+	/**
+	 * A view of the current window whose position and limit are used to select the bytes to decode
+	 */
+	private ByteBuffer windowView;
+
+	/**
+	 * The file position of the next byte to read
+	 */
+	private long position = 0;
+
+	/**
+	 * Used to store the line number
+	 */
+	private long lineNumber = 0;
+
+	/**
+	 * Reusable view of the buffer used when lines are read using {@link #getNextLine()}
+	 */
+	private final MutableLine currentLine = new MutableLine();
+
+	/**
+	 * Holds the bytes of a line that spans more than one window
+	 */
+	private byte[] overflow = new byte[0];
+
+	private int overflowLength = 0;
+
+	/**
+	 * Set by {@link #scanLine()}; true if the most recently scanned line contains only ASCII
+	 * characters
+	 */
+	private boolean asciiLine = true;
+
+	/**
+	 * Reusable buffer that decoded line text is written to
+	 */
+	private CharBuffer charBuffer = CharBuffer.allocate(1024);
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> to read the lines in a range of bytes
+	 * from the input <code>File</code>. The range must begin at the start of a line and end
+	 * immediately after a line terminator (or at the end of the file). Lines returned are numbered
+	 * and offset relative to the specified starting position.
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param start
+	 *            the position of the first line in the range
+	 * @param end
+	 *            the file position (exclusive) at which reading stops
+	 * @param windowSize
+	 *            the maximum number of bytes to map into memory at a time
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LinePosition start, long end, int windowSize) throws IOException {
+		this(inputFile, encoding, (skipLinePrefix == null) ? null : SkipLineFilter.forPrefixes(skipLinePrefix), start,
+				end, windowSize);
+	}
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> to read the lines in a range of bytes
+	 * from the input <code>File</code>, skipping lines matched by the input
+	 * {@link SkipLineFilter}. The range must begin at the start of a line and end immediately after
+	 * a line terminator (or at the end of the file).
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param start
+	 *            the position of the first line in the range; must be a {@link LineCheckpoint} if
+	 *            the filter is in header block mode and the range does not begin at the start of
+	 *            the file
+	 * @param end
+	 *            the file position (exclusive) at which reading stops
+	 * @param windowSize
+	 *            the maximum number of bytes to map into memory at a time
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, SkipLineFilter skipLineFilter,
+			LinePosition start, long end, int windowSize) throws IOException {
+		super(null, skipLineFilter, start);
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+		}
+		FileInputStream fis = new FileInputStream(inputFile);
+		this.channel = fis.getChannel();
+		this.fileSize = Math.min(end, channel.size());
+		this.windowSize = windowSize;
+		this.decoder = encoding.getDecoder();
+		this.position = start.getByteOffset();
+		this.lineNumber = start.getLineNumber();
+	}
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> to read from the input <code>File</code>
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param windowSize
+	 *            the maximum number of bytes to map into memory at a time
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix, int windowSize)
+			throws IOException {
+		this(inputFile, encoding, skipLinePrefix, LinePosition.START, Long.MAX_VALUE, windowSize);
+	}
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> to read from the input <code>File</code>
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix) throws IOException {
+		this(inputFile, encoding, skipLinePrefix, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> to read from the input <code>File</code>
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, SkipLineFilter skipLineFilter)
+			throws IOException {
+		this(inputFile, encoding, skipLineFilter, LinePosition.START, Long.MAX_VALUE, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>MappedFileLineReader</code> that resumes reading the input
+	 * <code>File</code> from a checkpoint (or any other {@link LinePosition}, e.g. one obtained
+	 * from a {@link LineIndex})
+	 *
+	 * @param inputFile
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param start
+	 *            the position of the first line to read
+	 * @throws IOException
+	 */
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix, LinePosition start)
+			throws IOException {
+		this(inputFile, encoding, skipLinePrefix, start, Long.MAX_VALUE, DEFAULT_WINDOW_SIZE);
+	}
+
+	public MappedFileLineReader(File inputFile, CharacterEncoding encoding) throws IOException {
+		this(inputFile, encoding, (String) null);
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getNextLine()
+	 */
+	@Override
+	protected Line getNextLine() throws IOException {
+		return scanNextLine(currentLine) ? currentLine.toLine() : null;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#scanNextLine(edu.ucdenver.ccp.common.file.reader.MutableLine)
+	 */
+	@Override
+	protected boolean scanNextLine(MutableLine line) throws IOException {
+		while (position < fileSize) {
+			long lineStart = position;
+			CharBuffer lineText = scanLine();
+			int byteLength = (int) (position - lineStart);
+			LineTerminator lineTerminator = scanLineTerminator();
+			/* the supported encodings are ASCII-compatible so ASCII-only lines have one char per byte */
+			int charCount = lineText.length();
+			int codePointCount = asciiLine ? charCount : countCodePoints(lineText);
+			if (!skipLine(lineText)) {
+				line.set(lineText, lineTerminator, getCharacterOffset(), getCodePointOffset(), lineNumber++, lineStart,
+						codePointCount, byteLength);
+				return true;
+			}
+			lineNumber++;
+			updateCharacterOffset(charCount, codePointCount, lineTerminator);
+		}
+		return false;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint()
+	 */
+	@Override
+	public LineCheckpoint getCheckpoint() {
+		return new LineCheckpoint(position, getCharacterOffset(), getCodePointOffset(), lineNumber,
+				isHeaderBlockEnded());
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint(edu.ucdenver.ccp.common.file.reader.Line)
+	 */
+	@Override
+	protected LineCheckpoint getCheckpoint(Line lastLine) {
+		return new LineCheckpoint(lastLine.getByteOffset(), lastLine.getCharacterOffset(),
+				lastLine.getCodePointOffset(), lastLine.getLineNumber(), isHeaderBlockEnded());
+	}
+
+	/**
+	 * Scans forward from the current position to the next CR or LF byte (or the end of the file)
+	 * and decodes the bytes preceding it. The position is left pointing at the line terminator.
+	 *
+	 * @return the decoded text of the line. The returned buffer is reused and is only valid until
+	 *         the next line is scanned.
+	 * @throws IOException
+	 */
+	private CharBuffer scanLine() throws IOException {
+		long lineStart = position;
+		overflowLength = 0;
+		asciiLine = true;
+		while (position < fileSize) {
+			if (!windowContains(position)) {
+				mapWindow(position);
+			}
+			MappedByteBuffer buf = window;
+			int start = (int) (position - windowStart);
+			int limit = buf.limit();
+			int i = start;
+			/* all bytes are OR'd together to detect lines that contain only ASCII characters */
+			int bits = 0;
+			while (i < limit) {
+				byte b = buf.get(i);
+				if (b == LF || b == CR) {
+					break;
+				}
+				bits |= b;
+				i++;
+			}
+			if (bits < 0) {
+				asciiLine = false;
+			}
+			position = windowStart + i;
+			if (i < limit) {
+				if (overflowLength == 0) {
+					return decode(windowRange(start, i));
+				}
+				appendToOverflow(start, i);
+				return decode(ByteBuffer.wrap(overflow, 0, overflowLength));
+			}
+			if (position >= fileSize) {
+				/* the final line is not terminated */
+				break;
+			}
+			if (overflowLength == 0 && lineStart > windowStart) {
+				/* re-map so that the window starts at the beginning of the line and scan again */
+				mapWindow(lineStart);
+				position = lineStart;
+			} else {
+				appendToOverflow(start, i);
+			}
+		}
+		if (overflowLength == 0) {
+			return decode(windowRange((int) (lineStart - windowStart), (int) (position - windowStart)));
+		}
+		appendToOverflow((int) (Math.max(lineStart, windowStart) - windowStart), (int) (position - windowStart));
+		return decode(ByteBuffer.wrap(overflow, 0, overflowLength));
+	}
+
+	/**
+	 * Consumes the line terminator at the current position
+	 *
+	 * @return the line terminator that ended the most recently scanned line. To remain consistent
+	 *         with {@link StreamLineReader}, LF is returned for a final line that is not terminated.
+	 * @throws IOException
+	 */
+	private LineTerminator scanLineTerminator() throws IOException {
+		if (position >= fileSize) {
+			return LineTerminator.LF;
+		}
+		if (byteAt(position++) == LF) {
+			return LineTerminator.LF;
+		}
+		if (position < fileSize && byteAt(position) == LF) {
+			position++;
+			return LineTerminator.CRLF;
+		}
+		return LineTerminator.CR;
+	}
+
+	/**
+	 * @param filePosition
+	 * @return the byte at the specified file position, mapping a new window if necessary
+	 * @throws IOException
+	 */
+	private byte byteAt(long filePosition) throws IOException {
+		if (!windowContains(filePosition)) {
+			mapWindow(filePosition);
+		}
+		return window.get((int) (filePosition - windowStart));
+	}
+
+	/**
+	 * @param filePosition
+	 * @return true if the specified file position lies within the currently mapped window
+	 */
+	private boolean windowContains(long filePosition) {
+		return window != null && filePosition >= windowStart && filePosition < windowStart + window.limit();
+	}
+
+	/**
+	 * Maps a new window of the file starting at the specified file position
+	 *
+	 * @param filePosition
+	 * @throws IOException
+	 */
+	private void mapWindow(long filePosition) throws IOException {
+		long size = Math.min(windowSize, fileSize - filePosition);
+		window = channel.map(MapMode.READ_ONLY, filePosition, size);
+		windowStart = filePosition;
+		windowView = window.duplicate();
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return a view of the current window limited to the specified range of bytes
+	 */
+	private ByteBuffer windowRange(int start, int end) {
+		windowView.limit(end);
+		windowView.position(start);
+		return windowView;
+	}
+
+	/**
+	 * Copies the specified range of the current window to the end of the overflow buffer
+	 *
+	 * @param start
+	 * @param end
+	 */
+	private void appendToOverflow(int start, int end) {
+		int length = end - start;
+		if (overflowLength + length > overflow.length) {
+			byte[] newOverflow = new byte[Math.max(overflowLength + length, overflow.length * 2)];
+			System.arraycopy(overflow, 0, newOverflow, 0, overflowLength);
+			overflow = newOverflow;
+		}
+		windowRange(start, end).get(overflow, overflowLength, length);
+		overflowLength += length;
+	}
+
+	/**
+	 * Decodes the remaining bytes in the input buffer
+	 *
+	 * @param bytes
+	 * @return the decoded text, written to a reusable buffer
+	 * @throws IOException
+	 *             if the bytes are not valid for the encoding being used
+	 */
+	private CharBuffer decode(ByteBuffer bytes) throws IOException {
+		/* none of the supported encodings produce more chars than bytes */
+		if (charBuffer.capacity() < bytes.remaining()) {
+			charBuffer = CharBuffer.allocate(Math.max(bytes.remaining(), charBuffer.capacity() * 2));
+		}
+		charBuffer.clear();
+		decoder.reset();
+		CoderResult result = decoder.decode(bytes, charBuffer, true);
+		if (result.isError()) {
+			result.throwException();
+		}
+		result = decoder.flush(charBuffer);
+		if (result.isError()) {
+			result.throwException();
+		}
+		charBuffer.flip();
+		return charBuffer;
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		window = null;
+		windowView = null;
+		channel.close();
+	}
+
+}
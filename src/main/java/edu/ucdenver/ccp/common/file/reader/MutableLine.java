@@ -0,0 +1,261 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+
+/**
+ * A reusable, mutable view of a line that is filled in by
+ * {@link LineReader#advance(MutableLine)}. The text of a <code>MutableLine</code> is typically a
+ * view of the reader's internal buffer, so it is only valid until the next call to
+ * <code>advance()</code>. This allows a large file to be filtered without allocating a String or a
+ * {@link Line} for every line; {@link #toLine()} creates an immutable {@link Line} for the lines
+ * that are kept.
+ * 
+ * <pre>
+ * MutableLine line = new MutableLine();
+ * while (reader.advance(line)) {
+ * 	if (line.contains(&quot;ERROR&quot;))
+ * 		errorLines.add(line.toLine());
+ * }
+ * </pre>
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class MutableLine implements CharSequence {
+
+	/**
+	 * The text of the current line; likely a view of a reader's internal buffer
+	 */
+	private CharSequence text = "";
+
+	private LineTerminator lineTerminator = null;
+
+	private long characterOffset = -1;
+
+	private long codePointOffset = -1;
+
+	private long lineNumber = -1;
+
+	private long byteOffset = -1;
+
+	private int codePointCount = -1;
+
+	private int byteLength = -1;
+
+	/**
+	 * Points this <code>MutableLine</code> at a new line. The parameters mirror those of the
+	 * {@link Line} constructor.
+	 * 
+	 * @param text
+	 *            the text of the line; not copied, so it must remain unchanged until the next call
+	 *            to this method
+	 * @param lineTerminator
+	 * @param characterOffset
+	 * @param codePointOffset
+	 * @param lineNumber
+	 * @param byteOffset
+	 * @param codePointCount
+	 *            the number of code points in the text, or -1 if unknown
+	 * @param byteLength
+	 *            the number of bytes used to encode the text, or -1 if unknown
+	 */
+	public void set(CharSequence text, LineTerminator lineTerminator, long characterOffset, long codePointOffset,
+			long lineNumber, long byteOffset, int codePointCount, int byteLength) {
+		this.text = text;
+		this.lineTerminator = lineTerminator;
+		this.characterOffset = characterOffset;
+		this.codePointOffset = codePointOffset;
+		this.lineNumber = lineNumber;
+		this.byteOffset = byteOffset;
+		this.codePointCount = codePointCount;
+		this.byteLength = byteLength;
+	}
+
+	/**
+	 * Points this <code>MutableLine</code> at the contents of an existing {@link Line}
+	 * 
+	 * @param line
+	 */
+	public void set(Line line) {
+		set(line.getText(), line.getLineTerminator(), line.getCharacterOffset(), line.getCodePointOffset(),
+				line.getLineNumber(), line.getByteOffset(), line.getCodePointCount(), line.getByteLength());
+	}
+
+	/**
+	 * @return a new, immutable {@link Line} containing a copy of the current line
+	 */
+	public Line toLine() {
+		return new Line(text.toString(), lineTerminator, characterOffset, codePointOffset, lineNumber, byteOffset,
+				codePointCount, byteLength);
+	}
+
+	/**
+	 * @param s
+	 * @return the index of the first occurrence of the input sequence in the text of the current
+	 *         line, or -1 if it does not occur
+	 */
+	public int indexOf(CharSequence s) {
+		int sLength = s.length();
+		if (sLength == 0) {
+			return 0;
+		}
+		char first = s.charAt(0);
+		int max = text.length() - sLength;
+		for (int i = 0; i <= max; i++) {
+			if (text.charAt(i) != first) {
+				continue;
+			}
+			int j = 1;
+			while (j < sLength && text.charAt(i + j) == s.charAt(j)) {
+				j++;
+			}
+			if (j == sLength) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param s
+	 * @return true if the text of the current line contains the input sequence
+	 */
+	public boolean contains(CharSequence s) {
+		return indexOf(s) >= 0;
+	}
+
+	/**
+	 * @param prefix
+	 * @return true if the text of the current line starts with the input prefix
+	 */
+	public boolean startsWith(CharSequence prefix) {
+		int prefixLength = prefix.length();
+		if (prefixLength > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefixLength; i++) {
+			if (text.charAt(i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @see java.lang.CharSequence#length()
+	 */
+	@Override
+	public int length() {
+		return text.length();
+	}
+
+	/**
+	 * @see java.lang.CharSequence#charAt(int)
+	 */
+	@Override
+	public char charAt(int index) {
+		return text.charAt(index);
+	}
+
+	/**
+	 * @see java.lang.CharSequence#subSequence(int, int)
+	 */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return text.subSequence(start, end);
+	}
+
+	/**
+	 * @return a copy of the text of the current line
+	 */
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+
+	/**
+	 * @return the line terminator found on the current line
+	 */
+	public LineTerminator getLineTerminator() {
+		return lineTerminator;
+	}
+
+	/**
+	 * @return the line number of the current line
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return the character offset of the current line
+	 */
+	public long getCharacterOffset() {
+		return characterOffset;
+	}
+
+	/**
+	 * @return the code point offset of the current line
+	 */
+	public long getCodePointOffset() {
+		return codePointOffset;
+	}
+
+	/**
+	 * @return the byte offset of the current line
+	 */
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	/**
+	 * @return the number of code points in the current line
+	 */
+	public int getCodePointCount() {
+		if (codePointCount < 0) {
+			return Character.codePointCount(text, 0, text.length());
+		}
+		return codePointCount;
+	}
+
+	/**
+	 * @return the number of bytes used to encode the current line, or -1 if unknown
+	 */
+	public int getByteLength() {
+		return byteLength;
+	}
+
+}
@@ -0,0 +1,503 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * Processes the lines of a single large (uncompressed) file in parallel. The file is split into
+ * byte ranges that are aligned to line boundaries ({@link LineChunk}s) and each range is read by
+ * its own {@link MappedFileLineReader} on a {@link ForkJoinPool}. Before any lines are processed,
+ * the lines, characters and code points in each chunk are counted by scanning the raw bytes (also
+ * in parallel). A prefix sum over these counts gives the starting position of each chunk so that
+ * every {@link Line} processed carries the same line number and offsets that it would have if the
+ * file were read sequentially.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class ParallelLineProcessor {
+
+	/**
+	 * The OutputOrder enum is used to specify whether results must be delivered in the order that
+	 * the lines appear in the file.
+	 */
+	public enum OutputOrder {
+		/**
+		 * Results are delivered chunk by chunk as soon as each chunk has been processed
+		 */
+		UNORDERED,
+		/**
+		 * Results are delivered in the order that the lines appear in the file
+		 */
+		ORDERED
+	}
+
+	/**
+	 * Receives each line of the file. Implementations must be thread-safe.
+	 */
+	public interface LineHandler {
+		void handleLine(Line line) throws IOException;
+	}
+
+	/**
+	 * Maps a line to a result. Implementations must be thread-safe. A null result is discarded.
+	 */
+	public interface LineMapper<R> {
+		R mapLine(Line line) throws IOException;
+	}
+
+	/**
+	 * Receives the results produced by a {@link LineMapper}. Results are always delivered on the
+	 * thread that called {@link ParallelLineProcessor#mapLines(LineMapper, ResultHandler, OutputOrder)}
+	 * so implementations need not be thread-safe.
+	 */
+	public interface ResultHandler<R> {
+		void handleResult(R result) throws IOException;
+	}
+
+	/**
+	 * The number of bytes mapped into memory at a time when counting the contents of a chunk
+	 */
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	private final File file;
+	private final CharacterEncoding encoding;
+	private final String skipLinePrefix;
+	private final ForkJoinPool pool;
+	private final int chunkCount;
+
+	/**
+	 * The chunks of the file, computed the first time they are needed
+	 */
+	private List<LineChunk> chunks = null;
+
+	/**
+	 * Initializes a new <code>ParallelLineProcessor</code> that uses the common
+	 * {@link ForkJoinPool} and splits the file into four chunks per available thread
+	 *
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 */
+	public ParallelLineProcessor(File file, CharacterEncoding encoding, String skipLinePrefix) {
+		this(file, encoding, skipLinePrefix, ForkJoinPool.commonPool(), 4 * ForkJoinPool.commonPool()
+				.getParallelism());
+	}
+
+	/**
+	 * Initializes a new <code>ParallelLineProcessor</code>
+	 *
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param pool
+	 *            the pool used to process the chunks of the file
+	 * @param chunkCount
+	 *            the (maximum) number of chunks to split the file into
+	 */
+	public ParallelLineProcessor(File file, CharacterEncoding encoding, String skipLinePrefix, ForkJoinPool pool,
+			int chunkCount) {
+		if (chunkCount < 1) {
+			throw new IllegalArgumentException("Chunk count must be positive: " + chunkCount);
+		}
+		this.file = file;
+		this.encoding = encoding;
+		this.skipLinePrefix = skipLinePrefix;
+		this.pool = pool;
+		this.chunkCount = chunkCount;
+	}
+
+	/**
+	 * @return the chunks that the file is split into, in file order. Chunks for files with fewer
+	 *         lines than the requested chunk count are merged, so fewer chunks may be returned.
+	 * @throws IOException
+	 */
+	public synchronized List<LineChunk> getChunks() throws IOException {
+		if (chunks == null) {
+			chunks = Collections.unmodifiableList(computeChunks());
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return the number of lines in the file (including lines that would be skipped)
+	 * @throws IOException
+	 */
+	public long getLineCount() throws IOException {
+		long lineCount = 0;
+		for (LineChunk chunk : getChunks()) {
+			lineCount += chunk.getLineCount();
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Passes every line of the file to the input handler. Lines are processed concurrently, in no
+	 * particular order.
+	 *
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void forEachLine(final LineHandler handler) throws IOException {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final LineChunk chunk : getChunks()) {
+			futures.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					MappedFileLineReader reader = initLineReader(chunk);
+					try {
+						Line line;
+						while ((line = reader.readLine()) != null) {
+							handler.handleLine(line);
+						}
+					} finally {
+						reader.close();
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Void> future : futures) {
+				getResult(future);
+			}
+		} finally {
+			cancel(futures);
+		}
+	}
+
+	/**
+	 * Maps every line of the file to a result in parallel and passes the results to the input
+	 * result handler on the calling thread. No more than two chunks per pool thread are in flight
+	 * at any one time, which bounds the number of results held in memory.
+	 *
+	 * @param mapper
+	 *            maps each line to a result; invoked concurrently
+	 * @param resultHandler
+	 *            receives the non-null results; invoked on the calling thread only
+	 * @param order
+	 *            if {@link OutputOrder#ORDERED}, results are delivered in file order, e.g. so that
+	 *            output written by the result handler is deterministic
+	 * @throws IOException
+	 */
+	public <R> void mapLines(final LineMapper<R> mapper, ResultHandler<R> resultHandler, OutputOrder order)
+			throws IOException {
+		List<LineChunk> fileChunks = getChunks();
+		int maxInFlight = Math.max(2, 2 * pool.getParallelism());
+		CompletionService<List<R>> completionService = new ExecutorCompletionService<List<R>>(pool);
+		Deque<Future<List<R>>> inFlight = new ArrayDeque<Future<List<R>>>();
+		int nextChunk = 0;
+		try {
+			while (nextChunk < fileChunks.size() || !inFlight.isEmpty()) {
+				while (nextChunk < fileChunks.size() && inFlight.size() < maxInFlight) {
+					final LineChunk chunk = fileChunks.get(nextChunk++);
+					Callable<List<R>> task = new Callable<List<R>>() {
+						@Override
+						public List<R> call() throws Exception {
+							return mapChunk(chunk, mapper);
+						}
+					};
+					inFlight.add(order == OutputOrder.ORDERED ? pool.submit(task) : completionService.submit(task));
+				}
+				Future<List<R>> completed;
+				if (order == OutputOrder.ORDERED) {
+					completed = inFlight.removeFirst();
+				} else {
+					completed = takeCompleted(completionService);
+					inFlight.remove(completed);
+				}
+				for (R result : getResult(completed)) {
+					resultHandler.handleResult(result);
+				}
+			}
+		} finally {
+			cancel(inFlight);
+		}
+	}
+
+	/**
+	 * @param chunk
+	 * @param mapper
+	 * @return the non-null results of mapping each line in the chunk
+	 * @throws IOException
+	 */
+	private <R> List<R> mapChunk(LineChunk chunk, LineMapper<R> mapper) throws IOException {
+		List<R> results = new ArrayList<R>();
+		MappedFileLineReader reader = initLineReader(chunk);
+		try {
+			Line line;
+			while ((line = reader.readLine()) != null) {
+				R result = mapper.mapLine(line);
+				if (result != null) {
+					results.add(result);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return results;
+	}
+
+	/**
+	 * @param chunk
+	 * @return a {@link MappedFileLineReader} that reads the lines of the specified chunk
+	 * @throws IOException
+	 */
+	public MappedFileLineReader initLineReader(LineChunk chunk) throws IOException {
+		return new MappedFileLineReader(file, encoding, skipLinePrefix, chunk.getStart(), chunk.getEndByte(),
+				MappedFileLineReader.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Splits the file into ranges aligned to line boundaries, counts the contents of each range in
+	 * parallel, and then computes the starting position of each range using a prefix sum
+	 *
+	 * @return the chunks of the file in file order
+	 * @throws IOException
+	 */
+	private List<LineChunk> computeChunks() throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long fileSize = channel.size();
+			List<Long> boundaries = new ArrayList<Long>();
+			boundaries.add(0L);
+			for (int i = 1; i < chunkCount; i++) {
+				long boundary = alignToLineStart(channel, (fileSize / chunkCount) * i, fileSize);
+				if (boundary > boundaries.get(boundaries.size() - 1) && boundary < fileSize) {
+					boundaries.add(boundary);
+				}
+			}
+			boundaries.add(fileSize);
+
+			List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+			for (int i = 0; i < boundaries.size() - 1; i++) {
+				final long start = boundaries.get(i);
+				final long end = boundaries.get(i + 1);
+				futures.add(pool.submit(new Callable<long[]>() {
+					@Override
+					public long[] call() throws Exception {
+						return countChunkContents(channel, start, end);
+					}
+				}));
+			}
+
+			List<LineChunk> lineChunks = new ArrayList<LineChunk>();
+			LinePosition position = LinePosition.START;
+			try {
+				for (int i = 0; i < futures.size(); i++) {
+					long[] counts = getResult(futures.get(i));
+					LineChunk chunk = new LineChunk(position, boundaries.get(i + 1), counts[0], counts[1], counts[2]);
+					lineChunks.add(chunk);
+					position = chunk.getEnd();
+				}
+			} finally {
+				cancel(futures);
+			}
+			return lineChunks;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param channel
+	 * @param position
+	 * @param fileSize
+	 * @return the position of the start of the first line that begins at or after the input
+	 *         position
+	 * @throws IOException
+	 */
+	private static long alignToLineStart(FileChannel channel, long position, long fileSize) throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		/* start one byte early in case the input position already follows a line terminator */
+		long filePosition = position - 1;
+		boolean previousWasCR = false;
+		while (filePosition < fileSize) {
+			buffer.clear();
+			int count = channel.read(buffer, filePosition);
+			if (count <= 0) {
+				break;
+			}
+			for (int i = 0; i < count; i++) {
+				byte b = buffer.get(i);
+				if (previousWasCR) {
+					return (b == LF) ? filePosition + i + 1 : filePosition + i;
+				}
+				if (b == LF) {
+					return filePosition + i + 1;
+				}
+				previousWasCR = (b == CR);
+			}
+			filePosition += count;
+		}
+		return fileSize;
+	}
+
+	/**
+	 * Counts the lines, characters and code points in a range of the file by scanning the raw
+	 * bytes. Line terminators are included in the character and code point counts.
+	 *
+	 * @param channel
+	 * @param start
+	 * @param end
+	 * @return {lineCount, characterCount, codePointCount}
+	 * @throws IOException
+	 */
+	private long[] countChunkContents(FileChannel channel, long start, long end) throws IOException {
+		boolean isUtf8 = (encoding == CharacterEncoding.UTF_8);
+		long terminatorCount = 0;
+		long crlfCount = 0;
+		long codePointCount = 0;
+		long supplementaryCount = 0;
+		byte previous = 0;
+		for (long windowStart = start; windowStart < end; windowStart += WINDOW_SIZE) {
+			int size = (int) Math.min(WINDOW_SIZE, end - windowStart);
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, windowStart, size);
+			for (int i = 0; i < size; i++) {
+				byte b = window.get(i);
+				if (b == LF) {
+					terminatorCount++;
+					if (previous == CR) {
+						crlfCount++;
+					}
+				} else if (b == CR) {
+					terminatorCount++;
+				}
+				if (isUtf8) {
+					if ((b & 0xC0) != 0x80) {
+						codePointCount++;
+					}
+					if ((b & 0xF8) == 0xF0) {
+						/* four-byte sequences are represented by a surrogate pair */
+						supplementaryCount++;
+					}
+				}
+				previous = b;
+			}
+		}
+		long lineCount = terminatorCount - crlfCount;
+		if (end > start && previous != LF && previous != CR) {
+			/* the final line of the file is not terminated */
+			lineCount++;
+		}
+		if (!isUtf8) {
+			codePointCount = end - start;
+		}
+		return new long[] { lineCount, codePointCount + supplementaryCount, codePointCount };
+	}
+
+	/**
+	 * @param completionService
+	 * @return the next completed future
+	 * @throws IOException
+	 */
+	private static <T> Future<T> takeCompleted(CompletionService<T> completionService) throws IOException {
+		try {
+			return completionService.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a chunk to be processed.");
+		}
+	}
+
+	/**
+	 * Waits for the result of the input future, re-throwing any exception raised while computing
+	 * it
+	 *
+	 * @param future
+	 * @return the result
+	 * @throws IOException
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a chunk to be processed.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Cancels any of the input futures that have not yet completed
+	 *
+	 * @param futures
+	 */
+	private static void cancel(Iterable<? extends Future<?>> futures) {
+		for (Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+}
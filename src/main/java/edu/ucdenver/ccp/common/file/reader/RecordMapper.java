@@ -0,0 +1,355 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ucdenver.ccp.common.string.NumberParsingUtil;
+
+/**
+ * Binds the column values of a record to an instance of a class whose member variables are
+ * annotated with {@link DelimitedColumn}, or to a proxy implementing an interface whose methods are
+ * annotated. The annotations are inspected, and method handles for the constructor and member
+ * variables are looked up, once per class; the resulting mapper is cached.
+ * <p>
+ * Records bound to a class are created and populated through the cached method handles. Records
+ * bound to an interface are {@link Proxy} instances created through a cached method handle for the
+ * proxy constructor, but every call to one of their methods is dispatched through an
+ * <code>InvocationHandler</code> and a lookup of the column bound to the method.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ * @param <T>
+ */
+final class RecordMapper<T> {
+
+	private static final ClassValue<RecordMapper<?>> MAPPERS = new ClassValue<RecordMapper<?>>() {
+		@Override
+		protected RecordMapper<?> computeValue(Class<?> type) {
+			return new RecordMapper<Object>(type);
+		}
+	};
+
+	/**
+	 * Converts a column value to the type of the member variable or method it is bound to
+	 */
+	private enum Conversion {
+		STRING, INT, LONG, DOUBLE, BOOLEAN;
+
+		static Conversion forType(Class<?> type) {
+			if (type == String.class) {
+				return STRING;
+			} else if (type == int.class || type == Integer.class) {
+				return INT;
+			} else if (type == long.class || type == Long.class) {
+				return LONG;
+			} else if (type == double.class || type == Double.class) {
+				return DOUBLE;
+			} else if (type == boolean.class || type == Boolean.class) {
+				return BOOLEAN;
+			}
+			return null;
+		}
+
+		Object convert(String value) {
+			switch (this) {
+			case INT:
+				return NumberParsingUtil.parseInt(value, 0, value.length());
+			case LONG:
+				return NumberParsingUtil.parseLong(value, 0, value.length());
+			case DOUBLE:
+				return NumberParsingUtil.parseDouble(value, 0, value.length());
+			case BOOLEAN:
+				return Boolean.valueOf(value);
+			default:
+				return value;
+			}
+		}
+	}
+
+	private final Class<?> type;
+	private final String[] columnNames;
+	private final boolean[] optional;
+	private final Class<?>[] valueTypes;
+	private final Conversion[] conversions;
+
+	/**
+	 * For a class, invokes the no-argument constructor; for an interface, invokes the proxy
+	 * constructor with an <code>InvocationHandler</code>
+	 */
+	private final MethodHandle constructor;
+
+	/**
+	 * Sets the member variable bound to each column; null for an interface
+	 */
+	private final MethodHandle[] setters;
+
+	/**
+	 * The index of the column bound to each method; null for a class
+	 */
+	private final Map<Method, Integer> methodIndexes;
+
+	/**
+	 * @param type
+	 * @return the (cached) mapper for the input type
+	 * @throws IllegalArgumentException
+	 *             if the type cannot be mapped
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> RecordMapper<T> forClass(Class<T> type) {
+		return (RecordMapper<T>) MAPPERS.get(type);
+	}
+
+	private RecordMapper(Class<?> type) {
+		this.type = type;
+		List<String> names = new ArrayList<String>();
+		List<Boolean> optionalFlags = new ArrayList<Boolean>();
+		List<Class<?>> types = new ArrayList<Class<?>>();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			if (type.isInterface()) {
+				methodIndexes = new HashMap<Method, Integer>();
+				for (Method method : type.getMethods()) {
+					DelimitedColumn column = method.getAnnotation(DelimitedColumn.class);
+					if (column != null) {
+						if (method.getParameterTypes().length > 0) {
+							throw new IllegalArgumentException(String.format(
+									"Method %s of %s is bound to a column so it cannot have parameters.",
+									method.getName(), type.getName()));
+						}
+						methodIndexes.put(method, names.size());
+						addColumn(column, method.getReturnType(), method.getName(), names, optionalFlags, types);
+					}
+				}
+				/* the proxy class is generated (and cached by Proxy) when the first instance is created */
+				Class<?> proxyClass = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+						new RecordInvocationHandler(new Object[0])).getClass();
+				Constructor<?> proxyConstructor = proxyClass.getConstructor(InvocationHandler.class);
+				proxyConstructor.setAccessible(true);
+				constructor = lookup.unreflectConstructor(proxyConstructor).asType(
+						MethodType.methodType(Object.class, InvocationHandler.class));
+				setters = null;
+			} else {
+				List<MethodHandle> fieldSetters = new ArrayList<MethodHandle>();
+				for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						DelimitedColumn column = field.getAnnotation(DelimitedColumn.class);
+						if (column != null && !Modifier.isStatic(field.getModifiers())) {
+							addColumn(column, field.getType(), field.getName(), names, optionalFlags, types);
+							field.setAccessible(true);
+							fieldSetters.add(lookup.unreflectSetter(field).asType(
+									MethodType.methodType(void.class, Object.class, Object.class)));
+						}
+					}
+				}
+				Constructor<?> noArgConstructor = type.getDeclaredConstructor();
+				noArgConstructor.setAccessible(true);
+				constructor = lookup.unreflectConstructor(noArgConstructor).asType(
+						MethodType.methodType(Object.class));
+				setters = fieldSetters.toArray(new MethodHandle[fieldSetters.size()]);
+				methodIndexes = null;
+			}
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(String.format(
+					"Records cannot be mapped to %s as it does not have a no-argument constructor.", type.getName()),
+					e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(String.format("Records cannot be mapped to %s: %s", type.getName(),
+					e.getMessage()), e);
+		}
+		if (names.isEmpty()) {
+			throw new IllegalArgumentException(String.format(
+					"Records cannot be mapped to %s as none of its members are annotated with @%s.", type.getName(),
+					DelimitedColumn.class.getSimpleName()));
+		}
+		this.columnNames = names.toArray(new String[names.size()]);
+		this.optional = new boolean[names.size()];
+		this.valueTypes = types.toArray(new Class<?>[types.size()]);
+		this.conversions = new Conversion[names.size()];
+		for (int i = 0; i < optional.length; i++) {
+			optional[i] = optionalFlags.get(i);
+			conversions[i] = Conversion.forType(valueTypes[i]);
+		}
+	}
+
+	private void addColumn(DelimitedColumn column, Class<?> valueType, String memberName, List<String> names,
+			List<Boolean> optionalFlags, List<Class<?>> types) {
+		if (Conversion.forType(valueType) == null) {
+			throw new IllegalArgumentException(String.format("Member %s of %s has an unsupported type: %s",
+					memberName, type.getName(), valueType.getName()));
+		}
+		names.add(column.value());
+		optionalFlags.add(column.optional());
+		types.add(valueType);
+	}
+
+	/**
+	 * @return the names of the columns bound by this mapper
+	 */
+	String[] getColumnNames() {
+		return columnNames.clone();
+	}
+
+	/**
+	 * @param index
+	 * @return true if the column may be absent from the file
+	 */
+	boolean isOptional(int index) {
+		return optional[index];
+	}
+
+	/**
+	 * Creates a new record from the input column values
+	 * 
+	 * @param values
+	 *            indexed in the order of {@link #getColumnNames()}; null for a column that is
+	 *            absent from the file
+	 * @return
+	 * @throws NumberFormatException
+	 *             if a value cannot be converted to the required type
+	 */
+	T map(String[] values) throws NumberFormatException {
+		Object[] convertedValues = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			convertedValues[i] = convert(i, values[i]);
+		}
+		try {
+			if (setters == null) {
+				return cast(constructor.invokeExact((InvocationHandler) new RecordInvocationHandler(convertedValues)));
+			}
+			Object record = constructor.invokeExact();
+			for (int i = 0; i < setters.length; i++) {
+				if (convertedValues[i] != null) {
+					setters[i].invokeExact(record, convertedValues[i]);
+				}
+			}
+			return cast(record);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new IllegalStateException(String.format("Unable to create a new %s.", type.getName()), t);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T cast(Object record) {
+		return (T) record;
+	}
+
+	private Object convert(int index, String value) throws NumberFormatException {
+		if (value == null) {
+			return valueTypes[index].isPrimitive() ? defaultValue(valueTypes[index]) : null;
+		}
+		if (conversions[index] == Conversion.STRING) {
+			return value;
+		}
+		String trimmedValue = value.trim();
+		if (trimmedValue.isEmpty() && !valueTypes[index].isPrimitive()) {
+			return null;
+		}
+		try {
+			return conversions[index].convert(trimmedValue);
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException(String.format("Invalid %s value for column \"%s\": \"%s\"",
+					valueTypes[index].getSimpleName(), columnNames[index], value));
+		}
+	}
+
+	private static Object defaultValue(Class<?> primitiveType) {
+		if (primitiveType == int.class) {
+			return 0;
+		} else if (primitiveType == long.class) {
+			return 0L;
+		} else if (primitiveType == double.class) {
+			return 0.0;
+		}
+		return false;
+	}
+
+	/**
+	 * Implements the annotated methods of an interface by returning the values of a record
+	 */
+	private final class RecordInvocationHandler implements InvocationHandler {
+
+		private final Object[] values;
+
+		RecordInvocationHandler(Object[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			Integer index = methodIndexes.get(method);
+			if (index != null) {
+				return values[index];
+			}
+			if (method.getDeclaringClass() == Object.class) {
+				if (method.getName().equals("equals")) {
+					return proxy == args[0];
+				} else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (method.getName().equals("toString")) {
+					return toString();
+				}
+			}
+			throw new UnsupportedOperationException(String.format(
+					"Method %s is not bound to a column so it is not supported by %s records.", method.getName(),
+					type.getName()));
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(type.getSimpleName()).append(" [");
+			for (int i = 0; i < values.length; i++) {
+				sb.append((i == 0) ? "" : ", ").append(columnNames[i]).append("=").append(values[i]);
+			}
+			return sb.append("]").toString();
+		}
+	}
+
+}
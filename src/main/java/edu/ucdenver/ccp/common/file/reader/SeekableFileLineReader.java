@@ -0,0 +1,192 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * A {@link LineReader} for an uncompressed file that can jump directly to a line using a
+ * {@link LineIndex}. After a call to {@link #seek(long)}, the lines returned (and their offsets)
+ * are identical to those that would have been returned by reading the file from the beginning.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class SeekableFileLineReader extends LineReader<Line> {
+
+	private final File file;
+
+	private final CharacterEncoding encoding;
+
+	private final LineIndex index;
+
+	/**
+	 * Reads the lines from the current position onward
+	 */
+	private MappedFileLineReader reader;
+
+	/**
+	 * Initializes a new <code>SeekableFileLineReader</code> positioned at the beginning of the
+	 * input <code>File</code>
+	 * 
+	 * @param file
+	 *            an uncompressed file
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param index
+	 *            an index of the file
+	 * @throws IOException
+	 */
+	public SeekableFileLineReader(File file, CharacterEncoding encoding, String skipLinePrefix, LineIndex index)
+			throws IOException {
+		super(skipLinePrefix);
+		if (!index.isValidFor(file)) {
+			throw new IllegalArgumentException("Line index is out of date for file: " + file.getAbsolutePath());
+		}
+		this.file = file;
+		this.encoding = encoding;
+		this.index = index;
+		this.reader = new MappedFileLineReader(file, encoding, skipLinePrefix);
+	}
+
+	/**
+	 * Positions this reader so that the next line read is the specified line (or, if that line is
+	 * skipped, the first line after it that is not skipped)
+	 * 
+	 * @param lineNumber
+	 *            the (zero-based) line number
+	 * @throws IOException
+	 */
+	public void seek(long lineNumber) throws IOException {
+		LinePosition position = index.getPosition(lineNumber);
+		if (position.getLineNumber() < lineNumber) {
+			position = scanForward(position, lineNumber);
+		}
+		MappedFileLineReader seekReader = new MappedFileLineReader(file, encoding, skipLinePrefix, position,
+				Long.MAX_VALUE, MappedFileLineReader.DEFAULT_WINDOW_SIZE);
+		seekReader.setCodePointTracking(isCodePointTracking());
+		reader.close();
+		reader = seekReader;
+	}
+
+	/**
+	 * Reads forward from a sampled position to find the position of the specified line
+	 * 
+	 * @param position
+	 *            a position before the specified line
+	 * @param lineNumber
+	 * @return the position of the specified line
+	 * @throws IOException
+	 */
+	private LinePosition scanForward(LinePosition position, long lineNumber) throws IOException {
+		MappedFileLineReader scanner = new MappedFileLineReader(file, encoding, (String) null, position,
+				Long.MAX_VALUE, MappedFileLineReader.DEFAULT_WINDOW_SIZE);
+		MutableLine line = new MutableLine();
+		try {
+			while (scanner.advance(line) && line.getLineNumber() < lineNumber - 1) {
+				/* scan to the line preceding the target line */
+			}
+		} finally {
+			scanner.close();
+		}
+		/*
+		 * the preceding line is terminated since the target line exists, and line terminators are
+		 * encoded with one byte per character in the supported encodings
+		 */
+		int terminatorLength = line.getLineTerminator().length();
+		return new LinePosition(line.getByteOffset() + line.getByteLength() + terminatorLength,
+				line.getCharacterOffset() + line.length() + terminatorLength, line.getCodePointOffset()
+						+ line.getCodePointCount() + terminatorLength, lineNumber);
+	}
+
+	/**
+	 * @return the index used by this reader
+	 */
+	public LineIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getNextLine()
+	 */
+	@Override
+	protected Line getNextLine() throws IOException {
+		return reader.readLine();
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#scanNextLine(edu.ucdenver.ccp.common.file.reader.MutableLine)
+	 */
+	@Override
+	protected boolean scanNextLine(MutableLine line) throws IOException {
+		return reader.advance(line);
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint()
+	 */
+	@Override
+	public LineCheckpoint getCheckpoint() {
+		return reader.getCheckpoint();
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint(edu.ucdenver.ccp.common.file.reader.Line)
+	 */
+	@Override
+	protected LineCheckpoint getCheckpoint(Line lastLine) {
+		return reader.getCheckpoint(lastLine);
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#setCodePointTracking(boolean)
+	 */
+	@Override
+	public void setCodePointTracking(boolean codePointTracking) {
+		super.setCodePointTracking(codePointTracking);
+		reader.setCodePointTracking(codePointTracking);
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
@@ -0,0 +1,180 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.util.function.Predicate;
+
+/**
+ * Decides which lines are skipped (i.e. not returned) by a {@link LineReader}. A
+ * <code>SkipLineFilter</code> is immutable and may be shared by many readers. Filters are checked
+ * against the text of each line before a {@link Line} is created, so lines that are skipped do
+ * not need to be materialized.
+ * <p>
+ * A filter created in header block mode (see {@link #asHeaderBlock()}) is only applied to the
+ * lines at the beginning of a file. Once a reader encounters the first line that is not skipped it
+ * stops checking, so files with a long block of comment lines at the top (e.g. VCF files) do not
+ * pay for the check on every subsequent line. Whether the header block has ended is saved in each
+ * {@link LineCheckpoint}, so a reader resumed from a checkpoint continues where the original
+ * reader stopped. A reader that starts part way through a file at a plain {@link LinePosition}
+ * (e.g. a chunk of a file being read in parallel) cannot know whether the header block has ended
+ * and rejects header block filters; the parallel readers only accept a skip line prefix.
+ *
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ *
+ */
+public class SkipLineFilter {
+
+	/**
+	 * Returns true if a line should be skipped
+	 */
+	private final Predicate<? super CharSequence> predicate;
+
+	/**
+	 * If true, checking stops after the first line that is not skipped
+	 */
+	private final boolean headerBlock;
+
+	private SkipLineFilter(Predicate<? super CharSequence> predicate, boolean headerBlock) {
+		if (predicate == null) {
+			throw new IllegalArgumentException("Skip line predicate must not be null.");
+		}
+		this.predicate = predicate;
+		this.headerBlock = headerBlock;
+	}
+
+	/**
+	 * Returns a filter that skips lines starting with any of the input prefixes. As has always been
+	 * the case for the skip line prefix used by {@link LineReader}, leading and trailing whitespace
+	 * is ignored when comparing a line to the prefixes, however the line text is not copied in
+	 * order to do so.
+	 *
+	 * @param prefixes
+	 * @return a filter that skips lines starting with any of the input prefixes
+	 */
+	public static SkipLineFilter forPrefixes(String... prefixes) {
+		if (prefixes == null || prefixes.length == 0) {
+			throw new IllegalArgumentException("At least one skip line prefix must be specified.");
+		}
+		char[][] compiledPrefixes = new char[prefixes.length][];
+		for (int i = 0; i < prefixes.length; i++) {
+			if (prefixes[i] == null) {
+				throw new IllegalArgumentException("Skip line prefixes must not be null.");
+			}
+			compiledPrefixes[i] = prefixes[i].toCharArray();
+		}
+		return new SkipLineFilter(new PrefixPredicate(compiledPrefixes), false);
+	}
+
+	/**
+	 * Returns a filter that skips lines for which the input predicate returns true. The
+	 * {@link CharSequence} passed to the predicate may be a view of a reader's internal buffer;
+	 * it is only valid for the duration of the call and must not be retained.
+	 *
+	 * @param predicate
+	 * @return a filter that skips lines matching the input predicate
+	 */
+	public static SkipLineFilter forPredicate(Predicate<? super CharSequence> predicate) {
+		return new SkipLineFilter(predicate, false);
+	}
+
+	/**
+	 * @return a copy of this filter that is only applied to the block of lines at the beginning of
+	 *         a file, i.e. checking stops once the first line that is not skipped has been read
+	 */
+	public SkipLineFilter asHeaderBlock() {
+		return new SkipLineFilter(predicate, true);
+	}
+
+	/**
+	 * @return true if this filter is only applied to the lines at the beginning of a file
+	 */
+	public boolean isHeaderBlock() {
+		return headerBlock;
+	}
+
+	/**
+	 * @param line
+	 *            the text of a line (excluding the line terminator)
+	 * @return true if the line should be skipped
+	 */
+	public boolean skip(CharSequence line) {
+		return predicate.test(line);
+	}
+
+	/**
+	 * Compares the text of a line, ignoring leading and trailing whitespace, against a set of
+	 * prefixes. This is equivalent to <code>line.trim().startsWith(prefix)</code> for each prefix
+	 * without the allocation incurred by the call to trim().
+	 */
+	private static class PrefixPredicate implements Predicate<CharSequence> {
+
+		private final char[][] prefixes;
+
+		public PrefixPredicate(char[][] prefixes) {
+			this.prefixes = prefixes;
+		}
+
+		@Override
+		public boolean test(CharSequence line) {
+			int end = line.length();
+			int start = 0;
+			/* String.trim() treats any character <= ' ' as whitespace */
+			while (start < end && line.charAt(start) <= ' ') {
+				start++;
+			}
+			while (end > start && line.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			for (char[] prefix : prefixes) {
+				if (regionStartsWith(line, start, end, prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean regionStartsWith(CharSequence line, int start, int end, char[] prefix) {
+			if (end - start < prefix.length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length; i++) {
+				if (line.charAt(start + i) != prefix[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
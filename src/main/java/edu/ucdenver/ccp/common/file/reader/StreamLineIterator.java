@@ -37,11 +37,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileReaderUtil;
+import edu.ucdenver.ccp.common.io.ReadAheadReader;
 
 /**
  * This class is used to iterate over lines obtained from a Stream.
@@ -88,6 +91,133 @@ public class StreamLineIterator extends LineIterator<Line> {
 		this(inputFile, encoding, null);
 	}
 
+	/**
+	 * Initializes a <code>StreamLineIterator</code> to read from the input <code>InputStream</code>
+	 * using the specified {@link LineReaderEngine}
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param engine
+	 */
+	public StreamLineIterator(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix,
+			LineReaderEngine engine) {
+		super(engine.initLineReader(inputStream, encoding, skipLinePrefix));
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> to read from the input <code>File</code> using
+	 * the specified {@link LineReaderEngine}
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param engine
+	 * @throws IOException
+	 */
+	public StreamLineIterator(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineReaderEngine engine) throws IOException {
+		this(new FileInputStream(inputFile), encoding, skipLinePrefix, engine);
+		logger.debug(String.format("Iterating through lines for file: %s", inputFile.getAbsolutePath()));
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> to read from the input <code>InputStream</code>
+	 * using the specified {@link LineReaderEngine} and {@link SkipLineFilter}
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param engine
+	 */
+	public StreamLineIterator(InputStream inputStream, CharacterEncoding encoding, SkipLineFilter skipLineFilter,
+			LineReaderEngine engine) {
+		super(engine.initLineReader(inputStream, encoding, skipLineFilter));
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> to read from the input <code>InputStream</code>
+	 * using the {@link LineReaderEngine#READ_AHEAD} engine. Blocks of characters are read and
+	 * decoded by a background thread while lines are processed by the caller.
+	 *
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param queueDepth
+	 *            the maximum number of blocks read ahead of the caller
+	 * @param bufferSize
+	 *            the number of characters in each block
+	 */
+	public StreamLineIterator(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix,
+			int queueDepth, int bufferSize) {
+		this(FileReaderUtil.initBufferedReader(inputStream, encoding), encoding, skipLinePrefix, queueDepth,
+				bufferSize);
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> to read from the input <code>File</code> using
+	 * the {@link LineReaderEngine#READ_AHEAD} engine. Gzip compressed files (.gz) are decompressed
+	 * by the background thread.
+	 *
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param queueDepth
+	 *            the maximum number of blocks read ahead of the caller
+	 * @param bufferSize
+	 *            the number of characters in each block
+	 * @throws IOException
+	 */
+	public StreamLineIterator(File inputFile, CharacterEncoding encoding, String skipLinePrefix, int queueDepth,
+			int bufferSize) throws IOException {
+		this(FileReaderUtil.initBufferedReader(inputFile, encoding), encoding, skipLinePrefix, queueDepth, bufferSize);
+		logger.debug(String.format("Iterating through lines for file: %s", inputFile.getAbsolutePath()));
+	}
+
+	private StreamLineIterator(Reader reader, CharacterEncoding encoding, String skipLinePrefix, int queueDepth,
+			int bufferSize) {
+		super(new BlockStreamLineReader(new ReadAheadReader(reader, queueDepth, bufferSize), encoding,
+				skipLinePrefix, LineCheckpoint.START, bufferSize));
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> that resumes iterating through the lines of the
+	 * input <code>File</code> from a checkpoint, e.g. one saved by a previous run that failed. The
+	 * lines returned are identical (including their offsets) to those that would be returned by
+	 * iterating from the beginning of the file.
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()}
+	 * @throws IOException
+	 */
+	public StreamLineIterator(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineCheckpoint checkpoint) throws IOException {
+		this(inputFile, encoding, skipLinePrefix, LineReaderEngine.CHARACTER, checkpoint);
+	}
+
+	/**
+	 * Initializes a <code>StreamLineIterator</code> that resumes iterating through the lines of the
+	 * input <code>File</code> from a checkpoint using the specified {@link LineReaderEngine}
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param engine
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()}
+	 * @throws IOException
+	 */
+	public StreamLineIterator(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineReaderEngine engine, LineCheckpoint checkpoint) throws IOException {
+		super(engine.initLineReader(inputFile, encoding, skipLinePrefix, checkpoint));
+		logger.debug(String.format("Resuming iteration through lines for file: %s at %s",
+				inputFile.getAbsolutePath(), checkpoint));
+	}
+
 	/**
 	 * Initializes a new <code>StreamLineReader</code> to be used by the
 	 * <code>StreamLineIterator</code>
@@ -60,7 +60,26 @@ public class StreamLineReader extends LineReader<Line> {
 	 */
 	private long lineNumber = 0;
 
-	private long byteOffset = 0;
+	/**
+	 * The encoding of the input stream
+	 */
+	private final CharacterEncoding encoding;
+
+	/**
+	 * The number of bytes of the input stream that have been consumed by the lines read so far,
+	 * i.e. the byte offset of the next line
+	 */
+	private long streamPosition = 0;
+
+	/**
+	 * Reusable buffer that the characters of each line are read into
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Reusable view of the buffer used when lines are read using {@link #getNextLine()}
+	 */
+	private final MutableLine currentLine = new MutableLine();
 
 	/**
 	 * Initializes a new <code>StreamLineReader</code> to read from the input
@@ -73,7 +92,7 @@ public class StreamLineReader extends LineReader<Line> {
 	public StreamLineReader(InputStream inputStream, CharacterEncoding encoding, String skipLinePrefix) {
 		super(skipLinePrefix);
 		lineNumber = 0;
-		byteOffset = 0;
+		this.encoding = encoding;
 		reader = FileReaderUtil.initBufferedReader(inputStream, encoding);
 	}
 
@@ -87,57 +106,155 @@ public class StreamLineReader extends LineReader<Line> {
 	public StreamLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix) throws IOException {
 		super(skipLinePrefix);
 		lineNumber = 0;
-		byteOffset = 0;
+		this.encoding = encoding;
 		reader = FileReaderUtil.initBufferedReader(inputFile, encoding);
 	}
 
 	
 	public StreamLineReader(File inputFile, CharacterEncoding encoding) throws IOException {
-		this(inputFile, encoding, null);
+		this(inputFile, encoding, (String) null);
+	}
+
+	/**
+	 * Initializes a new <code>StreamLineReader</code> that resumes reading the input
+	 * <code>File</code> from a checkpoint. The file is positioned directly at the checkpoint; the
+	 * preceding lines are not re-read (a gzip compressed file must still be decompressed up to
+	 * that point).
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLinePrefix
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()} by a reader of the same file
+	 * @throws IOException
+	 */
+	public StreamLineReader(File inputFile, CharacterEncoding encoding, String skipLinePrefix,
+			LineCheckpoint checkpoint) throws IOException {
+		super(skipLinePrefix, checkpoint.getCharacterOffset(), checkpoint.getCodePointOffset());
+		lineNumber = checkpoint.getLineNumber();
+		streamPosition = checkpoint.getByteOffset();
+		this.encoding = encoding;
+		reader = FileReaderUtil.initBufferedReader(inputFile, encoding, checkpoint.getByteOffset());
+	}
+
+	/**
+	 * Initializes a new <code>StreamLineReader</code> that resumes reading the input
+	 * <code>File</code> from a checkpoint
+	 * 
+	 * @param inputFile
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 * @param checkpoint
+	 *            obtained from {@link #getCheckpoint()} by a reader of the same file
+	 * @throws IOException
+	 */
+	public StreamLineReader(File inputFile, CharacterEncoding encoding, SkipLineFilter skipLineFilter,
+			LineCheckpoint checkpoint) throws IOException {
+		super(null, skipLineFilter, checkpoint);
+		lineNumber = checkpoint.getLineNumber();
+		streamPosition = checkpoint.getByteOffset();
+		this.encoding = encoding;
+		reader = FileReaderUtil.initBufferedReader(inputFile, encoding, checkpoint.getByteOffset());
 	}
 	
+	/**
+	 * Initializes a new <code>StreamLineReader</code> to read from the input
+	 * <code>InputStream</code>
+	 * 
+	 * @param inputStream
+	 * @param encoding
+	 * @param skipLineFilter
+	 *            lines matched by the filter are skipped; may be null
+	 */
+	public StreamLineReader(InputStream inputStream, CharacterEncoding encoding, SkipLineFilter skipLineFilter) {
+		super(skipLineFilter);
+		lineNumber = 0;
+		this.encoding = encoding;
+		reader = FileReaderUtil.initBufferedReader(inputStream, encoding);
+	}
+
 	/**
 	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#readLine()
 	 */
 	@Override
 	protected Line getNextLine() throws IOException {
-		LineTerminator lineTerminator = null;
-		StringBuffer buffer = new StringBuffer();
-		int c = -1;
-		boolean eol = false;
-		while (!eol) {
-			switch (c = reader.read()) {
-			case -1:
-			case '\n':
-				eol = true;
-				lineTerminator = LineTerminator.LF;
-				break;
-			case '\r':
-				eol = true;
-				lineTerminator = LineTerminator.CR;
-				reader.mark(1);
-				if ((reader.read()) != '\n')
-					reader.reset();
-				else
-					lineTerminator = LineTerminator.CRLF;
-				break;
-			default:
-				buffer.append((char) c);
-				break;
+		return scanNextLine(currentLine) ? currentLine.toLine() : null;
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#scanNextLine(edu.ucdenver.ccp.common.file.reader.MutableLine)
+	 */
+	@Override
+	protected boolean scanNextLine(MutableLine line) throws IOException {
+		while (true) {
+			buffer.setLength(0);
+			LineTerminator lineTerminator = null;
+			int c = -1;
+			/* all chars are OR'd together to detect lines that contain only ASCII characters */
+			int bits = 0;
+			boolean eol = false;
+			while (!eol) {
+				switch (c = reader.read()) {
+				case -1:
+				case '\n':
+					eol = true;
+					lineTerminator = LineTerminator.LF;
+					break;
+				case '\r':
+					eol = true;
+					lineTerminator = LineTerminator.CR;
+					reader.mark(1);
+					if ((reader.read()) != '\n')
+						reader.reset();
+					else
+						lineTerminator = LineTerminator.CRLF;
+					break;
+				default:
+					bits |= c;
+					buffer.append((char) c);
+					break;
+				}
 			}
-		}
 
-		if ((c == -1) && (buffer.length() == 0)) {
-			return null;
-		}
-		String lineText = buffer.toString();
-		byteOffset = byteOffset + lineText.getBytes().length;
+			if ((c == -1) && (buffer.length() == 0)) {
+				return false;
+			}
+			/* for ASCII-only lines the counts are simply the length of the line */
+			boolean ascii = bits < 0x80;
+			int charCount = buffer.length();
+			int byteLength = ascii ? charCount : encoding.getByteLength(buffer, 0, charCount);
+			int codePointCount = ascii ? charCount : countCodePoints(buffer);
+			long byteOffset = streamPosition;
+			streamPosition += byteLength + ((c == -1) ? 0 : lineTerminator.length());
 
-		if (skipLine(lineText)) {
+			if (!skipLine(buffer)) {
+				line.set(buffer, lineTerminator, getCharacterOffset(), getCodePointOffset(), lineNumber++, byteOffset,
+						codePointCount, byteLength);
+				return true;
+			}
+			/* skipped lines are counted here, in a loop, rather than by recursively reading the next line */
 			lineNumber++;
-			return readLine();
+			updateCharacterOffset(charCount, codePointCount, lineTerminator);
 		}
-		return new Line(lineText, lineTerminator, getCharacterOffset(), getCodePointOffset(), lineNumber++, byteOffset);
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint()
+	 */
+	@Override
+	public LineCheckpoint getCheckpoint() {
+		return new LineCheckpoint(streamPosition, getCharacterOffset(), getCodePointOffset(), lineNumber,
+				isHeaderBlockEnded());
+	}
+
+	/**
+	 * @see edu.ucdenver.ccp.common.file.reader.LineReader#getCheckpoint(edu.ucdenver.ccp.common.file.reader.Line)
+	 */
+	@Override
+	protected LineCheckpoint getCheckpoint(Line lastLine) {
+		return new LineCheckpoint(lastLine.getByteOffset(), lastLine.getCharacterOffset(),
+				lastLine.getCodePointOffset(), lastLine.getLineNumber(), isHeaderBlockEnded());
 	}
 
 	/**
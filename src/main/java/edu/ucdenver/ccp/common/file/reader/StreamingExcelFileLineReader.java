@@ -0,0 +1,398 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+
+/**
+ * Reads lines from an Excel (.xlsx) file without loading the workbook into memory. Unlike
+ * {@link ExcelFileLineReader}, which builds the entire workbook before returning the first row,
+ * this class pulls rows one at a time directly from the sheet XML. Heap use is bounded by the size
+ * of a single row plus the number format of each cell style. Opening the workbook makes one pass
+ * over its shared strings table, which is spilled to memory-mapped temporary files rather than
+ * held on the heap, so the time to the first row grows with the size of that table (but not with
+ * the size of the sheet).
+ * <p>
+ * The lines returned follow the same contract as {@link ExcelFileLineReader}: the first row of
+ * the sheet is treated as a header that determines the number of columns and is not returned,
+ * and each subsequent row is returned as its cell values joined by tabs. Rows that are missing
+ * from the sheet are returned as empty cells. Numeric cells are formatted as displayed by Excel.
+ * Legacy .xls files are not supported.
+ */
+public class StreamingExcelFileLineReader extends LineReader<Line> {
+
+	private static final String DELIMITER = "\t";
+
+	private final XlsxWorkbook workbook;
+
+	/**
+	 * True if the workbook should be closed when this reader is closed
+	 */
+	private final boolean ownsWorkbook;
+
+	/**
+	 * Formats the numeric cells of this sheet; reused for every cell
+	 */
+	private final DataFormatter dataFormatter = new DataFormatter();
+	private final InputStream sheetStream;
+	private final XMLStreamReader xml;
+
+	/**
+	 * The number of columns, as determined by the header row
+	 */
+	private int columnCount = -1;
+
+	/**
+	 * Reusable storage for the cell values of the most recently parsed row
+	 */
+	private String[] cells = new String[16];
+
+	/**
+	 * One past the index of the last cell in the most recently parsed row
+	 */
+	private int rowWidth = 0;
+
+	/**
+	 * The index of the most recently parsed row; -1 if it has already been returned
+	 */
+	private int parsedRowIndex = -1;
+
+	/**
+	 * The index of the row whose line will be returned next
+	 */
+	private int nextRowIndex = 0;
+
+	/**
+	 * The index of the last row parsed from the sheet XML, used when row elements do not specify
+	 * their index
+	 */
+	private int lastRowIndex = -1;
+
+	private final StringBuilder lineText = new StringBuilder();
+
+	private final long byteOffset = -1;
+
+	/**
+	 * Initializes a new <code>StreamingExcelFileLineReader</code> to read the first sheet of the
+	 * input file
+	 * 
+	 * @param file
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public StreamingExcelFileLineReader(File file, String skipLinePrefix) throws IOException {
+		this(file, 0, skipLinePrefix);
+	}
+
+	/**
+	 * Initializes a new <code>StreamingExcelFileLineReader</code> to read the specified sheet of
+	 * the input file
+	 * 
+	 * @param file
+	 * @param sheetIndex
+	 *            the index of the sheet to read, in workbook order
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public StreamingExcelFileLineReader(File file, int sheetIndex, String skipLinePrefix) throws IOException {
+		this(new XlsxWorkbook(file, false), true, sheetIndex, skipLinePrefix);
+	}
+
+	/**
+	 * Initializes a new <code>StreamingExcelFileLineReader</code> to read the first sheet of the
+	 * workbook in the input stream. Random access to the zip entries of the workbook is required,
+	 * so the entire stream is copied to a temporary file, which is deleted when this reader is
+	 * closed, before the first row can be returned. Prefer the <code>File</code> constructors when
+	 * the workbook is already on disk.
+	 * 
+	 * @param inputStream
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	public StreamingExcelFileLineReader(InputStream inputStream, String skipLinePrefix) throws IOException {
+		this(XlsxWorkbook.open(inputStream), true, 0, skipLinePrefix);
+	}
+
+	/**
+	 * @param workbook
+	 * @param ownsWorkbook
+	 *            if true, the workbook is closed when this reader is closed (or fails to open)
+	 * @param sheetIndex
+	 * @param skipLinePrefix
+	 * @throws IOException
+	 */
+	StreamingExcelFileLineReader(XlsxWorkbook workbook, boolean ownsWorkbook, int sheetIndex, String skipLinePrefix)
+			throws IOException {
+		super(skipLinePrefix);
+		this.workbook = workbook;
+		this.ownsWorkbook = ownsWorkbook;
+		InputStream openedSheetStream = null;
+		try {
+			openedSheetStream = workbook.openSheet(sheetIndex);
+			xml = XlsxWorkbook.newXmlInputFactory().createXMLStreamReader(openedSheetStream);
+			sheetStream = openedSheetStream;
+			readHeader();
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			if (openedSheetStream != null) {
+				openedSheetStream.close();
+			}
+			if (ownsWorkbook) {
+				workbook.close();
+			}
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw new IOException("Unable to parse Excel sheet: " + sheetIndex, e);
+		}
+	}
+
+	/**
+	 * Parses the first row of the sheet, which determines the number of columns
+	 * 
+	 * @throws XMLStreamException
+	 */
+	private void readHeader() throws XMLStreamException {
+		int headerRowIndex = readRow();
+		columnCount = (headerRowIndex < 0) ? 0 : rowWidth;
+		nextRowIndex = headerRowIndex + 1;
+		parsedRowIndex = -1;
+	}
+
+	@Override
+	protected Line getNextLine() throws IOException {
+		try {
+			if (parsedRowIndex < 0) {
+				parsedRowIndex = readRow();
+				if (parsedRowIndex < 0) {
+					return null;
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Error while parsing Excel sheet.", e);
+		}
+		lineText.setLength(0);
+		boolean blankRow = nextRowIndex < parsedRowIndex;
+		for (int col = 0; col < columnCount; col++) {
+			if (col > 0) {
+				lineText.append(DELIMITER);
+			}
+			if (!blankRow && col < rowWidth && cells[col] != null) {
+				lineText.append(cells[col]);
+			}
+		}
+		if (!blankRow) {
+			parsedRowIndex = -1;
+		}
+		long lineNumber = ++nextRowIndex;
+		return new Line(lineText.toString(), LineTerminator.CR, getCharacterOffset(), getCodePointOffset(),
+				lineNumber, byteOffset);
+	}
+
+	/**
+	 * Parses the next row element of the sheet into {@link #cells}
+	 * 
+	 * @return the index of the row; -1 if there are no more rows
+	 * @throws XMLStreamException
+	 */
+	private int readRow() throws XMLStreamException {
+		if (!nextStartElement("row")) {
+			return -1;
+		}
+		String rowReference = xml.getAttributeValue(null, "r");
+		int rowIndex = (rowReference == null) ? lastRowIndex + 1 : Integer.parseInt(rowReference) - 1;
+		lastRowIndex = rowIndex;
+		Arrays.fill(cells, 0, rowWidth, null);
+		rowWidth = 0;
+		int col = -1;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("c")) {
+				String cellReference = xml.getAttributeValue(null, "r");
+				col = (cellReference == null) ? col + 1 : getColumnIndex(cellReference);
+				String value = readCellValue();
+				if (columnCount < 0 || col < columnCount) {
+					if (col >= cells.length) {
+						cells = Arrays.copyOf(cells, Math.max(col + 1, cells.length * 2));
+					}
+					cells[col] = value;
+					rowWidth = Math.max(rowWidth, col + 1);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("row")) {
+				break;
+			}
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Advances to the next start element with the specified local name
+	 * 
+	 * @return false if the end of the sheet data was reached first
+	 * @throws XMLStreamException
+	 */
+	private boolean nextStartElement(String localName) throws XMLStreamException {
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals(localName)) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("sheetData")) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param cellReference
+	 *            e.g. AB12
+	 * @return the zero-based column index of the cell reference
+	 */
+	static int getColumnIndex(String cellReference) {
+		int col = 0;
+		for (int i = 0; i < cellReference.length(); i++) {
+			char c = cellReference.charAt(i);
+			if (c < 'A' || c > 'Z') {
+				break;
+			}
+			col = col * 26 + (c - 'A' + 1);
+		}
+		return col - 1;
+	}
+
+	/**
+	 * Parses the current cell element, leaving the stream positioned at its end
+	 * 
+	 * @return the value of the cell formatted as text; null if the cell has no value
+	 * @throws XMLStreamException
+	 */
+	private String readCellValue() throws XMLStreamException {
+		String type = xml.getAttributeValue(null, "t");
+		String styleReference = xml.getAttributeValue(null, "s");
+		String value = null;
+		String inlineString = null;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("v")) {
+					value = xml.getElementText();
+				} else if (name.equals("is")) {
+					inlineString = readInlineString();
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("c")) {
+				break;
+			}
+		}
+		if (type == null || type.equals("n")) {
+			return (value == null || value.isEmpty()) ? null : workbook.formatNumber(dataFormatter, value,
+					(styleReference == null) ? 0 : Integer.parseInt(styleReference));
+		}
+		switch (type) {
+		case "s":
+			return (value == null) ? null : workbook.getSharedString(Integer.parseInt(value));
+		case "inlineStr":
+			return inlineString;
+		case "b":
+			return (value == null) ? null : (value.equals("0") ? "FALSE" : "TRUE");
+		case "e":
+			return (value == null) ? null : "ERROR:" + value;
+		default:
+			/* formula strings (str) and ISO 8601 dates (d) */
+			return value;
+		}
+	}
+
+	/**
+	 * Parses the current inline string element, ignoring phonetic runs
+	 * 
+	 * @return the text of the inline string
+	 * @throws XMLStreamException
+	 */
+	private String readInlineString() throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int phoneticDepth = 0;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("rPh")) {
+					phoneticDepth++;
+				} else if (name.equals("t") && phoneticDepth == 0) {
+					sb.append(xml.getElementText());
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("rPh")) {
+					phoneticDepth--;
+				} else if (name.equals("is")) {
+					break;
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			try {
+				sheetStream.close();
+			} finally {
+				if (ownsWorkbook) {
+					workbook.close();
+				}
+			}
+		}
+	}
+
+}
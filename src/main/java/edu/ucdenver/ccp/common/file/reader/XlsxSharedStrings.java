@@ -0,0 +1,258 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+/**
+ * The shared strings table of an .xlsx file, spilled to temporary files so that text-heavy
+ * workbooks can be read without holding every shared string on the heap. The table is parsed once
+ * when the workbook is opened: each string is written, UTF-8 encoded and prefixed by its length,
+ * to a data file, and its offset in the data file is written to an index file. Both files are
+ * memory-mapped, so looking up a string costs two reads from the page cache and the heap used by
+ * the table does not grow with the number of strings. The text of a string is the concatenation
+ * of its text runs; phonetic runs (<code>rPh</code>) are ignored, as they are for inline strings
+ * and by {@link ExcelFileLineReader}.
+ * <p>
+ * Lookups may be made by several threads at once.
+ */
+final class XlsxSharedStrings implements Closeable {
+
+	/**
+	 * The size of each mapped segment of the data and index files. A multiple of 8 so that index
+	 * entries never span segments; strings are padded so that they never span segments either.
+	 */
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private static final Charset UTF_8 = CharacterEncoding.UTF_8.getCharset();
+
+	private final File dataFile;
+	private final File indexFile;
+	private final MappedByteBuffer[] dataSegments;
+	private final MappedByteBuffer[] indexSegments;
+	private final int count;
+
+	private XlsxSharedStrings(File dataFile, File indexFile, int count) throws IOException {
+		this.dataFile = dataFile;
+		this.indexFile = indexFile;
+		this.count = count;
+		this.dataSegments = map(dataFile);
+		this.indexSegments = map(indexFile);
+	}
+
+	/**
+	 * Reads the shared strings table of the input package into temporary files
+	 * 
+	 * @param pkg
+	 * @return the shared strings; empty if the package does not contain a shared strings table
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	static XlsxSharedStrings read(OPCPackage pkg) throws IOException, XMLStreamException {
+		File dataFile = File.createTempFile("xlsx-shared-strings-", ".dat");
+		File indexFile = null;
+		try {
+			indexFile = File.createTempFile("xlsx-shared-strings-", ".idx");
+			int count = 0;
+			List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+			if (!parts.isEmpty()) {
+				InputStream partStream = parts.get(0).getInputStream();
+				try {
+					count = spill(partStream, dataFile, indexFile);
+				} finally {
+					partStream.close();
+				}
+			}
+			return new XlsxSharedStrings(dataFile, indexFile, count);
+		} catch (IOException | XMLStreamException | RuntimeException e) {
+			delete(dataFile);
+			if (indexFile != null) {
+				delete(indexFile);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes each string of the shared strings XML to the data file and its offset to the index
+	 * file
+	 * 
+	 * @return the number of strings written
+	 */
+	private static int spill(InputStream sharedStringsXml, File dataFile, File indexFile) throws IOException,
+			XMLStreamException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
+		try {
+			DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+			try {
+				XMLStreamReader xml = XlsxWorkbook.newXmlInputFactory().createXMLStreamReader(sharedStringsXml);
+				try {
+					int count = 0;
+					long dataOffset = 0;
+					StringBuilder text = new StringBuilder();
+					/* phonetic runs are ignored, as they are for inline strings */
+					int phoneticDepth = 0;
+					while (xml.hasNext()) {
+						int event = xml.next();
+						if (event == XMLStreamConstants.START_ELEMENT) {
+							String name = xml.getLocalName();
+							if (name.equals("si")) {
+								text.setLength(0);
+								phoneticDepth = 0;
+							} else if (name.equals("rPh")) {
+								phoneticDepth++;
+							} else if (name.equals("t") && phoneticDepth == 0) {
+								text.append(xml.getElementText());
+							}
+						} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("rPh")) {
+							phoneticDepth--;
+						} else if (event == XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("si")) {
+							byte[] bytes = text.toString().getBytes(UTF_8);
+							int length = 4 + bytes.length;
+							if ((dataOffset & SEGMENT_MASK) + length > SEGMENT_SIZE) {
+								long padding = SEGMENT_SIZE - (dataOffset & SEGMENT_MASK);
+								for (long i = 0; i < padding; i++) {
+									data.write(0);
+								}
+								dataOffset += padding;
+							}
+							index.writeLong(dataOffset);
+							data.writeInt(bytes.length);
+							data.write(bytes);
+							dataOffset += length;
+							count++;
+						}
+					}
+					return count;
+				} finally {
+					xml.close();
+				}
+			} finally {
+				index.close();
+			}
+		} finally {
+			data.close();
+		}
+	}
+
+	private static MappedByteBuffer[] map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long position = (long) i << SEGMENT_SHIFT;
+				segments[i] = channel.map(MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+			}
+			return segments;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the number of strings in the table
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * @param index
+	 * @return the string at the specified index
+	 * @throws IndexOutOfBoundsException
+	 *             if the table does not contain a string with the specified index
+	 */
+	String get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		}
+		long indexOffset = (long) index << 3;
+		long dataOffset = indexSegments[(int) (indexOffset >>> SEGMENT_SHIFT)]
+				.getLong((int) (indexOffset & SEGMENT_MASK));
+		ByteBuffer segment = dataSegments[(int) (dataOffset >>> SEGMENT_SHIFT)].duplicate();
+		int position = (int) (dataOffset & SEGMENT_MASK);
+		byte[] bytes = new byte[segment.getInt(position)];
+		segment.position(position + 4);
+		segment.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Deletes the temporary files. The mapped segments are released once they are garbage
+	 * collected.
+	 */
+	@Override
+	public void close() {
+		delete(dataFile);
+		delete(indexFile);
+	}
+
+	/**
+	 * Deletes the input file, or schedules it for deletion on exit if it is still mapped and the
+	 * platform does not allow mapped files to be deleted
+	 */
+	private static void delete(File file) {
+		if (file.exists() && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import edu.ucdenver.ccp.common.file.FileUtil;
+
+/**
+ * The workbook-level parts of an .xlsx file that are needed to stream its sheets: the shared
+ * strings, the number format of each cell style and the location of each sheet. The number
+ * formats are resolved once when the workbook is opened so that cells can be formatted without
+ * consulting the styles table. The shared strings are spilled to temporary files (see
+ * {@link XlsxSharedStrings}) rather than held on the heap. Once opened, an <code>XlsxWorkbook</code> may be used by several
+ * threads at once, e.g. to read different sheets concurrently.
+ */
+final class XlsxWorkbook implements Closeable {
+
+	/**
+	 * StAX factories are not guaranteed to be thread-safe, so each reader of a workbook part creates
+	 * its own rather than sharing one between sheets read concurrently
+	 * 
+	 * @return a new factory that does not resolve DTDs or external entities
+	 */
+	static XMLInputFactory newXmlInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	private final OPCPackage pkg;
+	private final XlsxSharedStrings sharedStrings;
+
+	/**
+	 * The number format index and format string of each cell style, indexed by style
+	 */
+	private final int[] formatIndexes;
+	private final String[] formatStrings;
+
+	/**
+	 * True if dates in the workbook are stored relative to 1904 rather than 1900
+	 */
+	private final boolean date1904;
+
+	private final List<String> sheetNames;
+	private final List<PackagePart> sheetParts;
+
+	/**
+	 * Deleted when the workbook is closed; null if the file should be kept
+	 */
+	private final File temporaryFile;
+
+	/**
+	 * @param file
+	 * @param deleteOnClose
+	 *            if true, the file is deleted when the workbook is closed
+	 * @throws IOException
+	 */
+	XlsxWorkbook(File file, boolean deleteOnClose) throws IOException {
+		this.temporaryFile = deleteOnClose ? file : null;
+		OPCPackage openedPkg = null;
+		XlsxSharedStrings openedSharedStrings = null;
+		try {
+			openedPkg = OPCPackage.open(file, PackageAccess.READ);
+			XSSFReader xssfReader = new XSSFReader(openedPkg);
+			openedSharedStrings = XlsxSharedStrings.read(openedPkg);
+			StylesTable styles = xssfReader.getStylesTable();
+			int styleCount = (styles == null) ? 0 : styles.getNumCellStyles();
+			formatIndexes = new int[styleCount];
+			formatStrings = new String[styleCount];
+			for (int i = 0; i < styleCount; i++) {
+				XSSFCellStyle style = styles.getStyleAt(i);
+				formatIndexes[i] = style.getDataFormat();
+				formatStrings[i] = style.getDataFormatString();
+			}
+			date1904 = isDate1904(xssfReader);
+			List<String> names = new ArrayList<String>();
+			List<PackagePart> parts = new ArrayList<PackagePart>();
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+			while (sheets.hasNext()) {
+				sheets.next().close();
+				names.add(sheets.getSheetName());
+				parts.add(sheets.getSheetPart());
+			}
+			sheetNames = Collections.unmodifiableList(names);
+			sheetParts = parts;
+			sharedStrings = openedSharedStrings;
+			pkg = openedPkg;
+		} catch (OpenXML4JException | XMLStreamException | IOException | RuntimeException e) {
+			if (openedSharedStrings != null) {
+				openedSharedStrings.close();
+			}
+			if (openedPkg != null) {
+				openedPkg.revert();
+			}
+			deleteTemporaryFile();
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			throw new IOException("Unable to open Excel file: " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Copies the input stream to a temporary file and opens it as a workbook. Random access to the
+	 * zip entries of the workbook is required to avoid inflating every entry into memory.
+	 *
+	 * @param inputStream
+	 * @return a workbook whose temporary file is deleted when it is closed
+	 * @throws IOException
+	 */
+	static XlsxWorkbook open(InputStream inputStream) throws IOException {
+		File file = File.createTempFile("streaming-excel-", ".xlsx");
+		try {
+			FileUtil.copy(inputStream, file);
+		} catch (IOException e) {
+			FileUtil.deleteFile(file);
+			throw e;
+		}
+		return new XlsxWorkbook(file, true);
+	}
+
+	private static boolean isDate1904(XSSFReader xssfReader) throws IOException, OpenXML4JException,
+			XMLStreamException {
+		InputStream workbookStream = xssfReader.getWorkbookData();
+		try {
+			XMLStreamReader xml = newXmlInputFactory().createXMLStreamReader(workbookStream);
+			try {
+				while (xml.hasNext()) {
+					if (xml.next() == XMLStreamConstants.START_ELEMENT) {
+						String name = xml.getLocalName();
+						if (name.equals("workbookPr")) {
+							String date1904 = xml.getAttributeValue(null, "date1904");
+							return "1".equals(date1904) || "true".equals(date1904);
+						}
+						if (name.equals("sheets")) {
+							return false;
+						}
+					}
+				}
+				return false;
+			} finally {
+				xml.close();
+			}
+		} finally {
+			workbookStream.close();
+		}
+	}
+
+	/**
+	 * @return the names of the sheets in workbook order
+	 */
+	List<String> getSheetNames() {
+		return sheetNames;
+	}
+
+	/**
+	 * @param sheetIndex
+	 * @return a new stream over the XML of the specified sheet
+	 * @throws IOException
+	 */
+	synchronized InputStream openSheet(int sheetIndex) throws IOException {
+		if (sheetIndex < 0 || sheetIndex >= sheetParts.size()) {
+			throw new IllegalArgumentException("Workbook does not contain a sheet with index: " + sheetIndex);
+		}
+		return sheetParts.get(sheetIndex).getInputStream();
+	}
+
+	/**
+	 * @param index
+	 * @return the shared string at the specified index
+	 */
+	String getSharedString(int index) {
+		return sharedStrings.get(index);
+	}
+
+	/**
+	 * @param dataFormatter
+	 *            not thread-safe; each thread should use its own
+	 * @param value
+	 *            the raw numeric value of a cell
+	 * @param styleIndex
+	 *            the index of the cell style; 0 if the cell does not specify one
+	 * @return the numeric value formatted as displayed by Excel, e.g. as a date or a percentage
+	 */
+	String formatNumber(DataFormatter dataFormatter, String value, int styleIndex) {
+		int formatIndex = 0;
+		String formatString = null;
+		if (styleIndex < formatIndexes.length) {
+			formatIndex = formatIndexes[styleIndex];
+			formatString = formatStrings[styleIndex];
+		}
+		if (formatString == null) {
+			formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+		}
+		if (formatString == null) {
+			return value;
+		}
+		return dataFormatter.formatRawCellContents(Double.parseDouble(value), formatIndex, formatString, date1904);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			pkg.revert();
+		} finally {
+			try {
+				sharedStrings.close();
+			} finally {
+				deleteTemporaryFile();
+			}
+		}
+	}
+
+	private void deleteTemporaryFile() {
+		if (temporaryFile != null) {
+			FileUtil.deleteFile(temporaryFile);
+		}
+	}
+
+}
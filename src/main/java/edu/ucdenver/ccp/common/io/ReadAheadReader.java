@@ -0,0 +1,302 @@
+package edu.ucdenver.ccp.common.io;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Reader} that reads ahead of its consumer on a background thread. The producer thread
+ * reads (and therefore inflates and decodes, if the source is e.g. an {@link java.io.InputStreamReader}
+ * over a {@link java.util.zip.GZIPInputStream}) blocks of characters from the source into a fixed
+ * ring of buffers while the consumer processes the block it has already been handed. At most
+ * <code>queueDepth</code> buffers are filled (or being filled) ahead of the consumer; once they
+ * are all full the producer blocks until the consumer hands a buffer back, so memory use is
+ * bounded regardless of the relative speeds of the two threads.
+ * <p>
+ * An exception encountered by the producer is rethrown to the consumer once it has consumed the
+ * characters read before the failure, and again on every later read, so a failure is never
+ * mistaken for the end of the stream. Closing this reader stops the producer, waits for it to
+ * finish with the source, and then closes the source.
+ * 
+ * @author Center for Computational Pharmacology, UC Denver; ccpsupport@ucdenver.edu
+ * 
+ */
+public class ReadAheadReader extends Reader {
+
+	/**
+	 * The default number of characters in each buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The default maximum number of buffers filled ahead of the consumer
+	 */
+	public static final int DEFAULT_QUEUE_DEPTH = 4;
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/**
+	 * A block of characters handed from the producer to the consumer
+	 */
+	private static class Block {
+		private final char[] buffer;
+		private final int length;
+		private final Throwable error;
+
+		public Block(char[] buffer, int length, Throwable error) {
+			this.buffer = buffer;
+			this.length = length;
+			this.error = error;
+		}
+
+		public boolean isEndOfStream() {
+			return length < 0;
+		}
+	}
+
+	private final Reader source;
+
+	/**
+	 * Blocks that have been filled by the producer and are waiting to be consumed
+	 */
+	private final BlockingQueue<Block> filledBlocks;
+
+	/**
+	 * Buffers that have been consumed and can be refilled by the producer
+	 */
+	private final BlockingQueue<char[]> emptyBuffers;
+
+	private final Thread producer;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * The block currently being consumed
+	 */
+	private Block current = null;
+
+	private int currentPosition = 0;
+
+	/**
+	 * Initializes a new <code>ReadAheadReader</code> using the default buffer size and queue depth
+	 * 
+	 * @param source
+	 */
+	public ReadAheadReader(Reader source) {
+		this(source, DEFAULT_QUEUE_DEPTH, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>ReadAheadReader</code> and starts reading ahead
+	 * 
+	 * @param source
+	 *            the reader to read from on a background thread
+	 * @param queueDepth
+	 *            the maximum number of buffers filled ahead of the consumer
+	 * @param bufferSize
+	 *            the number of characters in each buffer
+	 */
+	public ReadAheadReader(Reader source, int queueDepth, int bufferSize) {
+		if (queueDepth < 1) {
+			throw new IllegalArgumentException("Queue depth must be positive: " + queueDepth);
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.source = source;
+		/* the ring includes the buffer being consumed */
+		int bufferCount = queueDepth + 1;
+		/*
+		 * backpressure is applied by the ring of buffers, so the queue of filled blocks is sized to
+		 * hold every buffer plus the end-of-stream (or error) marker and never blocks
+		 */
+		this.filledBlocks = new ArrayBlockingQueue<Block>(bufferCount + 1);
+		this.emptyBuffers = new ArrayBlockingQueue<char[]>(bufferCount);
+		for (int i = 0; i < bufferCount; i++) {
+			emptyBuffers.add(new char[bufferSize]);
+		}
+		this.producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				produce();
+			}
+		}, "read-ahead-" + THREAD_COUNT.incrementAndGet());
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	/**
+	 * Run by the producer thread; fills empty buffers until the source is exhausted, an error
+	 * occurs, or this reader is closed
+	 */
+	private void produce() {
+		try {
+			while (!closed) {
+				char[] buffer = emptyBuffers.take();
+				int length = fill(buffer);
+				if (length > 0) {
+					filledBlocks.put(new Block(buffer, length, null));
+				}
+				if (length < buffer.length) {
+					filledBlocks.put(new Block(null, -1, null));
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			/* this reader has been closed */
+		} catch (Throwable t) {
+			if (!closed) {
+				filledBlocks.offer(new Block(null, -1, t));
+			}
+		}
+	}
+
+	/**
+	 * Reads from the source until the buffer is full or the source is exhausted
+	 * 
+	 * @return the number of characters read; less than the buffer length if the end of the source
+	 *         was reached
+	 * @throws IOException
+	 */
+	private int fill(char[] buffer) throws IOException {
+		int length = 0;
+		while (length < buffer.length && !closed) {
+			int count = source.read(buffer, length, buffer.length - length);
+			if (count < 0) {
+				break;
+			}
+			length += count;
+		}
+		return length;
+	}
+
+	/**
+	 * @return false if the end of the stream has been reached
+	 * @throws IOException
+	 *             if the producer failed, or the consumer was interrupted while waiting
+	 */
+	private boolean nextBlock() throws IOException {
+		if (current != null) {
+			if (current.isEndOfStream()) {
+				checkError();
+				return false;
+			}
+			emptyBuffers.add(current.buffer);
+			current = null;
+		}
+		try {
+			current = filledBlocks.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the next block of characters.");
+		}
+		currentPosition = 0;
+		checkError();
+		return !current.isEndOfStream();
+	}
+
+	/**
+	 * Rethrows the producer's error if the current block records one. The error block is kept as
+	 * the current block so that the error is rethrown by every subsequent read.
+	 * 
+	 * @throws IOException
+	 */
+	private void checkError() throws IOException {
+		Throwable error = current.error;
+		if (error == null) {
+			return;
+		}
+		if (error instanceof IOException) {
+			throw (IOException) error;
+		}
+		if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		}
+		throw new IOException("Error while reading ahead.", error);
+	}
+
+	/**
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Reader has been closed.");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		while (current == null || (!current.isEndOfStream() && currentPosition == current.length)) {
+			if (!nextBlock()) {
+				return -1;
+			}
+		}
+		if (current.isEndOfStream()) {
+			checkError();
+			return -1;
+		}
+		int count = Math.min(len, current.length - currentPosition);
+		System.arraycopy(current.buffer, currentPosition, cbuf, off, count);
+		currentPosition += count;
+		return count;
+	}
+
+	/**
+	 * Stops the producer thread, waits for it to stop reading from the source, and closes the
+	 * source. If the calling thread is interrupted while waiting the source is closed anyway and
+	 * the interrupt status is restored.
+	 * 
+	 * @see java.io.Reader#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		producer.interrupt();
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		source.close();
+	}
+
+}
@@ -0,0 +1,394 @@
+package edu.ucdenver.ccp.common.io;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Writer} that writes behind its producer on a background thread. The producer fills a
+ * buffer of characters while the background thread writes previously filled buffers to the sink,
+ * so that the cost of the sink, e.g. encoding characters and blocking on a slow file system, is
+ * taken off the producer's thread. With the default queue depth of one there are two buffers
+ * (double buffering). Once all of the buffers are full the producer blocks until the background
+ * thread hands one back, so memory use is bounded regardless of the relative speeds of the two
+ * threads.
+ * <p>
+ * An exception thrown by the sink is rethrown to the producer by the next call that hands a buffer
+ * to the background thread, and by {@link #flush()} and {@link #close()}; data written after the
+ * failure is discarded. {@link #flush()} and {@link #close()} wait until the background thread has
+ * flushed or closed the sink.
+ * 
+ * @author Center for Computational Pharmacology, UC Denver; ccpsupport@ucdenver.edu
+ * 
+ */
+public class WriteBehindWriter extends Writer {
+
+	/**
+	 * The default number of characters in each buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The default maximum number of filled buffers waiting to be written
+	 */
+	public static final int DEFAULT_QUEUE_DEPTH = 1;
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	/**
+	 * A block of characters, or a request to flush or close the sink, handed from the producer to
+	 * the background thread
+	 */
+	private static class Block {
+		private final char[] buffer;
+		private final int length;
+		private final boolean close;
+		/**
+		 * Counted down once a flush or close request has been carried out
+		 */
+		private final CountDownLatch done;
+
+		public Block(char[] buffer, int length, boolean close, CountDownLatch done) {
+			this.buffer = buffer;
+			this.length = length;
+			this.close = close;
+			this.done = done;
+		}
+	}
+
+	private final Writer sink;
+
+	/**
+	 * Blocks that have been handed off by the producer and are waiting to be written
+	 */
+	private final BlockingQueue<Block> filledBlocks;
+
+	/**
+	 * Buffers that have been written and can be refilled by the producer
+	 */
+	private final BlockingQueue<char[]> emptyBuffers;
+
+	private final Thread consumer;
+
+	/**
+	 * The first exception thrown by the sink
+	 */
+	private volatile Throwable error = null;
+
+	private boolean closed = false;
+
+	/**
+	 * The buffer being filled by the producer
+	 */
+	private char[] current;
+
+	private int currentPosition = 0;
+
+	/**
+	 * Initializes a new <code>WriteBehindWriter</code> using the default buffer size and queue depth
+	 * 
+	 * @param sink
+	 */
+	public WriteBehindWriter(Writer sink) {
+		this(sink, DEFAULT_QUEUE_DEPTH, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Initializes a new <code>WriteBehindWriter</code> and starts its background thread
+	 * 
+	 * @param sink
+	 *            the writer to write to on a background thread
+	 * @param queueDepth
+	 *            the maximum number of filled buffers waiting to be written
+	 * @param bufferSize
+	 *            the number of characters in each buffer
+	 */
+	public WriteBehindWriter(Writer sink, int queueDepth, int bufferSize) {
+		if (queueDepth < 1) {
+			throw new IllegalArgumentException("Queue depth must be positive: " + queueDepth);
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.sink = sink;
+		/* the ring includes the buffer being filled */
+		int bufferCount = queueDepth + 1;
+		/*
+		 * backpressure is applied by the ring of buffers, and flush and close wait for their
+		 * requests to be carried out, so the queue of blocks never blocks
+		 */
+		this.filledBlocks = new ArrayBlockingQueue<Block>(bufferCount + 1);
+		this.emptyBuffers = new ArrayBlockingQueue<char[]>(bufferCount);
+		for (int i = 1; i < bufferCount; i++) {
+			emptyBuffers.add(new char[bufferSize]);
+		}
+		this.current = new char[bufferSize];
+		this.consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume();
+			}
+		}, "write-behind-" + THREAD_COUNT.incrementAndGet());
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Run by the background thread; writes blocks to the sink until the close request is received.
+	 * Once the sink has failed, blocks are discarded but buffers are still handed back and requests
+	 * still acknowledged so that the producer does not block forever.
+	 */
+	private void consume() {
+		while (true) {
+			Block block;
+			try {
+				block = filledBlocks.take();
+			} catch (InterruptedException e) {
+				/* not expected; the producer always ends the thread with a close request */
+				return;
+			}
+			try {
+				if (block.close) {
+					sink.close();
+				} else if (error == null) {
+					if (block.buffer != null) {
+						sink.write(block.buffer, 0, block.length);
+					} else {
+						sink.flush();
+					}
+				}
+			} catch (Throwable t) {
+				if (error == null) {
+					error = t;
+				}
+			} finally {
+				if (block.buffer != null) {
+					emptyBuffers.add(block.buffer);
+				}
+				if (block.done != null) {
+					block.done.countDown();
+				}
+			}
+			if (block.close) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#write(int)
+	 */
+	@Override
+	public void write(int c) throws IOException {
+		synchronized (lock) {
+			ensureOpen();
+			if (current == null || currentPosition == current.length) {
+				handOff();
+			}
+			current[currentPosition++] = (char) c;
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#write(char[], int, int)
+	 */
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock) {
+			ensureOpen();
+			while (len > 0) {
+				if (current == null || currentPosition == current.length) {
+					handOff();
+				}
+				int count = Math.min(len, current.length - currentPosition);
+				System.arraycopy(cbuf, off, current, currentPosition, count);
+				currentPosition += count;
+				off += count;
+				len -= count;
+			}
+		}
+	}
+
+	/**
+	 * @see java.io.Writer#write(java.lang.String, int, int)
+	 */
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		synchronized (lock) {
+			ensureOpen();
+			while (len > 0) {
+				if (current == null || currentPosition == current.length) {
+					handOff();
+				}
+				int count = Math.min(len, current.length - currentPosition);
+				str.getChars(off, off + count, current, currentPosition);
+				currentPosition += count;
+				off += count;
+				len -= count;
+			}
+		}
+	}
+
+	/**
+	 * Writes the platform line separator, as for {@link java.io.BufferedWriter#newLine()}
+	 * 
+	 * @throws IOException
+	 */
+	public void newLine() throws IOException {
+		write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length());
+	}
+
+	/**
+	 * Hands the characters written so far to the background thread and waits until they have been
+	 * written to the sink and the sink has been flushed
+	 * 
+	 * @see java.io.Writer#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		synchronized (lock) {
+			ensureOpen();
+			if (currentPosition > 0) {
+				handOff();
+			}
+			request(false);
+		}
+	}
+
+	/**
+	 * Hands any remaining characters to the background thread and waits until they have been
+	 * written and the sink has been closed
+	 * 
+	 * @throws IOException
+	 *             if the sink failed at any point, including while it was being closed
+	 * @see java.io.Writer#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (currentPosition > 0) {
+				put(new Block(current, currentPosition, false, null));
+			}
+			current = null;
+			request(true);
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the background thread and waits for an empty buffer to continue
+	 * writing to. The current buffer is null if a previous wait was interrupted.
+	 * 
+	 * @throws IOException
+	 *             if the sink has failed
+	 */
+	private void handOff() throws IOException {
+		checkError();
+		if (current != null) {
+			put(new Block(current, currentPosition, false, null));
+			current = null;
+			currentPosition = 0;
+		}
+		try {
+			current = emptyBuffers.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a buffer to be written.");
+		}
+	}
+
+	/**
+	 * Sends a flush or close request to the background thread and waits for it to be carried out
+	 * 
+	 * @param close
+	 * @throws IOException
+	 *             if the sink has failed
+	 */
+	private void request(boolean close) throws IOException {
+		CountDownLatch done = new CountDownLatch(1);
+		put(new Block(null, 0, close, done));
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for buffers to be written.");
+		}
+		checkError();
+	}
+
+	private void put(Block block) throws InterruptedIOException {
+		try {
+			filledBlocks.put(block);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while handing off a buffer to be written.");
+		}
+	}
+
+	/**
+	 * Rethrows the exception thrown by the sink, if any
+	 * 
+	 * @throws IOException
+	 */
+	private void checkError() throws IOException {
+		Throwable t = error;
+		if (t != null) {
+			if (t instanceof IOException) {
+				throw (IOException) t;
+			}
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			throw new IOException("Error while writing behind.", t);
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Writer has been closed.");
+		}
+	}
+
+}
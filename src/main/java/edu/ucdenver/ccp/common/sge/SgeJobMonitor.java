@@ -48,7 +48,9 @@ import org.apache.logging.log4j.core.config.DefaultConfiguration;
 import edu.ucdenver.ccp.common.calendar.CalendarUtil;
 import edu.ucdenver.ccp.common.file.CharacterEncoding;
 import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.file.reader.BlockStreamLineReader;
 import edu.ucdenver.ccp.common.file.reader.Line;
+import edu.ucdenver.ccp.common.file.reader.MutableLine;
 import edu.ucdenver.ccp.common.file.reader.StreamLineIterator;
 
 /**
@@ -119,20 +121,21 @@ public class SgeJobMonitor {
 		failureLogs = new ArrayList<File>();
 		for (File logDirectory : logDirectories) {
 			for (File logFile : logDirectory.listFiles()) {
-				StreamLineIterator lineIter = null;
+				/* lines are examined in place rather than allocating a Line for each one */
+				BlockStreamLineReader reader = null;
 				try {
-					lineIter = new StreamLineIterator(logFile, CharacterEncoding.UTF_8); 
-					while (lineIter.hasNext()) {
-						Line line = lineIter.next();
-						if (line.getText().contains("BUILD FAILURE")) {
+					reader = new BlockStreamLineReader(logFile, CharacterEncoding.UTF_8);
+					MutableLine line = new MutableLine();
+					while (reader.advance(line)) {
+						if (line.contains("BUILD FAILURE")) {
 							logger.error("SGE process failed. See log file: " + logFile.getAbsolutePath());
 							failureLogs.add(logFile);
 						}
 					}
 				}
 				finally {
-					if (lineIter != null) {
-						lineIter.close();
+					if (reader != null) {
+						reader.close();
 					}
 				}
 			}
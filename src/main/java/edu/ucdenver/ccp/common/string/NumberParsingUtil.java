@@ -0,0 +1,183 @@
+package edu.ucdenver.ccp.common.string;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+/**
+ * Utility methods for parsing numbers directly from a range of a <code>CharSequence</code>, e.g.
+ * a column of a line held in a reader's buffer, without first creating a <code>String</code>.
+ * The accepted syntax is that of the corresponding <code>parse</code> method of
+ * {@link Integer}, {@link Long} and {@link Double}.
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class NumberParsingUtil {
+
+	/**
+	 * Powers of 10 that can be represented exactly as doubles
+	 */
+	private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * The maximum number of significant digits for which a decimal is parsed directly; any long
+	 * with this many digits can be represented exactly as a double
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * Private constructor; this class should not be instantiated
+	 */
+	/* @formatter:off */
+	private NumberParsingUtil() {/* do not instantiate */
+	}
+	/* @formatter:on */
+
+	/**
+	 * Parses a decimal integer as {@link Integer#parseInt(String)} would
+	 * 
+	 * @param s
+	 * @param start
+	 *            the index of the first character (inclusive)
+	 * @param end
+	 *            the index of the last character (exclusive)
+	 * @return
+	 * @throws NumberFormatException
+	 *             if the characters are not a valid <code>int</code>
+	 */
+	public static int parseInt(CharSequence s, int start, int end) throws NumberFormatException {
+		long value = parseLong(s, start, end);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw numberFormatException(s, start, end);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a decimal integer as {@link Long#parseLong(String)} would
+	 * 
+	 * @param s
+	 * @param start
+	 *            the index of the first character (inclusive)
+	 * @param end
+	 *            the index of the last character (exclusive)
+	 * @return
+	 * @throws NumberFormatException
+	 *             if the characters are not a valid <code>long</code>
+	 */
+	public static long parseLong(CharSequence s, int start, int end) throws NumberFormatException {
+		if (start >= end) {
+			throw numberFormatException(s, start, end);
+		}
+		int i = start;
+		boolean negative = false;
+		char first = s.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == end) {
+				throw numberFormatException(s, start, end);
+			}
+		}
+		/* accumulates negatively, as Long.parseLong() does, so that Long.MIN_VALUE can be parsed */
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplicationLimit = limit / 10;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < multiplicationLimit) {
+				throw numberFormatException(s, start, end);
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				throw numberFormatException(s, start, end);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Parses a floating point number as {@link Double#parseDouble(String)} would. Plain decimals
+	 * with up to 15 significant digits (e.g. <code>-12.375</code>) are parsed directly; anything
+	 * else (exponents, more digits, NaN, etc.) is passed to <code>Double.parseDouble()</code>.
+	 * The result is identical either way.
+	 * 
+	 * @param s
+	 * @param start
+	 *            the index of the first character (inclusive)
+	 * @param end
+	 *            the index of the last character (exclusive)
+	 * @return
+	 * @throws NumberFormatException
+	 *             if the characters are not a valid <code>double</code>
+	 */
+	public static double parseDouble(CharSequence s, int start, int end) throws NumberFormatException {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digitCount = 0;
+		int fractionDigitCount = 0;
+		boolean inFraction = false;
+		for (; i < end; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				mantissa = 10 * mantissa + (c - '0');
+				digitCount++;
+				if (inFraction) {
+					fractionDigitCount++;
+				}
+			} else if (c == '.' && !inFraction) {
+				inFraction = true;
+			} else {
+				break;
+			}
+		}
+		if (i == end && digitCount > 0 && digitCount <= MAX_EXACT_DIGITS
+				&& fractionDigitCount < EXACT_POWERS_OF_TEN.length) {
+			/* both operands are exact, so the division is correctly rounded */
+			double value = mantissa / EXACT_POWERS_OF_TEN[fractionDigitCount];
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(s.subSequence(start, end).toString());
+	}
+
+	private static NumberFormatException numberFormatException(CharSequence s, int start, int end) {
+		return new NumberFormatException(String.format("For input string: \"%s\"", s.subSequence(start, end)));
+	}
+
+}
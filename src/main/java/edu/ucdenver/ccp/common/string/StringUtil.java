@@ -33,10 +33,8 @@ package edu.ucdenver.ccp.common.string;
  * #L%
  */
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.text.DateFormat;
@@ -55,7 +53,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import edu.ucdenver.ccp.common.file.CharacterEncoding;
-import edu.ucdenver.ccp.common.io.StreamUtil;
 
 /**
  * String utilities 
@@ -534,8 +531,7 @@ public class StringUtil {
 	 * @throws IOException
 	 */
 	public static String decode(byte[] byteArray, CharacterEncoding encoding) throws IOException {
-		InputStreamReader isr = new InputStreamReader(new ByteArrayInputStream(byteArray), encoding.getDecoder());
-		return StreamUtil.toString(isr);
+		return encoding.decode(byteArray, 0, byteArray.length);
 	}
 	
 	/**
@@ -0,0 +1,106 @@
+package edu.ucdenver.ccp.common.collections;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DictionaryEncodedListTest {
+
+	@Test
+	public void testAddAndGet() {
+		DictionaryEncodedList list = new DictionaryEncodedList();
+		list.add("human");
+		list.add(new String("mouse"));
+		list.add(new String("human"));
+		list.add("");
+		assertEquals(CollectionsUtil.createList("human", "mouse", "human", ""), list);
+		assertSame(list.get(0), list.get(2));
+		assertArrayEquals(new int[] { 0, 1, 0, 2 }, list.getCodes());
+		assertEquals(CollectionsUtil.createList("human", "mouse", ""), list.getDictionary());
+		assertEquals(3, list.getDictionarySize());
+		assertEquals(1, list.lookupCode("mouse"));
+		assertEquals(-1, list.lookupCode("rat"));
+	}
+
+	@Test
+	public void testAppendFromCharSequence() {
+		DictionaryEncodedList list = new DictionaryEncodedList(0);
+		StringBuilder line = new StringBuilder("GO:0001\tIEA\tGO:0002\tIEA");
+		assertEquals(0, list.append(line, 8, 11));
+		assertEquals(0, list.append(line, 20, 23));
+		assertEquals(1, list.append(line, 0, 2));
+		assertEquals(CollectionsUtil.createList("IEA", "IEA", "GO"), list);
+	}
+
+	@Test
+	public void testManyDistinctValues() {
+		Random random = new Random(17);
+		List<String> expected = new ArrayList<String>();
+		DictionaryEncodedList list = new DictionaryEncodedList();
+		for (int i = 0; i < 20000; i++) {
+			String value = Integer.toString(random.nextInt(5000), 36);
+			expected.add(value);
+			list.add(value);
+		}
+		assertEquals(expected, list);
+		assertEquals(new HashSet<String>(expected).size(), list.getDictionarySize());
+		list.trimToSize();
+		list.add("after trimming");
+		assertEquals("after trimming", list.get(list.size() - 1));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfBounds() {
+		DictionaryEncodedList list = new DictionaryEncodedList();
+		list.add("a");
+		list.get(1);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSetNotSupported() {
+		DictionaryEncodedList list = new DictionaryEncodedList();
+		list.add("a");
+		list.set(0, "b");
+	}
+
+}
@@ -0,0 +1,194 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.FileWriterUtil.FileSuffixEnforcement;
+import edu.ucdenver.ccp.common.file.FileWriterUtil.SyncPolicy;
+import edu.ucdenver.ccp.common.file.FileWriterUtil.WriteMode;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class ChannelFileWriterTest extends DefaultTestCase {
+
+	private static final String[] PIECES = { "a", "plain ascii ", "\t", "\u00e9", "\u4e2d\u6587", "\ud83d\ude00",
+			"caf\u00e9 ", "\n" };
+
+	/**
+	 * Writes random text using all of the write methods through a small buffer, and compares the
+	 * file with the text encoded by <code>String.getBytes()</code>
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testWriteRandomText() throws IOException {
+		Random random = new Random(3);
+		for (int trial = 0; trial < 100; trial++) {
+			File file = folder.newFile("random-" + trial + ".utf8");
+			StringBuilder expected = new StringBuilder();
+			int bufferSize = 20 + random.nextInt(20);
+			ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8,
+					WriteMode.OVERWRITE, FileSuffixEnforcement.OFF, bufferSize, SyncPolicy.NONE);
+			try {
+				for (int i = 0; i < 50; i++) {
+					String piece = PIECES[random.nextInt(PIECES.length)];
+					expected.append(piece);
+					switch (random.nextInt(5)) {
+					case 0:
+						writer.write(piece);
+						break;
+					case 1:
+						writer.write(("xx" + piece).toCharArray(), 2, piece.length());
+						break;
+					case 2:
+						writer.append(new StringBuilder(piece));
+						break;
+					case 3:
+						writer.append("[" + piece + "]", 1, piece.length() + 1);
+						break;
+					default:
+						/* one char at a time, which splits surrogate pairs across writes */
+						for (int j = 0; j < piece.length(); j++) {
+							writer.write(piece.charAt(j));
+						}
+					}
+				}
+			} finally {
+				writer.close();
+			}
+			assertArrayEquals(expected.toString(), expected.toString().getBytes("UTF-8"),
+					Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	@Test
+	public void testAppendPrimitives() throws IOException {
+		File file = folder.newFile("primitives.ascii");
+		long[] longs = { 0, 7, -7, 10, -10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE,
+				Long.MIN_VALUE, 1234567890123L };
+		StringBuilder expected = new StringBuilder();
+		ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.US_ASCII,
+				WriteMode.OVERWRITE, FileSuffixEnforcement.ON, 24, SyncPolicy.ON_FLUSH);
+		for (long value : longs) {
+			writer.append(value).append('\t');
+			expected.append(value).append('\t');
+			if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				writer.append((int) value).append(',');
+				expected.append((int) value).append(',');
+			}
+		}
+		writer.append(true).append(false).append(0.1).append(-2.5e-10).append(Double.NaN);
+		expected.append(true).append(false).append(0.1).append(-2.5e-10).append(Double.NaN);
+		writer.newLine();
+		expected.append(System.getProperty("line.separator"));
+		writer.flush();
+		writer.close();
+		assertEquals(expected.toString(), new String(Files.readAllBytes(file.toPath()), "US-ASCII"));
+	}
+
+	@Test
+	public void testWriteModes() throws IOException {
+		File file = folder.newFile("modes.utf8");
+		ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8);
+		writer.append("first");
+		writer.close();
+		writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8, WriteMode.APPEND,
+				FileSuffixEnforcement.ON, ChannelFileWriter.DEFAULT_BUFFER_SIZE, SyncPolicy.ON_CLOSE);
+		writer.append(" second");
+		writer.close();
+		assertEquals("first second", new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+		writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8);
+		writer.append("third");
+		writer.close();
+		assertEquals("third", new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSuffixEnforcement() throws IOException {
+		File file = folder.newFile("wrong-suffix.txt");
+		FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8, WriteMode.OVERWRITE,
+				FileSuffixEnforcement.ON);
+	}
+
+	@Test(expected = UnmappableCharacterException.class)
+	public void testUnmappableCharacter() throws IOException {
+		File file = folder.newFile("unmappable.ascii");
+		ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.US_ASCII);
+		try {
+			writer.append("caf\u00e9");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testUnpairedSurrogate() throws IOException {
+		File file = folder.newFile("surrogate.utf8");
+		ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8);
+		try {
+			writer.append("a\ud83d");
+			writer.append("b");
+			fail("A high surrogate followed by an ASCII character should be malformed.");
+		} catch (MalformedInputException e) {
+			/* expected */
+		}
+		writer.append("\ud83d");
+		try {
+			writer.close();
+			fail("A high surrogate at the end of the output should be malformed.");
+		} catch (MalformedInputException e) {
+			/* expected */
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testWriteAfterClose() throws IOException {
+		File file = folder.newFile("closed.utf8");
+		ChannelFileWriter writer = FileWriterUtil.initChannelWriter(file, CharacterEncoding.UTF_8);
+		writer.close();
+		writer.append("x");
+	}
+
+}
@@ -0,0 +1,295 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncodingDetector.Detection;
+import edu.ucdenver.ccp.common.io.ClassPathUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class CharacterEncodingDetectorTest extends DefaultTestCase {
+
+	private static final String UTF8_TEXT = "na\u00efve \u4e2d\u6587 \ud83d\ude00";
+
+	@Test
+	public void testDetectAscii() throws IOException {
+		byte[] bytes = "plain ascii\n".getBytes("US-ASCII");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes));
+		assertEquals(CharacterEncoding.US_ASCII, detection.getEncoding());
+		assertTrue(detection.isComplete());
+		assertEquals(CharacterEncoding.US_ASCII, detection.getReaderEncoding());
+		assertFalse(detection.hasByteOrderMark());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectAsciiPrefix() throws IOException {
+		byte[] bytes = ("0123456789" + UTF8_TEXT).getBytes("UTF-8");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes), 10);
+		assertEquals(CharacterEncoding.US_ASCII, detection.getEncoding());
+		assertFalse(detection.isComplete());
+		/* the remainder of the stream may not be ASCII */
+		assertEquals(CharacterEncoding.UTF_8, detection.getReaderEncoding());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectStreamOfPrefixLength() throws IOException {
+		byte[] bytes = "0123456789".getBytes("US-ASCII");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes), 10);
+		assertTrue(detection.isComplete());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectUtf8() throws IOException {
+		byte[] bytes = UTF8_TEXT.getBytes("UTF-8");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes));
+		assertEquals(CharacterEncoding.UTF_8, detection.getEncoding());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectUtf8SequenceTruncatedByPrefix() throws IOException {
+		/* the prefix ends within the three byte encoding of U+4E2D */
+		byte[] bytes = "abc\u4e2d".getBytes("UTF-8");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes), 5);
+		assertEquals(CharacterEncoding.UTF_8, detection.getEncoding());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectLatin1() throws IOException {
+		byte[] bytes = "caf\u00e9 cr\u00e8me".getBytes("ISO-8859-1");
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes));
+		assertEquals(CharacterEncoding.ISO_8859_1, detection.getEncoding());
+		assertEquals(CharacterEncoding.ISO_8859_1, detection.getReaderEncoding());
+		assertArrayEquals(bytes, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectUtf8ByteOrderMark() throws IOException {
+		byte[] text = "plain ascii".getBytes("US-ASCII");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+		bytes.write(text);
+		Detection detection = CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(CharacterEncoding.UTF_8, detection.getEncoding());
+		assertTrue(detection.hasByteOrderMark());
+		assertArrayEquals(text, readAll(detection.getInputStream()));
+	}
+
+	@Test
+	public void testDetectUnsupportedByteOrderMarks() throws IOException {
+		assertUnsupported(new byte[] { (byte) 0xFE, (byte) 0xFF, 0, 'a' }, "UTF-16BE");
+		assertUnsupported(new byte[] { (byte) 0xFF, (byte) 0xFE, 'a', 0 }, "UTF-16LE");
+		assertUnsupported(new byte[] { 0, 0, (byte) 0xFE, (byte) 0xFF }, "UTF-32BE");
+		assertUnsupported(new byte[] { (byte) 0xFF, (byte) 0xFE, 0, 0 }, "UTF-32LE");
+	}
+
+	@Test
+	public void testInitBufferedReaderSkipsByteOrderMark() throws IOException {
+		File file = folder.newFile("bom.txt");
+		try (OutputStream os = new FileOutputStream(file)) {
+			os.write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF });
+			os.write((UTF8_TEXT + "\nline 2\n").getBytes("UTF-8"));
+		}
+		try (BufferedReader reader = FileReaderUtil.initBufferedReader(file)) {
+			assertEquals(UTF8_TEXT, reader.readLine());
+			assertEquals("line 2", reader.readLine());
+		}
+	}
+
+	@Test
+	public void testInitBufferedReaderLatin1() throws IOException {
+		File file = folder.newFile("latin1.txt.gz");
+		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+			os.write("caf\u00e9\n".getBytes("ISO-8859-1"));
+		}
+		try (BufferedReader reader = FileReaderUtil.initBufferedReader(file)) {
+			assertEquals("caf\u00e9", reader.readLine());
+		}
+	}
+
+	/**
+	 * Compares the offset of the first malformed byte found by validating in chunks of various
+	 * sizes, and by validating a stream, with the offset at which the JDK decoder reports
+	 * malformed input
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testFindMalformedInput() throws IOException {
+		Random random = new Random(7);
+		for (int trial = 0; trial < 300; trial++) {
+			byte[] bytes = randomBytes(random, random.nextInt(60), trial % 3 == 0);
+			File file = folder.newFile("validate-" + trial + ".txt");
+			try (OutputStream os = new FileOutputStream(file)) {
+				os.write(bytes);
+			}
+			for (CharacterEncoding encoding : CharacterEncoding.values()) {
+				long expected = findMalformedInputWithDecoder(encoding, bytes);
+				String message = encoding + " " + trial;
+				assertEquals(message, expected,
+						CharacterEncodingDetector.findMalformedInput(new ByteArrayInputStream(bytes), encoding));
+				for (int chunkSize : new int[] { 1, 2, 3, 4, 5, 11 }) {
+					assertEquals(message + " chunk size " + chunkSize, expected, CharacterEncodingDetector
+							.findMalformedInput(file, encoding, ForkJoinPool.commonPool(), chunkSize));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testValidate() throws IOException {
+		File file = folder.newFile("valid.txt.gz");
+		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+			os.write(("abc" + UTF8_TEXT).getBytes("UTF-8"));
+		}
+		CharacterEncodingDetector.validate(file, CharacterEncoding.UTF_8);
+		try {
+			CharacterEncodingDetector.validate(file, CharacterEncoding.US_ASCII);
+			fail("Validation as ASCII should fail.");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed US-ASCII input at byte offset 5 "));
+		}
+	}
+
+	@Test
+	public void testCompressedFileSuffixes() throws IOException {
+		File gzFile = folder.newFile("latin1.TXT.GZ");
+		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(gzFile))) {
+			os.write("caf\u00e9\n".getBytes("ISO-8859-1"));
+		}
+		assertEquals(CharacterEncoding.ISO_8859_1, CharacterEncodingDetector.detect(gzFile).getEncoding());
+		assertEquals(3, CharacterEncodingDetector.findMalformedInput(gzFile, CharacterEncoding.UTF_8,
+				ForkJoinPool.commonPool()));
+
+		File zFile = folder.newFile("sampleUnixCompressFile.txt.Z");
+		ClassPathUtil.copyClasspathResourceToFile(getClass(), "sampleUnixCompressFile.txt.Z", zFile);
+		assertEquals(CharacterEncoding.US_ASCII, CharacterEncodingDetector.detect(zFile).getEncoding());
+		CharacterEncodingDetector.validate(zFile, CharacterEncoding.US_ASCII);
+	}
+
+	@Test
+	public void testValidateLargeStream() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 200000) {
+			sb.append(UTF8_TEXT).append('\n');
+		}
+		byte[] bytes = sb.toString().getBytes("UTF-8");
+		assertEquals(-1L,
+				CharacterEncodingDetector.findMalformedInput(new ByteArrayInputStream(bytes), CharacterEncoding.UTF_8));
+		bytes[bytes.length - 1] = (byte) 0x80;
+		assertEquals(bytes.length - 1L,
+				CharacterEncodingDetector.findMalformedInput(new ByteArrayInputStream(bytes), CharacterEncoding.UTF_8));
+	}
+
+	private static void assertUnsupported(byte[] bytes, String encoding) throws IOException {
+		try {
+			CharacterEncodingDetector.detect(new ByteArrayInputStream(bytes));
+			fail("A " + encoding + " byte order mark should not be supported.");
+		} catch (UnsupportedEncodingException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(encoding));
+		}
+	}
+
+	/**
+	 * @return the offset at which the JDK decoder reports malformed input, or -1
+	 */
+	private static long findMalformedInputWithDecoder(CharacterEncoding encoding, byte[] bytes) {
+		CharsetDecoder decoder = encoding.getCharset().newDecoder();
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		CoderResult result = decoder.decode(in, CharBuffer.allocate(bytes.length), true);
+		return result.isError() ? in.position() : -1;
+	}
+
+	/**
+	 * @return mostly valid UTF-8, with random bytes mixed in unless <code>valid</code> is true
+	 */
+	private static byte[] randomBytes(Random random, int length, boolean valid) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		while (bytes.size() < length) {
+			int kind = random.nextInt(valid ? 8 : 10);
+			if (kind < 5) {
+				bytes.write(random.nextInt(0x80));
+			} else if (kind < 8) {
+				int codePoint;
+				do {
+					codePoint = 0x80 + random.nextInt(0x10FFFF - 0x80);
+				} while (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE);
+				bytes.write(new String(Character.toChars(codePoint)).getBytes("UTF-8"));
+			} else {
+				bytes.write(random.nextInt(256));
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[3];
+		int n;
+		while ((n = inputStream.read(buffer)) != -1) {
+			bytes.write(buffer, 0, n);
+		}
+		inputStream.close();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,170 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.UnmappableCharacterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CharacterEncodingTest {
+
+	private static final String UTF8_TEXT = "na\u00efve \u4e2d\u6587 \ud83d\ude00";
+
+	@Test
+	public void testGetCharset() {
+		for (CharacterEncoding encoding : CharacterEncoding.values()) {
+			assertEquals(encoding.getCharacterSetName(), encoding.getCharset().name());
+		}
+	}
+
+	@Test
+	public void testBorrowedCodersAreReusedPerThread() throws Exception {
+		assertSame(CharacterEncoding.UTF_8.borrowDecoder(), CharacterEncoding.UTF_8.borrowDecoder());
+		assertSame(CharacterEncoding.UTF_8.borrowEncoder(), CharacterEncoding.UTF_8.borrowEncoder());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Object other = executor.submit(() -> CharacterEncoding.UTF_8.borrowDecoder()).get();
+			assertNotSame(other, CharacterEncoding.UTF_8.borrowDecoder());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDecodeByteArray() throws Exception {
+		byte[] bytes = ("xx" + UTF8_TEXT + "yy").getBytes("UTF-8");
+		assertEquals(UTF8_TEXT, CharacterEncoding.UTF_8.decode(bytes, 2, bytes.length - 4));
+		assertEquals("", CharacterEncoding.UTF_8.decode(bytes, 0, 0));
+		byte[] latin1 = "caf\u00e9".getBytes("ISO-8859-1");
+		assertEquals("caf\u00e9", CharacterEncoding.ISO_8859_1.decode(latin1, 0, latin1.length));
+	}
+
+	@Test
+	public void testDecodeLargeByteArray() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 100000) {
+			sb.append(UTF8_TEXT);
+		}
+		byte[] bytes = sb.toString().getBytes("UTF-8");
+		assertEquals(sb.toString(), CharacterEncoding.UTF_8.decode(bytes, 0, bytes.length));
+		/* a subsequent small decode is unaffected */
+		assertEquals("abc", CharacterEncoding.UTF_8.decode("abc".getBytes("UTF-8"), 0, 3));
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testDecodeMalformed() throws Exception {
+		byte[] bytes = UTF8_TEXT.getBytes("UTF-8");
+		CharacterEncoding.US_ASCII.decode(bytes, 0, bytes.length);
+	}
+
+	@Test
+	public void testDecodeAfterError() throws Exception {
+		byte[] bytes = { 'a', (byte) 0xC3 };
+		try {
+			CharacterEncoding.UTF_8.decode(bytes, 0, bytes.length);
+		} catch (MalformedInputException e) {
+			/* expected: truncated sequence */
+		}
+		/* the borrowed decoder is reset before it is reused */
+		assertEquals("a", CharacterEncoding.UTF_8.decode(bytes, 0, 1));
+	}
+
+	@Test
+	public void testDecodeGrowsOutputBuffer() throws Exception {
+		CharBuffer out = CharBuffer.allocate(4);
+		out.put("ab");
+		CharBuffer result = CharacterEncoding.UTF_8.decode(ByteBuffer.wrap(UTF8_TEXT.getBytes("UTF-8")), out);
+		result.flip();
+		assertEquals("ab" + UTF8_TEXT, result.toString());
+
+		CharBuffer large = CharBuffer.allocate(64);
+		assertSame(large, CharacterEncoding.UTF_8.decode(ByteBuffer.wrap(UTF8_TEXT.getBytes("UTF-8")), large));
+	}
+
+	@Test
+	public void testEncodeGrowsOutputBuffer() throws Exception {
+		ByteBuffer out = ByteBuffer.allocate(2);
+		ByteBuffer result = CharacterEncoding.UTF_8.encode(CharBuffer.wrap(UTF8_TEXT), out);
+		result.flip();
+		byte[] bytes = new byte[result.remaining()];
+		result.get(bytes);
+		assertEquals(UTF8_TEXT, new String(bytes, "UTF-8"));
+	}
+
+	@Test(expected = UnmappableCharacterException.class)
+	public void testEncodeUnmappable() throws Exception {
+		CharacterEncoding.US_ASCII.encode(CharBuffer.wrap(UTF8_TEXT), ByteBuffer.allocate(64));
+	}
+
+	@Test
+	public void testConcurrentDecode() throws Exception {
+		final byte[] bytes = UTF8_TEXT.getBytes("UTF-8");
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						for (int i = 0; i < 10000; i++) {
+							if (!UTF8_TEXT.equals(CharacterEncoding.UTF_8.decode(bytes, 0, bytes.length))) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> future : futures) {
+				assertEquals(true, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
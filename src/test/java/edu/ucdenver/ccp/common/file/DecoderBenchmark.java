@@ -0,0 +1,166 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the {@link FastPathDecoder} returned by
+ * {@link CharacterEncoding#getDecoder()} with that of the JDK decoders on text that is almost
+ * entirely ASCII. This is not run as part of the test suite; run it from the command line, e.g.
+ * 
+ * <pre>
+ * java -cp target/classes:target/test-classes edu.ucdenver.ccp.common.file.DecoderBenchmark
+ * </pre>
+ * 
+ * @author Center for Computational Pharmacology; ccpsupport@ucdenver.edu
+ * 
+ */
+public class DecoderBenchmark {
+
+	private static final int INPUT_SIZE = 16 * 1024 * 1024;
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws Exception {
+		byte[] bytes = mostlyAsciiUtf8(INPUT_SIZE);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		CharBuffer out = CharBuffer.allocate(bytes.length);
+
+		System.out.println(String.format("Decoding %d MB of UTF-8 text (~0.1%% non-ASCII); MB/s, best of %d",
+				bytes.length >> 20, ITERATIONS));
+		for (CharacterEncoding encoding : new CharacterEncoding[] { CharacterEncoding.UTF_8,
+				CharacterEncoding.ISO_8859_1 }) {
+			byte[] input = encoding == CharacterEncoding.UTF_8 ? bytes : asciiOnly(bytes);
+			report(encoding + " heap buffer", benchmarkBuffer(jdkDecoder(encoding), ByteBuffer.wrap(input), out),
+					benchmarkBuffer(encoding.getDecoder(), ByteBuffer.wrap(input), out), input.length);
+		}
+		report("UTF_8 direct buffer", benchmarkBuffer(jdkDecoder(CharacterEncoding.UTF_8), direct, out),
+				benchmarkBuffer(CharacterEncoding.UTF_8.getDecoder(), direct, out), bytes.length);
+		report("UTF_8 InputStreamReader", benchmarkReader(bytes, false), benchmarkReader(bytes, true), bytes.length);
+	}
+
+	private static void report(String label, long jdkNanos, long fastNanos, int length) {
+		System.out.println(String.format("%-26s JDK %8.1f   fast path %8.1f   speedup %.2fx", label,
+				megabytesPerSecond(length, jdkNanos), megabytesPerSecond(length, fastNanos), (double) jdkNanos
+						/ fastNanos));
+	}
+
+	private static double megabytesPerSecond(int length, long nanos) {
+		return (length / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+
+	private static long benchmarkBuffer(CharsetDecoder decoder, ByteBuffer in, CharBuffer out) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+			in.rewind();
+			out.clear();
+			long start = System.nanoTime();
+			decoder.reset();
+			if (!decoder.decode(in, out, true).isUnderflow()) {
+				throw new IllegalStateException("Decoding failed");
+			}
+			decoder.flush(out);
+			long elapsed = System.nanoTime() - start;
+			if (i >= WARMUP_ITERATIONS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		return best;
+	}
+
+	private static long benchmarkReader(byte[] bytes, boolean fast) throws Exception {
+		char[] buffer = new char[8192];
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+			CharsetDecoder decoder = fast ? CharacterEncoding.UTF_8.getDecoder() : jdkDecoder(CharacterEncoding.UTF_8);
+			long start = System.nanoTime();
+			try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), decoder)) {
+				while (reader.read(buffer) != -1) {
+					/* consume */
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+			if (i >= WARMUP_ITERATIONS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+		return best;
+	}
+
+	private static CharsetDecoder jdkDecoder(CharacterEncoding encoding) {
+		return encoding.getCharset().newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+	}
+
+	/**
+	 * @return tab-delimited, line-oriented ASCII text with roughly one non-ASCII character per
+	 *         thousand bytes
+	 */
+	private static byte[] mostlyAsciiUtf8(int size) throws Exception {
+		Random random = new Random(0);
+		StringBuilder sb = new StringBuilder(size);
+		while (sb.length() < size) {
+			for (int column = 0; column < 8; column++) {
+				int length = 2 + random.nextInt(14);
+				for (int i = 0; i < length; i++) {
+					sb.append((char) ('a' + random.nextInt(26)));
+				}
+				if (random.nextInt(100) == 0) {
+					sb.append(random.nextBoolean() ? '\u00e9' : '\u4e2d');
+				}
+				sb.append(column == 7 ? '\n' : '\t');
+			}
+		}
+		sb.setLength(size);
+		return sb.toString().getBytes("UTF-8");
+	}
+
+	private static byte[] asciiOnly(byte[] bytes) {
+		byte[] ascii = bytes.clone();
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] &= 0x7f;
+		}
+		return ascii;
+	}
+
+}
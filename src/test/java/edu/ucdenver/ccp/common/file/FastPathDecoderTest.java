@@ -0,0 +1,187 @@
+package edu.ucdenver.ccp.common.file;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link FastPathDecoder} with the JDK decoders on random input, including malformed
+ * input, which is replaced rather than reported so that malformed sequence lengths are compared
+ */
+public class FastPathDecoderTest {
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testMatchesJdkDecoders() throws Exception {
+		for (CharacterEncoding encoding : CharacterEncoding.values()) {
+			for (int trial = 0; trial < 2000; trial++) {
+				byte[] bytes = randomBytes(random.nextInt(100));
+				String expected = decodeAll(jdkDecoder(encoding), bytes, false, bytes.length, bytes.length);
+				String message = encoding + " " + toHex(bytes);
+				assertEquals(message, expected, decodeAll(fastDecoder(encoding), bytes, false, bytes.length,
+						bytes.length));
+				assertEquals(message, expected, decodeAll(fastDecoder(encoding), bytes, true, bytes.length,
+						bytes.length));
+				int inChunk = 1 + random.nextInt(8);
+				int outChunk = 2 + random.nextInt(8);
+				assertEquals(message, expected, decodeAll(fastDecoder(encoding), bytes, false, inChunk, outChunk));
+				assertEquals(message, expected, decodeAll(fastDecoder(encoding), bytes, true, inChunk, outChunk));
+			}
+		}
+	}
+
+	@Test
+	public void testLargeDirectBuffer() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 50000) {
+			sb.append("plain ascii text \u00e9\u4e2d\ud83d\ude00 ");
+		}
+		byte[] bytes = sb.toString().getBytes("UTF-8");
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		assertEquals(sb.toString(), CharacterEncoding.UTF_8.getDecoder().decode(direct).toString());
+		direct.rewind();
+		CharBuffer directOut = ByteBuffer.allocateDirect(bytes.length * 2).asCharBuffer();
+		CharsetDecoder decoder = CharacterEncoding.UTF_8.getDecoder();
+		assertEquals(CoderResult.UNDERFLOW, decoder.decode(direct, directOut, true));
+		assertEquals(CoderResult.UNDERFLOW, decoder.flush(directOut));
+		directOut.flip();
+		assertEquals(sb.toString(), directOut.toString());
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testReportsMalformedInput() throws Exception {
+		CharacterEncoding.UTF_8.getDecoder().decode(ByteBuffer.wrap(new byte[] { 'a', 'b', (byte) 0xC0, (byte) 0x80 }));
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testReportsTruncatedInput() throws Exception {
+		CharacterEncoding.UTF_8.getDecoder().decode(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xE4, (byte) 0xB8 }));
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testReportsNonAsciiInAscii() throws Exception {
+		CharacterEncoding.US_ASCII.getDecoder().decode(ByteBuffer.wrap("0123456789\u00e9".getBytes("ISO-8859-1")));
+	}
+
+	/**
+	 * @return mostly ASCII bytes mixed with valid UTF-8 sequences, random high bytes and truncated
+	 *         sequences
+	 */
+	private byte[] randomBytes(int length) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(length * 4 + 4);
+		while (buffer.position() < length) {
+			int kind = random.nextInt(10);
+			if (kind < 5) {
+				buffer.put((byte) random.nextInt(0x80));
+			} else if (kind < 8) {
+				int codePoint;
+				do {
+					codePoint = 0x80 + random.nextInt(0x10FFFF - 0x80);
+				} while (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE);
+				byte[] encoded = new String(Character.toChars(codePoint)).getBytes("UTF-8");
+				buffer.put(encoded, 0, kind == 7 ? 1 + random.nextInt(encoded.length) : encoded.length);
+			} else {
+				buffer.put((byte) random.nextInt(256));
+			}
+		}
+		byte[] bytes = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static CharsetDecoder jdkDecoder(CharacterEncoding encoding) {
+		return encoding.getCharset().newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	private static CharsetDecoder fastDecoder(CharacterEncoding encoding) {
+		return new FastPathDecoder(encoding).onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+				CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Decodes the input, feeding at most <code>inChunk</code> bytes and providing at most
+	 * <code>outChunk</code> chars of output space at a time
+	 */
+	private static String decodeAll(CharsetDecoder decoder, byte[] bytes, boolean direct, int inChunk,
+			int outChunk) {
+		ByteBuffer in = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+		in.put(bytes).flip();
+		StringBuilder sb = new StringBuilder();
+		CharBuffer out = CharBuffer.allocate(Math.max(outChunk, 1));
+		int limit = 0;
+		while (true) {
+			limit = Math.min(bytes.length, Math.max(limit, in.position()) + inChunk);
+			in.limit(limit);
+			boolean endOfInput = limit == bytes.length;
+			CoderResult result = decoder.decode(in, out, endOfInput);
+			out.flip();
+			sb.append(out);
+			out.clear();
+			if (endOfInput && result.isUnderflow()) {
+				break;
+			}
+		}
+		while (decoder.flush(out).isOverflow()) {
+			out.flip();
+			sb.append(out);
+			out.clear();
+		}
+		out.flip();
+		sb.append(out);
+		return sb.toString();
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+}
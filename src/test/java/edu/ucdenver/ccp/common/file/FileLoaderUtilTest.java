@@ -37,19 +37,28 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import edu.ucdenver.ccp.common.collections.CollectionsUtil;
+import edu.ucdenver.ccp.common.collections.DictionaryEncodedList;
+import edu.ucdenver.ccp.common.file.reader.DelimitedRecordIterator;
 import edu.ucdenver.ccp.common.file.reader.StreamLineIterator;
 import edu.ucdenver.ccp.common.string.RegExPatterns;
 import edu.ucdenver.ccp.common.string.StringConstants;
@@ -314,6 +323,121 @@ public class FileLoaderUtilTest extends DefaultTestCase {
 		FileReaderUtil.loadColumnsFromDelimitedFile(fiveColumnFile,CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, null);
 	}
 
+	@Test
+	public void testIterateColumnsFromFiveColumnFile() throws Exception {
+		List<String[]> extractedColumns = new ArrayList<String[]>();
+		DelimitedRecordIterator recordIter = FileReaderUtil.iterateColumnsFromDelimitedFile(
+				fiveColumnFileWithCommentOnLineFour, CharacterEncoding.US_ASCII, RegExPatterns.TAB, COMMENT_INDICATOR,
+				4, 0);
+		try {
+			while (recordIter.hasNext()) {
+				extractedColumns.add(recordIter.next());
+			}
+		} finally {
+			recordIter.close();
+		}
+		List<String[]> expectedColumns = CollectionsUtil.createList(new String[] { "15", "11" }, new String[] {
+				"25", "21" }, new String[] { "35", "31" }, new String[] { "55", "51" }, new String[] { "65", "61" });
+		compareListsOfStringArrays(expectedColumns, extractedColumns);
+	}
+
+	@Test
+	public void testStreamColumnFromGzippedFile() throws Exception {
+		File gzippedFile = folder.newFile("fiveColumnFile.gz");
+		PrintStream ps = new PrintStream(new GZIPOutputStream(new FileOutputStream(gzippedFile)));
+		printLinesToStream(ps, getFiveColumnLines());
+		ps.close();
+		List<String> expectedColumn = CollectionsUtil.createList("13", "23", "33", "43", "53", "63");
+		try (Stream<String> column = FileReaderUtil.streamColumnFromDelimitedFile(gzippedFile,
+				CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, 2)) {
+			assertEquals(expectedColumn, column.collect(Collectors.toList()));
+		}
+		try (Stream<String> lines = FileReaderUtil.streamLinesFromFile(gzippedFile, CharacterEncoding.US_ASCII, null)) {
+			assertEquals(getFiveColumnLines().subList(0, 2), lines.limit(2).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void testReadColumnIntoPresizedTarget() throws Exception {
+		final int[] values = new int[6];
+		long count = FileReaderUtil.readColumnFromDelimitedFile(fiveColumnFile, CharacterEncoding.US_ASCII,
+				RegExPatterns.TAB, null, 3, new Consumer<String>() {
+					private int index = 0;
+
+					@Override
+					public void accept(String value) {
+						values[index++] = Integer.parseInt(value);
+					}
+				});
+		assertEquals(6, count);
+		assertArrayEquals(new int[] { 14, 24, 34, 44, 54, 64 }, values);
+
+		List<String> column = FileReaderUtil.loadColumnFromDelimitedFile(fiveColumnFile, CharacterEncoding.US_ASCII,
+				RegExPatterns.TAB, null, 0, new ArrayList<String>(6));
+		assertEquals(CollectionsUtil.createList("11", "21", "31", "41", "51", "61"), column);
+	}
+
+	@Test
+	public void testLoadDictionaryEncodedColumn() throws Exception {
+		File file = folder.newFile("lowCardinalityFile");
+		PrintStream ps = new PrintStream(file);
+		printLinesToStream(ps, CollectionsUtil.createList("1\tIEA", "2\tTAS", COMMENT_INDICATOR + "3\tIDA",
+				"4\tIEA", "5\tIEA"));
+		ps.close();
+		DictionaryEncodedList column = FileReaderUtil.loadDictionaryEncodedColumnFromDelimitedFile(file,
+				CharacterEncoding.US_ASCII, RegExPatterns.TAB, COMMENT_INDICATOR, 1);
+		assertEquals(CollectionsUtil.createList("IEA", "TAS", "IEA", "IEA"), column);
+		assertEquals(CollectionsUtil.createList("IEA", "TAS"), column.getDictionary());
+		assertArrayEquals(new int[] { 0, 1, 0, 0 }, column.getCodes());
+		assertEquals(getOneColumnLines(), FileReaderUtil.loadDictionaryEncodedColumnFromDelimitedFile(oneColumnFile,
+				CharacterEncoding.US_ASCII, null, null, 0));
+	}
+
+	@Test
+	public void testLoadNumericColumns() throws Exception {
+		assertArrayEquals(new int[] { 13, 23, 33, 43, 53, 63 }, FileReaderUtil.loadIntColumnFromDelimitedFile(
+				fiveColumnFile, CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, 2));
+		assertArrayEquals(new long[] { 11, 21, 31, 51, 61 }, FileReaderUtil.loadLongColumnFromDelimitedFile(
+				fiveColumnFileWithCommentOnLineFour, CharacterEncoding.US_ASCII, RegExPatterns.TAB, COMMENT_INDICATOR,
+				0));
+		assertArrayEquals(new double[] { 11, 21, 31, 41, 51, 61 }, FileReaderUtil.loadDoubleColumnFromDelimitedFile(
+				oneColumnFile, CharacterEncoding.US_ASCII, null, null, 0), 0);
+	}
+
+	@Test
+	public void testLoadNumericColumnWithInvalidCells() throws Exception {
+		File file = folder.newFile("scoreFile");
+		PrintStream ps = new PrintStream(file);
+		printLinesToStream(ps, CollectionsUtil.createList("a\t0.5", "b\t", "c\t n/a ", "d\t 1.25 "));
+		ps.close();
+		assertArrayEquals(new double[] { 0.5, 1.25 }, FileReaderUtil.loadDoubleColumnFromDelimitedFile(file,
+				CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, 1, FileReaderUtil.InvalidCellHandling.SKIP, 0),
+				0);
+		assertArrayEquals(new double[] { 0.5, -1, -1, 1.25 }, FileReaderUtil.loadDoubleColumnFromDelimitedFile(file,
+				CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, 1, FileReaderUtil.InvalidCellHandling.SENTINEL,
+				-1), 0);
+		try {
+			FileReaderUtil.loadDoubleColumnFromDelimitedFile(file, CharacterEncoding.US_ASCII, RegExPatterns.TAB, null,
+					1);
+			fail("An empty cell should cause an exception.");
+		} catch (NumberFormatException e) {
+			assertTrue(e.getMessage().startsWith("Invalid numeric value \"\" in column 1 on line 1 of file:"));
+		}
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testIterateColumnsWithMissingData() throws Exception {
+		DelimitedRecordIterator recordIter = FileReaderUtil.iterateColumnsFromDelimitedFile(
+				fiveColumnFileWithErrorOnLineThree, CharacterEncoding.US_ASCII, RegExPatterns.TAB, null, 4);
+		try {
+			while (recordIter.hasNext()) {
+				recordIter.next();
+			}
+		} finally {
+			recordIter.close();
+		}
+	}
+
 	@Test
 	public void testIsColumnIndexValid() throws Exception {
 		assertTrue(callIsColumnIndexValid(0, new String[3]));
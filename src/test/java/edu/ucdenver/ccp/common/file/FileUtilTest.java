@@ -38,9 +38,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
 import java.nio.charset.MalformedInputException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -48,7 +53,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Test;
 
@@ -382,6 +390,73 @@ public class FileUtilTest extends DefaultTestCase {
 				FileUtil.getLineCount(file, CharacterEncoding.US_ASCII));
 	}
 
+	@Test
+	public void testGetLineCount_LineTerminators() throws IOException {
+		assertEquals(0L, FileUtil.getLineCount(new ByteArrayInputStream(new byte[0])));
+		assertEquals(1L, FileUtil.getLineCount(new ByteArrayInputStream("no terminator".getBytes("US-ASCII"))));
+		assertEquals(3L, FileUtil.getLineCount(new ByteArrayInputStream("a\r\nb\rc\n".getBytes("US-ASCII"))));
+		assertEquals(5L, FileUtil.getLineCount(new ByteArrayInputStream("a\n\r\n\r\rb".getBytes("US-ASCII"))));
+	}
+
+	/**
+	 * Counts lines split into many small chunks, including chunks that split a CRLF, and compares
+	 * the count with that of {@link BufferedReader#readLine()}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testGetLineCount_Chunked() throws IOException {
+		Random random = new Random(17);
+		String[] pieces = { "\n", "\r", "\r\n", "x", "yz", "\u00e9\u4e2d" };
+		for (int trial = 0; trial < 50; trial++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(200);
+			for (int i = 0; i < length; i++) {
+				sb.append(pieces[random.nextInt(pieces.length)]);
+			}
+			String content = sb.toString();
+			File file = folder.newFile("chunked-" + trial + ".txt");
+			try (OutputStream os = new FileOutputStream(file)) {
+				os.write(content.getBytes("UTF-8"));
+			}
+			long expected = countLinesWithReader(content);
+			for (int chunkSize : new int[] { 1, 2, 3, 7, 64 }) {
+				assertEquals("chunk size " + chunkSize + ": " + content, expected,
+						FileUtil.getLineCount(file, ForkJoinPool.commonPool(), chunkSize));
+			}
+			assertEquals(expected, FileUtil.getLineCount(file, CharacterEncoding.UTF_8));
+		}
+	}
+
+	@Test
+	public void testGetLineCount_CrLfAcrossChunkBoundary() throws IOException {
+		File file = folder.newFile("crlf.txt");
+		try (OutputStream os = new FileOutputStream(file)) {
+			os.write("abc\r\ndef\r\n".getBytes("US-ASCII"));
+		}
+		/* chunk size 4 splits the first CRLF */
+		assertEquals(2L, FileUtil.getLineCount(file, ForkJoinPool.commonPool(), 4));
+	}
+
+	@Test
+	public void testGetLineCount_Gzip() throws IOException {
+		File file = folder.newFile("lines.txt.gz");
+		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+			os.write("1\n2\n3\r\n4".getBytes("US-ASCII"));
+		}
+		assertEquals(4L, FileUtil.getLineCount(file, CharacterEncoding.US_ASCII));
+	}
+
+	private static long countLinesWithReader(String content) throws IOException {
+		long count = 0;
+		try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+			while (reader.readLine() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Tests that all file suffixes are removed when using the FileUtil.removeFileSuffixes() method.
 	 * 
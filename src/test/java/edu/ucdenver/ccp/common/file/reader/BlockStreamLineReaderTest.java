@@ -0,0 +1,160 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.collections.CollectionsUtil;
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileWriterUtil;
+import edu.ucdenver.ccp.common.file.SampleUtf8File;
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+import edu.ucdenver.ccp.common.io.ClassPathUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class BlockStreamLineReaderTest extends DefaultTestCase {
+
+	private static final String TEXT = "line1\nline\u00df2\r\nline3\rline\uD835\uDC9C4\r\n\nline6";
+
+	@Test
+	public void testLineTerminatorsAcrossBlockBoundaries() throws IOException {
+		for (int blockSize = 2; blockSize < TEXT.length() + 2; blockSize++) {
+			BlockStreamLineReader reader = new BlockStreamLineReader(new StringReader(TEXT), (String) null, blockSize);
+			assertLine(reader.readLine(), "line1", LineTerminator.LF, 0, 0);
+			assertLine(reader.readLine(), "line\u00df2", LineTerminator.CRLF, 1, 6);
+			assertLine(reader.readLine(), "line3", LineTerminator.CR, 2, 14);
+			assertLine(reader.readLine(), "line\uD835\uDC9C4", LineTerminator.CRLF, 3, 20);
+			assertLine(reader.readLine(), "", LineTerminator.LF, 4, 29);
+			assertLine(reader.readLine(), "line6", LineTerminator.LF, 5, 30);
+			assertNull(reader.readLine());
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSkipLines() throws IOException {
+		BlockStreamLineReader reader = new BlockStreamLineReader(new StringReader("#a\nb\n#c\r\nd"), "#", 3);
+		assertLine(reader.readLine(), "b", LineTerminator.LF, 1, 3);
+		assertLine(reader.readLine(), "d", LineTerminator.LF, 3, 9);
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testMatchesStreamLineReader() throws IOException {
+		File sampleFile = copyClasspathResourceToTemporaryFile(SampleUtf8File.class, SampleUtf8File.FILE_NAME);
+		StreamLineReader expectedReader = new StreamLineReader(sampleFile, SampleUtf8File.ENCODING);
+		BlockStreamLineReader reader = new BlockStreamLineReader(sampleFile, SampleUtf8File.ENCODING);
+		assertSameLines(expectedReader, reader);
+	}
+
+	@Test
+	public void testMatchesStreamLineReader_mixedTerminators() throws IOException {
+		List<String> lines = CollectionsUtil.createList("line1", "line\u00df2\r", "", "line\r\r4", "line5");
+		File file = folder.newFile("sample.utf8");
+		FileWriterUtil.printLines(lines, file, CharacterEncoding.UTF_8);
+		StreamLineReader expectedReader = new StreamLineReader(file, CharacterEncoding.UTF_8);
+		BlockStreamLineReader reader = new BlockStreamLineReader(file, CharacterEncoding.UTF_8);
+		assertSameLines(expectedReader, reader);
+	}
+
+	@Test
+	public void testStreamLineIteratorWithBlockEngine() throws IOException {
+		InputStream sampleFileStream = ClassPathUtil.getResourceStreamFromClasspath(SampleUtf8File.class,
+				SampleUtf8File.FILE_NAME);
+		StreamLineIterator sli = new StreamLineIterator(sampleFileStream, SampleUtf8File.ENCODING, (String) null,
+				LineReaderEngine.BLOCK);
+		for (SampleUtf8File expectedLine : SampleUtf8File.values()) {
+			Line line = sli.next();
+			assertEquals(expectedLine.ordinal(), line.getLineNumber());
+			assertEquals(expectedLine.getCharacterOffset(), line.getCharacterOffset());
+			assertEquals(expectedLine.getCodePointOffset(), line.getCodePointOffset());
+		}
+		sli.close();
+	}
+
+	@Test
+	public void testInputStreamConstructor() throws IOException {
+		File sampleFile = copyClasspathResourceToTemporaryFile(SampleUtf8File.class, SampleUtf8File.FILE_NAME);
+		StreamLineReader expectedReader = new StreamLineReader(new FileInputStream(sampleFile),
+				SampleUtf8File.ENCODING, "let");
+		BlockStreamLineReader reader = new BlockStreamLineReader(new FileInputStream(sampleFile),
+				SampleUtf8File.ENCODING, "let");
+		Line expected;
+		while ((expected = expectedReader.readLine()) != null) {
+			Line line = reader.readLine();
+			assertEquals(expected.getText(), line.getText());
+			assertEquals(expected.getLineNumber(), line.getLineNumber());
+			assertEquals(expected.getByteOffset(), line.getByteOffset());
+		}
+		assertNull(reader.readLine());
+		expectedReader.close();
+		reader.close();
+	}
+
+	private static void assertSameLines(LineReader<Line> expectedReader, LineReader<Line> reader) throws IOException {
+		Line expected;
+		while ((expected = expectedReader.readLine()) != null) {
+			Line line = reader.readLine();
+			assertEquals(expected.getText(), line.getText());
+			assertEquals(expected.getLineTerminator(), line.getLineTerminator());
+			assertEquals(expected.getLineNumber(), line.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), line.getCharacterOffset());
+			assertEquals(expected.getCodePointOffset(), line.getCodePointOffset());
+			assertEquals(expected.getByteOffset(), line.getByteOffset());
+		}
+		assertNull(reader.readLine());
+		expectedReader.close();
+		reader.close();
+	}
+
+	private static void assertLine(Line line, String expectedText, LineTerminator expectedTerminator,
+			long expectedLineNumber, long expectedCharacterOffset) {
+		assertEquals(expectedText, line.getText());
+		assertEquals(expectedTerminator, line.getLineTerminator());
+		assertEquals(expectedLineNumber, line.getLineNumber());
+		assertEquals(expectedCharacterOffset, line.getCharacterOffset());
+	}
+
+}
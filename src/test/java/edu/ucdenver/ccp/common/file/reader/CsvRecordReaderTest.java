@@ -0,0 +1,153 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+
+public class CsvRecordReaderTest {
+
+	private static CsvRecordReader initReader(String input, char delimiter, char enclosure) {
+		return new CsvRecordReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+				CharacterEncoding.UTF_8, delimiter, enclosure);
+	}
+
+	@Test
+	public void testUnenclosedFields() throws IOException {
+		CsvRecordReader reader = initReader("a,b,c\n1,,3\n,\n", ',', CsvRecordReader.DEFAULT_ENCLOSURE);
+		assertArrayEquals(new String[] { "a", "b", "c" }, reader.readRecord().getFields());
+		assertArrayEquals(new String[] { "1", "", "3" }, reader.readRecord().getFields());
+		assertArrayEquals(new String[] { "", "" }, reader.readRecord().getFields());
+		assertNull(reader.readRecord());
+		reader.close();
+	}
+
+	@Test
+	public void testEnclosedFields() throws IOException {
+		CsvRecordReader reader = initReader("\"a,b\",\"say \"\"hi\"\"\",\"\",\"\"\"\"\n", ',',
+				CsvRecordReader.DEFAULT_ENCLOSURE);
+		assertArrayEquals(new String[] { "a,b", "say \"hi\"", "", "\"" }, reader.readRecord().getFields());
+		assertNull(reader.readRecord());
+		reader.close();
+	}
+
+	@Test
+	public void testMultiLineFields() throws IOException {
+		String input = "id,text\r\n1,\"first\r\nsecond\r\n\"\"third\"\"\",x\r\n\r\n2,\"\n\",y";
+		CsvRecordReader reader = initReader(input, ',', CsvRecordReader.DEFAULT_ENCLOSURE);
+		CsvRecord record = reader.readRecord();
+		assertArrayEquals(new String[] { "id", "text" }, record.getFields());
+		assertEquals(0, record.getLineNumber());
+		assertEquals(1, record.getLineCount());
+
+		record = reader.readRecord();
+		assertArrayEquals(new String[] { "1", "first\r\nsecond\r\n\"third\"", "x" }, record.getFields());
+		assertEquals(1, record.getLineNumber());
+		assertEquals(9, record.getCharacterOffset());
+		assertEquals(3, record.getLineCount());
+
+		record = reader.readRecord();
+		assertArrayEquals(new String[] { "2", "\n", "y" }, record.getFields());
+		assertEquals(5, record.getLineNumber());
+		assertEquals(input.indexOf("2,"), record.getCharacterOffset());
+		assertEquals(2, record.getLineCount());
+		assertNull(reader.readRecord());
+		reader.close();
+	}
+
+	@Test
+	public void testTsvWithoutEnclosure() throws IOException {
+		CsvRecordReader reader = initReader("\"a\tb\"\tc\n", '\t', CsvRecordReader.NO_ENCLOSURE);
+		assertArrayEquals(new String[] { "\"a", "b\"", "c" }, reader.readRecord().getFields());
+		reader.close();
+	}
+
+	@Test
+	public void testConfigurableDelimiterAndEnclosure() throws IOException {
+		CsvRecordReader reader = initReader("10'0''1'0x\n", '0', '\'');
+		assertArrayEquals(new String[] { "1", "0'1", "x" }, reader.readRecord().getFields());
+		reader.close();
+	}
+
+	@Test
+	public void testLenientParsing() throws IOException {
+		CsvRecordReader reader = initReader("a\"b,\"c\"d,e\n", ',', CsvRecordReader.DEFAULT_ENCLOSURE);
+		assertArrayEquals(new String[] { "a\"b", "cd", "e" }, reader.readRecord().getFields());
+		reader.close();
+	}
+
+	@Test
+	public void testUnclosedEnclosure() throws IOException {
+		CsvRecordReader reader = initReader("a,b\nc,\"d\ne\n", ',', CsvRecordReader.DEFAULT_ENCLOSURE);
+		reader.readRecord();
+		try {
+			reader.readRecord();
+			fail("An enclosed field that is not closed should cause an exception.");
+		} catch (IOException e) {
+			assertEquals("Unexpected end of input. The enclosed field started in the record on line 1 is not closed.",
+					e.getMessage());
+		}
+		reader.close();
+	}
+
+	@Test
+	public void testStream() {
+		try (Stream<CsvRecord> records = initReader("a,\"b\nc\"\nd,e\n", ',', CsvRecordReader.DEFAULT_ENCLOSURE)
+				.stream()) {
+			List<Long> lineNumbers = records.map(CsvRecord::getLineNumber).collect(Collectors.toList());
+			assertEquals(2, lineNumbers.size());
+			assertEquals(Long.valueOf(0), lineNumbers.get(0));
+			assertEquals(Long.valueOf(2), lineNumbers.get(1));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDelimiterCannotBeEnclosure() {
+		initReader("", '"', '"');
+	}
+
+}
@@ -0,0 +1,246 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+import edu.ucdenver.ccp.common.string.RegExPatterns;
+import edu.ucdenver.ccp.common.string.StringConstants;
+import edu.ucdenver.ccp.common.string.StringUtil;
+
+public class DelimitedRecordParserTest {
+
+	private static final String SAMPLE_LINE = "J Clin Invest,0021-9738,1558-8238,1940,19,\"Index, vol.1-17\",1,10.1172/JCI101100,PMC548872,0,,live";
+
+	@Test
+	public void testToLiteralChar() {
+		assertEquals('\t', DelimitedRecordParser.toLiteralChar(RegExPatterns.TAB));
+		assertEquals('\t', DelimitedRecordParser.toLiteralChar("\t"));
+		assertEquals(',', DelimitedRecordParser.toLiteralChar(StringConstants.COMMA));
+		assertEquals('|', DelimitedRecordParser.toLiteralChar("\\|"));
+		assertEquals(-1, DelimitedRecordParser.toLiteralChar("|"));
+		assertEquals(-1, DelimitedRecordParser.toLiteralChar("\\s"));
+		assertEquals(-1, DelimitedRecordParser.toLiteralChar("\\s+"));
+		assertEquals(-1, DelimitedRecordParser.toLiteralChar("."));
+	}
+
+	@Test
+	public void testParseAllColumns() {
+		DelimitedRecordParser parser = new DelimitedRecordParser(StringConstants.COMMA);
+		assertArrayEquals(SAMPLE_LINE.split(",", -1), parser.parse(SAMPLE_LINE));
+		assertArrayEquals(new String[] { "" }, parser.parse(""));
+		assertArrayEquals(new String[] { "", "", "" }, parser.parse(",,"));
+	}
+
+	@Test
+	public void testParseRequestedColumns() {
+		DelimitedRecordParser parser = new DelimitedRecordParser(RegExPatterns.TAB, 3, 0, 3);
+		assertArrayEquals(new String[] { "d", "a", "d" }, parser.parse("a\tb\tc\td\te\tf"));
+		assertArrayEquals(new String[] { "", "a", "" }, parser.parse("a\tb\tc\t"));
+	}
+
+	@Test
+	public void testParseWithFieldEnclosure() {
+		DelimitedRecordParser parser = new DelimitedRecordParser(StringConstants.COMMA,
+				StringConstants.QUOTATION_MARK, 5, 11);
+		assertArrayEquals(new String[] { "\"Index, vol.1-17\"", "live" }, parser.parse(SAMPLE_LINE));
+		parser = new DelimitedRecordParser(StringConstants.COMMA, "\\*");
+		assertArrayEquals(StringUtil.splitWithFieldEnclosure(SAMPLE_LINE.replace('"', '*'), StringConstants.COMMA,
+				"\\*"), parser.parse(SAMPLE_LINE.replace('"', '*')));
+	}
+
+	@Test
+	public void testParseRequestedColumnsWithRegexDelimiter() {
+		DelimitedRecordParser parser = new DelimitedRecordParser("\\s*\\|\\s*", 2, 0);
+		assertArrayEquals(new String[] { "c", "a" }, parser.parse("a | b|c  |d"));
+		parser = new DelimitedRecordParser(RegExPatterns.PIPE, StringConstants.QUOTATION_MARK, 1);
+		assertArrayEquals(new String[] { "\"b|c\"" }, parser.parse("a| \"b|c\" |d"));
+	}
+
+	@Test
+	public void testParseMutableLine() {
+		MutableLine line = new MutableLine();
+		DelimitedRecordParser parser = new DelimitedRecordParser(StringConstants.COMMA,
+				StringConstants.QUOTATION_MARK, 11, 5, 0);
+		line.set(CharBuffer.wrap(SAMPLE_LINE.toCharArray()), LineTerminator.LF, 0, 0, 0, 0, -1, -1);
+		assertArrayEquals(new String[] { "live", "\"Index, vol.1-17\"", "J Clin Invest" }, parser.parse(line));
+		parser = new DelimitedRecordParser(RegExPatterns.TAB, 1);
+		line.set(CharBuffer.wrap("a\tb\tc"), LineTerminator.LF, 0, 0, 0, 0, -1, -1);
+		assertArrayEquals(new String[] { "b" }, parser.parse(line));
+	}
+
+	@Test
+	public void testLocate() {
+		DelimitedRecordParser parser = new DelimitedRecordParser(StringConstants.COMMA,
+				StringConstants.QUOTATION_MARK, 5, 1);
+		int[] bounds = new int[4];
+		parser.locate(SAMPLE_LINE, bounds);
+		assertEquals("\"Index, vol.1-17\"", SAMPLE_LINE.substring(bounds[0], bounds[1]));
+		assertEquals("0021-9738", SAMPLE_LINE.substring(bounds[2], bounds[3]));
+
+		/* out of order and repeated columns on a line without enclosures */
+		parser = new DelimitedRecordParser(RegExPatterns.TAB, 2, 0, 2);
+		bounds = new int[6];
+		parser.locate("a	bb	ccc	d", bounds);
+		assertArrayEquals(new int[] { 5, 8, 0, 1, 5, 8 }, bounds);
+		try {
+			parser.locate("a	bb", bounds);
+			fail("Locating a column that does not exist should fail.");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			assertEquals("Column index 2 does not exist on line. There are only 2 columns on line: a	bb",
+					e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLocateRequiresColumnIndexes() {
+		new DelimitedRecordParser(StringConstants.COMMA).locate(SAMPLE_LINE, new int[2]);
+	}
+
+	@Test
+	public void testMissingColumn() {
+		DelimitedRecordParser parser = new DelimitedRecordParser(RegExPatterns.TAB, 0, 5);
+		try {
+			parser.parse("a\tb\tc");
+			fail("Requesting a column that does not exist should fail.");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			assertEquals("Column index 5 does not exist on line. There are only 3 columns on line: a\tb\tc",
+					e.getMessage());
+		}
+		parser = new DelimitedRecordParser(RegExPatterns.TAB, -1);
+		try {
+			parser.parse("a\tb\tc\td");
+			fail("Requesting a negative column index should fail.");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			assertEquals("Column index -1 does not exist on line. There are only 4 columns on line: a\tb\tc\td",
+					e.getMessage());
+		}
+		parser = new DelimitedRecordParser(StringConstants.COMMA, StringConstants.QUOTATION_MARK, 20);
+		try {
+			parser.parse(SAMPLE_LINE);
+			fail("Requesting a column that does not exist should fail.");
+		} catch (ArrayIndexOutOfBoundsException e) {
+			assertEquals("Column index 20 does not exist on line. There are only 12 columns on line: "
+					+ SAMPLE_LINE, e.getMessage());
+		}
+	}
+
+	@Test
+	public void testMatchesSplitWithFieldEnclosure() {
+		Random random = new Random(7);
+		String alphabet = "ab ,;\t\"|";
+		String[] delimiters = new String[] { StringConstants.COMMA, RegExPatterns.TAB, "\\|", ";+", ";*", "\\s*,\\s*" };
+		String[] enclosures = new String[] { null, StringConstants.QUOTATION_MARK, "\\|" };
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(30);
+			for (int j = 0; j < length; j++) {
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String line = sb.toString();
+			for (String delimiter : delimiters) {
+				for (String enclosure : enclosures) {
+					if (delimiter.equals(enclosure) || masksUnenclosedText(line, enclosure)
+							|| splitsEnclosedText(line, delimiter, enclosure)) {
+						continue;
+					}
+					String message = String.format("line: [%s] delimiter: [%s] enclosure: [%s]", line, delimiter,
+							enclosure);
+					String[] expectedColumns = StringUtil.splitWithFieldEnclosure(line, delimiter, enclosure);
+					assertArrayEquals(message, expectedColumns, new DelimitedRecordParser(delimiter, enclosure).parse(line));
+					int columnIndex = random.nextInt(expectedColumns.length);
+					assertArrayEquals(message, new String[] { expectedColumns[columnIndex], expectedColumns[0] },
+							new DelimitedRecordParser(delimiter, enclosure, columnIndex, 0).parse(new StringBuilder(
+									line)));
+					int[] bounds = new int[6];
+					new DelimitedRecordParser(delimiter, enclosure, columnIndex, 0, columnIndex).locate(line,
+							bounds);
+					assertEquals(message, expectedColumns[columnIndex], line.substring(bounds[0], bounds[1]));
+					assertEquals(message, expectedColumns[0], line.substring(bounds[2], bounds[3]));
+					assertEquals(message, expectedColumns[columnIndex], line.substring(bounds[4], bounds[5]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@link StringUtil#splitWithFieldEnclosure(String, String, String)} masks every occurrence of
+	 * the text of an enclosed field, including occurrences that straddle two fields, e.g. the
+	 * <code>","</code> in <code>"x","y"</code> if another field is <code>","</code>. The parser only
+	 * masks the enclosed fields themselves, so such lines are excluded from the comparison.
+	 */
+	private static boolean masksUnenclosedText(String line, String enclosure) {
+		if (enclosure == null) {
+			return false;
+		}
+		List<Integer> fieldStarts = new ArrayList<Integer>();
+		List<String> fields = new ArrayList<String>();
+		Matcher matcher = Pattern.compile(enclosure + ".*?" + enclosure).matcher(line);
+		while (matcher.find()) {
+			fieldStarts.add(matcher.start());
+			fields.add(matcher.group());
+		}
+		for (String field : fields) {
+			for (int i = line.indexOf(field); i >= 0; i = line.indexOf(field, i + 1)) {
+				if (!fieldStarts.contains(i)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * {@link StringUtil#splitWithFieldEnclosure(String, String, String)} splits enclosed fields at
+	 * zero-width delimiter matches, which the parser does not do, so such lines are excluded from the
+	 * comparison.
+	 */
+	private static boolean splitsEnclosedText(String line, String delimiter, String enclosure) {
+		return enclosure != null && "".matches(delimiter)
+				&& Pattern.compile(enclosure + ".*?" + enclosure).matcher(line).find();
+	}
+
+}
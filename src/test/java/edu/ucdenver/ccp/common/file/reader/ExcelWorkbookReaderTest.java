@@ -0,0 +1,191 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class ExcelWorkbookReaderTest extends DefaultTestCase {
+
+	private static final List<String> EXPECTED_TYPED_LINES = Arrays.asList("3\t2016-09-17\tTRUE\t6\tx",
+			"1.25\t\tFALSE\t2.5\t");
+
+	@Test
+	public void testStreamingSheetsMatchExpectedText() throws IOException {
+		File xlsxFile = writeWorkbook(new XSSFWorkbook(), "typed.xlsx");
+		ExcelWorkbookReader workbookReader = new ExcelWorkbookReader(xlsxFile, null);
+		try {
+			assertTrue(workbookReader.isStreaming());
+			assertEquals(Arrays.asList("typed", "sheet1", "sheet2", "sheet3"), workbookReader.getSheetNames());
+			assertEquals(EXPECTED_TYPED_LINES, readLineTexts(workbookReader.getSheetReader(0)));
+			assertEquals(100, readLineTexts(workbookReader.getSheetReader(2)).size());
+		} finally {
+			workbookReader.close();
+		}
+	}
+
+	@Test
+	public void testInMemoryReadersConvertCellsByType() throws IOException {
+		File xlsxFile = writeWorkbook(new XSSFWorkbook(), "typed.xlsx");
+		assertEquals(EXPECTED_TYPED_LINES, readLineTexts(new ExcelFileLineReader(xlsxFile, 0, null)));
+		File xlsFile = writeWorkbook(new HSSFWorkbook(), "typed.xls");
+		ExcelWorkbookReader workbookReader = new ExcelWorkbookReader(xlsFile, null);
+		try {
+			assertFalse(workbookReader.isStreaming());
+			assertEquals(4, workbookReader.getSheetCount());
+			assertEquals(EXPECTED_TYPED_LINES, readLineTexts(workbookReader.getSheetReader(0)));
+		} finally {
+			workbookReader.close();
+		}
+	}
+
+	@Test
+	public void testProcessSheetsConcurrently() throws IOException {
+		File xlsxFile = writeWorkbook(new XSSFWorkbook(), "typed.xlsx");
+		ForkJoinPool pool = new ForkJoinPool(3);
+		ExcelWorkbookReader workbookReader = new ExcelWorkbookReader(xlsxFile, null, pool);
+		try {
+			List<String> results = workbookReader.processSheets(new ExcelWorkbookReader.SheetHandler<String>() {
+				@Override
+				public String handleSheet(int sheetIndex, String sheetName, LineReader<Line> sheetReader)
+						throws IOException {
+					List<String> lines = readLineTexts(sheetReader);
+					return sheetName + ":" + lines.size() + ":" + lines.get(lines.size() - 1);
+				}
+			});
+			assertEquals(Arrays.asList("typed:2:" + EXPECTED_TYPED_LINES.get(1), "sheet1:50:s1r50\t50",
+					"sheet2:100:s2r100\t100", "sheet3:150:s3r150\t150"), results);
+		} finally {
+			workbookReader.close();
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testProcessSheetsPropagatesErrors() throws IOException {
+		File xlsxFile = writeWorkbook(new XSSFWorkbook(), "typed.xlsx");
+		ExcelWorkbookReader workbookReader = new ExcelWorkbookReader(xlsxFile, null);
+		try {
+			workbookReader.processSheets(new ExcelWorkbookReader.SheetHandler<Void>() {
+				@Override
+				public Void handleSheet(int sheetIndex, String sheetName, LineReader<Line> sheetReader)
+						throws IOException {
+					if (sheetIndex == 2) {
+						throw new IOException("simulated failure");
+					}
+					return null;
+				}
+			});
+		} finally {
+			workbookReader.close();
+		}
+	}
+
+	private File writeWorkbook(Workbook wb, String fileName) throws IOException {
+		Sheet sheet = wb.createSheet("typed");
+		Row header = sheet.createRow(0);
+		for (int col = 0; col < 5; col++) {
+			header.createCell(col).setCellValue("col" + col);
+		}
+		CellStyle dateStyle = wb.createCellStyle();
+		dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+		Row row = sheet.createRow(1);
+		row.createCell(0).setCellValue(3);
+		row.createCell(1).setCellValue(new GregorianCalendar(2016, Calendar.SEPTEMBER, 17).getTime());
+		row.getCell(1).setCellStyle(dateStyle);
+		row.createCell(2).setCellValue(true);
+		row.createCell(3).setCellFormula("A2*2");
+		row.createCell(4).setCellFormula("\"x\"");
+		row = sheet.createRow(2);
+		row.createCell(0).setCellValue(1.25);
+		row.createCell(2).setCellFormula("A3>2");
+		row.createCell(3).setCellFormula("A3*2");
+		for (int s = 1; s <= 3; s++) {
+			sheet = wb.createSheet("sheet" + s);
+			sheet.createRow(0).createCell(0).setCellValue("id");
+			sheet.getRow(0).createCell(1).setCellValue("value");
+			for (int i = 1; i <= s * 50; i++) {
+				row = sheet.createRow(i);
+				row.createCell(0).setCellValue("s" + s + "r" + i);
+				row.createCell(1).setCellValue(i);
+			}
+		}
+		wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+		File file = folder.newFile(fileName);
+		OutputStream os = new FileOutputStream(file);
+		try {
+			wb.write(os);
+		} finally {
+			os.close();
+			wb.close();
+		}
+		return file;
+	}
+
+	private static List<String> readLineTexts(LineReader<Line> reader) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try {
+			Line line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.getText());
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,169 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.string.RegExPatterns;
+import edu.ucdenver.ccp.common.string.StringConstants;
+
+public class HeaderMappedRecordReaderTest {
+
+	public interface GeneRecord {
+		@DelimitedColumn("GeneID")
+		int getGeneId();
+
+		@DelimitedColumn("Symbol")
+		String getSymbol();
+
+		@DelimitedColumn(value = "Score", optional = true)
+		Double getScore();
+	}
+
+	public static class GeneBean {
+		@DelimitedColumn("GeneID")
+		private long geneId;
+
+		@DelimitedColumn("Symbol")
+		private String symbol;
+
+		@DelimitedColumn(value = "Obsolete", optional = true)
+		private boolean obsolete;
+
+		private String unmapped = "default";
+	}
+
+	public static class Unannotated {
+		@SuppressWarnings("unused")
+		private String value;
+	}
+
+	private static <T> HeaderMappedRecordReader<T> initReader(String input, String delimiter, Class<T> type)
+			throws IOException {
+		return new HeaderMappedRecordReader<T>(new BlockStreamLineReader(new ByteArrayInputStream(
+				input.getBytes(StandardCharsets.UTF_8)), CharacterEncoding.UTF_8, (String) null), delimiter, null, type);
+	}
+
+	@Test
+	public void testMapToInterface() throws IOException {
+		HeaderMappedRecordReader<GeneRecord> reader = initReader("Symbol\tTaxID\tGeneID\tScore\nBRCA1\t9606\t672\t0.5\n"
+				+ "TP53\t9606\t7157\t\n", RegExPatterns.TAB, GeneRecord.class);
+		assertArrayEquals(new String[] { "Symbol", "TaxID", "GeneID", "Score" }, reader.getHeader());
+		assertEquals(2, reader.getColumnIndex("GeneID"));
+		GeneRecord record = reader.readRecord();
+		assertEquals(672, record.getGeneId());
+		assertEquals("BRCA1", record.getSymbol());
+		assertEquals(Double.valueOf(0.5), record.getScore());
+		record = reader.readRecord();
+		assertEquals(7157, record.getGeneId());
+		assertNull(record.getScore());
+		assertTrue(record.toString().contains("Symbol=TP53"));
+		assertNull(reader.readRecord());
+		reader.close();
+	}
+
+	@Test
+	public void testMapToClassWithReorderedColumns() throws IOException {
+		String[] inputs = new String[] { "GeneID,Symbol\n672,BRCA1\n", "Symbol,Other,GeneID\nBRCA1,x,672\n" };
+		for (String input : inputs) {
+			HeaderMappedRecordReader<GeneBean> reader = initReader(input, StringConstants.COMMA, GeneBean.class);
+			GeneBean bean = reader.readRecord();
+			assertEquals(672L, bean.geneId);
+			assertEquals("BRCA1", bean.symbol);
+			assertFalse(bean.obsolete);
+			assertEquals("default", bean.unmapped);
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testMissingRequiredColumn() throws IOException {
+		try {
+			initReader("GeneID\tName\n1\tx\n", RegExPatterns.TAB, GeneRecord.class);
+			fail("A missing required column should cause an exception.");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Required columns [Symbol] are not in the header"));
+		}
+	}
+
+	@Test
+	public void testInvalidValue() throws IOException {
+		HeaderMappedRecordReader<GeneRecord> reader = initReader("GeneID\tSymbol\n1\tA\nx\tB\n", RegExPatterns.TAB,
+				GeneRecord.class);
+		reader.readRecord();
+		try {
+			reader.readRecord();
+			fail("An invalid int should cause an exception.");
+		} catch (NumberFormatException e) {
+			assertEquals("Invalid int value for column \"GeneID\": \"x\" on line 2", e.getMessage());
+		}
+		reader.close();
+	}
+
+	@Test
+	public void testStream() throws IOException {
+		try (Stream<GeneRecord> records = initReader("GeneID\tSymbol\n1\tA\n\n2\tB\n", RegExPatterns.TAB,
+				GeneRecord.class).stream()) {
+			List<String> symbols = records.map(GeneRecord::getSymbol).collect(Collectors.toList());
+			assertEquals(2, symbols.size());
+			assertEquals("B", symbols.get(1));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeWithoutAnnotations() throws IOException {
+		initReader("value\nx\n", RegExPatterns.TAB, Unannotated.class);
+	}
+
+	@Test
+	public void testMapperIsCachedPerClass() {
+		assertTrue(RecordMapper.forClass(GeneBean.class) == RecordMapper.forClass(GeneBean.class));
+	}
+
+}
@@ -0,0 +1,256 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class LineCheckpointTest extends DefaultTestCase {
+
+	private static final CharacterEncoding ENCODING = CharacterEncoding.UTF_8;
+	private static final String SKIP_LINE_PREFIX = "#";
+	private static final SkipLineFilter HEADER_BLOCK_FILTER = SkipLineFilter.forPrefixes(SKIP_LINE_PREFIX)
+			.asHeaderBlock();
+
+	private String sampleText;
+	private File sampleFile;
+
+	private static interface ReaderFactory {
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException;
+	}
+
+	private static final ReaderFactory STREAM_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new StreamLineReader(file, ENCODING, SKIP_LINE_PREFIX, checkpoint);
+		}
+	};
+
+	private static final ReaderFactory BLOCK_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new BlockStreamLineReader(file, ENCODING, SKIP_LINE_PREFIX, checkpoint);
+		}
+	};
+
+	private static final ReaderFactory MAPPED_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new MappedFileLineReader(file, ENCODING, SKIP_LINE_PREFIX, checkpoint);
+		}
+	};
+
+	private static final ReaderFactory HEADER_BLOCK_STREAM_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new StreamLineReader(file, ENCODING, HEADER_BLOCK_FILTER, checkpoint);
+		}
+	};
+
+	private static final ReaderFactory HEADER_BLOCK_BLOCK_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new BlockStreamLineReader(file, ENCODING, HEADER_BLOCK_FILTER, checkpoint);
+		}
+	};
+
+	private static final ReaderFactory HEADER_BLOCK_MAPPED_READER = new ReaderFactory() {
+		@Override
+		public LineReader<Line> open(File file, LineCheckpoint checkpoint) throws IOException {
+			return new MappedFileLineReader(file, ENCODING, HEADER_BLOCK_FILTER, checkpoint, Long.MAX_VALUE, 4096);
+		}
+	};
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			sb.append((i % 5 == 0) ? "#comment" : "line\u00df\uD835\uDC9C" + i).append((i % 3 == 0) ? "\r\n" : "\n");
+		}
+		sb.append("unterminated");
+		sampleText = sb.toString();
+		sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(new ByteArrayInputStream(sampleText.getBytes("UTF-8")), sampleFile);
+	}
+
+	@Test
+	public void testStreamLineReader() throws IOException, ClassNotFoundException {
+		assertResumedReadsMatch(STREAM_READER, sampleFile);
+	}
+
+	@Test
+	public void testBlockStreamLineReader() throws IOException, ClassNotFoundException {
+		assertResumedReadsMatch(BLOCK_READER, sampleFile);
+	}
+
+	@Test
+	public void testMappedFileLineReader() throws IOException, ClassNotFoundException {
+		assertResumedReadsMatch(MAPPED_READER, sampleFile);
+	}
+
+	@Test
+	public void testGzipFile() throws IOException, ClassNotFoundException {
+		File gzFile = folder.newFile("sample.utf8.gz");
+		GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(gzFile));
+		gzos.write(sampleText.getBytes("UTF-8"));
+		gzos.close();
+		assertResumedReadsMatch(STREAM_READER, gzFile);
+		assertResumedReadsMatch(BLOCK_READER, gzFile);
+	}
+
+	@Test
+	public void testIteratorCheckpointAfterHasNext() throws IOException {
+		List<Line> expectedLines = readLines(STREAM_READER.open(sampleFile, LineCheckpoint.START));
+		StreamLineIterator lineIter = new StreamLineIterator(sampleFile, ENCODING, SKIP_LINE_PREFIX);
+		for (int i = 0; i < 10; i++) {
+			lineIter.next();
+		}
+		/* hasNext() reads the next line ahead of time */
+		assertTrue(lineIter.hasNext());
+		LineCheckpoint checkpoint = lineIter.getCheckpoint();
+		lineIter.close();
+
+		for (LineReaderEngine engine : LineReaderEngine.values()) {
+			StreamLineIterator resumedIter = new StreamLineIterator(sampleFile, ENCODING, SKIP_LINE_PREFIX, engine,
+					checkpoint);
+			for (int i = 10; i < expectedLines.size(); i++) {
+				assertLineEquals(expectedLines.get(i), resumedIter.next());
+			}
+			assertFalse(resumedIter.hasNext());
+			resumedIter.close();
+		}
+	}
+
+	@Test
+	public void testHeaderBlockStateIsRestored() throws IOException, ClassNotFoundException {
+		/* only the first comment line is part of the header block; later comment lines are data */
+		assertResumedReadsMatch(HEADER_BLOCK_STREAM_READER, sampleFile, 50);
+		assertResumedReadsMatch(HEADER_BLOCK_BLOCK_READER, sampleFile, 50);
+		assertResumedReadsMatch(HEADER_BLOCK_MAPPED_READER, sampleFile, 50);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHeaderBlockRejectedForPlainPosition() throws IOException {
+		Line line = readLines(MAPPED_READER.open(sampleFile, LineCheckpoint.START)).get(1);
+		LinePosition start = new LinePosition(line.getByteOffset(), line.getCharacterOffset(),
+				line.getCodePointOffset(), line.getLineNumber());
+		new MappedFileLineReader(sampleFile, ENCODING, HEADER_BLOCK_FILTER, start, Long.MAX_VALUE, 4096);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testCheckpointsUnsupportedForReader() {
+		new BlockStreamLineReader(new StringReader("a\nb"), (String) null, 16).getCheckpoint();
+	}
+
+	private void assertResumedReadsMatch(ReaderFactory factory, File file) throws IOException,
+			ClassNotFoundException {
+		assertResumedReadsMatch(factory, file, 41);
+	}
+
+	private void assertResumedReadsMatch(ReaderFactory factory, File file, int expectedLineCount)
+			throws IOException, ClassNotFoundException {
+		List<Line> expectedLines = readLines(factory.open(file, LineCheckpoint.START));
+		assertEquals(expectedLineCount, expectedLines.size());
+		for (int linesBeforeCheckpoint = 0; linesBeforeCheckpoint <= expectedLines.size(); linesBeforeCheckpoint++) {
+			LineReader<Line> reader = factory.open(file, LineCheckpoint.START);
+			for (int i = 0; i < linesBeforeCheckpoint; i++) {
+				reader.readLine();
+			}
+			LineCheckpoint checkpoint = serializeAndDeserialize(reader.getCheckpoint());
+			reader.close();
+
+			LineReader<Line> resumedReader = factory.open(file, checkpoint);
+			for (int i = linesBeforeCheckpoint; i < expectedLines.size(); i++) {
+				assertLineEquals(expectedLines.get(i), resumedReader.readLine());
+			}
+			assertNull(resumedReader.readLine());
+			resumedReader.close();
+		}
+	}
+
+	private static LineCheckpoint serializeAndDeserialize(LineCheckpoint checkpoint) throws IOException,
+			ClassNotFoundException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(checkpoint);
+		oos.close();
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		try {
+			return (LineCheckpoint) ois.readObject();
+		} finally {
+			ois.close();
+		}
+	}
+
+	private static void assertLineEquals(Line expected, Line observed) {
+		assertEquals(expected.getText(), observed.getText());
+		assertEquals(expected.getLineNumber(), observed.getLineNumber());
+		assertEquals(expected.getLineTerminator(), observed.getLineTerminator());
+		assertEquals(expected.getByteOffset(), observed.getByteOffset());
+		assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+		assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+	}
+
+	private static List<Line> readLines(LineReader<Line> reader) throws IOException {
+		List<Line> lines = new ArrayList<Line>();
+		Line line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+
+}
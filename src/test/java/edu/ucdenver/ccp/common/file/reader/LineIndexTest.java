@@ -0,0 +1,167 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class LineIndexTest extends DefaultTestCase {
+
+	private static final CharacterEncoding ENCODING = CharacterEncoding.UTF_8;
+
+	private File sampleFile;
+	private List<Line> expectedLines;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append((i % 7 == 0) ? "#comment" : "line\u00df\uD835\uDC9C" + i).append((i % 3 == 0) ? "\r\n" : "\n");
+		}
+		sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")), sampleFile);
+		expectedLines = readLines(new MappedFileLineReader(sampleFile, ENCODING));
+	}
+
+	@Test
+	public void testSeekToEveryLine() throws IOException {
+		LineIndex index = LineIndex.build(sampleFile, ENCODING, 8);
+		assertEquals(100, index.getLineCount());
+		SeekableFileLineReader reader = new SeekableFileLineReader(sampleFile, ENCODING, null, index);
+		for (int lineNumber = 99; lineNumber >= 0; lineNumber--) {
+			reader.seek(lineNumber);
+			assertLineEquals(expectedLines.get(lineNumber), reader.readLine());
+		}
+		reader.seek(98);
+		reader.readLine();
+		reader.readLine();
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testSeekWithSkippedLines() throws IOException {
+		LineIndex index = LineIndex.build(sampleFile, ENCODING, 5);
+		SeekableFileLineReader reader = new SeekableFileLineReader(sampleFile, ENCODING, "#", index);
+		reader.seek(14);
+		/* line 14 is a comment */
+		assertLineEquals(expectedLines.get(15), reader.readLine());
+		reader.seek(13);
+		assertLineEquals(expectedLines.get(13), reader.readLine());
+		assertLineEquals(expectedLines.get(15), reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testWriteAndLoad() throws IOException {
+		LineIndex index = LineIndex.build(sampleFile, ENCODING, 8);
+		File indexFile = LineIndex.getDefaultIndexFile(sampleFile);
+		index.write(indexFile);
+		assertIndexEquals(index, LineIndex.load(indexFile));
+	}
+
+	@Test
+	public void testBuildToFile() throws IOException {
+		File indexFile = LineIndex.getDefaultIndexFile(sampleFile);
+		LineIndex mappedIndex = LineIndex.build(sampleFile, ENCODING, 8, indexFile);
+		assertIndexEquals(LineIndex.build(sampleFile, ENCODING, 8), mappedIndex);
+		assertIndexEquals(mappedIndex, LineIndex.load(indexFile));
+	}
+
+	@Test
+	public void testIndexIsValidForFile() throws IOException {
+		LineIndex index = LineIndex.build(sampleFile, ENCODING, 8);
+		assertTrue(index.isValidFor(sampleFile));
+		FileUtil.copy(new ByteArrayInputStream("different".getBytes("UTF-8")), sampleFile);
+		assertFalse(index.isValidFor(sampleFile));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadInvalidFile() throws IOException {
+		LineIndex.load(sampleFile);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLineNumberOutOfRange() throws IOException {
+		LineIndex.build(sampleFile, ENCODING, 8).getPosition(100);
+	}
+
+	private static void assertIndexEquals(LineIndex expected, LineIndex observed) {
+		assertEquals(expected.getLineCount(), observed.getLineCount());
+		assertEquals(expected.getInterval(), observed.getInterval());
+		for (long lineNumber = 0; lineNumber < expected.getLineCount(); lineNumber++) {
+			LinePosition expectedPosition = expected.getPosition(lineNumber);
+			LinePosition observedPosition = observed.getPosition(lineNumber);
+			assertEquals(expectedPosition.getByteOffset(), observedPosition.getByteOffset());
+			assertEquals(expectedPosition.getCharacterOffset(), observedPosition.getCharacterOffset());
+			assertEquals(expectedPosition.getCodePointOffset(), observedPosition.getCodePointOffset());
+			assertEquals(expectedPosition.getLineNumber(), observedPosition.getLineNumber());
+		}
+	}
+
+	private static void assertLineEquals(Line expected, Line observed) {
+		assertEquals(expected.getText(), observed.getText());
+		assertEquals(expected.getLineNumber(), observed.getLineNumber());
+		assertEquals(expected.getLineTerminator(), observed.getLineTerminator());
+		assertEquals(expected.getByteOffset(), observed.getByteOffset());
+		assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+		assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+	}
+
+	private static List<Line> readLines(LineReader<Line> reader) throws IOException {
+		List<Line> lines = new ArrayList<Line>();
+		Line line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+
+}
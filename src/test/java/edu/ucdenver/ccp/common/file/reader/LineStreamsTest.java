@@ -0,0 +1,226 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class LineStreamsTest extends DefaultTestCase {
+
+	private static final CharacterEncoding ENCODING = CharacterEncoding.UTF_8;
+
+	private String sampleText;
+	private File sampleFile;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			sb.append((i % 10 == 0) ? "#comment" : "line\t" + i + "\t\u00df").append((i % 2 == 0) ? "\n" : "\r\n");
+		}
+		sampleText = sb.toString();
+		sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(new ByteArrayInputStream(sampleText.getBytes("UTF-8")), sampleFile);
+	}
+
+	@Test
+	public void testSequentialStreamMatchesReader() throws IOException {
+		List<String> expectedLines = readLineTexts("#");
+		Stream<Line> lines = LineStreams.lines(sampleFile, ENCODING, "#");
+		try {
+			assertEquals(expectedLines, lines.map(Line::getText).collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testParallelStreamPreservesOrderAndLineNumbers() throws IOException {
+		Stream<Line> lines = LineStreams.lines(sampleFile, ENCODING, null);
+		try {
+			List<Line> observedLines = lines.parallel().collect(Collectors.toList());
+			assertEquals(5000, observedLines.size());
+			for (int i = 0; i < observedLines.size(); i++) {
+				assertEquals(i, observedLines.get(i).getLineNumber());
+			}
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testParallelStreamWithSkippedLines() throws IOException {
+		Stream<Line> lines = LineStreams.lines(sampleFile, ENCODING, "#");
+		try {
+			assertEquals(readLineTexts("#"), lines.parallel().map(Line::getText).collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testSpliteratorIsSizedOnceSplit() {
+		LineSpliterator spliterator = new LineSpliterator(sampleFile, ENCODING, null);
+		Spliterator<Line> prefix = spliterator.trySplit();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED));
+		assertTrue(spliterator.hasCharacteristics(Spliterator.NONNULL));
+		assertEquals(5000, prefix.estimateSize() + spliterator.estimateSize());
+		final List<Line> lines = new ArrayList<Line>();
+		prefix.forEachRemaining(lines::add);
+		spliterator.forEachRemaining(lines::add);
+		assertEquals(5000, lines.size());
+	}
+
+	@Test
+	public void testGzipFileStream() throws IOException {
+		File gzFile = folder.newFile("sample.utf8.gz");
+		GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(gzFile));
+		gzos.write(sampleText.getBytes("UTF-8"));
+		gzos.close();
+		Stream<Line> lines = LineStreams.lines(gzFile, ENCODING, "#");
+		try {
+			assertEquals(readLineTexts("#"), lines.map(Line::getText).collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testUpperCaseGzipSuffix() throws IOException {
+		File gzFile = folder.newFile("SAMPLE.UTF8.GZ");
+		GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(gzFile));
+		gzos.write(sampleText.getBytes("UTF-8"));
+		gzos.close();
+		Stream<Line> lines = LineStreams.lines(gzFile, ENCODING, "#");
+		try {
+			assertEquals(readLineTexts("#"), lines.map(Line::getText).collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testGzipFileStreamReportsSameOffsets() throws IOException {
+		File gzFile = folder.newFile("sample.utf8.gz");
+		GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(gzFile));
+		gzos.write(sampleText.getBytes("UTF-8"));
+		gzos.close();
+		List<Line> expectedLines = collect(LineStreams.lines(sampleFile, ENCODING, "#"));
+		List<Line> observedLines = collect(LineStreams.lines(gzFile, ENCODING, "#"));
+		assertEquals(expectedLines.size(), observedLines.size());
+		for (int i = 0; i < expectedLines.size(); i++) {
+			Line expected = expectedLines.get(i);
+			Line observed = observedLines.get(i);
+			assertEquals(expected.getText(), observed.getText());
+			assertEquals(expected.getLineNumber(), observed.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+			assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+			assertEquals(expected.getByteOffset(), observed.getByteOffset());
+			assertEquals(expected.getByteLength(), observed.getByteLength());
+		}
+	}
+
+	private static List<Line> collect(Stream<Line> lines) {
+		try {
+			return lines.collect(Collectors.toList());
+		} finally {
+			lines.close();
+		}
+	}
+
+	@Test
+	public void testClosingStreamClosesReader() {
+		final boolean[] closed = new boolean[] { false };
+		LineReader<Line> reader = new LineReader<Line>((String) null) {
+			private long lineNumber = 0;
+
+			@Override
+			protected Line getNextLine() {
+				return new Line("line", Line.LineTerminator.LF, getCharacterOffset(), getCodePointOffset(),
+						lineNumber++, -1);
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		Stream<Line> lines = LineStreams.lines(reader);
+		assertEquals(3, lines.limit(3).count());
+		lines.close();
+		assertTrue(closed[0]);
+	}
+
+	@Test
+	public void testLineIteratorStream() throws IOException {
+		StreamLineIterator lineIter = new StreamLineIterator(sampleFile, ENCODING, "#");
+		Stream<Line> lines = lineIter.stream();
+		try {
+			assertEquals(readLineTexts("#"), lines.map(Line::getText).collect(Collectors.toList()));
+		} finally {
+			lines.close();
+		}
+	}
+
+	private List<String> readLineTexts(String skipLinePrefix) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		MappedFileLineReader reader = new MappedFileLineReader(sampleFile, ENCODING, skipLinePrefix);
+		Line line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line.getText());
+		}
+		reader.close();
+		return lines;
+	}
+
+}
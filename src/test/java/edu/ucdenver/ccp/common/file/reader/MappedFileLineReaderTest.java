@@ -0,0 +1,180 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.file.SampleUtf8File;
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+import edu.ucdenver.ccp.common.io.ClassPathUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class MappedFileLineReaderTest extends DefaultTestCase {
+
+	private static final String TEXT = "line1\nline\u00df2\r\nline3\rline\uD835\uDC9C4\r\n\nline6";
+
+	@Test
+	public void testByteOffsetsAcrossWindowBoundaries() throws IOException {
+		File file = createFile(TEXT, CharacterEncoding.UTF_8);
+		for (int windowSize = 1; windowSize < 45; windowSize++) {
+			MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.UTF_8, null, windowSize);
+			assertLine(reader.readLine(), "line1", LineTerminator.LF, 0, 0, 0);
+			assertLine(reader.readLine(), "line\u00df2", LineTerminator.CRLF, 1, 6, 6);
+			assertLine(reader.readLine(), "line3", LineTerminator.CR, 2, 14, 15);
+			assertLine(reader.readLine(), "line\uD835\uDC9C4", LineTerminator.CRLF, 3, 20, 21);
+			assertLine(reader.readLine(), "", LineTerminator.LF, 4, 29, 32);
+			assertLine(reader.readLine(), "line6", LineTerminator.LF, 5, 30, 33);
+			assertNull(reader.readLine());
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testCountsComputedWhileScanning() throws IOException {
+		File file = createFile(TEXT, CharacterEncoding.UTF_8);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.UTF_8, null, 8);
+		int[] expectedCodePointCounts = new int[] { 5, 6, 5, 6, 0, 5 };
+		int[] expectedByteLengths = new int[] { 5, 7, 5, 9, 0, 5 };
+		long[] expectedCodePointOffsets = new long[] { 0, 6, 14, 20, 28, 29 };
+		for (int i = 0; i < expectedCodePointCounts.length; i++) {
+			Line line = reader.readLine();
+			assertEquals(expectedCodePointCounts[i], line.getCodePointCount());
+			assertEquals(expectedByteLengths[i], line.getByteLength());
+			assertEquals(expectedCodePointOffsets[i], line.getCodePointOffset());
+		}
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testCodePointTrackingDisabled() throws IOException {
+		File file = createFile(TEXT, CharacterEncoding.UTF_8);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.UTF_8);
+		reader.setCodePointTracking(false);
+		reader.readLine();
+		reader.readLine();
+		reader.readLine();
+		Line line = reader.readLine();
+		assertLine(line, "line\uD835\uDC9C4", LineTerminator.CRLF, 3, 20, 21);
+		assertEquals(-1, line.getCodePointOffset());
+		/* computed on demand */
+		assertEquals(6, line.getCodePointCount());
+		reader.close();
+	}
+
+	@Test
+	public void testSkipLines() throws IOException {
+		File file = createFile("#a\nb\n#c\r\nd", CharacterEncoding.US_ASCII);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.US_ASCII, "#", 2);
+		assertLine(reader.readLine(), "b", LineTerminator.LF, 1, 3, 3);
+		assertLine(reader.readLine(), "d", LineTerminator.LF, 3, 9, 9);
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testIso88591() throws IOException {
+		File file = createFile("caf\u00e9\n\u00fcber", CharacterEncoding.ISO_8859_1);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.ISO_8859_1);
+		assertLine(reader.readLine(), "caf\u00e9", LineTerminator.LF, 0, 0, 0);
+		assertLine(reader.readLine(), "\u00fcber", LineTerminator.LF, 1, 5, 5);
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test(expected = MalformedInputException.class)
+	public void testNonAsciiByteInAsciiFile() throws IOException {
+		File file = createFile("abc\ncaf\u00e9\n", CharacterEncoding.ISO_8859_1);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.US_ASCII);
+		try {
+			assertLine(reader.readLine(), "abc", LineTerminator.LF, 0, 0, 0);
+			reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = createFile("", CharacterEncoding.UTF_8);
+		MappedFileLineReader reader = new MappedFileLineReader(file, CharacterEncoding.UTF_8);
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	@Test
+	public void testOffsetsMatchSampleFile() throws IOException {
+		File sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(ClassPathUtil.getResourceStreamFromClasspath(SampleUtf8File.class, SampleUtf8File.FILE_NAME),
+				sampleFile);
+		MappedFileLineReader reader = new MappedFileLineReader(sampleFile, SampleUtf8File.ENCODING, null, 16);
+		long expectedByteOffset = 0;
+		for (SampleUtf8File expectedLine : SampleUtf8File.values()) {
+			Line line = reader.readLine();
+			assertEquals(expectedLine.ordinal(), line.getLineNumber());
+			assertEquals(expectedLine.getCharacterOffset(), line.getCharacterOffset());
+			assertEquals(expectedLine.getCodePointOffset(), line.getCodePointOffset());
+			assertEquals(expectedByteOffset, line.getByteOffset());
+			expectedByteOffset += (line.getText() + line.getLineTerminator().terminator()).getBytes("UTF-8").length;
+		}
+		assertNull(reader.readLine());
+		reader.close();
+	}
+
+	private File createFile(String text, CharacterEncoding encoding) throws IOException {
+		File file = folder.newFile("sample" + encoding.getFileSuffix());
+		FileUtil.copy(new ByteArrayInputStream(text.getBytes(encoding.getCharacterSetName())), file);
+		return file;
+	}
+
+	private static void assertLine(Line line, String expectedText, LineTerminator expectedTerminator,
+			long expectedLineNumber, long expectedCharacterOffset, long expectedByteOffset) {
+		assertEquals(expectedText, line.getText());
+		assertEquals(expectedTerminator, line.getLineTerminator());
+		assertEquals(expectedLineNumber, line.getLineNumber());
+		assertEquals(expectedCharacterOffset, line.getCharacterOffset());
+		assertEquals(expectedByteOffset, line.getByteOffset());
+	}
+
+}
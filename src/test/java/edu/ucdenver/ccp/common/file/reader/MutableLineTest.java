@@ -0,0 +1,147 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.file.reader.Line.LineTerminator;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class MutableLineTest extends DefaultTestCase {
+
+	private static final String TEXT = "#header\nline\u00df1\r\nBUILD FAILURE\rline\uD835\uDC9C3\r\n\nline5";
+
+	@Test
+	public void testStreamLineReader() throws IOException {
+		assertAdvanceMatchesReadLine(new StreamLineReader(stream(), CharacterEncoding.UTF_8, "#"),
+				new StreamLineReader(stream(), CharacterEncoding.UTF_8, "#"));
+	}
+
+	@Test
+	public void testBlockStreamLineReader() throws IOException {
+		assertAdvanceMatchesReadLine(new BlockStreamLineReader(new StringReader(TEXT), "#", 4),
+				new BlockStreamLineReader(new StringReader(TEXT), "#", 4));
+	}
+
+	@Test
+	public void testMappedFileLineReader() throws IOException {
+		File file = folder.newFile("sample.utf8");
+		FileUtil.copy(stream(), file);
+		assertAdvanceMatchesReadLine(new MappedFileLineReader(file, CharacterEncoding.UTF_8, "#", 4),
+				new MappedFileLineReader(file, CharacterEncoding.UTF_8, "#", 4));
+	}
+
+	@Test
+	public void testDefaultImplementation() throws IOException {
+		LineReader<Line> reader = new LineReader<Line>((String) null) {
+			private final StreamLineReader delegate = new StreamLineReader(stream(), CharacterEncoding.UTF_8, "#");
+
+			@Override
+			protected Line getNextLine() throws IOException {
+				return delegate.getNextLine();
+			}
+
+			@Override
+			public void close() throws IOException {
+				delegate.close();
+			}
+		};
+		MutableLine line = new MutableLine();
+		assertTrue(reader.advance(line));
+		assertEquals("line\u00df1", line.toString());
+		assertEquals(LineTerminator.CRLF, line.getLineTerminator());
+		reader.close();
+	}
+
+	@Test
+	public void testSearch() {
+		MutableLine line = new MutableLine();
+		line.set(new StringBuilder("[ERROR] BUILD FAILURE"), LineTerminator.LF, 0, 0, 0, 0, -1, -1);
+		assertTrue(line.contains("BUILD FAILURE"));
+		assertTrue(line.startsWith("[ERROR]"));
+		assertEquals(8, line.indexOf("BUILD"));
+		assertEquals(-1, line.indexOf("FAILURES"));
+		assertFalse(line.contains("SUCCESS"));
+		assertEquals(21, line.getCodePointCount());
+	}
+
+	private void assertAdvanceMatchesReadLine(LineReader<Line> flyweightReader, LineReader<Line> lineReader)
+			throws IOException {
+		List<Line> expectedLines = new ArrayList<Line>();
+		Line expectedLine;
+		while ((expectedLine = lineReader.readLine()) != null) {
+			expectedLines.add(expectedLine);
+		}
+		lineReader.close();
+
+		List<Line> observedLines = new ArrayList<Line>();
+		MutableLine line = new MutableLine();
+		while (flyweightReader.advance(line)) {
+			observedLines.add(line.toLine());
+		}
+		flyweightReader.close();
+
+		assertEquals(5, expectedLines.size());
+		assertEquals(expectedLines.size(), observedLines.size());
+		for (int i = 0; i < expectedLines.size(); i++) {
+			Line expected = expectedLines.get(i);
+			Line observed = observedLines.get(i);
+			assertEquals(expected.getText(), observed.getText());
+			assertEquals(expected.getLineTerminator(), observed.getLineTerminator());
+			assertEquals(expected.getLineNumber(), observed.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+			assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+			assertEquals(expected.getByteOffset(), observed.getByteOffset());
+		}
+	}
+
+	private static ByteArrayInputStream stream() {
+		return new ByteArrayInputStream(TEXT.getBytes(Charset.forName("UTF-8")));
+	}
+
+}
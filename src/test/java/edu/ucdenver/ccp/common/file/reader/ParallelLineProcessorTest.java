@@ -0,0 +1,198 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.file.reader.ParallelLineProcessor.LineHandler;
+import edu.ucdenver.ccp.common.file.reader.ParallelLineProcessor.LineMapper;
+import edu.ucdenver.ccp.common.file.reader.ParallelLineProcessor.OutputOrder;
+import edu.ucdenver.ccp.common.file.reader.ParallelLineProcessor.ResultHandler;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class ParallelLineProcessorTest extends DefaultTestCase {
+
+	private static final CharacterEncoding ENCODING = CharacterEncoding.UTF_8;
+
+	private File sampleFile;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		String[] terminators = new String[] { "\n", "\r\n", "\r" };
+		for (int i = 0; i < 200; i++) {
+			if (i % 7 == 0) {
+				sb.append("#comment " + i);
+			} else {
+				sb.append("line " + i + (i % 3 == 0 ? " \u00df" : "") + (i % 5 == 0 ? " \uD835\uDC9C" : ""));
+			}
+			sb.append(terminators[i % terminators.length]);
+		}
+		sb.append("unterminated final line");
+		sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")), sampleFile);
+	}
+
+	@Test
+	public void testChunksAreContiguous() throws IOException {
+		ParallelLineProcessor processor = new ParallelLineProcessor(sampleFile, ENCODING, null, ForkJoinPool
+				.commonPool(), 13);
+		List<LineChunk> chunks = processor.getChunks();
+		assertTrue(chunks.size() > 1);
+		LinePosition expectedStart = LinePosition.START;
+		for (LineChunk chunk : chunks) {
+			assertEquals(expectedStart.getByteOffset(), chunk.getStart().getByteOffset());
+			assertEquals(expectedStart.getLineNumber(), chunk.getStart().getLineNumber());
+			expectedStart = chunk.getEnd();
+		}
+		assertEquals(sampleFile.length(), expectedStart.getByteOffset());
+		assertEquals(201, processor.getLineCount());
+	}
+
+	@Test
+	public void testForEachLineMatchesSequentialRead() throws IOException {
+		List<Line> expectedLines = readSequentially("#");
+		for (int chunkCount = 1; chunkCount < 20; chunkCount++) {
+			ParallelLineProcessor processor = new ParallelLineProcessor(sampleFile, ENCODING, "#",
+					new ForkJoinPool(4), chunkCount);
+			final ConcurrentLinkedQueue<Line> lines = new ConcurrentLinkedQueue<Line>();
+			processor.forEachLine(new LineHandler() {
+				@Override
+				public void handleLine(Line line) {
+					lines.add(line);
+				}
+			});
+			List<Line> observedLines = new ArrayList<Line>(lines);
+			Collections.sort(observedLines, new Comparator<Line>() {
+				@Override
+				public int compare(Line line1, Line line2) {
+					return Long.compare(line1.getLineNumber(), line2.getLineNumber());
+				}
+			});
+			assertSameLines(expectedLines, observedLines);
+		}
+	}
+
+	@Test
+	public void testOrderedMapLines() throws IOException {
+		List<Line> expectedLines = readSequentially(null);
+		ParallelLineProcessor processor = new ParallelLineProcessor(sampleFile, ENCODING, null, new ForkJoinPool(3),
+				17);
+		final List<Line> observedLines = new ArrayList<Line>();
+		processor.mapLines(new LineMapper<Line>() {
+			@Override
+			public Line mapLine(Line line) {
+				return line;
+			}
+		}, new ResultHandler<Line>() {
+			@Override
+			public void handleResult(Line line) {
+				observedLines.add(line);
+			}
+		}, OutputOrder.ORDERED);
+		assertSameLines(expectedLines, observedLines);
+	}
+
+	@Test
+	public void testUnorderedMapLinesDropsNullResults() throws IOException {
+		ParallelLineProcessor processor = new ParallelLineProcessor(sampleFile, ENCODING, null, new ForkJoinPool(3),
+				17);
+		final List<Long> lineNumbers = new ArrayList<Long>();
+		processor.mapLines(new LineMapper<Long>() {
+			@Override
+			public Long mapLine(Line line) {
+				return line.getText().startsWith("#") ? line.getLineNumber() : null;
+			}
+		}, new ResultHandler<Long>() {
+			@Override
+			public void handleResult(Long lineNumber) {
+				lineNumbers.add(lineNumber);
+			}
+		}, OutputOrder.UNORDERED);
+		Collections.sort(lineNumbers);
+		assertEquals(29, lineNumbers.size());
+		for (int i = 0; i < lineNumbers.size(); i++) {
+			assertEquals(Long.valueOf(i * 7), lineNumbers.get(i));
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File emptyFile = folder.newFile("empty.utf8");
+		ParallelLineProcessor processor = new ParallelLineProcessor(emptyFile, ENCODING, null);
+		assertEquals(0, processor.getLineCount());
+	}
+
+	private List<Line> readSequentially(String skipLinePrefix) throws IOException {
+		List<Line> lines = new ArrayList<Line>();
+		MappedFileLineReader reader = new MappedFileLineReader(sampleFile, ENCODING, skipLinePrefix);
+		Line line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+
+	private static void assertSameLines(List<Line> expectedLines, List<Line> observedLines) {
+		assertEquals(expectedLines.size(), observedLines.size());
+		for (int i = 0; i < expectedLines.size(); i++) {
+			Line expected = expectedLines.get(i);
+			Line observed = observedLines.get(i);
+			assertEquals(expected.getText(), observed.getText());
+			assertEquals(expected.getLineTerminator(), observed.getLineTerminator());
+			assertEquals(expected.getLineNumber(), observed.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+			assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+			assertEquals(expected.getByteOffset(), observed.getByteOffset());
+		}
+	}
+
+}
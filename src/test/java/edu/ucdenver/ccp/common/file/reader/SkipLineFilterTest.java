@@ -0,0 +1,89 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class SkipLineFilterTest {
+
+	@Test
+	public void testPrefixesIgnoreSurroundingWhitespace() {
+		SkipLineFilter filter = SkipLineFilter.forPrefixes("#", "//");
+		assertTrue(filter.skip("#comment"));
+		assertTrue(filter.skip("  \t// comment"));
+		assertFalse(filter.skip("data # not a comment"));
+		assertFalse(filter.skip("/ data"));
+		assertFalse(filter.skip(""));
+	}
+
+	@Test
+	public void testPrefixesMatchTrimmedLine() {
+		/* consistent with line.trim().startsWith(prefix) */
+		SkipLineFilter filter = SkipLineFilter.forPrefixes("# ");
+		assertTrue(filter.skip("# comment"));
+		assertFalse(filter.skip("#   "));
+		assertTrue(SkipLineFilter.forPrefixes("").skip("anything"));
+	}
+
+	@Test
+	public void testPrefixesWithCharBufferView() {
+		char[] chars = "xx#comment\nline".toCharArray();
+		SkipLineFilter filter = SkipLineFilter.forPrefixes("#");
+		assertTrue(filter.skip(CharBuffer.wrap(chars, 2, 8)));
+		assertFalse(filter.skip(CharBuffer.wrap(chars, 11, 4)));
+	}
+
+	@Test
+	public void testPredicate() {
+		final Pattern pattern = Pattern.compile("^\\d+$");
+		SkipLineFilter filter = SkipLineFilter.forPredicate(line -> pattern.matcher(line).matches());
+		assertTrue(filter.skip("12345"));
+		assertFalse(filter.skip("123a5"));
+		assertFalse(filter.isHeaderBlock());
+		assertTrue(filter.asHeaderBlock().isHeaderBlock());
+		assertTrue(filter.asHeaderBlock().skip("12345"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoPrefixes() {
+		SkipLineFilter.forPrefixes();
+	}
+
+}
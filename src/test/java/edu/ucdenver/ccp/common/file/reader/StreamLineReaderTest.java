@@ -36,6 +36,7 @@ package edu.ucdenver.ccp.common.file.reader;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
@@ -130,15 +131,61 @@ public class StreamLineReaderTest extends DefaultTestCase {
 		assertEquals("Terminator on third line returned should be LF", LineTerminator.LF, line.getLineTerminator());
 	}
 
+	/**
+	 * Tests that the byte offset of each line is the position in the file where the line starts
+	 * 
+	 * @throws IOException
+	 */
+	@Test
 	public void testByteOffset() throws IOException {
 		File sampleFile = populateSampleFile();
 		StreamLineReader flr = new StreamLineReader(sampleFile, ENCODING, SKIP_LINE_PREFIX);
 		Line line = flr.readLine();
-		assertEquals("Byte offset for first line returned should be eight", 8, line.getByteOffset());
+		assertEquals("Byte offset for first line returned should be seven", 7, line.getByteOffset());
 		line = flr.readLine();
 		assertEquals("Byte offset for second line returned should be 21", 21, line.getByteOffset());
+		assertEquals("Byte length for second line returned should be 6", 6, line.getByteLength());
+		line = flr.readLine();
+		assertEquals("Byte offset for third line returned should be 29", 29, line.getByteOffset());
+	}
+
+	/**
+	 * Tests that a long run of skipped lines is handled iteratively (this used to overflow the
+	 * stack) and that the skipped characters are counted in the character offset of the next line
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testLongRunOfSkippedLines() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			sb.append("##header\n");
+		}
+		sb.append("data1\ndata2\n");
+		StreamLineReader flr = new StreamLineReader(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")),
+				ENCODING, SKIP_LINE_PREFIX);
+		Line line = flr.readLine();
+		assertEquals("data1", line.getText());
+		assertEquals(200000, line.getLineNumber());
+		assertEquals(200000 * 9, line.getCharacterOffset());
 		line = flr.readLine();
-		assertEquals("Byte offset for second line returned should be 28", 28, line.getByteOffset());
+		assertEquals("data2", line.getText());
+		assertEquals(200000 * 9 + 6, line.getCharacterOffset());
+		assertNull(flr.readLine());
+	}
+
+	@Test
+	public void testSkipLineFilterInHeaderBlockMode() throws IOException {
+		String text = "#header1\n  @header2\nline1\n#line2\n@line3\n";
+		SkipLineFilter filter = SkipLineFilter.forPrefixes("#", "@").asHeaderBlock();
+		StreamLineReader flr = new StreamLineReader(new ByteArrayInputStream(text.getBytes("UTF-8")), ENCODING,
+				filter);
+		Line line = flr.readLine();
+		assertEquals("line1", line.getText());
+		assertEquals(2, line.getLineNumber());
+		assertEquals("#line2", flr.readLine().getText());
+		assertEquals("@line3", flr.readLine().getText());
+		assertNull(flr.readLine());
 	}
 
 	/**
@@ -0,0 +1,176 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.io.ClassPathUtil;
+import edu.ucdenver.ccp.common.reflection.PrivateAccessor;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class StreamingExcelFileLineReaderTest extends DefaultTestCase {
+
+	@Test
+	public void testReadXlsxStream() throws IOException {
+		InputStream xlsxStream = ClassPathUtil.getResourceStreamFromClasspath(getClass(), "sample.xlsx");
+		StreamingExcelFileLineReader lineReader = new StreamingExcelFileLineReader(xlsxStream, null);
+		Line line = lineReader.readLine();
+		assertEquals("a\tb\tc\td", line.getText());
+		assertEquals(2, line.getLineNumber());
+		line = lineReader.readLine();
+		assertEquals("a\t\tc\td", line.getText());
+		line = lineReader.readLine();
+		assertEquals("\tb\tc\td", line.getText());
+		line = lineReader.readLine();
+		assertEquals("\t\tc\t", line.getText());
+		assertNull(lineReader.readLine());
+		lineReader.close();
+	}
+
+	@Test
+	public void testMatchesExcelFileLineReader() throws IOException {
+		File xlsxFile = folder.newFile("strings.xlsx");
+		XSSFWorkbook wb = new XSSFWorkbook();
+		Sheet sheet = wb.createSheet();
+		for (int i = 0; i < 500; i++) {
+			Row row = sheet.createRow(i);
+			for (int col = 0; col < 5; col++) {
+				if ((i + col) % 7 != 0) {
+					row.createCell(col).setCellValue("r" + i + "c" + col);
+				}
+			}
+		}
+		write(wb, xlsxFile);
+
+		ExcelFileLineReader expectedReader = new ExcelFileLineReader(xlsxFile, "r1");
+		StreamingExcelFileLineReader observedReader = new StreamingExcelFileLineReader(xlsxFile, "r1");
+		Line expected;
+		while ((expected = expectedReader.readLine()) != null) {
+			Line observed = observedReader.readLine();
+			assertEquals(expected.getText(), observed.getText());
+			assertEquals(expected.getLineNumber(), observed.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+		}
+		assertNull(observedReader.readLine());
+		expectedReader.close();
+		observedReader.close();
+	}
+
+	@Test
+	public void testCellTypesMissingRowsAndSheetSelection() throws IOException {
+		File xlsxFile = folder.newFile("types.xlsx");
+		/* SXSSF writes inline strings rather than shared strings */
+		SXSSFWorkbook wb = new SXSSFWorkbook(10);
+		wb.createSheet("first").createRow(0).createCell(0).setCellValue("first sheet");
+		Sheet sheet = wb.createSheet("second");
+		Row header = sheet.createRow(0);
+		for (int col = 0; col < 4; col++) {
+			header.createCell(col).setCellValue("col" + col);
+		}
+		CellStyle percentStyle = wb.createCellStyle();
+		percentStyle.setDataFormat(wb.createDataFormat().getFormat("0.0%"));
+		Row row = sheet.createRow(1);
+		row.createCell(0).setCellValue(42);
+		row.createCell(1).setCellValue(true);
+		row.createCell(2).setCellValue(0.25);
+		row.getCell(2).setCellStyle(percentStyle);
+		row.createCell(3).setCellValue("inline");
+		/* row 2 is missing */
+		row = sheet.createRow(3);
+		row.createCell(1).setCellValue(1.5);
+		/* cells beyond the header are ignored */
+		row.createCell(6).setCellValue("ignored");
+		write(wb, xlsxFile);
+		wb.dispose();
+
+		StreamingExcelFileLineReader lineReader = new StreamingExcelFileLineReader(xlsxFile, 1, null);
+		assertEquals("42\tTRUE\t25.0%\tinline", lineReader.readLine().getText());
+		Line line = lineReader.readLine();
+		assertEquals("\t\t\t", line.getText());
+		assertEquals(3, line.getLineNumber());
+		line = lineReader.readLine();
+		assertEquals("\t1.5\t\t", line.getText());
+		assertEquals(4, line.getLineNumber());
+		assertNull(lineReader.readLine());
+		lineReader.close();
+
+		lineReader = new StreamingExcelFileLineReader(xlsxFile, 0, null);
+		assertNull(lineReader.readLine());
+		lineReader.close();
+	}
+
+	@Test
+	public void testTemporaryCopyIsDeletedOnClose() throws IOException {
+		InputStream xlsxStream = ClassPathUtil.getResourceStreamFromClasspath(getClass(), "sample.xlsx");
+		StreamingExcelFileLineReader lineReader = new StreamingExcelFileLineReader(xlsxStream, null);
+		Object workbook = PrivateAccessor.getFieldValue(lineReader, "workbook");
+		File temporaryFile = (File) PrivateAccessor.getFieldValue(workbook, "temporaryFile");
+		lineReader.close();
+		assertFalse(temporaryFile.exists());
+	}
+
+	@Test
+	public void testGetColumnIndex() {
+		assertEquals(0, StreamingExcelFileLineReader.getColumnIndex("A1"));
+		assertEquals(25, StreamingExcelFileLineReader.getColumnIndex("Z10"));
+		assertEquals(26, StreamingExcelFileLineReader.getColumnIndex("AA3"));
+		assertEquals(730, StreamingExcelFileLineReader.getColumnIndex("ABC1"));
+	}
+
+	private static void write(Workbook wb, File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			wb.write(os);
+		} finally {
+			os.close();
+		}
+	}
+
+}
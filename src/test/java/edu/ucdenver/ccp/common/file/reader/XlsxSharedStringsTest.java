@@ -0,0 +1,210 @@
+package edu.ucdenver.ccp.common.file.reader;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2016 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.reflection.PrivateAccessor;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class XlsxSharedStringsTest extends DefaultTestCase {
+
+	@Test
+	public void testMatchesReadOnlySharedStringsTable() throws Exception {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		XSSFSheet sheet = wb.createSheet();
+		String[] values = new String[] { "plain", "", "  padded  ", "a & b < c > d \" e", "stra\u00dfe",
+				"\ud835\udc9c\ud835\udc9c", "line1\nline2" };
+		for (int i = 0; i < values.length; i++) {
+			sheet.createRow(i).createCell(0).setCellValue(values[i]);
+		}
+		XSSFRichTextString rich = new XSSFRichTextString("bold and plain");
+		XSSFFont bold = wb.createFont();
+		bold.setBold(true);
+		rich.applyFont(0, 4, bold);
+		XSSFRow row = sheet.createRow(values.length);
+		row.createCell(0).setCellValue(rich);
+		for (int i = 0; i < 2000; i++) {
+			row.createCell(i + 1).setCellValue("value " + i);
+		}
+		File file = write(wb, "shared.xlsx");
+
+		OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+		try {
+			ReadOnlySharedStringsTable expected = new ReadOnlySharedStringsTable(pkg);
+			XlsxSharedStrings sharedStrings = XlsxSharedStrings.read(pkg);
+			try {
+				assertEquals(expected.getUniqueCount(), sharedStrings.size());
+				for (int i = 0; i < sharedStrings.size(); i++) {
+					assertEquals(expected.getEntryAt(i), sharedStrings.get(i));
+				}
+				assertEquals("bold and plain", sharedStrings.get(values.length));
+			} finally {
+				sharedStrings.close();
+			}
+		} finally {
+			pkg.revert();
+		}
+	}
+
+	@Test
+	public void testPhoneticRunsAreIgnored() throws Exception {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		XSSFSheet sheet = wb.createSheet();
+		/* ExcelFileLineReader treats the first row as the header */
+		sheet.createRow(0).createCell(0).setCellValue(1);
+		sheet.getRow(0).createCell(1).setCellValue(2);
+		XSSFRow row = sheet.createRow(1);
+		row.createCell(0).setCellValue("first");
+		row.createCell(1).setCellValue("second");
+		File file = write(wb, "phonetic.xlsx");
+
+		/* replace the shared strings with strings carrying furigana */
+		OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ_WRITE);
+		PackagePart part = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType()).get(0);
+		OutputStream os = part.getOutputStream();
+		try {
+			os.write(("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" count=\"2\" "
+					+ "uniqueCount=\"2\"><si><t>\u6f22\u5b57</t><rPh sb=\"0\" eb=\"2\"><t>\u30ab\u30f3\u30b8</t></rPh>"
+					+ "</si><si><r><t>a</t></r><rPh sb=\"0\" eb=\"1\"><t>x</t></rPh><r><t>b</t></r></si></sst>")
+					.getBytes("UTF-8"));
+		} finally {
+			os.close();
+		}
+		pkg.close();
+
+		pkg = OPCPackage.open(file, PackageAccess.READ);
+		try {
+			XlsxSharedStrings sharedStrings = XlsxSharedStrings.read(pkg);
+			try {
+				assertEquals(2, sharedStrings.size());
+				assertEquals("\u6f22\u5b57", sharedStrings.get(0));
+				assertEquals("ab", sharedStrings.get(1));
+			} finally {
+				sharedStrings.close();
+			}
+		} finally {
+			pkg.revert();
+		}
+		ExcelFileLineReader reader = new ExcelFileLineReader(file, null);
+		try {
+			assertEquals("\u6f22\u5b57\tab", reader.readLine().getText());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testWorkbookWithoutSharedStrings() throws Exception {
+		/* SXSSF writes inline strings rather than shared strings */
+		SXSSFWorkbook wb = new SXSSFWorkbook(10);
+		wb.createSheet().createRow(0).createCell(0).setCellValue("inline");
+		File file = write(wb, "inline.xlsx");
+		wb.dispose();
+
+		OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+		try {
+			XlsxSharedStrings sharedStrings = XlsxSharedStrings.read(pkg);
+			try {
+				assertEquals(0, sharedStrings.size());
+				try {
+					sharedStrings.get(0);
+					fail("An empty table should not contain a string at index 0.");
+				} catch (IndexOutOfBoundsException e) {
+					/* expected */
+				}
+			} finally {
+				sharedStrings.close();
+			}
+		} finally {
+			pkg.revert();
+		}
+	}
+
+	@Test
+	public void testTemporaryFilesAreDeletedOnClose() throws Exception {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		wb.createSheet().createRow(0).createCell(0).setCellValue("shared");
+		File file = write(wb, "delete.xlsx");
+
+		OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+		try {
+			XlsxSharedStrings sharedStrings = XlsxSharedStrings.read(pkg);
+			File dataFile = (File) PrivateAccessor.getFieldValue(sharedStrings, "dataFile");
+			File indexFile = (File) PrivateAccessor.getFieldValue(sharedStrings, "indexFile");
+			assertTrue(dataFile.exists());
+			assertTrue(indexFile.exists());
+			sharedStrings.close();
+			assertFalse(dataFile.exists());
+			assertFalse(indexFile.exists());
+		} finally {
+			pkg.revert();
+		}
+	}
+
+	private File write(Workbook wb, String fileName) throws IOException {
+		File file = folder.newFile(fileName);
+		OutputStream os = new FileOutputStream(file);
+		try {
+			wb.write(os);
+		} finally {
+			os.close();
+		}
+		wb.close();
+		return file;
+	}
+
+}
@@ -0,0 +1,259 @@
+package edu.ucdenver.ccp.common.io;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileUtil;
+import edu.ucdenver.ccp.common.file.reader.Line;
+import edu.ucdenver.ccp.common.file.reader.LineCheckpoint;
+import edu.ucdenver.ccp.common.file.reader.LineReaderEngine;
+import edu.ucdenver.ccp.common.file.reader.StreamLineIterator;
+import edu.ucdenver.ccp.common.reflection.PrivateAccessor;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class ReadAheadReaderTest extends DefaultTestCase {
+
+	private static final CharacterEncoding ENCODING = CharacterEncoding.UTF_8;
+
+	private String sampleText;
+	private File sampleFile;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			sb.append((i % 10 == 0) ? "#comment" : "line\t" + i + "\t\u00DF\uD835\uDC9C").append(
+					(i % 2 == 0) ? "\n" : "\r\n");
+		}
+		sampleText = sb.toString();
+		sampleFile = folder.newFile("sample.utf8");
+		FileUtil.copy(new ByteArrayInputStream(sampleText.getBytes("UTF-8")), sampleFile);
+	}
+
+	@Test
+	public void testReadsAllCharacters() throws IOException {
+		int[] queueDepths = new int[] { 1, 2, 4 };
+		int[] bufferSizes = new int[] { 1, 7, 4096, 100000 };
+		for (int queueDepth : queueDepths) {
+			for (int bufferSize : bufferSizes) {
+				ReadAheadReader reader = new ReadAheadReader(new StringReader(sampleText), queueDepth, bufferSize);
+				assertEquals(String.format("depth: %d size: %d", queueDepth, bufferSize), sampleText, readAll(reader));
+				assertEquals(-1, reader.read());
+				reader.close();
+			}
+		}
+	}
+
+	@Test
+	public void testEmptySource() throws IOException {
+		ReadAheadReader reader = new ReadAheadReader(new StringReader(""), 1, 16);
+		assertEquals(-1, reader.read(new char[8], 0, 8));
+		reader.close();
+	}
+
+	@Test
+	public void testSourceErrorIsPropagated() throws IOException {
+		Reader failingReader = new Reader() {
+			private int count = 0;
+
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				if (count++ == 3) {
+					throw new IOException("simulated failure");
+				}
+				cbuf[off] = 'a';
+				return 1;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		ReadAheadReader reader = new ReadAheadReader(failingReader, 2, 2);
+		assertEquals('a', reader.read());
+		assertEquals('a', reader.read());
+		try {
+			readAll(reader);
+			fail("The error thrown by the source should be rethrown by the consumer.");
+		} catch (IOException e) {
+			assertEquals("simulated failure", e.getMessage());
+		}
+		/* the failure must not look like the end of the stream to a caller that continues */
+		try {
+			reader.read();
+			fail("The error thrown by the source should be rethrown by every later read.");
+		} catch (IOException e) {
+			assertEquals("simulated failure", e.getMessage());
+		}
+		reader.close();
+	}
+
+	@Test
+	public void testBackpressureBoundsReadAhead() throws Exception {
+		final AtomicInteger charsRead = new AtomicInteger();
+		Reader endlessReader = new Reader() {
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				cbuf[off] = 'x';
+				charsRead.incrementAndGet();
+				return 1;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		ReadAheadReader reader = new ReadAheadReader(endlessReader, 3, 10);
+		assertEquals('x', reader.read());
+		Thread.sleep(200);
+		/* the consumer holds one buffer and at most three more are filled ahead of it */
+		assertTrue(charsRead.get() <= 40);
+		reader.close();
+	}
+
+	@Test
+	public void testCloseStopsProducer() throws Exception {
+		final boolean[] closed = new boolean[] { false };
+		Reader endlessReader = new Reader() {
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				cbuf[off] = 'x';
+				return 1;
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		ReadAheadReader reader = new ReadAheadReader(endlessReader, 1, 4);
+		assertEquals('x', reader.read());
+		reader.close();
+		assertTrue(closed[0]);
+		assertFalse(((Thread) PrivateAccessor.getFieldValue(reader, "producer")).isAlive());
+		try {
+			reader.read();
+			fail("Reading from a closed reader should throw an exception.");
+		} catch (IOException e) {
+			/* expected */
+		}
+	}
+
+	@Test
+	public void testReadAheadEngineMatchesBlockEngine() throws IOException {
+		List<Line> expectedLines = readLines(new StreamLineIterator(sampleFile, ENCODING, "#", LineReaderEngine.BLOCK));
+		List<Line> observedLines = readLines(new StreamLineIterator(sampleFile, ENCODING, "#",
+				LineReaderEngine.READ_AHEAD));
+		assertLinesEqual(expectedLines, observedLines);
+		assertLinesEqual(expectedLines, readLines(new StreamLineIterator(sampleFile, ENCODING, "#", 1, 5)));
+	}
+
+	@Test
+	public void testReadAheadFromGzipFile() throws IOException {
+		File gzFile = folder.newFile("sample.utf8.gz");
+		GZIPOutputStream gzos = new GZIPOutputStream(new FileOutputStream(gzFile));
+		gzos.write(sampleText.getBytes("UTF-8"));
+		gzos.close();
+		List<Line> expectedLines = readLines(new StreamLineIterator(sampleFile, ENCODING, null, LineReaderEngine.BLOCK));
+		assertLinesEqual(expectedLines, readLines(new StreamLineIterator(gzFile, ENCODING, null, 2, 1024)));
+	}
+
+	@Test
+	public void testResumeFromCheckpointWithReadAhead() throws IOException {
+		List<Line> expectedLines = readLines(new StreamLineIterator(sampleFile, ENCODING, "#", LineReaderEngine.BLOCK));
+		StreamLineIterator lineIter = new StreamLineIterator(sampleFile, ENCODING, "#", LineReaderEngine.READ_AHEAD);
+		for (int i = 0; i < 1234; i++) {
+			lineIter.next();
+		}
+		LineCheckpoint checkpoint = lineIter.getCheckpoint();
+		lineIter.close();
+		List<Line> resumedLines = readLines(new StreamLineIterator(sampleFile, ENCODING, "#",
+				LineReaderEngine.READ_AHEAD, checkpoint));
+		assertLinesEqual(expectedLines.subList(1234, expectedLines.size()), resumedLines);
+	}
+
+	private static String readAll(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[333];
+		int count;
+		while ((count = reader.read(buffer, 0, buffer.length)) != -1) {
+			sb.append(buffer, 0, count);
+		}
+		return sb.toString();
+	}
+
+	private static List<Line> readLines(StreamLineIterator lineIter) {
+		List<Line> lines = new ArrayList<Line>();
+		while (lineIter.hasNext()) {
+			lines.add(lineIter.next());
+		}
+		lineIter.close();
+		return lines;
+	}
+
+	private static void assertLinesEqual(List<Line> expectedLines, List<Line> observedLines) {
+		assertEquals(expectedLines.size(), observedLines.size());
+		assertFalse(expectedLines.isEmpty());
+		for (int i = 0; i < expectedLines.size(); i++) {
+			Line expected = expectedLines.get(i);
+			Line observed = observedLines.get(i);
+			assertEquals(expected.getText(), observed.getText());
+			assertEquals(expected.getLineTerminator(), observed.getLineTerminator());
+			assertEquals(expected.getLineNumber(), observed.getLineNumber());
+			assertEquals(expected.getCharacterOffset(), observed.getCharacterOffset());
+			assertEquals(expected.getCodePointOffset(), observed.getCodePointOffset());
+			assertEquals(expected.getByteOffset(), observed.getByteOffset());
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package edu.ucdenver.ccp.common.io;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.ucdenver.ccp.common.collections.CollectionsUtil;
+import edu.ucdenver.ccp.common.file.CharacterEncoding;
+import edu.ucdenver.ccp.common.file.FileReaderUtil;
+import edu.ucdenver.ccp.common.file.FileWriterUtil;
+import edu.ucdenver.ccp.common.test.DefaultTestCase;
+
+public class WriteBehindWriterTest extends DefaultTestCase {
+
+	@Test
+	public void testWrite() throws IOException {
+		Random random = new Random(11);
+		for (int bufferSize : new int[] { 1, 3, 16, 1024 }) {
+			StringWriter sink = new StringWriter();
+			StringBuilder expected = new StringBuilder();
+			WriteBehindWriter writer = new WriteBehindWriter(sink, 1 + random.nextInt(3), bufferSize);
+			for (int i = 0; i < 500; i++) {
+				String s = "line " + i + " \u00df\ud835\udc9c";
+				switch (random.nextInt(4)) {
+				case 0:
+					writer.write(s);
+					break;
+				case 1:
+					writer.write(("<" + s + ">").toCharArray(), 1, s.length());
+					break;
+				case 2:
+					writer.append(s);
+					break;
+				default:
+					for (int j = 0; j < s.length(); j++) {
+						writer.write(s.charAt(j));
+					}
+				}
+				writer.newLine();
+				expected.append(s).append(System.getProperty("line.separator"));
+			}
+			writer.close();
+			assertEquals(expected.toString(), sink.toString());
+		}
+	}
+
+	@Test
+	public void testFlushWaitsForSink() throws IOException {
+		final AtomicInteger flushCount = new AtomicInteger();
+		StringWriter sink = new StringWriter() {
+			@Override
+			public void flush() {
+				flushCount.incrementAndGet();
+			}
+		};
+		WriteBehindWriter writer = new WriteBehindWriter(sink, 1, 4);
+		writer.write("abcdefghij");
+		writer.flush();
+		assertEquals("abcdefghij", sink.toString());
+		assertEquals(1, flushCount.get());
+		writer.write("k");
+		writer.close();
+		assertEquals("abcdefghijk", sink.toString());
+	}
+
+	/**
+	 * Checks that the producer blocks once all of the buffers are full
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBackpressure() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final StringWriter target = new StringWriter();
+		Writer sink = new FilterWriter(target) {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				super.write(cbuf, off, len);
+			}
+		};
+		final WriteBehindWriter writer = new WriteBehindWriter(sink, 1, 4);
+		final CountDownLatch written = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			try {
+				writer.write("0123456789abcdefghij");
+				written.countDown();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		producer.start();
+		assertFalse("The producer should block while the sink is blocked.",
+				written.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(written.await(10, TimeUnit.SECONDS));
+		producer.join();
+		writer.close();
+		assertEquals("0123456789abcdefghij", target.toString());
+	}
+
+	@Test
+	public void testCloseSurfacesSinkError() throws IOException {
+		final IOException failure = new IOException("disk full");
+		final AtomicInteger closeCount = new AtomicInteger();
+		Writer sink = new StringWriter() {
+			@Override
+			public void close() {
+				closeCount.incrementAndGet();
+			}
+		};
+		Writer failingSink = new FilterWriter(sink) {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw failure;
+			}
+		};
+		WriteBehindWriter writer = new WriteBehindWriter(failingSink, 1, 4);
+		writer.write("abc");
+		try {
+			writer.close();
+			fail("close() should rethrow the error from the background thread.");
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+		assertEquals("The sink should be closed despite the error.", 1, closeCount.get());
+	}
+
+	@Test
+	public void testWriteAfterSinkErrorFails() throws IOException {
+		final IOException failure = new IOException("disk full");
+		Writer sink = new FilterWriter(new StringWriter()) {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw failure;
+			}
+		};
+		WriteBehindWriter writer = new WriteBehindWriter(sink, 1, 2);
+		try {
+			for (int i = 0; i < 100; i++) {
+				writer.write("ab");
+			}
+			fail("Writing should fail once the sink has failed.");
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+		try {
+			writer.close();
+			fail("close() should rethrow the error from the background thread.");
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+	}
+
+	@Test
+	public void testInitWriteBehindWriter() throws IOException {
+		File file = folder.newFile("write-behind.utf8");
+		List<String> lines = CollectionsUtil.createList("line 1", "l\u00efne 2", "line 3");
+		WriteBehindWriter writer = FileWriterUtil.initWriteBehindWriter(file, CharacterEncoding.UTF_8);
+		for (String line : lines) {
+			writer.write(line);
+			writer.newLine();
+		}
+		writer.close();
+		assertEquals(lines, FileReaderUtil.loadLinesFromFile(file, CharacterEncoding.UTF_8));
+	}
+
+}
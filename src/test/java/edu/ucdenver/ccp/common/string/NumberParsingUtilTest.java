@@ -0,0 +1,103 @@
+package edu.ucdenver.ccp.common.string;
+
+/*
+ * #%L
+ * Colorado Computational Pharmacology's common module
+ * %%
+ * Copyright (C) 2012 - 2014 Regents of the University of Colorado
+ * %%
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the Regents of the University of Colorado nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+ * INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NumberParsingUtilTest {
+
+	@Test
+	public void testParseInt() {
+		assertEquals(42, NumberParsingUtil.parseInt("id=42;", 3, 5));
+		assertEquals(-7, NumberParsingUtil.parseInt("-7", 0, 2));
+		assertEquals(7, NumberParsingUtil.parseInt("+7", 0, 2));
+		assertEquals(Integer.MAX_VALUE, NumberParsingUtil.parseInt(Integer.toString(Integer.MAX_VALUE), 0, 10));
+		assertEquals(Integer.MIN_VALUE, NumberParsingUtil.parseInt(Integer.toString(Integer.MIN_VALUE), 0, 11));
+		assertInvalidInt("2147483648");
+		assertInvalidInt("");
+		assertInvalidInt("-");
+		assertInvalidInt("1.0");
+		assertInvalidInt(" 1");
+	}
+
+	@Test
+	public void testParseLong() {
+		String max = Long.toString(Long.MAX_VALUE);
+		String min = Long.toString(Long.MIN_VALUE);
+		assertEquals(Long.MAX_VALUE, NumberParsingUtil.parseLong(max, 0, max.length()));
+		assertEquals(Long.MIN_VALUE, NumberParsingUtil.parseLong(min, 0, min.length()));
+		try {
+			NumberParsingUtil.parseLong("9223372036854775808", 0, 19);
+			fail("A value that overflows should not be parsed.");
+		} catch (NumberFormatException e) {
+			assertEquals("For input string: \"9223372036854775808\"", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseDoubleMatchesDoubleParseDouble() {
+		String[] values = new String[] { "0", "-0", "1.", ".5", "-12.375", "3.14159265358979", "0.1", "1e10",
+				"-2.5E-3", "123456789012345678", "0.30000000000000004", "NaN", "-Infinity", "1.5d" };
+		for (String value : values) {
+			assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+					Double.doubleToLongBits(NumberParsingUtil.parseDouble(value, 0, value.length())));
+		}
+		Random random = new Random(3);
+		for (int i = 0; i < 10000; i++) {
+			String value = String.format("%d.%0" + (1 + random.nextInt(8)) + "d", random.nextInt(100000),
+					random.nextInt(1000));
+			assertEquals(value, Double.parseDouble(value), NumberParsingUtil.parseDouble(value, 0, value.length()), 0);
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseInvalidDouble() {
+		NumberParsingUtil.parseDouble("1.2.3", 0, 5);
+	}
+
+	private static void assertInvalidInt(String value) {
+		try {
+			NumberParsingUtil.parseInt(value, 0, value.length());
+			fail("Invalid int should not be parsed: " + value);
+		} catch (NumberFormatException e) {
+			/* expected */
+		}
+	}
+
+}